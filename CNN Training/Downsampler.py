@@ -37,7 +37,8 @@ while line:
 	currentUniqueID = user+model+device
 	if(lastUniqueID == ""):
 		lastUniqueID = currentUniqueID
-	else:
+	elif(currentUniqueID != lastUniqueID):
+		#Only the first device in the file is downsampled
 		break
 	#groundTruth = values[9]
 	
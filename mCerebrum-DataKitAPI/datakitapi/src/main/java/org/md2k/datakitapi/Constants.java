@@ -111,4 +111,20 @@ public class Constants {
      * </p>
      */
     public static final String RC_DATASOURCE_CLIENT = "data_source_client";
+
+    /**
+     * Request identifier, echoed back in the reply to the request.
+     * <p>
+     *     <code>"request_id"</code>
+     * </p>
+     */
+    public static final String RC_REQUEST_ID = "request_id";
+
+    /**
+     * Encoded <code>HighFrequencyBlock</code> of high frequency samples.
+     * <p>
+     *     <code>"hf_block"</code>
+     * </p>
+     */
+    public static final String RC_HF_BLOCK = "hf_block";
 }
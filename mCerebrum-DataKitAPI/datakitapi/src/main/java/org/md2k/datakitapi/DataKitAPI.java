@@ -33,12 +33,14 @@ import android.os.Handler;
 
 import org.md2k.datakitapi.datatype.DataType;
 import org.md2k.datakitapi.datatype.DataTypeDoubleArray;
+import org.md2k.datakitapi.datatype.DataTypeDoubleMatrix;
 import org.md2k.datakitapi.datatype.DataTypeLong;
 import org.md2k.datakitapi.datatype.RowObject;
 import org.md2k.datakitapi.exception.DataKitException;
 import org.md2k.datakitapi.exception.DataKitNotFoundException;
 import org.md2k.datakitapi.messagehandler.OnConnectionListener;
 import org.md2k.datakitapi.messagehandler.OnReceiveListener;
+import org.md2k.datakitapi.messagehandler.PendingRequest;
 import org.md2k.datakitapi.source.datasource.DataSourceBuilder;
 import org.md2k.datakitapi.source.datasource.DataSourceClient;
 import org.md2k.datakitapi.status.Status;
@@ -49,6 +51,12 @@ import java.util.Map;
 
 /**
  * Handles exception checks and handles outside method calls for <code>DataKitAPIExecute</code>.
+ *
+ * <p>
+ *     Calls that wait for a reply from <code>DataKit</code> are not serialized against each other,
+ *     several of them can be in flight at once. The <code>...Async</code> variants return the
+ *     {@link PendingRequest} without blocking, the other calls wait for its result.
+ * </p>
  */
 public class DataKitAPI {
     private static final String TAG = DataKitAPI.class.getSimpleName();
@@ -177,20 +185,30 @@ public class DataKitAPI {
      * @throws DataKitException Thrown if Data Kit is not connected, the builder is null, or the
      *                          clients are null.
      */
-    public synchronized ArrayList<DataSourceClient> find(DataSourceBuilder dataSourceBuilder) throws DataKitException {
+    public ArrayList<DataSourceClient> find(DataSourceBuilder dataSourceBuilder) throws DataKitException {
+        ArrayList<DataSourceClient> dataSourceClients = findAsync(dataSourceBuilder).await();
 
+        if (dataSourceClients == null || !dataKitAPIExecute.isConnected())
+            throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
+
+        else return dataSourceClients;
+    }
+
+    /**
+     * Sends a find request to <code>DataKit</code> without waiting for the reply.
+     *
+     * @param dataSourceBuilder Builder object for the desired <code>DataSourceClient</code> objects.
+     * @return The pending ArrayList of <code>DataSourceClient</code> objects, null on failure.
+     * @throws DataKitException Thrown if Data Kit is not connected or the builder is null.
+     */
+    public PendingRequest<ArrayList<DataSourceClient>> findAsync(DataSourceBuilder dataSourceBuilder) throws DataKitException {
         if (!dataKitAPIExecute.isConnected())
             throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
 
         if (dataSourceBuilder == null)
             throw new DataKitException(new Status(Status.DATA_INVALID).getStatusMessage());
 
-        ArrayList<DataSourceClient> dataSourceClients = dataKitAPIExecute.find(dataSourceBuilder).await();
-
-        if (dataSourceClients == null || !dataKitAPIExecute.isConnected())
-            throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
-
-        else return dataSourceClients;
+        return dataKitAPIExecute.find(dataSourceBuilder);
     }
 
     /**
@@ -201,7 +219,7 @@ public class DataKitAPI {
      * @throws DataKitException Thrown if <code>DataKit</code> is not connected and if the <code>DataSourceClient</code>
      *                          or the <code>DataType</code> are null.
      */
-    public synchronized void insert(DataSourceClient dataSourceClient, DataType dataType) throws DataKitException {
+    public void insert(DataSourceClient dataSourceClient, DataType dataType) throws DataKitException {
 
         if (!dataKitAPIExecute.isConnected())
             throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
@@ -222,7 +240,7 @@ public class DataKitAPI {
      * @param dataType Type of the data in <code>dataSourceClient</code>.
      * @throws DataKitException Thrown if <code>DataKit</code> is not connected or the data is invalid.
      */
-    public synchronized void setSummary(DataSourceClient dataSourceClient, DataType dataType) throws DataKitException {
+    public void setSummary(DataSourceClient dataSourceClient, DataType dataType) throws DataKitException {
         if (!dataKitAPIExecute.isConnected())
             throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
 
@@ -241,7 +259,7 @@ public class DataKitAPI {
      * @param dataTypes Array of <code>DataType</code> objects.
      * @throws DataKitException Thrown if <code>DataKit</code> is not connected or the data is invalid.
      */
-    public synchronized void insert(DataSourceClient dataSourceClient, DataType[] dataTypes) throws DataKitException {
+    public void insert(DataSourceClient dataSourceClient, DataType[] dataTypes) throws DataKitException {
         if (!dataKitAPIExecute.isConnected())
             throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
 
@@ -291,6 +309,55 @@ public class DataKitAPI {
             addToBuffer(dataSourceClient.getDs_id(), dataType);
     }
 
+    /**
+     * Sends a batch of high frequency samples to <code>DataKit</code> as one unit.
+     *
+     * <p>
+     *     The batch bypasses the high frequency buffer. Samples already buffered for the data source
+     *     are sent first so that the order is kept.
+     * </p>
+     *
+     * @param dataSourceClient Data source to insert.
+     * @param matrix Batch of samples.
+     * @throws DataKitException Thrown if <code>DataKit</code> is not connected or the data is invalid.
+     */
+    public synchronized void insertHighFrequency(final DataSourceClient dataSourceClient,
+                                                 final DataTypeDoubleMatrix matrix) throws DataKitException {
+        if (!dataKitAPIExecute.isConnected())
+            throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
+
+        if (dataSourceClient == null || matrix == null)
+            throw new DataKitException(new Status(Status.DATA_INVALID).getStatusMessage());
+
+        if (matrix.getCount() == 0)
+            return;
+        if (hmHFBuffer.containsKey(dataSourceClient.getDs_id()))
+            syncHFData(dataSourceClient.getDs_id());
+        dataKitAPIExecute.insertHighFrequency(dataSourceClient.getDs_id(), matrix);
+    }
+
+    /**
+     * Sets whether buffered high frequency samples are sent to <code>DataKit</code> as columnar
+     * <code>HighFrequencyBlock</code>s instead of parcelled <code>DataTypeDoubleArray</code>s.
+     *
+     * <p>
+     *     Only enable this when the installed <code>DataKit</code> handles
+     *     <code>MessageType.INSERT_HIGH_FREQUENCY_BLOCK</code>. Default is false.
+     * </p>
+     *
+     * @param isBlockTransport Whether to send blocks.
+     */
+    public void setHighFrequencyBlockTransport(boolean isBlockTransport) {
+        dataKitAPIExecute.setBlockTransport(isBlockTransport);
+    }
+
+    /**
+     * @return Whether high frequency samples are sent as <code>HighFrequencyBlock</code>s.
+     */
+    public boolean isHighFrequencyBlockTransport() {
+        return dataKitAPIExecute.isBlockTransport();
+    }
+
     /**
      * Adds the data type array to the buffer.
      *
@@ -356,19 +423,30 @@ public class DataKitAPI {
      * @return The registered <code>DataSourceClient</code>.
      * @throws DataKitException Thrown when <code>DataKit</code> is not installed or the data is invalid.
      */
-    public synchronized DataSourceClient register(final DataSourceBuilder dataSourceBuilder) throws DataKitException {
+    public DataSourceClient register(final DataSourceBuilder dataSourceBuilder) throws DataKitException {
+        DataSourceClient dataSourceClient = registerAsync(dataSourceBuilder).await();
+
+        if (dataSourceClient == null || !dataKitAPIExecute.isConnected())
+            throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
+
+        else return dataSourceClient;
+    }
+
+    /**
+     * Sends a registration request to <code>DataKit</code> without waiting for the reply.
+     *
+     * @param dataSourceBuilder Builder object of the desired <code>DataSourceClient</code>.
+     * @return The pending registered <code>DataSourceClient</code>, null on failure.
+     * @throws DataKitException Thrown when <code>DataKit</code> is not connected or the data is invalid.
+     */
+    public PendingRequest<DataSourceClient> registerAsync(final DataSourceBuilder dataSourceBuilder) throws DataKitException {
         if (!dataKitAPIExecute.isConnected())
             throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
 
         if (dataSourceBuilder == null)
             throw new DataKitException(new Status(Status.DATA_INVALID).getStatusMessage());
 
-        DataSourceClient dataSourceClient = dataKitAPIExecute.register(dataSourceBuilder).await();
-
-        if (dataSourceClient == null || !dataKitAPIExecute.isConnected())
-            throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
-
-        else return dataSourceClient;
+        return dataKitAPIExecute.register(dataSourceBuilder);
     }
 
     /**
@@ -378,19 +456,30 @@ public class DataKitAPI {
      * @return The status of the unregistering operation.
      * @throws DataKitException Thrown when <code>DataKit</code> is not installed or the data is invalid.
      */
-    public synchronized Status unregister(final DataSourceClient dataSourceClient) throws DataKitException {
+    public Status unregister(final DataSourceClient dataSourceClient) throws DataKitException {
+        Status status = unregisterAsync(dataSourceClient).await();
+
+        if (status == null || !dataKitAPIExecute.isConnected())
+            throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
+
+        else return status;
+    }
+
+    /**
+     * Sends an unregister request to <code>DataKit</code> without waiting for the reply.
+     *
+     * @param dataSourceClient The data source to unregister.
+     * @return The pending status of the unregistering operation, null on failure.
+     * @throws DataKitException Thrown when <code>DataKit</code> is not connected or the data is invalid.
+     */
+    public PendingRequest<Status> unregisterAsync(final DataSourceClient dataSourceClient) throws DataKitException {
         if (!dataKitAPIExecute.isConnected())
             throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
 
         if (dataSourceClient == null)
             throw new DataKitException(new Status(Status.DATA_INVALID).getStatusMessage());
 
-        Status status = dataKitAPIExecute.unregister(dataSourceClient).await();
-
-        if (status == null || !dataKitAPIExecute.isConnected())
-            throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
-
-        else return status;
+        return dataKitAPIExecute.unregister(dataSourceClient);
     }
 
     /**
@@ -401,15 +490,47 @@ public class DataKitAPI {
      * @return An arrayList of the query results.
      * @throws DataKitException Thrown when <code>DataKit</code> is not installed or the data is invalid.
      */
-    public synchronized ArrayList<DataType> query(final DataSourceClient dataSourceClient,
-                                                  final int last_n_sample) throws DataKitException {
+    public ArrayList<DataType> query(final DataSourceClient dataSourceClient,
+                                     final int last_n_sample) throws DataKitException {
+        ArrayList<DataType> dataTypes = queryAsync(dataSourceClient, last_n_sample).await();
+
+        if (dataTypes == null || !dataKitAPIExecute.isConnected())
+            throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
+
+        else return dataTypes;
+    }
+
+    /**
+     * Sends a query for the last given number of samples without waiting for the reply.
+     *
+     * @param dataSourceClient The data source whose data is being queried for.
+     * @param last_n_sample Last n samples to retrieve, n is a nonzero positive integer.
+     * @return The pending query results, null on failure.
+     * @throws DataKitException Thrown when <code>DataKit</code> is not connected or the data is invalid.
+     */
+    public PendingRequest<ArrayList<DataType>> queryAsync(final DataSourceClient dataSourceClient,
+                                                          final int last_n_sample) throws DataKitException {
         if (!dataKitAPIExecute.isConnected())
             throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
 
         if (dataSourceClient == null || last_n_sample == 0)
             throw new DataKitException(new Status(Status.DATA_INVALID).getStatusMessage());
 
-        ArrayList<DataType> dataTypes = dataKitAPIExecute.query(dataSourceClient, last_n_sample).await();
+        return dataKitAPIExecute.query(dataSourceClient, last_n_sample);
+    }
+
+    /**
+     * Queries <code>DataKit</code> for samples from the given data source within the given time window.
+     *
+     * @param dataSourceClient The data source whose data is being queried for.
+     * @param starttimestamp The starting timestamp for the desired sampling window.
+     * @param endtimestamp The ending timestamp for the desired sampling window.
+     * @return An arrayList of the query results.
+     * @throws DataKitException Thrown when <code>DataKit</code> is not installed or the data is invalid.
+     */
+    public ArrayList<DataType> query(DataSourceClient dataSourceClient,
+                                     long starttimestamp, long endtimestamp) throws DataKitException {
+        ArrayList<DataType> dataTypes = queryAsync(dataSourceClient, starttimestamp, endtimestamp).await();
 
         if (dataTypes == null || !dataKitAPIExecute.isConnected())
             throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
@@ -418,28 +539,23 @@ public class DataKitAPI {
     }
 
     /**
-     * Queries <code>DataKit</code> for samples from the given data source within the given time window.
+     * Sends a query for samples within the given time window without waiting for the reply.
      *
      * @param dataSourceClient The data source whose data is being queried for.
      * @param starttimestamp The starting timestamp for the desired sampling window.
      * @param endtimestamp The ending timestamp for the desired sampling window.
-     * @return An arrayList of the query results.
-     * @throws DataKitException Thrown when <code>DataKit</code> is not installed or the data is invalid.
+     * @return The pending query results, null on failure.
+     * @throws DataKitException Thrown when <code>DataKit</code> is not connected or the data is invalid.
      */
-    public synchronized ArrayList<DataType> query(DataSourceClient dataSourceClient,
-                                                  long starttimestamp, long endtimestamp) throws DataKitException {
+    public PendingRequest<ArrayList<DataType>> queryAsync(DataSourceClient dataSourceClient,
+                                                          long starttimestamp, long endtimestamp) throws DataKitException {
         if (!dataKitAPIExecute.isConnected())
             throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
 
         if (dataSourceClient == null || starttimestamp > endtimestamp)
             throw new DataKitException(new Status(Status.DATA_INVALID).getStatusMessage());
 
-        ArrayList<DataType> dataTypes = dataKitAPIExecute.query(dataSourceClient, starttimestamp, endtimestamp).await();
-
-        if (dataTypes == null || !dataKitAPIExecute.isConnected())
-            throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
-
-        else return dataTypes;
+        return dataKitAPIExecute.query(dataSourceClient, starttimestamp, endtimestamp);
     }
 
     /**
@@ -452,20 +568,34 @@ public class DataKitAPI {
      * @return An arrayList of the query results.
      * @throws DataKitException Thrown when <code>DataKit</code> is not installed or the data is invalid.
      */
-    public synchronized ArrayList<RowObject> queryFromPrimaryKey(DataSourceClient dataSourceClient,
-                                                                 long lastSyncedKey, int limit) throws DataKitException {
+    public ArrayList<RowObject> queryFromPrimaryKey(DataSourceClient dataSourceClient,
+                                                    long lastSyncedKey, int limit) throws DataKitException {
+        ArrayList<RowObject> rowObjects = queryFromPrimaryKeyAsync(dataSourceClient, lastSyncedKey, limit).await();
+
+        if (rowObjects == null || !dataKitAPIExecute.isConnected())
+            throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
+
+        else return rowObjects;
+    }
+
+    /**
+     * Sends a query for rows after the given key without waiting for the reply.
+     *
+     * @param dataSourceClient The data source whose data is being queried for.
+     * @param lastSyncedKey Most recent key that was synced to <code>DataKit</code>.
+     * @param limit Number of rows to return.
+     * @return The pending query results, null on failure.
+     * @throws DataKitException Thrown when <code>DataKit</code> is not connected or the data is invalid.
+     */
+    public PendingRequest<ArrayList<RowObject>> queryFromPrimaryKeyAsync(DataSourceClient dataSourceClient,
+                                                                         long lastSyncedKey, int limit) throws DataKitException {
         if (!dataKitAPIExecute.isConnected())
             throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
 
         if (dataSourceClient == null)
             throw new DataKitException(new Status(Status.DATA_INVALID).getStatusMessage());
 
-        ArrayList<RowObject> rowObjects = dataKitAPIExecute.queryFromPrimaryKey(dataSourceClient, lastSyncedKey, limit).await();
-
-        if (rowObjects == null || !dataKitAPIExecute.isConnected())
-            throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
-
-        else return rowObjects;
+        return dataKitAPIExecute.queryFromPrimaryKey(dataSourceClient, lastSyncedKey, limit);
     }
 
     /**
@@ -474,11 +604,8 @@ public class DataKitAPI {
      * @return The number of columns in the database.
      * @throws DataKitException Thrown when <code>DataKit</code> is not installed or the data is invalid.
      */
-    public synchronized DataTypeLong querySize() throws DataKitException {
-        if (!dataKitAPIExecute.isConnected())
-            throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
-
-        DataTypeLong dataTypeLong = dataKitAPIExecute.querySize().await();
+    public DataTypeLong querySize() throws DataKitException {
+        DataTypeLong dataTypeLong = querySizeAsync().await();
 
         if (dataTypeLong == null || !dataKitAPIExecute.isConnected())
             throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
@@ -486,6 +613,19 @@ public class DataKitAPI {
         else return dataTypeLong;
     }
 
+    /**
+     * Sends a query for the size of the database without waiting for the reply.
+     *
+     * @return The pending number of columns in the database, null on failure.
+     * @throws DataKitException Thrown when <code>DataKit</code> is not connected.
+     */
+    public PendingRequest<DataTypeLong> querySizeAsync() throws DataKitException {
+        if (!dataKitAPIExecute.isConnected())
+            throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
+
+        return dataKitAPIExecute.querySize();
+    }
+
     /**
      * Subscribes the given <code>DataSourceClient</code> to the given <code>OnReceiveListener</code>.
      *
@@ -494,14 +634,14 @@ public class DataKitAPI {
      * @throws DataKitException Thrown when <code>DataKit</code> isn't connected, when
      *                          <code>DataSourceClient</code> or <code>onReceiveListener</code> is null.
      */
-    public synchronized void subscribe(DataSourceClient dataSourceClient, OnReceiveListener onReceiveListener) throws DataKitException {
+    public void subscribe(DataSourceClient dataSourceClient, OnReceiveListener onReceiveListener) throws DataKitException {
         if (!dataKitAPIExecute.isConnected())
             throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
 
         if (dataSourceClient == null || onReceiveListener == null)
             throw new DataKitException(new Status(Status.DATA_INVALID).getStatusMessage());
 
-        Status status = dataKitAPIExecute.subscribe(dataSourceClient, onReceiveListener);
+        Status status = dataKitAPIExecute.subscribe(dataSourceClient, onReceiveListener).await();
 
         if (status == null || !dataKitAPIExecute.isConnected())
             throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
@@ -515,7 +655,7 @@ public class DataKitAPI {
      * @throws DataKitException Thrown when <code>DataKit</code> is not connected or
      *                          <code>dataSourceClient</code> is null.
      */
-    public synchronized Status unsubscribe(DataSourceClient dataSourceClient) throws DataKitException {
+    public Status unsubscribe(DataSourceClient dataSourceClient) throws DataKitException {
         if (!dataKitAPIExecute.isConnected())
             throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
 
@@ -42,18 +42,20 @@ import android.os.Message;
 import android.os.Messenger;
 import android.os.Parcelable;
 import android.os.RemoteException;
-import android.util.Log;
 
 import org.md2k.datakitapi.datatype.DataType;
 import org.md2k.datakitapi.datatype.DataTypeDoubleArray;
+import org.md2k.datakitapi.datatype.DataTypeDoubleMatrix;
 import org.md2k.datakitapi.datatype.DataTypeLong;
+import org.md2k.datakitapi.datatype.HighFrequencyBlock;
 import org.md2k.datakitapi.datatype.RowObject;
 import org.md2k.datakitapi.exception.DataKitException;
 import org.md2k.datakitapi.exception.DataKitNotFoundException;
 import org.md2k.datakitapi.messagehandler.MessageType;
 import org.md2k.datakitapi.messagehandler.OnConnectionListener;
 import org.md2k.datakitapi.messagehandler.OnReceiveListener;
-import org.md2k.datakitapi.messagehandler.PendingResult;
+import org.md2k.datakitapi.messagehandler.PendingRequest;
+import org.md2k.datakitapi.messagehandler.PendingRequestTable;
 import org.md2k.datakitapi.source.METADATA;
 import org.md2k.datakitapi.source.application.Application;
 import org.md2k.datakitapi.source.application.ApplicationBuilder;
@@ -63,13 +65,18 @@ import org.md2k.datakitapi.source.datasource.DataSourceClient;
 import org.md2k.datakitapi.status.Status;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Random;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Executes calls to <code>DataKit</code>.
+ *
+ * <p>
+ *     Every call that expects a reply is sent right away as a {@link PendingRequest} carrying its
+ *     own request identifier, so any number of calls can be in flight over the same
+ *     <code>Messenger</code> and a slow query does not hold up inserts or registrations.
+ * </p>
  */
 class DataKitAPIExecute {
     /** Time in milliseconds that a thread should sleep while waiting for other processes to terminate. */
@@ -80,38 +87,17 @@ class DataKitAPIExecute {
     /** Session identifier. <p>Default is -1.</p> */
     int sessionId = -1;
 
-    /** ArrayList of <code>RowObject</code>s matching the primary key query. */
-    private ArrayList<RowObject> queryPrimaryKeyData;
-
-    /** Size of a query. */
-    private DataTypeLong querySizeData;
-
-    /** ArrayList of data types matching the query. */
-    private ArrayList<DataType> queryData;
-
-    /** Status after a data source has been unregistered. */
-    private Status unregisterData;
-
-    /** Status after a data source has been unsubscribed. */
-    private Status unsubscribeData;
-
-    /** ArrayList of <code>DataSourceClient</code>s to be found. */
-    private ArrayList<DataSourceClient> findData;
-
-    /** The registered <code>DataSourceClient</code>. */
-    private DataSourceClient registerData;
-
-    /** Status after a data source that been subscribed. */
-    private Status subscribeData;
-
     /** Listens for messages from remote threads */
     HandlerThread threadRemoteListener;
 
     /** Handles incoming messages. */
     IncomingHandler incomingHandler;
 
-    /** Semaphore that waits for receipt of a permit. */
-    private Semaphore semaphoreReceive;
+    /** Source of request identifiers. Identifier 0 means the reply carries no identifier. */
+    private final AtomicInteger nextRequestId = new AtomicInteger();
+
+    /** Requests waiting for a reply, in the order they were sent. */
+    private final PendingRequestTable pendingRequests = new PendingRequestTable();
 
     /** Contains <code>ds_id</code>, <code>DataType</code> pairs.
      * <p>
@@ -119,7 +105,7 @@ class DataKitAPIExecute {
      *     <code>OnReceiveListener</code> takes a <code>DataType</code> parameter.
      * </p>
      */
-    private HashMap<Integer, OnReceiveListener> ds_idOnReceiveListenerHashMap;
+    private ConcurrentHashMap<Integer, OnReceiveListener> ds_idOnReceiveListenerHashMap;
 
     /** Android context. */
     private Context context;
@@ -136,7 +122,7 @@ class DataKitAPIExecute {
     /** Callback interface that listens for <code>DataKit</code> connections. */
     private OnConnectionListener onConnectionListener;
 
-    /** Wait time for <code>semaphoreReceive</code> in milliseconds.
+    /** Time in milliseconds to wait for the reply to a request.
      *
      * <p>
      *     Default is 30,000 milliseconds.
@@ -147,6 +133,12 @@ class DataKitAPIExecute {
     /** Whether <code>DataKit</code> is being disconnected or not. */
     private boolean isDisconnecting;
 
+    /** Largest <code>HighFrequencyBlock</code> sent in one message, well below the Binder transaction limit. */
+    static final int MAX_BLOCK_SIZE = 256 * 1024;
+
+    /** Whether high frequency samples are sent as <code>HighFrequencyBlock</code>s. <p>Default is false.</p> */
+    private volatile boolean isBlockTransport;
+
 
     /**
      * Constructor
@@ -170,7 +162,7 @@ class DataKitAPIExecute {
         sessionId = -1;
         sendMessenger = null;
         isDisconnecting = false;
-        ds_idOnReceiveListenerHashMap = new HashMap<>();
+        ds_idOnReceiveListenerHashMap = new ConcurrentHashMap<>();
     }
 
     /**
@@ -232,7 +224,7 @@ class DataKitAPIExecute {
      *         <li>The <code>onConnectionListener</code> is updated.</li>
      *         <li>The <code>ds_idOnReceiveListenerHashMap</code> is cleared.</li>
      *         <li>A new <code>sessionId</code> is randomly generated.</li>
-     *         <li>A new semaphore is created with 0 permits and a true fairness setting.</li>
+     *         <li>Requests left over from an earlier connection are dropped.</li>
      *         <li><code>createThreadRemoteListener()</code> is called.</li>
      *         <li><code>startRemoteService()</code> is called.</li>
      *     </ol>
@@ -251,7 +243,7 @@ class DataKitAPIExecute {
             this.onConnectionListener = onConnectionListener;
             ds_idOnReceiveListenerHashMap.clear();
             sessionId = new Random().nextInt();
-            semaphoreReceive = new Semaphore(0, true);
+            cancelPendingRequests();
             createThreadRemoteListener();
             startRemoteService();
         } catch (Exception ignored) {
@@ -259,22 +251,6 @@ class DataKitAPIExecute {
 
     }
 
-    /**
-     * Locks the thread.
-     */
-    void lock() {
-        try {
-            if (!isConnected) return;
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-
-    /**
-     * Unlocks the thread.
-     */
-    void unlock() {}
-
     /**
      * Disconnects the caller from <code>DataKit</code>.
      *
@@ -285,6 +261,7 @@ class DataKitAPIExecute {
      *         <li><code>isDisconnecting</code> is set to true.</li>
      *         <li><code>sessionId</code> is set to -1.</li>
      *         <li><code>ds_idOnReceiveListenerHashMap</code> is cleared.</li>
+     *         <li>Requests still waiting for a reply complete with null.</li>
      *         <li>If <code>threadRemoteListener</code> is not null and alive then it calls
      *         <code>quitSafely()</code></li>
      *         <li>If <code>threadRemoteListener</code> is null and <code>incomingHandler</code>
@@ -300,6 +277,7 @@ class DataKitAPIExecute {
         isDisconnecting = true;
         sessionId = -1;
         ds_idOnReceiveListenerHashMap.clear();
+        cancelPendingRequests();
 
         if (threadRemoteListener != null && threadRemoteListener.isAlive())
             threadRemoteListener.quitSafely();
@@ -327,105 +305,162 @@ class DataKitAPIExecute {
      * @throws RemoteException Thrown when the message is not sent successfully
      */
     private void prepareAndSend(Bundle bundle, int messageType) throws RemoteException {
+        prepareAndSend(bundle, messageType, 0);
+    }
+
+    /**
+     * Constructs a message carrying the given request identifier and sends it to <code>DataKit</code>.
+     *
+     * @param bundle
+     * @param messageType Type of message being sent.
+     * @param requestId Request identifier, 0 if no reply is expected.
+     * @throws RemoteException Thrown when the message is not sent successfully
+     */
+    private void prepareAndSend(Bundle bundle, int messageType, int requestId) throws RemoteException {
         Message message = Message.obtain(null, 0, 0, 0);
         message.what = messageType;
         message.arg1 = sessionId;
+        message.arg2 = requestId;
         message.setData(bundle);
         message.replyTo = replyMessenger;
         sendMessenger.send(message);
     }
 
+    /**
+     * Sends a request and returns right away with the <code>PendingRequest</code> for its reply.
+     *
+     * <p>
+     *     The request identifier goes out in <code>Message.arg2</code> and in the bundle under
+     *     <code>Constants.RC_REQUEST_ID</code>. The request is registered and sent while holding
+     *     <code>pendingRequests</code>, so the table holds the requests in the order <code>DataKit</code>
+     *     receives them. A request that gets no reply within <code>WAIT_TIME</code> completes with null.
+     * </p>
+     *
+     * @param bundle Bundle to send.
+     * @param messageType Type of message being sent.
+     * @param <R> Type of the result.
+     * @return The pending request.
+     */
+    private <R> PendingRequest<R> sendRequest(Bundle bundle, int messageType) {
+        int requestId = nextRequestId.incrementAndGet();
+        if (requestId == 0)
+            requestId = nextRequestId.incrementAndGet();
+        final PendingRequest<R> request = new PendingRequest<>(requestId, messageType, WAIT_TIME);
+        bundle.putInt(Constants.RC_REQUEST_ID, requestId);
+
+        synchronized (pendingRequests) {
+            pendingRequests.add(request);
+            try {
+                prepareAndSend(bundle, messageType, requestId);
+            } catch (Exception e) {
+                pendingRequests.remove(request);
+                request.complete(null);
+                return request;
+            }
+        }
+        Handler handler = incomingHandler;
+        if (handler != null) {
+            handler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    expire(request);
+                }
+            }, WAIT_TIME);
+        }
+        return request;
+    }
+
+    /**
+     * Completes the request that the given reply belongs to.
+     *
+     * @param msg Received reply.
+     * @param result Result to complete the request with.
+     */
+    @SuppressWarnings("unchecked")
+    private void completeRequest(Message msg, Object result) {
+        PendingRequest<Object> request = (PendingRequest<Object>) takeRequest(msg);
+        if (request != null)
+            request.complete(result);
+    }
+
+    /**
+     * Removes the request that the given reply belongs to from <code>pendingRequests</code>.
+     *
+     * <p>
+     *     The reply is matched by the request identifier in <code>Message.arg2</code> or in its
+     *     bundle. A reply without an identifier is matched by type, see {@link PendingRequestTable}.
+     * </p>
+     *
+     * @param msg Received reply.
+     * @return The matching request, or null if it is no longer pending.
+     */
+    private PendingRequest<?> takeRequest(Message msg) {
+        int requestId = msg.arg2 != 0 ? msg.arg2 : msg.getData().getInt(Constants.RC_REQUEST_ID, 0);
+        return pendingRequests.take(requestId, msg.what);
+    }
+
+    /**
+     * Completes the given request with null if it is still waiting for its reply.
+     *
+     * @param request Request that has timed out.
+     */
+    private void expire(PendingRequest<?> request) {
+        if (pendingRequests.expire(request))
+            request.complete(null);
+    }
+
+    /**
+     * Completes all requests that are waiting for a reply with null.
+     */
+    private void cancelPendingRequests() {
+        for (PendingRequest<?> request : pendingRequests.clear())
+            request.complete(null);
+    }
+
 
     /**
      * Registers the desired <code>DataSourceClient</code> with <code>DataKit</code>.
      *
      * @param dataSourceBuilder Builder object of the data source to register.
-     * @return The registered <code>DataSourceClient</code>.
+     * @return The pending registered <code>DataSourceClient</code>.
      * @throws DataKitException
      */
-    public PendingResult<DataSourceClient> register(final DataSourceBuilder dataSourceBuilder) throws DataKitException {
-        PendingResult<DataSourceClient> pendingResult = new PendingResult<DataSourceClient>() {
-            @Override
-            public DataSourceClient await() {
-                try {
-                    registerData = null;
-                    lock();
-                    DataSource dataSource = prepareDataSource(dataSourceBuilder);
-                    Bundle bundle = new Bundle();
-                    bundle.putParcelable(DataSource.class.getSimpleName(), dataSource);
-                    prepareAndSend(bundle, MessageType.REGISTER);
-                    semaphoreReceive.tryAcquire(WAIT_TIME, TimeUnit.MILLISECONDS);
-                } catch (Exception e) {
-                    registerData = null;
-                } finally {
-                    unlock();
-                }
-                return registerData;
-            }
-        };
-        return pendingResult;
+    public PendingRequest<DataSourceClient> register(final DataSourceBuilder dataSourceBuilder) throws DataKitException {
+        DataSource dataSource = prepareDataSource(dataSourceBuilder);
+        Bundle bundle = new Bundle();
+        bundle.putParcelable(DataSource.class.getSimpleName(), dataSource);
+        return sendRequest(bundle, MessageType.REGISTER);
     }
 
     /**
      * Unsubscribes the given data source identifier from <code>DataKit</code>.
      *
      * @param ds_id Data source identifier to unsubscribe.
-     * @return The status of the application after the data source is unsubscribed.
+     * @return The pending status of the application after the data source is unsubscribed.
      * @throws DataKitException Thrown if the <code>context</code> or it's package name are null.
      */
-    public PendingResult<Status> unsubscribe(final int ds_id) throws DataKitException {
-        PendingResult<Status> pendingResult = new PendingResult<Status>() {
-            @Override
-            public Status await() {
-                try {
-                    unsubscribeData = null;
-                    lock();
-                    ds_idOnReceiveListenerHashMap.remove(ds_id);
-                    Bundle bundle = new Bundle();
-                    bundle.putInt(Constants.RC_DSID, ds_id);
-                    if (context == null || context.getPackageName() == null)
-                        throw new Exception("abc");
-                    bundle.putString(Constants.PACKAGE_NAME, context.getPackageName());
-                    prepareAndSend(bundle, MessageType.UNSUBSCRIBE);
-                    semaphoreReceive.tryAcquire(WAIT_TIME, TimeUnit.MILLISECONDS);
-                } catch (Exception e) {
-                    unsubscribeData = null;
-                } finally {
-                    unlock();
-                }
-                return unsubscribeData;
-            }
-        };
-        return pendingResult;
+    public PendingRequest<Status> unsubscribe(final int ds_id) throws DataKitException {
+        ds_idOnReceiveListenerHashMap.remove(ds_id);
+        if (context == null || context.getPackageName() == null)
+            throw new DataKitNotFoundException(new Status(Status.ERROR_BOUND));
+
+        Bundle bundle = new Bundle();
+        bundle.putInt(Constants.RC_DSID, ds_id);
+        bundle.putString(Constants.PACKAGE_NAME, context.getPackageName());
+        return sendRequest(bundle, MessageType.UNSUBSCRIBE);
     }
 
     /**
      * Unregisters the given data source from <code>DataKit</code>.
      *
      * @param dataSourceClient Data source to unregister.
-     * @return The status of the application after the data source is unregistered.
+     * @return The pending status of the application after the data source is unregistered.
      * @throws DataKitException
      */
-    public PendingResult<Status> unregister(final DataSourceClient dataSourceClient) throws DataKitException {
-        PendingResult<Status> pendingResult = new PendingResult<Status>() {
-            @Override
-            public Status await() {
-                try {
-                    unregisterData = null;
-                    lock();
-                    Bundle bundle = new Bundle();
-                    bundle.putInt(Constants.RC_DSID, dataSourceClient.getDs_id());
-                    prepareAndSend(bundle, MessageType.UNREGISTER);
-                    semaphoreReceive.tryAcquire(WAIT_TIME, TimeUnit.MILLISECONDS);
-                } catch (Exception e) {
-                    unregisterData = null;
-                } finally {
-                    unlock();
-                }
-                return unregisterData;
-            }
-        };
-        return pendingResult;
+    public PendingRequest<Status> unregister(final DataSourceClient dataSourceClient) throws DataKitException {
+        Bundle bundle = new Bundle();
+        bundle.putInt(Constants.RC_DSID, dataSourceClient.getDs_id());
+        return sendRequest(bundle, MessageType.UNREGISTER);
     }
 
     /**
@@ -433,28 +468,16 @@ class DataKitAPIExecute {
      *
      * @param dataSourceClient Data source to subscribe to <code>DataKit</code>.
      * @param onReceiveListener Callback listening for receipt of the subscription.
-     * @return The status of the application after the data source is subscribed.
+     * @return The pending status of the application after the data source is subscribed.
      * @throws DataKitException
      */
-    public Status subscribe(final DataSourceClient dataSourceClient, OnReceiveListener onReceiveListener) throws DataKitException {
-        try {
-            subscribeData = null;
-            lock();
-            ds_idOnReceiveListenerHashMap.put(dataSourceClient.getDs_id(), onReceiveListener);
+    public PendingRequest<Status> subscribe(final DataSourceClient dataSourceClient, OnReceiveListener onReceiveListener) throws DataKitException {
+        ds_idOnReceiveListenerHashMap.put(dataSourceClient.getDs_id(), onReceiveListener);
 
-            Bundle bundle = new Bundle();
-            bundle.putInt(Constants.RC_DSID, dataSourceClient.getDs_id());
-            bundle.putString(Constants.PACKAGE_NAME, context.getPackageName());
-            prepareAndSend(bundle, MessageType.SUBSCRIBE);
-
-            semaphoreReceive.tryAcquire(WAIT_TIME, TimeUnit.MILLISECONDS);
-        } catch (Exception e) {
-            Log.e(TAG, "Subscribe error..." + dataSourceClient.getDs_id());
-            subscribeData = null;
-        } finally {
-            unlock();
-        }
-        return subscribeData;
+        Bundle bundle = new Bundle();
+        bundle.putInt(Constants.RC_DSID, dataSourceClient.getDs_id());
+        bundle.putString(Constants.PACKAGE_NAME, context.getPackageName());
+        return sendRequest(bundle, MessageType.SUBSCRIBE);
     }
 
 
@@ -462,30 +485,14 @@ class DataKitAPIExecute {
      * Finds the desired data sources in the database.
      *
      * @param dataSourceBuilder Builder object for the desired data source
-     * @return ArrayList of <code>DataSourceClient</code> objects.
+     * @return Pending ArrayList of <code>DataSourceClient</code> objects.
      * @throws DataKitException
      */
-    public PendingResult<ArrayList<DataSourceClient>> find(final DataSourceBuilder dataSourceBuilder) throws DataKitException {
-        PendingResult<ArrayList<DataSourceClient>> pendingResult = new PendingResult<ArrayList<DataSourceClient>>() {
-            @Override
-            public ArrayList<DataSourceClient> await() {
-                try {
-                    findData = null;
-                    lock();
-                    final DataSource dataSource = dataSourceBuilder.build();
-                    Bundle bundle = new Bundle();
-                    bundle.putParcelable(DataSource.class.getSimpleName(), dataSource);
-                    prepareAndSend(bundle, MessageType.FIND);
-                    semaphoreReceive.tryAcquire(WAIT_TIME, TimeUnit.MILLISECONDS);
-                } catch (Exception e) {
-                    findData = null;
-                } finally {
-                    unlock();
-                }
-                return findData;
-            }
-        };
-        return pendingResult;
+    public PendingRequest<ArrayList<DataSourceClient>> find(final DataSourceBuilder dataSourceBuilder) throws DataKitException {
+        final DataSource dataSource = dataSourceBuilder.build();
+        Bundle bundle = new Bundle();
+        bundle.putParcelable(DataSource.class.getSimpleName(), dataSource);
+        return sendRequest(bundle, MessageType.FIND);
     }
 
     /**
@@ -494,34 +501,17 @@ class DataKitAPIExecute {
      * @param dataSourceClient Data source of the samples
      * @param starttimestamp Beginning of the desired time frame.
      * @param endtimestamp End of the desired time frame.
-     * @return An ArrayList of data types matching the query.
+     * @return Pending ArrayList of data types matching the query.
      * @throws DataKitException
      */
-    public PendingResult<ArrayList<DataType>> query(final DataSourceClient dataSourceClient,
-                                                    final long starttimestamp,
-                                                    final long endtimestamp) throws DataKitException {
-        return new PendingResult<ArrayList<DataType>>() {
-            @Override
-            public ArrayList<DataType> await() {
-                try {
-                    queryData = null;
-                    lock();
-
-                    Bundle bundle = new Bundle();
-                    bundle.putInt(Constants.RC_DSID, dataSourceClient.getDs_id());
-                    bundle.putLong(Constants.RC_STARTTIMESTAMP, starttimestamp);
-                    bundle.putLong(Constants.RC_ENDTIMESTAMP, endtimestamp);
-                    prepareAndSend(bundle, MessageType.QUERY);
-
-                    semaphoreReceive.tryAcquire(WAIT_TIME, TimeUnit.MILLISECONDS);
-                } catch (Exception e) {
-                    queryData = null;
-                } finally {
-                    unlock();
-                }
-                return queryData;
-            }
-        };
+    public PendingRequest<ArrayList<DataType>> query(final DataSourceClient dataSourceClient,
+                                                     final long starttimestamp,
+                                                     final long endtimestamp) throws DataKitException {
+        Bundle bundle = new Bundle();
+        bundle.putInt(Constants.RC_DSID, dataSourceClient.getDs_id());
+        bundle.putLong(Constants.RC_STARTTIMESTAMP, starttimestamp);
+        bundle.putLong(Constants.RC_ENDTIMESTAMP, endtimestamp);
+        return sendRequest(bundle, MessageType.QUERY);
     }
 
     /**
@@ -529,33 +519,15 @@ class DataKitAPIExecute {
      *
      * @param dataSourceClient Data source of the desired samples.
      * @param last_n_sample Last n samples, n being a nonzero positive integer.
-     * @return An ArrayList of data types matching the query.
+     * @return Pending ArrayList of data types matching the query.
      * @throws DataKitException
      */
-    public PendingResult<ArrayList<DataType>> query(final DataSourceClient dataSourceClient,
-                                                    final int last_n_sample) throws DataKitException {
-
-        return new PendingResult<ArrayList<DataType>>() {
-            @Override
-            public ArrayList<DataType> await() {
-                try {
-                    queryData = null;
-                    lock();
-
-                    Bundle bundle = new Bundle();
-                    bundle.putInt(Constants.RC_DSID, dataSourceClient.getDs_id());
-                    bundle.putInt(Constants.RC_LAST_N_SAMPLE, last_n_sample);
-                    prepareAndSend(bundle, MessageType.QUERY);
-
-                    semaphoreReceive.tryAcquire(WAIT_TIME, TimeUnit.MILLISECONDS);
-                } catch (Exception e) {
-                    queryData = null;
-                } finally {
-                    unlock();
-                }
-                return queryData;
-            }
-        };
+    public PendingRequest<ArrayList<DataType>> query(final DataSourceClient dataSourceClient,
+                                                     final int last_n_sample) throws DataKitException {
+        Bundle bundle = new Bundle();
+        bundle.putInt(Constants.RC_DSID, dataSourceClient.getDs_id());
+        bundle.putInt(Constants.RC_LAST_N_SAMPLE, last_n_sample);
+        return sendRequest(bundle, MessageType.QUERY);
     }
 
     /**
@@ -564,62 +536,27 @@ class DataKitAPIExecute {
      * @param dataSourceClient Data source of desired samples
      * @param lastSyncedValue Key of the desired row.
      * @param limit Number of rows to return.
-     * @return An ArrayList of rows from the database.
+     * @return Pending ArrayList of rows from the database.
      * @throws DataKitException
      */
-    public PendingResult<ArrayList<RowObject>> queryFromPrimaryKey(final DataSourceClient dataSourceClient,
-                                                                   final long lastSyncedValue,
-                                                                   final int limit) throws DataKitException {
-        return new PendingResult<ArrayList<RowObject>>() {
-            @Override
-            public ArrayList<RowObject> await() {
-                try {
-                    queryPrimaryKeyData = null;
-                    lock();
-
-                    Bundle bundle = new Bundle();
-                    bundle.putInt(Constants.RC_DSID, dataSourceClient.getDs_id());
-                    bundle.putLong(Constants.RC_LAST_KEY, lastSyncedValue);
-                    bundle.putInt(Constants.RC_LIMIT, limit);
-                    prepareAndSend(bundle, MessageType.QUERYPRIMARYKEY);
-
-                    semaphoreReceive.tryAcquire(WAIT_TIME, TimeUnit.MILLISECONDS);
-                } catch (Exception e) {
-                    queryPrimaryKeyData = null;
-                } finally {
-                    unlock();
-                }
-                return queryPrimaryKeyData;
-            }
-        };
+    public PendingRequest<ArrayList<RowObject>> queryFromPrimaryKey(final DataSourceClient dataSourceClient,
+                                                                    final long lastSyncedValue,
+                                                                    final int limit) throws DataKitException {
+        Bundle bundle = new Bundle();
+        bundle.putInt(Constants.RC_DSID, dataSourceClient.getDs_id());
+        bundle.putLong(Constants.RC_LAST_KEY, lastSyncedValue);
+        bundle.putInt(Constants.RC_LIMIT, limit);
+        return sendRequest(bundle, MessageType.QUERYPRIMARYKEY);
     }
 
     /**
      * Determines the size of the query in number of columns.
      *
-     * @return The size of the query.
+     * @return The pending size of the query.
      * @throws DataKitException
      */
-    public PendingResult<DataTypeLong> querySize() throws DataKitException {
-        return new PendingResult<DataTypeLong>() {
-            @Override
-            public DataTypeLong await() {
-                try {
-                    querySizeData = null;
-                    lock();
-
-                    Bundle bundle = new Bundle();
-                    prepareAndSend(bundle, MessageType.QUERYSIZE);
-
-                    semaphoreReceive.tryAcquire(WAIT_TIME, TimeUnit.MILLISECONDS);
-                } catch (Exception e) {
-                    querySizeData = null;
-                } finally {
-                    unlock();
-                }
-                return querySizeData;
-            }
-        };
+    public PendingRequest<DataTypeLong> querySize() throws DataKitException {
+        return sendRequest(new Bundle(), MessageType.QUERYSIZE);
     }
 
 
@@ -632,15 +569,12 @@ class DataKitAPIExecute {
      */
     public void insert(final DataSourceClient dataSourceClient, final DataType[] dataTypes) throws DataKitException {
         try {
-            lock();
             Bundle bundle = new Bundle();
             bundle.putParcelableArray(DataType.class.getSimpleName(), dataTypes);
             bundle.putInt(Constants.RC_DSID, dataSourceClient.getDs_id());
             prepareAndSend(bundle, MessageType.INSERT);
         } catch (Exception e) {
             throw new DataKitException(e.getCause());
-        } finally {
-            unlock();
         }
     }
 
@@ -653,36 +587,118 @@ class DataKitAPIExecute {
      */
     public void setSummary(final DataSourceClient dataSourceClient, final DataType dataType) throws DataKitException {
         try {
-            lock();
             Bundle bundle = new Bundle();
             bundle.putParcelable(DataType.class.getSimpleName(), dataType);
             bundle.putParcelable(Constants.RC_DATASOURCE_CLIENT, dataSourceClient);
             prepareAndSend(bundle, MessageType.SUMMARY);
         } catch (Exception e) {
             throw new DataKitException(e.getCause());
-        } finally {
-            unlock();
         }
     }
 
+    /**
+     * Sets whether high frequency samples are sent as <code>HighFrequencyBlock</code>s.
+     *
+     * <p>
+     *     Only enable this for a <code>DataKit</code> that handles
+     *     <code>MessageType.INSERT_HIGH_FREQUENCY_BLOCK</code>, otherwise samples are sent as
+     *     parcelled <code>DataTypeDoubleArray</code>s.
+     * </p>
+     *
+     * @param isBlockTransport Whether to send blocks.
+     */
+    void setBlockTransport(boolean isBlockTransport) {
+        this.isBlockTransport = isBlockTransport;
+    }
+
+    /**
+     * @return Whether high frequency samples are sent as <code>HighFrequencyBlock</code>s.
+     */
+    boolean isBlockTransport() {
+        return isBlockTransport;
+    }
+
     /**
      * Bundles high frequency samples and sends them to <code>DataKit</code>.
      *
+     * <p>
+     *     With block transport enabled the samples go out as one or more
+     *     <code>HighFrequencyBlock</code>s of at most <code>MAX_BLOCK_SIZE</code> bytes, otherwise
+     *     as a parcelable array.
+     * </p>
+     *
      * @param ds_id Data source identifier.
      * @param dataTypes Array of high frequency samples.
      * @throws DataKitException
      */
     public void insertHighFrequency(int ds_id, final DataTypeDoubleArray[] dataTypes) throws DataKitException {
         try {
-            lock();
+            if (isBlockTransport) {
+                insertHighFrequencyBlocks(ds_id, dataTypes);
+                return;
+            }
             Bundle bundle = new Bundle();
             bundle.putParcelableArray(DataTypeDoubleArray.class.getSimpleName(), dataTypes);
             bundle.putInt(Constants.RC_DSID, ds_id);
             prepareAndSend(bundle, MessageType.INSERT_HIGH_FREQUENCY);
         } catch (Exception e) {
             throw new DataKitException(e.getCause());
-        } finally {
-            unlock();
+        }
+    }
+
+    /**
+     * Splits the samples into <code>HighFrequencyBlock</code>s and sends them to <code>DataKit</code>.
+     *
+     * @param ds_id Data source identifier.
+     * @param dataTypes Array of high frequency samples.
+     * @throws RemoteException Thrown when a block is not sent successfully.
+     */
+    private void insertHighFrequencyBlocks(int ds_id, DataTypeDoubleArray[] dataTypes) throws RemoteException {
+        int from = 0;
+        while (from < dataTypes.length) {
+            int to = from;
+            int size = HighFrequencyBlock.getEncodedSize(dataTypes, from, from);
+            do {
+                size += HighFrequencyBlock.getSampleSize(dataTypes[to++]);
+            } while (to < dataTypes.length
+                    && size + HighFrequencyBlock.getSampleSize(dataTypes[to]) <= MAX_BLOCK_SIZE);
+            Bundle bundle = new Bundle();
+            bundle.putByteArray(Constants.RC_HF_BLOCK, HighFrequencyBlock.encode(dataTypes, from, to));
+            bundle.putInt(Constants.RC_DSID, ds_id);
+            prepareAndSend(bundle, MessageType.INSERT_HIGH_FREQUENCY_BLOCK);
+            from = to;
+        }
+    }
+
+    /**
+     * Sends a batch of high frequency samples to <code>DataKit</code>.
+     *
+     * <p>
+     *     With block transport enabled the rows are encoded straight from the batch columns into
+     *     <code>HighFrequencyBlock</code>s, otherwise the batch is split into
+     *     <code>DataTypeDoubleArray</code>s for the parcelable path.
+     * </p>
+     *
+     * @param ds_id Data source identifier.
+     * @param matrix Batch of high frequency samples.
+     * @throws DataKitException
+     */
+    public void insertHighFrequency(int ds_id, final DataTypeDoubleMatrix matrix) throws DataKitException {
+        if (!isBlockTransport) {
+            insertHighFrequency(ds_id, matrix.toDoubleArrays());
+            return;
+        }
+        try {
+            int rowsPerBlock = HighFrequencyBlock.getMaxRows(matrix.getColumns(), MAX_BLOCK_SIZE);
+            for (int from = 0; from < matrix.getCount(); from += rowsPerBlock) {
+                int to = Math.min(matrix.getCount(), from + rowsPerBlock);
+                Bundle bundle = new Bundle();
+                bundle.putByteArray(Constants.RC_HF_BLOCK, HighFrequencyBlock.encode(matrix, from, to));
+                bundle.putInt(Constants.RC_DSID, ds_id);
+                prepareAndSend(bundle, MessageType.INSERT_HIGH_FREQUENCY_BLOCK);
+            }
+        } catch (Exception e) {
+            throw new DataKitException(e.getCause());
         }
     }
 
@@ -773,17 +789,18 @@ class DataKitAPIExecute {
          *             <li><code>INTERNAL_ERROR</code></li>
          *             <li><code>INSERT</code></li>
          *             <li><code>INSERT_HIGH_FREQUENCY</code></li>
+         *             <li><code>INSERT_HIGH_FREQUENCY_BLOCK</code></li>
          *         </ul>
-         *         <ul>Set their corresponding variables to the appropriate <code>DataType</code>,
-         *         <code>Status</code>, or null.
-         *             <li><code>REGISTER</code> -- <code>registerData</code></li>
-         *             <li><code>UNREGISTER</code> -- <code>unregisterData</code></li>
-         *             <li><code>SUBSCRIBE</code> -- <code>subscribeData</code></li>
-         *             <li><code>UNSUBSCRIBE</code> -- <code>unsubscribeData</code></li>
-         *             <li><code>FIND</code> -- <code>findData</code></li>
-         *             <li><code>QUERY</code> -- <code>queryData</code></li>
-         *             <li><code>QUERYSIZE</code> -- <code>querySizeData</code></li>
-         *             <li><code>QUERYPRIMARYKEY</code> -- <code>queryPrimaryKey</code></li>
+         *         <ul>Complete the matching <code>PendingRequest</code> with the received
+         *         <code>DataType</code>, <code>Status</code>, or null if the session does not match.
+         *             <li><code>REGISTER</code></li>
+         *             <li><code>UNREGISTER</code></li>
+         *             <li><code>SUBSCRIBE</code></li>
+         *             <li><code>UNSUBSCRIBE</code></li>
+         *             <li><code>FIND</code></li>
+         *             <li><code>QUERY</code></li>
+         *             <li><code>QUERYSIZE</code></li>
+         *             <li><code>QUERYPRIMARYKEY</code></li>
          *         </ul>
          *         <code>SUBSCRIBED_DATA</code> populates <code>ds_idOnReceiveListenerHashMap</code>
          *         with all of the currently subscribed <code>DataTypes</code>.
@@ -805,52 +822,32 @@ class DataKitAPIExecute {
 
                 case MessageType.REGISTER:
                     msg.getData().setClassLoader(DataSourceClient.class.getClassLoader());
-                    if (curSessionId != sessionId)
-                        registerData = null;
-                    else
-                        registerData = msg.getData().getParcelable(DataSourceClient.class.getSimpleName());
-
-                    semaphoreReceive.release();
+                    completeRequest(msg, curSessionId != sessionId ? null
+                            : msg.getData().getParcelable(DataSourceClient.class.getSimpleName()));
                     break;
 
                 case MessageType.UNREGISTER:
                     msg.getData().setClassLoader(Status.class.getClassLoader());
-                    if (curSessionId != sessionId)
-                        unregisterData = null;
-                    else
-                        unregisterData = msg.getData().getParcelable(Status.class.getSimpleName());
-
-                    semaphoreReceive.release();
+                    completeRequest(msg, curSessionId != sessionId ? null
+                            : msg.getData().getParcelable(Status.class.getSimpleName()));
                     break;
 
                 case MessageType.SUBSCRIBE:
                     msg.getData().setClassLoader(DataType.class.getClassLoader());
-                    if (curSessionId != sessionId)
-                        subscribeData = null;
-                    else
-                        subscribeData = msg.getData().getParcelable(Status.class.getSimpleName());
-
-                    semaphoreReceive.release();
+                    completeRequest(msg, curSessionId != sessionId ? null
+                            : msg.getData().getParcelable(Status.class.getSimpleName()));
                     break;
 
                 case MessageType.UNSUBSCRIBE:
                     msg.getData().setClassLoader(Status.class.getClassLoader());
-                    if (curSessionId != sessionId)
-                        unsubscribeData = null;
-                    else
-                        unsubscribeData = msg.getData().getParcelable(Status.class.getSimpleName());
-
-                    semaphoreReceive.release();
+                    completeRequest(msg, curSessionId != sessionId ? null
+                            : msg.getData().getParcelable(Status.class.getSimpleName()));
                     break;
 
                 case MessageType.FIND:
                     msg.getData().setClassLoader(DataSourceClient.class.getClassLoader());
-                    if (curSessionId != sessionId)
-                        findData = null;
-                    else
-                        findData = msg.getData().getParcelableArrayList(DataSourceClient.class.getSimpleName());
-
-                    semaphoreReceive.release();
+                    completeRequest(msg, curSessionId != sessionId ? null
+                            : msg.getData().getParcelableArrayList(DataSourceClient.class.getSimpleName()));
                     break;
 
                 case MessageType.INSERT:
@@ -859,34 +856,25 @@ class DataKitAPIExecute {
                 case MessageType.INSERT_HIGH_FREQUENCY:
                     break;
 
+                case MessageType.INSERT_HIGH_FREQUENCY_BLOCK:
+                    break;
+
                 case MessageType.QUERY:
                     msg.getData().setClassLoader(DataType.class.getClassLoader());
-                    if (curSessionId != sessionId)
-                        queryData = null;
-                    else
-                        queryData = msg.getData().getParcelableArrayList(DataType.class.getSimpleName());
-
-                    semaphoreReceive.release();
+                    completeRequest(msg, curSessionId != sessionId ? null
+                            : msg.getData().getParcelableArrayList(DataType.class.getSimpleName()));
                     break;
 
                 case MessageType.QUERYSIZE:
                     msg.getData().setClassLoader(DataType.class.getClassLoader());
-                    if (curSessionId != sessionId)
-                        querySizeData = null;
-                    else
-                        querySizeData = msg.getData().getParcelable(DataTypeLong.class.getSimpleName());
-
-                    semaphoreReceive.release();
+                    completeRequest(msg, curSessionId != sessionId ? null
+                            : msg.getData().getParcelable(DataTypeLong.class.getSimpleName()));
                     break;
 
                 case MessageType.QUERYPRIMARYKEY:
                     msg.getData().setClassLoader(RowObject.class.getClassLoader());
-                    if (curSessionId != sessionId)
-                        queryPrimaryKeyData = null;
-                    else
-                        queryPrimaryKeyData = msg.getData().getParcelableArrayList(RowObject.class.getSimpleName());
-
-                    semaphoreReceive.release();
+                    completeRequest(msg, curSessionId != sessionId ? null
+                            : msg.getData().getParcelableArrayList(RowObject.class.getSimpleName()));
                     break;
 
                 case MessageType.SUBSCRIBED_DATA:
@@ -115,10 +115,7 @@ public class DataTypeDoubleArray extends  DataType implements Parcelable{
      */
     public byte[] toRawBytes() {
         byte[] data = new byte[sample.length * 8];
-
-        for (int i = 0; i < sample.length; i++) {
-            ByteBuffer.wrap(data, i * 8, 8).putDouble(sample[i]);
-        }
+        ByteBuffer.wrap(data).asDoubleBuffer().put(sample);
         return data;
     }
 
@@ -132,9 +129,7 @@ public class DataTypeDoubleArray extends  DataType implements Parcelable{
     static public DataTypeDoubleArray fromRawBytes(long timestamp, byte[] data) {
 
         double[] sample = new double[data.length / 8];
-        for (int i = 0; i < sample.length; i++) {
-            sample[i] = ByteBuffer.wrap(data, i * 8, 8).getDouble();
-        }
+        ByteBuffer.wrap(data, 0, sample.length * 8).asDoubleBuffer().get(sample);
         return new DataTypeDoubleArray(timestamp, sample);
     }
 
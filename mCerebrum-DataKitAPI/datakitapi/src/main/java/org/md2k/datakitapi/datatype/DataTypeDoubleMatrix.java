@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.datakitapi.datatype;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import com.bluelinelabs.logansquare.annotation.JsonObject;
+
+import org.md2k.datakitapi.time.DateTime;
+
+/**
+ * This class creates <code>DataType</code> objects that hold a batch of samples of a fixed number of
+ * double values each.
+ *
+ * <p>
+ *     Instead of one <code>DataTypeDoubleArray</code> per sample, the batch keeps all timestamps in
+ *     one <code>long[]</code> and all values row-major in one <code>double[]</code>, with a single
+ *     time zone offset for the whole batch. <code>dateTime</code> is the timestamp of the first sample.
+ * </p>
+ */
+@JsonObject(fieldDetectionPolicy = JsonObject.FieldDetectionPolicy.NONPRIVATE_FIELDS)
+public class DataTypeDoubleMatrix extends DataType implements Parcelable {
+
+    /** Number of values per sample. */
+    int columns;
+
+    /** Timestamp of each sample. */
+    long[] timestamps;
+
+    /** Values of all samples, sample i holds <code>[i * columns, (i + 1) * columns)</code>. */
+    double[] values;
+
+    /**
+     * Constructor
+     */
+    public DataTypeDoubleMatrix() {}
+
+    /**
+     * Constructor
+     *
+     * @param timestamps The timestamp of each sample.
+     * @param values The values of all samples, row-major.
+     * @param columns The number of values per sample.
+     * @throws IllegalArgumentException Thrown if <code>values</code> does not hold
+     *                                  <code>columns</code> values for every timestamp.
+     */
+    public DataTypeDoubleMatrix(long[] timestamps, double[] values, int columns) {
+        this(timestamps, values, columns, DateTime.getTimeZoneOffset());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param timestamps The timestamp of each sample.
+     * @param values The values of all samples, row-major.
+     * @param columns The number of values per sample.
+     * @param offset The time zone offset shared by all samples.
+     * @throws IllegalArgumentException Thrown if <code>values</code> does not hold
+     *                                  <code>columns</code> values for every timestamp.
+     */
+    DataTypeDoubleMatrix(long[] timestamps, double[] values, int columns, long offset) {
+        if (columns < 0 || (long) timestamps.length * columns != values.length)
+            throw new IllegalArgumentException(values.length + " values do not fill "
+                    + timestamps.length + " samples of " + columns);
+        this.dateTime = timestamps.length == 0 ? 0 : timestamps[0];
+        this.offset = offset;
+        this.columns = columns;
+        this.timestamps = timestamps;
+        this.values = values;
+    }
+
+    /**
+     * Constructs a <code>DataTypeDoubleMatrix</code> object from a <code>Parcel</code>.
+     *
+     * @param in Parceled <code>DataTypeDoubleMatrix</code> object.
+     */
+    protected DataTypeDoubleMatrix(Parcel in) {
+        super(in);
+        columns = in.readInt();
+        timestamps = in.createLongArray();
+        values = in.createDoubleArray();
+    }
+
+    /**
+     * Writes the <code>DataTypeDoubleMatrix</code> to a parcel.
+     *
+     * @param dest  The parcel to which the application should be written.
+     * @param flags Additional flags about how the object should be written.
+     */
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        super.writeToParcel(dest, flags);
+        dest.writeInt(columns);
+        dest.writeLongArray(timestamps);
+        dest.writeDoubleArray(values);
+    }
+
+    /**
+     * @return Always returns 0.
+     */
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    /**
+     * @return The number of samples.
+     */
+    public int getCount() {
+        return timestamps.length;
+    }
+
+    /**
+     * @return The number of values per sample.
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return The time zone offset shared by all samples.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return The timestamp of each sample.
+     */
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+
+    /**
+     * @return The values of all samples, row-major.
+     */
+    public double[] getValues() {
+        return values;
+    }
+
+    /**
+     * @param row Index of the sample.
+     * @return The timestamp of the sample.
+     */
+    public long getTimestamp(int row) {
+        return timestamps[row];
+    }
+
+    /**
+     * @param row Index of the sample.
+     * @param column Index of the value within the sample.
+     * @return The value.
+     */
+    public double getValue(int row, int column) {
+        return values[row * columns + column];
+    }
+
+    /**
+     * Constructs a batch from the given samples.
+     *
+     * <p>
+     *     The time zone offset of the first sample is used for the whole batch.
+     * </p>
+     *
+     * @param samples Samples to copy, all with the same number of values.
+     * @return The new <code>DataTypeDoubleMatrix</code>.
+     * @throws IllegalArgumentException Thrown if the samples differ in their number of values.
+     */
+    public static DataTypeDoubleMatrix fromDoubleArrays(DataTypeDoubleArray[] samples) {
+        return fromDoubleArrays(samples, 0, samples.length);
+    }
+
+    /**
+     * Constructs a batch from the samples <code>[from, to)</code>.
+     *
+     * @param samples Samples to copy, all with the same number of values.
+     * @param from Index of the first sample.
+     * @param to Index after the last sample.
+     * @return The new <code>DataTypeDoubleMatrix</code>.
+     * @throws IllegalArgumentException Thrown if the samples differ in their number of values.
+     */
+    public static DataTypeDoubleMatrix fromDoubleArrays(DataTypeDoubleArray[] samples, int from, int to) {
+        int count = to - from;
+        int columns = count == 0 ? 0 : samples[from].sample.length;
+        long[] timestamps = new long[count];
+        double[] values = new double[count * columns];
+        for (int i = 0; i < count; i++) {
+            DataTypeDoubleArray sample = samples[from + i];
+            if (sample.sample.length != columns)
+                throw new IllegalArgumentException("Sample " + (from + i) + " has "
+                        + sample.sample.length + " values, expected " + columns);
+            timestamps[i] = sample.dateTime;
+            System.arraycopy(sample.sample, 0, values, i * columns, columns);
+        }
+        return new DataTypeDoubleMatrix(timestamps, values, columns, count == 0 ? 0 : samples[from].offset);
+    }
+
+    /**
+     * Splits the batch into one <code>DataTypeDoubleArray</code> per sample.
+     *
+     * @return The samples, in order.
+     */
+    public DataTypeDoubleArray[] toDoubleArrays() {
+        DataTypeDoubleArray[] samples = new DataTypeDoubleArray[timestamps.length];
+        for (int i = 0; i < samples.length; i++) {
+            DataTypeDoubleArray sample = new DataTypeDoubleArray();
+            sample.dateTime = timestamps[i];
+            sample.offset = offset;
+            sample.sample = new double[columns];
+            System.arraycopy(values, i * columns, sample.sample, 0, columns);
+            samples[i] = sample;
+        }
+        return samples;
+    }
+
+    /**
+     * <code>Creator</code> for <code>DataTypeDoubleMatrix</code> objects.
+     */
+    public static final Creator<DataTypeDoubleMatrix> CREATOR = new Creator<DataTypeDoubleMatrix>() {
+
+        /**
+         * Creates a new <code>DataTypeDoubleMatrix</code> object from a <code>Parcel</code>.
+         *
+         * @param in The parcel holding the data type.
+         * @return The constructed <code>DataTypeDoubleMatrix</code> object
+         */
+        @Override
+        public DataTypeDoubleMatrix createFromParcel(Parcel in) {
+            return new DataTypeDoubleMatrix(in);
+        }
+
+        /**
+         * Creates a new array of the specified size for <code>DataTypeDoubleMatrix</code> objects.
+         *
+         * @param size The size of the new <code>DataTypeDoubleMatrix</code> array.
+         * @return The <code>DataTypeDoubleMatrix</code> array.
+         */
+        @Override
+        public DataTypeDoubleMatrix[] newArray(int size) {
+            return new DataTypeDoubleMatrix[size];
+        }
+    };
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.datakitapi.datatype;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Packs a batch of <code>DataTypeDoubleArray</code> samples into one columnar byte block.
+ *
+ * <p>
+ *     Instead of one parcelled object per sample, the block holds each field as a primitive column:
+ *     <ol>
+ *         <li>Header: magic number, version, sample count and value count (4 ints).</li>
+ *         <li><code>long[count]</code> timestamps.</li>
+ *         <li><code>long[count]</code> time zone offsets.</li>
+ *         <li><code>int[count + 1]</code> value offsets, sample i owns values
+ *         <code>[offsets[i], offsets[i + 1])</code>.</li>
+ *         <li><code>double[values]</code> sample values, one sample after the other.</li>
+ *     </ol>
+ *     All numbers are big-endian. The block travels as a single byte array, so it costs one
+ *     copy through Binder regardless of how many samples it holds.
+ * </p>
+ */
+public class HighFrequencyBlock {
+
+    /** Magic number at the start of every block, <code>"DKHF"</code>. */
+    public static final int MAGIC = 0x444B4846;
+
+    /** Version of the block layout. */
+    public static final int VERSION = 1;
+
+    /** Size of the header in bytes. */
+    static final int HEADER_SIZE = 4 * 4;
+
+    /**
+     * Returns the size in bytes of the block holding the given samples.
+     *
+     * @param samples Samples to encode.
+     * @param from Index of the first sample.
+     * @param to Index after the last sample.
+     * @return Size of the encoded block in bytes.
+     */
+    public static int getEncodedSize(DataTypeDoubleArray[] samples, int from, int to) {
+        long values = 0;
+        for (int i = from; i < to; i++)
+            values += samples[i].sample.length;
+        return getEncodedSize(to - from, values);
+    }
+
+    /**
+     * Returns the number of bytes that the given sample adds to a block.
+     *
+     * @param sample Sample to encode.
+     * @return Size of the sample in the block in bytes.
+     */
+    public static int getSampleSize(DataTypeDoubleArray sample) {
+        return 8 + 8 + 4 + sample.sample.length * 8;
+    }
+
+    /**
+     * Returns how many samples of the given width fit into a block of the given size.
+     *
+     * @param columns Number of values per sample.
+     * @param maxSize Maximum size of the block in bytes.
+     * @return Number of samples, at least 1.
+     */
+    public static int getMaxRows(int columns, int maxSize) {
+        int rowSize = 8 + 8 + 4 + columns * 8;
+        return Math.max(1, (maxSize - HEADER_SIZE - 4) / rowSize);
+    }
+
+    /**
+     * Returns the size in bytes of a block with the given number of samples and values.
+     *
+     * @param count Number of samples.
+     * @param values Total number of values.
+     * @return Size of the encoded block in bytes.
+     */
+    static int getEncodedSize(int count, long values) {
+        long size = HEADER_SIZE + count * 16L + (count + 1) * 4L + values * 8L;
+        if (size > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Block too large: " + size + " bytes");
+        return (int) size;
+    }
+
+    /**
+     * Encodes all given samples into a block.
+     *
+     * @param samples Samples to encode.
+     * @return The encoded block.
+     */
+    public static byte[] encode(DataTypeDoubleArray[] samples) {
+        return encode(samples, 0, samples.length);
+    }
+
+    /**
+     * Encodes the samples <code>[from, to)</code> into a block.
+     *
+     * @param samples Samples to encode.
+     * @param from Index of the first sample.
+     * @param to Index after the last sample.
+     * @return The encoded block.
+     */
+    public static byte[] encode(DataTypeDoubleArray[] samples, int from, int to) {
+        int count = to - from;
+        long[] timestamps = new long[count];
+        long[] timeZoneOffsets = new long[count];
+        int[] valueOffsets = new int[count + 1];
+        int values = 0;
+        for (int i = 0; i < count; i++) {
+            DataTypeDoubleArray sample = samples[from + i];
+            timestamps[i] = sample.dateTime;
+            timeZoneOffsets[i] = sample.offset;
+            valueOffsets[i] = values;
+            values += sample.sample.length;
+        }
+        valueOffsets[count] = values;
+
+        ByteBuffer buffer = ByteBuffer.allocate(getEncodedSize(count, values));
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(values);
+        buffer.asLongBuffer().put(timestamps);
+        buffer.position(buffer.position() + count * 8);
+        buffer.asLongBuffer().put(timeZoneOffsets);
+        buffer.position(buffer.position() + count * 8);
+        buffer.asIntBuffer().put(valueOffsets);
+        buffer.position(buffer.position() + (count + 1) * 4);
+        for (int i = 0; i < count; i++) {
+            double[] sample = samples[from + i].sample;
+            buffer.asDoubleBuffer().put(sample);
+            buffer.position(buffer.position() + sample.length * 8);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Encodes the rows <code>[from, to)</code> of a batch into a block, straight from its columns.
+     *
+     * @param matrix Batch to encode.
+     * @param from Index of the first row.
+     * @param to Index after the last row.
+     * @return The encoded block.
+     */
+    public static byte[] encode(DataTypeDoubleMatrix matrix, int from, int to) {
+        int count = to - from;
+        int columns = matrix.columns;
+        int values = count * columns;
+
+        ByteBuffer buffer = ByteBuffer.allocate(getEncodedSize(count, values));
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(values);
+        buffer.asLongBuffer().put(matrix.timestamps, from, count);
+        buffer.position(buffer.position() + count * 8);
+        for (int i = 0; i < count; i++)
+            buffer.putLong(matrix.offset);
+        for (int i = 0; i <= count; i++)
+            buffer.putInt(i * columns);
+        buffer.asDoubleBuffer().put(matrix.values, from * columns, values);
+        return buffer.array();
+    }
+
+    /**
+     * Decodes a block back into <code>DataTypeDoubleArray</code> samples.
+     *
+     * @param block The encoded block.
+     * @return The decoded samples, in the order they were encoded.
+     * @throws IllegalArgumentException Thrown if the block is malformed.
+     */
+    public static DataTypeDoubleArray[] decode(byte[] block) {
+        if (block == null || block.length < HEADER_SIZE)
+            throw new IllegalArgumentException("Block too short");
+        ByteBuffer buffer = ByteBuffer.wrap(block);
+        if (buffer.getInt() != MAGIC)
+            throw new IllegalArgumentException("Not a high frequency block");
+        int version = buffer.getInt();
+        if (version != VERSION)
+            throw new IllegalArgumentException("Unsupported block version " + version);
+        int count = buffer.getInt();
+        int values = buffer.getInt();
+        if (count < 0 || values < 0 || getEncodedSize(count, values) != block.length)
+            throw new IllegalArgumentException("Block length does not match its header");
+
+        long[] timestamps = new long[count];
+        long[] timeZoneOffsets = new long[count];
+        int[] valueOffsets = new int[count + 1];
+        buffer.asLongBuffer().get(timestamps);
+        buffer.position(buffer.position() + count * 8);
+        buffer.asLongBuffer().get(timeZoneOffsets);
+        buffer.position(buffer.position() + count * 8);
+        buffer.asIntBuffer().get(valueOffsets);
+        buffer.position(buffer.position() + (count + 1) * 4);
+        if (valueOffsets[0] != 0 || valueOffsets[count] != values)
+            throw new IllegalArgumentException("Value offsets do not match the value count");
+        for (int i = 0; i < count; i++) {
+            if (valueOffsets[i + 1] < valueOffsets[i])
+                throw new IllegalArgumentException("Value offsets are not increasing");
+        }
+
+        DataTypeDoubleArray[] samples = new DataTypeDoubleArray[count];
+        for (int i = 0; i < count; i++) {
+            int length = valueOffsets[i + 1] - valueOffsets[i];
+            double[] sample = new double[length];
+            buffer.asDoubleBuffer().get(sample);
+            buffer.position(buffer.position() + length * 8);
+
+            DataTypeDoubleArray dataType = new DataTypeDoubleArray();
+            dataType.dateTime = timestamps[i];
+            dataType.offset = timeZoneOffsets[i];
+            dataType.sample = sample;
+            samples[i] = dataType;
+        }
+        return samples;
+    }
+}
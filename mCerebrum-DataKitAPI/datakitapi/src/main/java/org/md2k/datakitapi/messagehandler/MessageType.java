@@ -47,6 +47,7 @@ package org.md2k.datakitapi.messagehandler;
  *         <li><code>INSERT_HIGH_FREQUENCY</code></li>
  *         <li><code>QUERYSIZE</code></li>
  *         <li><code>SUMMARY</code></li>
+ *         <li><code>INSERT_HIGH_FREQUENCY_BLOCK</code></li>
  *     </ul>
  * </p>
  */
@@ -96,4 +97,7 @@ public class MessageType {
 
     /** Default is 15 */
     public static final int SUMMARY = 15;
+
+    /** Default is 16 */
+    public static final int INSERT_HIGH_FREQUENCY_BLOCK = 16;
 }
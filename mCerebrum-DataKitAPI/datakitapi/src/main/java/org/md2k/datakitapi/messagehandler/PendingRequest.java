@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.datakitapi.messagehandler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A request to <code>DataKit</code> that has been sent and is waiting for its reply.
+ *
+ * <p>
+ *     Requests are sent as soon as they are created, so several of them can be in flight over
+ *     the same connection. The caller either blocks on {@link #await()} or registers a
+ *     {@link ResultCallback} that is invoked on the thread that receives the reply. A request
+ *     that times out, fails to send or is dropped on disconnect completes with null.
+ * </p>
+ *
+ * @param <R> Generic result.
+ */
+public class PendingRequest<R> implements PendingResult<R> {
+
+    /** Identifier of the request, unique within the connection. */
+    private final int requestId;
+
+    /** <code>MessageType</code> of the request. */
+    private final int messageType;
+
+    /** Time in milliseconds that {@link #await()} waits for the reply. */
+    private final long waitTime;
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile R result;
+    private ResultCallback<R> resultCallback;
+
+    /**
+     * Constructor
+     *
+     * @param requestId Identifier of the request.
+     * @param messageType <code>MessageType</code> of the request.
+     * @param waitTime Time in milliseconds that <code>await()</code> waits for the reply.
+     */
+    public PendingRequest(int requestId, int messageType, long waitTime) {
+        this.requestId = requestId;
+        this.messageType = messageType;
+        this.waitTime = waitTime;
+    }
+
+    /**
+     * @return Identifier of the request.
+     */
+    public int getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * @return <code>MessageType</code> of the request.
+     */
+    public int getMessageType() {
+        return messageType;
+    }
+
+    /**
+     * @return Whether the reply has been received.
+     */
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    /**
+     * Blocks until the reply is received or the default wait time has passed.
+     *
+     * @return The result, or null if there was no reply in time.
+     */
+    @Override
+    public R await() {
+        return await(waitTime, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Blocks until the reply is received or the given time has passed.
+     *
+     * @param timeout Maximum time to wait.
+     * @param unit Unit of <code>timeout</code>.
+     * @return The result, or null if there was no reply in time.
+     */
+    public R await(long timeout, TimeUnit unit) {
+        try {
+            done.await(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return result;
+    }
+
+    /**
+     * Sets the callback that receives the result.
+     *
+     * <p>
+     *     If the reply has already been received the callback is invoked right away on the
+     *     calling thread.
+     * </p>
+     *
+     * @param resultCallback Callback for the result.
+     */
+    public void setResultCallback(ResultCallback<R> resultCallback) {
+        boolean completed;
+        synchronized (this) {
+            completed = isDone();
+            if (!completed)
+                this.resultCallback = resultCallback;
+        }
+        if (completed)
+            resultCallback.onResult(result);
+    }
+
+    /**
+     * Completes the request. Only the first call has an effect.
+     *
+     * @param result The result, or null if the request failed.
+     * @return Whether this call completed the request.
+     */
+    public boolean complete(R result) {
+        ResultCallback<R> callback;
+        synchronized (this) {
+            if (isDone())
+                return false;
+            this.result = result;
+            done.countDown();
+            callback = resultCallback;
+            resultCallback = null;
+        }
+        if (callback != null)
+            callback.onResult(result);
+        return true;
+    }
+}
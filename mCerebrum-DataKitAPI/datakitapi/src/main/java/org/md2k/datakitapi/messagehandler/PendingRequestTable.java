@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.datakitapi.messagehandler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Requests to <code>DataKit</code> that are waiting for their reply, in the order they were sent.
+ *
+ * <p>
+ *     A reply is matched by its request identifier. A <code>DataKit</code> that does not echo the
+ *     identifier answers requests in the order it receives them, so such a reply belongs to the
+ *     oldest request of its type that has not been answered yet. That request may already have
+ *     expired: the table counts the expired requests of every type that still owe a reply and
+ *     drops that many replies without an identifier, instead of handing them to the next request.
+ * </p>
+ *
+ * <p>
+ *     If a reply never arrives at all, the next reply of its type is dropped in its place and
+ *     that request times out as well. As soon as a reply carries an identifier the counts are
+ *     cleared, since that <code>DataKit</code> will not send replies without one.
+ * </p>
+ */
+public class PendingRequestTable {
+
+    private final LinkedHashMap<Integer, PendingRequest<?>> requests = new LinkedHashMap<>();
+
+    /** Number of expired requests, by message type, whose reply without identifier is still due. */
+    private final HashMap<Integer, Integer> unansweredExpired = new HashMap<>();
+
+    /**
+     * Adds a request that has just been sent.
+     *
+     * @param request Request to add.
+     */
+    public synchronized void add(PendingRequest<?> request) {
+        requests.put(request.getRequestId(), request);
+    }
+
+    /**
+     * Removes a request that could not be sent, so no reply is due for it.
+     *
+     * @param request Request to remove.
+     */
+    public synchronized void remove(PendingRequest<?> request) {
+        requests.remove(request.getRequestId());
+    }
+
+    /**
+     * Removes the request that a reply belongs to.
+     *
+     * @param requestId Request identifier carried by the reply, or 0 if it carries none.
+     * @param messageType <code>MessageType</code> of the reply.
+     * @return The matching request, or null if it is no longer pending.
+     */
+    public synchronized PendingRequest<?> take(int requestId, int messageType) {
+        if (requestId != 0) {
+            unansweredExpired.clear();
+            return requests.remove(requestId);
+        }
+
+        Integer expired = unansweredExpired.get(messageType);
+        if (expired != null) {
+            //The reply belongs to a request that has already expired
+            if (expired == 1)
+                unansweredExpired.remove(messageType);
+            else
+                unansweredExpired.put(messageType, expired - 1);
+            return null;
+        }
+        Iterator<PendingRequest<?>> iterator = requests.values().iterator();
+        while (iterator.hasNext()) {
+            PendingRequest<?> request = iterator.next();
+            if (request.getMessageType() == messageType) {
+                iterator.remove();
+                return request;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes a request that got no reply in time.
+     *
+     * @param request Request that has timed out.
+     * @return Whether the request was still pending.
+     */
+    public synchronized boolean expire(PendingRequest<?> request) {
+        if (requests.remove(request.getRequestId()) == null)
+            return false;
+        Integer expired = unansweredExpired.get(request.getMessageType());
+        unansweredExpired.put(request.getMessageType(), expired == null ? 1 : expired + 1);
+        return true;
+    }
+
+    /**
+     * Removes all requests, e.g. on disconnect. Replies still due on the old connection will
+     * not arrive.
+     *
+     * @return The requests that were pending, in the order they were sent.
+     */
+    public synchronized ArrayList<PendingRequest<?>> clear() {
+        ArrayList<PendingRequest<?>> pending = new ArrayList<>(requests.values());
+        requests.clear();
+        unansweredExpired.clear();
+        return pending;
+    }
+}
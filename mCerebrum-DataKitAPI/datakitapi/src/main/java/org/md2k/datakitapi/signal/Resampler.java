@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.datakitapi.signal;
+
+/**
+ * Converts a stream of irregularly timestamped samples to a fixed target rate, one sample at a
+ * time.
+ *
+ * <p>
+ *     The output samples lie on a grid of multiples of the target period, so streams resampled to
+ *     the same rate line up with each other. Three modes are supported:
+ * </p>
+ * <ul>
+ *     <li><code>FIRST</code> keeps the first input sample more than one period after the last one
+ *     kept, with its own timestamp. This is the rule of the offline <code>Downsampler.py</code>
+ *     the models were trained with.</li>
+ *     <li><code>LINEAR</code> interpolates between the two input samples around each grid point.
+ *     A grid point is emitted as soon as the first input sample after it arrives.</li>
+ *     <li><code>ANTI_ALIASED</code> low-pass filters with a Hann windowed sinc cut off at half the
+ *     target rate, evaluated at each grid point over the input samples within
+ *     <code>KERNEL_ZEROS</code> periods of it. The weights are normalized, so irregular input
+ *     timing does not change the gain. A grid point is emitted once the input has passed it by
+ *     <code>KERNEL_ZEROS</code> periods.</li>
+ * </ul>
+ * <p>
+ *     Input samples that do not move forward in time are dropped. A gap longer than
+ *     <code>maxGapMillis</code> starts a new segment instead of bridging it. All buffers are
+ *     allocated up front. The output values are passed in a reused array.
+ * </p>
+ * <p>
+ *     Not thread safe, push from a single thread.
+ * </p>
+ */
+public class Resampler {
+
+    /** How the output samples are derived from the input samples. */
+    public enum Mode {
+        FIRST,
+        LINEAR,
+        ANTI_ALIASED
+    }
+
+    /**
+     * Receives the resampled stream.
+     */
+    public interface OnSampleListener {
+
+        /**
+         * Called for every output sample.
+         *
+         * @param timestamp Timestamp of the sample in milliseconds.
+         * @param values Values of the sample, reused for the next sample.
+         */
+        void onSample(long timestamp, double[] values);
+    }
+
+    /** Highest input rate in Hz the history of <code>ANTI_ALIASED</code> is sized for. */
+    public static final int MAX_INPUT_RATE = 500;
+
+    /** Zero crossings of the sinc kernel on each side of a grid point. */
+    public static final int KERNEL_ZEROS = 3;
+
+    /** Default longest input gap in milliseconds that is bridged. */
+    public static final long DEFAULT_MAX_GAP_MILLIS = 1000;
+
+    private final int channels;
+    private final double period;
+    private final Mode mode;
+    private final double halfWidth;
+    private OnSampleListener listener;
+    private long maxGapMillis;
+
+    private final long[] times;
+    private final double[] history;
+    private int head = 0;
+    private int size = 0;
+    private final double[] output;
+
+    private boolean started = false;
+    private long lastTimestamp;
+    private long lastEmitted;
+    private long gridIndex;
+
+    /**
+     * Constructor
+     *
+     * @param channels Number of values per sample.
+     * @param targetRate Output rate in Hz.
+     * @param mode How the output samples are derived.
+     * @param listener Receives the output samples.
+     */
+    public Resampler(int channels, double targetRate, Mode mode, OnSampleListener listener) {
+        if (channels <= 0 || !(targetRate > 0))
+            throw new IllegalArgumentException("channels and targetRate must be positive");
+        this.channels = channels;
+        this.period = 1000.0 / targetRate;
+        this.mode = mode;
+        this.listener = listener;
+        this.halfWidth = mode == Mode.ANTI_ALIASED ? KERNEL_ZEROS * period : 0;
+        this.maxGapMillis = Math.max(DEFAULT_MAX_GAP_MILLIS, (long) Math.ceil(2 * period));
+
+        int capacity = 2;
+        if (mode == Mode.ANTI_ALIASED)
+            capacity += (int) Math.ceil((2 * halfWidth + period) * MAX_INPUT_RATE / 1000.0);
+        times = new long[capacity];
+        history = new double[capacity * channels];
+        output = new double[channels];
+    }
+
+    /**
+     * Sets the listener for the output samples.
+     *
+     * @param listener Receives the output samples.
+     */
+    public void setOnSampleListener(OnSampleListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the longest input gap that is bridged, a longer gap starts a new segment.
+     *
+     * @param maxGapMillis Longest gap in milliseconds.
+     */
+    public void setMaxGapMillis(long maxGapMillis) {
+        this.maxGapMillis = maxGapMillis;
+    }
+
+    /**
+     * Returns the output period.
+     *
+     * @return The output period in milliseconds.
+     */
+    public double getPeriod() {
+        return period;
+    }
+
+    /**
+     * Returns how long after the input has passed a grid point its output sample is emitted.
+     *
+     * @return The latency in milliseconds, on top of the time to the next input sample.
+     */
+    public long getLatencyMillis() {
+        return (long) Math.ceil(halfWidth);
+    }
+
+    /**
+     * Forgets the input so far, the next sample starts a new segment.
+     */
+    public void reset() {
+        started = false;
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Pushes a sample of three values.
+     *
+     * @param timestamp Timestamp of the sample in milliseconds.
+     * @param x First value.
+     * @param y Second value.
+     * @param z Third value.
+     */
+    public void push(long timestamp, double x, double y, double z) {
+        if (channels != 3)
+            throw new IllegalStateException("Resampler has " + channels + " channels, not 3");
+        if (!accept(timestamp))
+            return;
+        int slot = head * channels;
+        history[slot] = x;
+        history[slot + 1] = y;
+        history[slot + 2] = z;
+        add(timestamp);
+    }
+
+    /**
+     * Pushes a sample.
+     *
+     * @param timestamp Timestamp of the sample in milliseconds.
+     * @param values Array holding the values of the sample.
+     * @param offset Index of the first value of the sample.
+     */
+    public void push(long timestamp, double[] values, int offset) {
+        if (!accept(timestamp))
+            return;
+        System.arraycopy(values, offset, history, head * channels, channels);
+        add(timestamp);
+    }
+
+    /**
+     * Checks the timestamp of a new sample, starting a new segment after a gap.
+     */
+    private boolean accept(long timestamp) {
+        if (started) {
+            if (timestamp <= lastTimestamp)
+                return false;
+            if (timestamp - lastTimestamp > maxGapMillis)
+                reset();
+        }
+        return true;
+    }
+
+    /**
+     * Adds the sample written at <code>head</code> and emits the grid points it completes.
+     */
+    private void add(long timestamp) {
+        times[head] = timestamp;
+        int newest = head;
+        head = (head + 1) % times.length;
+        if (size < times.length)
+            size++;
+
+        if (!started) {
+            started = true;
+            lastTimestamp = timestamp;
+            gridIndex = (long) Math.ceil((timestamp + halfWidth) / period);
+            if (mode == Mode.FIRST)
+                emit(timestamp, newest);
+            else if (mode == Mode.LINEAR && gridIndex * period <= timestamp)
+                emitLinear(gridIndex++ * period, newest);
+            return;
+        }
+        lastTimestamp = timestamp;
+
+        switch (mode) {
+            case FIRST:
+                if (timestamp > lastEmitted + period)
+                    emit(timestamp, newest);
+                break;
+            case LINEAR:
+                while (gridIndex * period <= timestamp)
+                    emitLinear(gridIndex++ * period, newest);
+                break;
+            case ANTI_ALIASED:
+                while (gridIndex * period + halfWidth <= timestamp)
+                    emitFiltered(gridIndex++ * period);
+                break;
+        }
+    }
+
+    private void emit(long timestamp, int slot) {
+        System.arraycopy(history, slot * channels, output, 0, channels);
+        lastEmitted = timestamp;
+        if (listener != null)
+            listener.onSample(timestamp, output);
+    }
+
+    private void emitLinear(double t, int newest) {
+        long t1 = times[newest];
+        if (size < 2 || t1 == t) {
+            emit(Math.round(t), newest);
+            return;
+        }
+        int previous = (newest - 1 + times.length) % times.length;
+        long t0 = times[previous];
+        double w = (t - t0) / (double) (t1 - t0);
+        int a = previous * channels;
+        int b = newest * channels;
+        for (int c = 0; c < channels; c++)
+            output[c] = history[a + c] + w * (history[b + c] - history[a + c]);
+        lastEmitted = Math.round(t);
+        if (listener != null)
+            listener.onSample(lastEmitted, output);
+    }
+
+    private void emitFiltered(double t) {
+        for (int c = 0; c < channels; c++)
+            output[c] = 0;
+        double weightSum = 0;
+        int nearest = -1;
+        double nearestDistance = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            int slot = (head - 1 - i + times.length) % times.length;
+            double dt = times[slot] - t;
+            if (dt <= -halfWidth)
+                break;
+            double distance = Math.abs(dt);
+            if (distance < nearestDistance) {
+                nearestDistance = distance;
+                nearest = slot;
+            }
+            if (dt >= halfWidth)
+                continue;
+            double weight = kernel(dt);
+            weightSum += weight;
+            int base = slot * channels;
+            for (int c = 0; c < channels; c++)
+                output[c] += weight * history[base + c];
+        }
+        if (weightSum > 1e-6) {
+            for (int c = 0; c < channels; c++)
+                output[c] /= weightSum;
+        } else {
+            //Too few samples around the grid point for the kernel, take the closest one
+            System.arraycopy(history, nearest * channels, output, 0, channels);
+        }
+        lastEmitted = Math.round(t);
+        if (listener != null)
+            listener.onSample(lastEmitted, output);
+    }
+
+    /**
+     * Hann windowed sinc with its zero crossings at multiples of the output period.
+     */
+    private double kernel(double dt) {
+        double window = 0.5 * (1 + Math.cos(Math.PI * dt / halfWidth));
+        if (dt == 0)
+            return window;
+        double x = Math.PI * dt / period;
+        return Math.sin(x) / x * window;
+    }
+}
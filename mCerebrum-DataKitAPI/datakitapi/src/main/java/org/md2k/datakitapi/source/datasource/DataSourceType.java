@@ -262,6 +262,9 @@ public class DataSourceType {
     /** Data quality <p><code>"DATA_QUALITY"</code></p> */
     public static final String DATA_QUALITY = "DATA_QUALITY";
 
+    /** Missing windows of a sensor stream, <code>[end, samples, cause]</code> at the window start <p><code>"DATA_LOSS"</code></p> */
+    public static final String DATA_LOSS = "DATA_LOSS";
+
     /** Data variance <p><code>"DATA_VARIANCE"</code></p> */
     public static final String DATA_VARIANCE = "DATA_VARIANCE";
 
@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.datakitapi.time;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps an estimate of the offset between this device's clock and a reference clock.
+ *
+ * <p>
+ *     One instance runs per process on its own scheduled thread. Every <code>intervalMillis</code> it
+ *     sends a burst of requests to its <code>TimeSource</code> and keeps the exchange with the
+ *     smallest round trip delay, whose offset is the least distorted by queueing. Consecutive rounds
+ *     give the drift of the local clock.
+ * </p>
+ * <p>
+ *     The result is published as an immutable {@link Estimate}, so sensor threads read it with a
+ *     single volatile read and never wait on the network.
+ * </p>
+ */
+public class ClockSync {
+
+    /** Default host of the reference clock. */
+    public static final String DEFAULT_HOST = "time.apple.com";
+
+    /** Default time between two sync rounds in milliseconds. */
+    public static final long DEFAULT_INTERVAL_MILLIS = 60000;
+
+    /** Default number of requests per sync round. */
+    public static final int DEFAULT_BURST = 4;
+
+    /** Default time to wait for a single reply in milliseconds. */
+    public static final int DEFAULT_TIMEOUT_MILLIS = 2000;
+
+    /** Largest plausible drift of a device clock, larger changes are treated as clock steps. */
+    static final double MAX_DRIFT = 500e-6;
+
+    /** Drift assumed when widening the uncertainty of an aging estimate. */
+    static final double DRIFT_TOLERANCE = 20e-6;
+
+    /** Weight of the newest drift measurement in the drift average. */
+    static final double DRIFT_GAIN = 0.3;
+
+    /**
+     * Performs one request/reply exchange with a reference clock.
+     */
+    public interface TimeSource {
+
+        /**
+         * @return The timestamps of the exchange.
+         * @throws IOException Thrown if there was no valid reply.
+         */
+        Exchange exchange() throws IOException;
+
+        /**
+         * Releases the resources of the time source.
+         */
+        void close();
+    }
+
+    /**
+     * Callback interface for failed sync rounds.
+     */
+    public interface OnSyncFailedListener {
+
+        /**
+         * @param e The error of the last request in the round.
+         */
+        void onSyncFailed(IOException e);
+    }
+
+    /**
+     * The four timestamps of one request/reply exchange, all in milliseconds since the epoch.
+     */
+    public static class Exchange {
+        final long requestSent;
+        final long serverReceived;
+        final long serverSent;
+        final long replyReceived;
+
+        /**
+         * Constructor
+         *
+         * @param requestSent Local time when the request was sent.
+         * @param serverReceived Reference time when the request arrived.
+         * @param serverSent Reference time when the reply was sent.
+         * @param replyReceived Local time when the reply arrived.
+         */
+        public Exchange(long requestSent, long serverReceived, long serverSent, long replyReceived) {
+            this.requestSent = requestSent;
+            this.serverReceived = serverReceived;
+            this.serverSent = serverSent;
+            this.replyReceived = replyReceived;
+        }
+
+        /**
+         * @return Reference time minus local time in milliseconds.
+         */
+        public double getOffset() {
+            return ((serverReceived - requestSent) + (serverSent - replyReceived)) / 2.0;
+        }
+
+        /**
+         * @return Round trip time spent on the network in milliseconds.
+         */
+        public long getDelay() {
+            return (replyReceived - requestSent) - (serverSent - serverReceived);
+        }
+    }
+
+    /**
+     * An immutable snapshot of the clock offset.
+     */
+    public static class Estimate {
+
+        /** Estimate used before the first successful round. */
+        public static final Estimate NONE = new Estimate(0, 0, Double.POSITIVE_INFINITY, 0, false);
+
+        private final double offset;
+        private final double drift;
+        private final double uncertainty;
+        private final long measuredAt;
+        private final boolean valid;
+
+        Estimate(double offset, double drift, double uncertainty, long measuredAt, boolean valid) {
+            this.offset = offset;
+            this.drift = drift;
+            this.uncertainty = uncertainty;
+            this.measuredAt = measuredAt;
+            this.valid = valid;
+        }
+
+        /**
+         * @return Whether the estimate comes from at least one successful exchange.
+         */
+        public boolean isValid() {
+            return valid;
+        }
+
+        /**
+         * @return Reference time minus local time in milliseconds, as measured.
+         */
+        public long getOffset() {
+            return Math.round(offset);
+        }
+
+        /**
+         * @param localTime Local time in milliseconds since the epoch.
+         * @return Reference time minus local time at <code>localTime</code>, corrected for drift.
+         */
+        public double getOffsetAt(long localTime) {
+            return offset + drift * (localTime - measuredAt);
+        }
+
+        /**
+         * @return Drift of the local clock against the reference, in milliseconds per millisecond.
+         */
+        public double getDrift() {
+            return drift;
+        }
+
+        /**
+         * @return Uncertainty of the offset in milliseconds when it was measured.
+         */
+        public double getUncertainty() {
+            return uncertainty;
+        }
+
+        /**
+         * @param localTime Local time in milliseconds since the epoch.
+         * @return Uncertainty of the offset at <code>localTime</code>, growing with the age of the estimate.
+         */
+        public double getUncertaintyAt(long localTime) {
+            return uncertainty + DRIFT_TOLERANCE * Math.abs(localTime - measuredAt);
+        }
+
+        /**
+         * @return Local time in milliseconds since the epoch when the offset was measured.
+         */
+        public long getMeasuredAt() {
+            return measuredAt;
+        }
+    }
+
+    private static ClockSync instance = null;
+
+    private final TimeSource timeSource;
+    private final long intervalMillis;
+    private final int burst;
+
+    private volatile Estimate estimate = Estimate.NONE;
+    private volatile OnSyncFailedListener onSyncFailedListener;
+    private ScheduledExecutorService executor;
+
+    /**
+     * Returns the instance of <code>ClockSync</code> for this process, created with the default
+     * SNTP time source and started on first use.
+     *
+     * @return The instance of <code>ClockSync</code>.
+     */
+    public static ClockSync getInstance() {
+        synchronized (ClockSync.class) {
+            if (instance == null) {
+                instance = new ClockSync(new SntpTimeSource(DEFAULT_HOST, SntpTimeSource.NTP_PORT,
+                        DEFAULT_TIMEOUT_MILLIS), DEFAULT_INTERVAL_MILLIS, DEFAULT_BURST);
+                instance.start();
+            }
+            return instance;
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param timeSource Source of the reference time.
+     * @param intervalMillis Time between two sync rounds in milliseconds.
+     * @param burst Number of requests per sync round.
+     */
+    public ClockSync(TimeSource timeSource, long intervalMillis, int burst) {
+        this.timeSource = timeSource;
+        this.intervalMillis = intervalMillis;
+        this.burst = Math.max(1, burst);
+    }
+
+    /**
+     * @return The latest estimate, never null.
+     */
+    public Estimate getEstimate() {
+        return estimate;
+    }
+
+    /**
+     * Sets the listener that is called on the sync thread when a round gets no valid reply.
+     *
+     * @param onSyncFailedListener Listener, or null to remove it.
+     */
+    public void setOnSyncFailedListener(OnSyncFailedListener onSyncFailedListener) {
+        this.onSyncFailedListener = onSyncFailedListener;
+    }
+
+    /**
+     * Starts running sync rounds, the first one right away. Does nothing if already started.
+     */
+    public synchronized void start() {
+        if (executor != null)
+            return;
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ClockSync");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                sync();
+            }
+        }, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the sync rounds and closes the time source. The last estimate stays readable.
+     */
+    public synchronized void stop() {
+        if (executor == null)
+            return;
+        executor.shutdownNow();
+        executor = null;
+        timeSource.close();
+    }
+
+    /**
+     * Runs one sync round on the calling thread.
+     *
+     * @return Whether the estimate was updated.
+     */
+    public boolean sync() {
+        Exchange best = null;
+        IOException failure = null;
+        for (int i = 0; i < burst; i++) {
+            try {
+                Exchange exchange = timeSource.exchange();
+                if (exchange.getDelay() >= 0 && (best == null || exchange.getDelay() < best.getDelay()))
+                    best = exchange;
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (best == null) {
+            OnSyncFailedListener listener = onSyncFailedListener;
+            if (listener != null)
+                listener.onSyncFailed(failure != null ? failure : new IOException("No valid exchange"));
+            return false;
+        }
+        estimate = update(estimate, best);
+        return true;
+    }
+
+    /**
+     * Combines the previous estimate with the best exchange of a new round.
+     *
+     * @param previous Previous estimate.
+     * @param exchange Exchange with the smallest delay in the round.
+     * @return The new estimate.
+     */
+    static Estimate update(Estimate previous, Exchange exchange) {
+        double offset = exchange.getOffset();
+        long measuredAt = exchange.replyReceived;
+        double drift = 0;
+        if (previous.isValid() && measuredAt > previous.getMeasuredAt()) {
+            double measured = (offset - previous.offset) / (measuredAt - previous.getMeasuredAt());
+            if (Math.abs(measured) <= MAX_DRIFT)
+                drift = previous.drift == 0 ? measured : previous.drift + DRIFT_GAIN * (measured - previous.drift);
+        }
+        return new Estimate(offset, drift, exchange.getDelay() / 2.0, measuredAt, true);
+    }
+}
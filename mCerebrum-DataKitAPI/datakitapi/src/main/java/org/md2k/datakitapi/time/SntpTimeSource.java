@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.datakitapi.time;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+
+/**
+ * <code>ClockSync.TimeSource</code> that queries an SNTP server (RFC 4330) over UDP.
+ *
+ * <p>
+ *     The socket and the resolved address are kept across requests. Replies that do not answer the
+ *     latest request, such as late replies to an earlier request that timed out, are skipped.
+ * </p>
+ */
+public class SntpTimeSource implements ClockSync.TimeSource {
+
+    /** Port of the NTP service. */
+    public static final int NTP_PORT = 123;
+
+    /** Milliseconds between the NTP epoch (1900) and the Unix epoch (1970). */
+    static final long NTP_EPOCH_OFFSET = 2208988800000L;
+
+    static final int PACKET_SIZE = 48;
+    static final int ORIGINATE_OFFSET = 24;
+    static final int RECEIVE_OFFSET = 32;
+    static final int TRANSMIT_OFFSET = 40;
+
+    /** Leap indicator 0, version 3, mode 3 (client). */
+    private static final byte CLIENT_HEADER = 0x1B;
+    private static final int MODE_SERVER = 4;
+
+    private final String host;
+    private final int port;
+    private final int timeoutMillis;
+
+    private final byte[] request = new byte[PACKET_SIZE];
+    private final byte[] reply = new byte[PACKET_SIZE];
+    private final DatagramPacket replyPacket = new DatagramPacket(reply, PACKET_SIZE);
+    private DatagramSocket socket;
+    private InetAddress address;
+
+    /**
+     * Constructor
+     *
+     * @param host Host name of the server.
+     * @param port UDP port of the server.
+     * @param timeoutMillis Time to wait for a reply in milliseconds.
+     */
+    public SntpTimeSource(String host, int port, int timeoutMillis) {
+        this.host = host;
+        this.port = port;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Sends one request and waits for its reply.
+     *
+     * @return The timestamps of the exchange.
+     * @throws IOException Thrown if the request could not be sent or there was no valid reply in time.
+     */
+    @Override
+    public synchronized ClockSync.Exchange exchange() throws IOException {
+        try {
+            if (socket == null)
+                socket = new DatagramSocket();
+            if (address == null)
+                address = InetAddress.getByName(host);
+
+            Arrays.fill(request, (byte) 0);
+            request[0] = CLIENT_HEADER;
+            long requestSent = System.currentTimeMillis();
+            writeTimestamp(request, TRANSMIT_OFFSET, requestSent);
+            socket.send(new DatagramPacket(request, PACKET_SIZE, address, port));
+
+            long deadline = requestSent + timeoutMillis;
+            while (true) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0)
+                    throw new SocketTimeoutException("No reply from " + host);
+                socket.setSoTimeout((int) remaining);
+                replyPacket.setLength(PACKET_SIZE);
+                socket.receive(replyPacket);
+                long replyReceived = System.currentTimeMillis();
+
+                if (replyPacket.getLength() < PACKET_SIZE || (reply[0] & 0x7) != MODE_SERVER
+                        || !isReplyTo(reply, request))
+                    continue;
+                if (reply[1] == 0)
+                    throw new IOException("Server " + host + " refused the request");
+                return new ClockSync.Exchange(requestSent, readTimestamp(reply, RECEIVE_OFFSET),
+                        readTimestamp(reply, TRANSMIT_OFFSET), replyReceived);
+            }
+        } catch (IOException e) {
+            //Resolve the host again next time, its address may have changed with the network
+            address = null;
+            throw e;
+        }
+    }
+
+    /**
+     * Closes the socket, the next request opens a new one.
+     */
+    @Override
+    public synchronized void close() {
+        if (socket != null)
+            socket.close();
+        socket = null;
+        address = null;
+    }
+
+    /**
+     * @return Whether the originate timestamp of the reply is the transmit timestamp of the request.
+     */
+    private static boolean isReplyTo(byte[] reply, byte[] request) {
+        for (int i = 0; i < 8; i++) {
+            if (reply[ORIGINATE_OFFSET + i] != request[TRANSMIT_OFFSET + i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Writes a time in milliseconds since the Unix epoch as a 64 bit NTP timestamp.
+     *
+     * @param buffer Buffer to write to.
+     * @param offset Offset of the timestamp in the buffer.
+     * @param time Time in milliseconds since the Unix epoch.
+     */
+    static void writeTimestamp(byte[] buffer, int offset, long time) {
+        long ntpTime = time + NTP_EPOCH_OFFSET;
+        long seconds = ntpTime / 1000;
+        long fraction = (ntpTime % 1000) * 0x100000000L / 1000;
+        for (int i = 3; i >= 0; i--) {
+            buffer[offset + i] = (byte) seconds;
+            seconds >>>= 8;
+            buffer[offset + 4 + i] = (byte) fraction;
+            fraction >>>= 8;
+        }
+    }
+
+    /**
+     * Reads a 64 bit NTP timestamp as milliseconds since the Unix epoch.
+     *
+     * @param buffer Buffer to read from.
+     * @param offset Offset of the timestamp in the buffer.
+     * @return Time in milliseconds since the Unix epoch.
+     */
+    static long readTimestamp(byte[] buffer, int offset) {
+        long seconds = 0;
+        long fraction = 0;
+        for (int i = 0; i < 4; i++) {
+            seconds = (seconds << 8) | (buffer[offset + i] & 0xFF);
+            fraction = (fraction << 8) | (buffer[offset + 4 + i] & 0xFF);
+        }
+        return seconds * 1000 + (fraction * 1000 + 0x80000000L) / 0x100000000L - NTP_EPOCH_OFFSET;
+    }
+}
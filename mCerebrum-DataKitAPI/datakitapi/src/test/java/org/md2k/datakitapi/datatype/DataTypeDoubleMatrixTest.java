@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.datakitapi.datatype;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DataTypeDoubleMatrixTest {
+
+    private static DataTypeDoubleArray[] samples(int count, int columns) {
+        DataTypeDoubleArray[] samples = new DataTypeDoubleArray[count];
+        for (int i = 0; i < count; i++) {
+            double[] values = new double[columns];
+            for (int j = 0; j < columns; j++)
+                values[j] = i * 10 + j + 0.5;
+            samples[i] = new DataTypeDoubleArray(1000 + i * 40, values);
+            samples[i].offset = 3600000;
+        }
+        return samples;
+    }
+
+    @Test
+    public void convertsToAndFromDoubleArrays() {
+        DataTypeDoubleArray[] samples = samples(12, 3);
+        DataTypeDoubleMatrix matrix = DataTypeDoubleMatrix.fromDoubleArrays(samples);
+        assertEquals(12, matrix.getCount());
+        assertEquals(3, matrix.getColumns());
+        assertEquals(1000, matrix.getDateTime());
+        assertEquals(3600000, matrix.getOffset());
+        assertEquals(1080, matrix.getTimestamp(2));
+        assertEquals(21.5, matrix.getValue(2, 1), 0);
+
+        DataTypeDoubleArray[] back = matrix.toDoubleArrays();
+        assertEquals(samples.length, back.length);
+        for (int i = 0; i < samples.length; i++) {
+            assertEquals(samples[i].getDateTime(), back[i].getDateTime());
+            assertEquals(samples[i].offset, back[i].offset);
+            assertArrayEquals(samples[i].getSample(), back[i].getSample(), 0);
+        }
+
+        DataTypeDoubleMatrix part = DataTypeDoubleMatrix.fromDoubleArrays(samples, 5, 7);
+        assertEquals(2, part.getCount());
+        assertEquals(1200, part.getDateTime());
+        assertArrayEquals(new double[]{50.5, 51.5, 52.5, 60.5, 61.5, 62.5}, part.getValues(), 0);
+        assertEquals(0, DataTypeDoubleMatrix.fromDoubleArrays(samples, 3, 3).getCount());
+    }
+
+    @Test
+    public void rejectsRaggedSamples() {
+        DataTypeDoubleArray[] samples = samples(4, 3);
+        samples[2] = new DataTypeDoubleArray(5, new double[2]);
+        try {
+            DataTypeDoubleMatrix.fromDoubleArrays(samples);
+            fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            new DataTypeDoubleMatrix(new long[2], new double[5], 3);
+            fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void encodesBlocksFromColumns() {
+        DataTypeDoubleArray[] samples = samples(40, 3);
+        DataTypeDoubleMatrix matrix = DataTypeDoubleMatrix.fromDoubleArrays(samples);
+        assertArrayEquals(HighFrequencyBlock.encode(samples, 4, 15), HighFrequencyBlock.encode(matrix, 4, 15));
+
+        int rows = HighFrequencyBlock.getMaxRows(3, 1024);
+        assertEquals(rows, (1024 - HighFrequencyBlock.getEncodedSize(samples, 0, 0))
+                / HighFrequencyBlock.getSampleSize(samples[0]));
+        assertTrue(HighFrequencyBlock.encode(matrix, 0, rows).length <= 1024);
+        assertTrue(HighFrequencyBlock.encode(matrix, 0, rows + 1).length > 1024);
+    }
+
+    @Test
+    public void rawBytesRoundTrip() {
+        double[] values = {1.5, -2.25, Double.MAX_VALUE, Double.NaN};
+        DataTypeDoubleArray sample = new DataTypeDoubleArray(7, values);
+        byte[] raw = sample.toRawBytes();
+        assertEquals(32, raw.length);
+        assertArrayEquals(values, DataTypeDoubleArray.fromRawBytes(7, raw).getSample(), 0);
+    }
+}
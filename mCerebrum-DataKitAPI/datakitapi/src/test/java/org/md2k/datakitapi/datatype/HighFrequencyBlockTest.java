@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.datakitapi.datatype;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class HighFrequencyBlockTest {
+
+    private static DataTypeDoubleArray sample(long timestamp, long offset, double... values) {
+        DataTypeDoubleArray dataType = new DataTypeDoubleArray();
+        dataType.dateTime = timestamp;
+        dataType.offset = offset;
+        dataType.sample = values;
+        return dataType;
+    }
+
+    private static void assertSameSamples(DataTypeDoubleArray[] expected, int from, DataTypeDoubleArray[] actual) {
+        for (int i = 0; i < actual.length; i++) {
+            assertEquals(expected[from + i].dateTime, actual[i].dateTime);
+            assertEquals(expected[from + i].offset, actual[i].offset);
+            assertArrayEquals(expected[from + i].sample, actual[i].sample, 0);
+        }
+    }
+
+    @Test
+    public void roundTrip() {
+        Random random = new Random(3);
+        DataTypeDoubleArray[] samples = new DataTypeDoubleArray[250];
+        for (int i = 0; i < samples.length; i++) {
+            double[] values = new double[i % 7 == 0 ? 0 : 1 + random.nextInt(6)];
+            for (int j = 0; j < values.length; j++)
+                values[j] = random.nextGaussian() * 1e6;
+            samples[i] = sample(1500000000000L + i * 40, -18000000L, values);
+        }
+        samples[3].sample[0] = Double.NaN;
+        samples[4].sample[0] = Double.NEGATIVE_INFINITY;
+
+        byte[] block = HighFrequencyBlock.encode(samples);
+        assertEquals(HighFrequencyBlock.getEncodedSize(samples, 0, samples.length), block.length);
+        DataTypeDoubleArray[] decoded = HighFrequencyBlock.decode(block);
+        assertEquals(samples.length, decoded.length);
+        assertSameSamples(samples, 0, decoded);
+
+        decoded = HighFrequencyBlock.decode(HighFrequencyBlock.encode(samples, 100, 130));
+        assertEquals(30, decoded.length);
+        assertSameSamples(samples, 100, decoded);
+    }
+
+    @Test
+    public void emptyBlock() {
+        DataTypeDoubleArray[] samples = new DataTypeDoubleArray[0];
+        assertEquals(0, HighFrequencyBlock.decode(HighFrequencyBlock.encode(samples)).length);
+    }
+
+    @Test
+    public void sampleSizeAddsUp() {
+        DataTypeDoubleArray[] samples = {sample(1, 0, 1, 2, 3), sample(2, 0), sample(3, 0, 4)};
+        int size = HighFrequencyBlock.getEncodedSize(samples, 0, 0);
+        for (DataTypeDoubleArray sample : samples)
+            size += HighFrequencyBlock.getSampleSize(sample);
+        assertEquals(HighFrequencyBlock.encode(samples).length, size);
+    }
+
+    @Test
+    public void rejectsMalformedBlocks() {
+        byte[] block = HighFrequencyBlock.encode(new DataTypeDoubleArray[]{sample(1, 0, 1, 2), sample(2, 0, 3)});
+
+        byte[] badMagic = block.clone();
+        badMagic[0] ^= 1;
+        byte[] truncated = new byte[block.length - 8];
+        System.arraycopy(block, 0, truncated, 0, truncated.length);
+        byte[] badOffsets = block.clone();
+        badOffsets[HighFrequencyBlock.HEADER_SIZE + 2 * 16 + 7] = 5;
+
+        for (byte[] bad : new byte[][]{null, new byte[4], badMagic, truncated, badOffsets}) {
+            try {
+                HighFrequencyBlock.decode(bad);
+                fail();
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.datakitapi.messagehandler;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PendingRequestTableTest {
+
+    private static final long WAIT_TIME = 1000;
+
+    private static PendingRequest<Object> send(PendingRequestTable table, int requestId, int messageType) {
+        PendingRequest<Object> request = new PendingRequest<>(requestId, messageType, WAIT_TIME);
+        table.add(request);
+        return request;
+    }
+
+    @Test
+    public void pipelinedRepliesWithIdsMatchTheirOwnRequest() {
+        PendingRequestTable table = new PendingRequestTable();
+        PendingRequest<Object> query = send(table, 1, MessageType.QUERY);
+        PendingRequest<Object> insert = send(table, 2, MessageType.INSERT);
+        PendingRequest<Object> secondQuery = send(table, 3, MessageType.QUERY);
+
+        //The slow query is answered last
+        assertSame(secondQuery, table.take(3, MessageType.QUERY));
+        assertSame(insert, table.take(2, MessageType.INSERT));
+        assertSame(query, table.take(1, MessageType.QUERY));
+        assertNull(table.take(1, MessageType.QUERY));
+        assertTrue(table.clear().isEmpty());
+    }
+
+    @Test
+    public void repliesWithoutIdsMatchTheOldestRequestOfTheirType() {
+        PendingRequestTable table = new PendingRequestTable();
+        PendingRequest<Object> query = send(table, 1, MessageType.QUERY);
+        PendingRequest<Object> insert = send(table, 2, MessageType.INSERT);
+        PendingRequest<Object> secondQuery = send(table, 3, MessageType.QUERY);
+
+        assertSame(insert, table.take(0, MessageType.INSERT));
+        assertSame(query, table.take(0, MessageType.QUERY));
+        assertSame(secondQuery, table.take(0, MessageType.QUERY));
+        assertNull(table.take(0, MessageType.QUERY));
+    }
+
+    @Test
+    public void lateReplyWithoutIdIsDroppedAfterItsRequestExpired() {
+        PendingRequestTable table = new PendingRequestTable();
+        PendingRequest<Object> expired = send(table, 1, MessageType.QUERY);
+        assertTrue(table.expire(expired));
+        assertFalse(table.expire(expired));
+        PendingRequest<Object> next = send(table, 2, MessageType.QUERY);
+        PendingRequest<Object> insert = send(table, 3, MessageType.INSERT);
+
+        //Other types are not held back by the expired query
+        assertSame(insert, table.take(0, MessageType.INSERT));
+        //The reply of the expired query arrives late and must not complete the next one
+        assertNull(table.take(0, MessageType.QUERY));
+        assertSame(next, table.take(0, MessageType.QUERY));
+    }
+
+    @Test
+    public void lateReplyWithIdIsDroppedAfterItsRequestExpired() {
+        PendingRequestTable table = new PendingRequestTable();
+        PendingRequest<Object> expired = send(table, 1, MessageType.QUERY);
+        assertTrue(table.expire(expired));
+        PendingRequest<Object> next = send(table, 2, MessageType.QUERY);
+
+        assertNull(table.take(1, MessageType.QUERY));
+        assertSame(next, table.take(2, MessageType.QUERY));
+    }
+
+    @Test
+    public void answeredRequestNoLongerExpires() {
+        PendingRequestTable table = new PendingRequestTable();
+        PendingRequest<Object> request = send(table, 1, MessageType.QUERY);
+        assertSame(request, table.take(0, MessageType.QUERY));
+        assertFalse(table.expire(request));
+
+        PendingRequest<Object> next = send(table, 2, MessageType.QUERY);
+        assertSame(next, table.take(0, MessageType.QUERY));
+    }
+
+    @Test
+    public void clearForgetsRequestsAndExpiredReplies() {
+        PendingRequestTable table = new PendingRequestTable();
+        PendingRequest<Object> expired = send(table, 1, MessageType.QUERY);
+        table.expire(expired);
+        PendingRequest<Object> pending = send(table, 2, MessageType.QUERY);
+
+        List<PendingRequest<?>> cleared = table.clear();
+        assertEquals(1, cleared.size());
+        assertSame(pending, cleared.get(0));
+        //A new connection starts without replies due
+        PendingRequest<Object> next = send(table, 3, MessageType.QUERY);
+        assertSame(next, table.take(0, MessageType.QUERY));
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.datakitapi.signal;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ResamplerTest {
+
+    /**
+     * Collects the output of a resampler.
+     */
+    private static class Collector implements Resampler.OnSampleListener {
+        final ArrayList<Long> timestamps = new ArrayList<>();
+        final ArrayList<double[]> values = new ArrayList<>();
+
+        @Override
+        public void onSample(long timestamp, double[] sample) {
+            timestamps.add(timestamp);
+            values.add(sample.clone());
+        }
+    }
+
+    /**
+     * Reads the rows of the first device of a CSV in the layout Downsampler.py reads:
+     * index,arrival_time,creation_time,x,y,z,user,model,device,gt
+     */
+    private static ArrayList<double[]> readCsv(String name) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                ResamplerTest.class.getResourceAsStream(name), "UTF-8"));
+        ArrayList<double[]> rows = new ArrayList<>();
+        String device = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] fields = line.split(",");
+            if (line.isEmpty() || fields[0].equals("Index"))
+                continue;
+            String id = fields[6] + fields[7] + fields[8];
+            if (device == null)
+                device = id;
+            else if (!device.equals(id))
+                break;
+            rows.add(new double[]{Long.parseLong(fields[1]), Double.parseDouble(fields[3]),
+                    Double.parseDouble(fields[4]), Double.parseDouble(fields[5])});
+        }
+        reader.close();
+        return rows;
+    }
+
+    private static Collector resample(ArrayList<double[]> rows, double rate, Resampler.Mode mode) {
+        Collector collector = new Collector();
+        Resampler resampler = new Resampler(3, rate, mode, collector);
+        for (double[] row : rows)
+            resampler.push((long) row[0], row, 1);
+        return collector;
+    }
+
+    @Test
+    public void firstMatchesDownsamplerPy() throws IOException {
+        ArrayList<double[]> expected = readCsv("watch_accelerometer_ds.csv");
+        Collector collector = resample(readCsv("Watch_accelerometer.csv"), 5, Resampler.Mode.FIRST);
+
+        assertEquals(expected.size(), collector.timestamps.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals((long) expected.get(i)[0], (long) collector.timestamps.get(i));
+            assertArrayEquals(new double[]{expected.get(i)[1], expected.get(i)[2], expected.get(i)[3]},
+                    collector.values.get(i), 0);
+        }
+    }
+
+    @Test
+    public void linearStaysOnTheGridOfTheRecording() throws IOException {
+        ArrayList<double[]> rows = readCsv("Watch_accelerometer.csv");
+        Collector collector = resample(rows, 5, Resampler.Mode.LINEAR);
+
+        long first = (long) rows.get(0)[0];
+        long last = (long) rows.get(rows.size() - 1)[0];
+        assertEquals((last - first) / 200 + 1, collector.timestamps.size(), 1);
+        int row = 0;
+        for (int i = 0; i < collector.timestamps.size(); i++) {
+            long t = collector.timestamps.get(i);
+            assertEquals(0, t % 200);
+            while (rows.get(row + 1)[0] < t)
+                row++;
+            //Each value lies between the two recorded samples around its grid point
+            for (int c = 0; c < 3; c++) {
+                double a = rows.get(row)[c + 1];
+                double b = rows.get(row + 1)[c + 1];
+                double v = collector.values.get(i)[c];
+                assertTrue(v >= Math.min(a, b) - 1e-12 && v <= Math.max(a, b) + 1e-12);
+            }
+        }
+    }
+
+    @Test
+    public void linearIsExactOnARamp() {
+        Collector collector = new Collector();
+        Resampler resampler = new Resampler(3, 30, Resampler.Mode.LINEAR, collector);
+        Random random = new Random(7);
+        long t = 1000000;
+        for (int i = 0; i < 1000; i++) {
+            resampler.push(t, t * 0.001, -t * 0.002, 5);
+            t += 5 + random.nextInt(6);
+        }
+        assertTrue(collector.timestamps.size() > 100);
+        for (int i = 0; i < collector.timestamps.size(); i++) {
+            double grid = Math.round(collector.timestamps.get(i) / (1000.0 / 30)) * (1000.0 / 30);
+            assertEquals(grid, collector.timestamps.get(i), 0.5);
+            assertArrayEquals(new double[]{grid * 0.001, -grid * 0.002, 5}, collector.values.get(i), 1e-9);
+        }
+    }
+
+    private static double amplitude(double frequency, Resampler.Mode mode) {
+        Collector collector = new Collector();
+        Resampler resampler = new Resampler(3, 5, mode, collector);
+        Random random = new Random(11);
+        long t = 0;
+        while (t < 60000) {
+            double v = Math.sin(2 * Math.PI * frequency * t / 1000.0);
+            resampler.push(t, v, 0, 1);
+            t += 5 + random.nextInt(6);
+        }
+        double max = 0;
+        //Skip the start, where the filter has not settled
+        for (int i = 10; i < collector.values.size(); i++)
+            max = Math.max(max, Math.abs(collector.values.get(i)[0]));
+        return max;
+    }
+
+    @Test
+    public void antiAliasedRemovesWhatWouldAlias() {
+        //4 Hz folds onto 1 Hz at 5 Hz
+        assertTrue(amplitude(4, Resampler.Mode.LINEAR) > 0.9);
+        assertTrue(amplitude(4, Resampler.Mode.ANTI_ALIASED) < 0.1);
+        assertEquals(1, amplitude(0.5, Resampler.Mode.ANTI_ALIASED), 0.05);
+    }
+
+    @Test
+    public void antiAliasedLatencyIsBounded() {
+        final long[] now = new long[1];
+        final long[] worst = new long[1];
+        Resampler resampler = new Resampler(3, 5, Resampler.Mode.ANTI_ALIASED, null);
+        resampler.setOnSampleListener(new Resampler.OnSampleListener() {
+            @Override
+            public void onSample(long timestamp, double[] values) {
+                worst[0] = Math.max(worst[0], now[0] - timestamp);
+            }
+        });
+        for (now[0] = 0; now[0] < 10000; now[0] += 10)
+            resampler.push(now[0], 1, 2, 3);
+        assertEquals(600, resampler.getLatencyMillis());
+        assertTrue(worst[0] >= 600 && worst[0] < 610);
+    }
+
+    @Test
+    public void dropsOldSamplesAndRestartsAfterAGap() {
+        Collector collector = new Collector();
+        Resampler resampler = new Resampler(1, 10, Resampler.Mode.LINEAR, collector);
+        double[] value = new double[1];
+        for (long t = 0; t <= 1000; t += 20)
+            resampler.push(t, value, 0);
+        resampler.push(500, value, 0);
+        int beforeGap = collector.timestamps.size();
+        assertEquals(11, beforeGap);
+        for (long t = 5010; t <= 6000; t += 20)
+            resampler.push(t, value, 0);
+        assertEquals(5100, (long) collector.timestamps.get(beforeGap));
+        assertEquals(beforeGap + 9, collector.timestamps.size());
+    }
+}
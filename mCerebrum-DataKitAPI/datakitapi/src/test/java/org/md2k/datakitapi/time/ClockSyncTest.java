@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.datakitapi.time;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ClockSyncTest {
+
+    /** Replays canned exchanges, a null entry fails the request. */
+    private static class ScriptedTimeSource implements ClockSync.TimeSource {
+        final Queue<ClockSync.Exchange> exchanges = new ArrayDeque<>();
+        int failures = 0;
+
+        void add(long sent, long delayThere, long delayBack, double offset) {
+            long serverReceived = Math.round(sent + delayThere + offset);
+            long serverSent = serverReceived + 1;
+            exchanges.add(new ClockSync.Exchange(sent, serverReceived, serverSent,
+                    Math.round(serverSent - offset) + delayBack));
+        }
+
+        @Override
+        public ClockSync.Exchange exchange() throws IOException {
+            ClockSync.Exchange exchange = exchanges.poll();
+            if (exchange == null) {
+                failures++;
+                throw new IOException("timeout");
+            }
+            return exchange;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /** Answers SNTP requests with its own clock shifted by offsetMillis, like an NTP server would. */
+    private static class StandInServer extends Thread {
+        final DatagramSocket socket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        final long offsetMillis;
+        int skipReplies;
+
+        StandInServer(long offsetMillis, int skipReplies) throws IOException {
+            this.offsetMillis = offsetMillis;
+            this.skipReplies = skipReplies;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            byte[] buffer = new byte[SntpTimeSource.PACKET_SIZE];
+            try {
+                while (true) {
+                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                    socket.receive(packet);
+                    long received = System.currentTimeMillis() + offsetMillis;
+                    byte[] reply = new byte[SntpTimeSource.PACKET_SIZE];
+                    reply[0] = 0x1C;
+                    reply[1] = 2;
+                    System.arraycopy(buffer, SntpTimeSource.TRANSMIT_OFFSET, reply, SntpTimeSource.ORIGINATE_OFFSET, 8);
+                    SntpTimeSource.writeTimestamp(reply, SntpTimeSource.RECEIVE_OFFSET, received);
+                    if (skipReplies > 0) {
+                        //A stale reply that answers some other request
+                        skipReplies--;
+                        reply[SntpTimeSource.ORIGINATE_OFFSET + 7] ^= 1;
+                    }
+                    SntpTimeSource.writeTimestamp(reply, SntpTimeSource.TRANSMIT_OFFSET,
+                            System.currentTimeMillis() + offsetMillis);
+                    socket.send(new DatagramPacket(reply, reply.length, packet.getSocketAddress()));
+                }
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    @Test
+    public void picksTheExchangeWithTheSmallestDelay() {
+        ScriptedTimeSource source = new ScriptedTimeSource();
+        source.add(1000, 40, 5, 250);   //Queued on the way out, offset looks 17.5 ms too large
+        source.add(1100, 3, 3, 250);
+        source.add(1200, 5, 60, 250);   //Queued on the way back
+        ClockSync clockSync = new ClockSync(source, 60000, 3);
+
+        assertFalse(clockSync.getEstimate().isValid());
+        assertTrue(clockSync.sync());
+        ClockSync.Estimate estimate = clockSync.getEstimate();
+        assertTrue(estimate.isValid());
+        assertEquals(250, estimate.getOffset());
+        assertEquals(3, estimate.getUncertainty(), 0);
+        assertEquals(0, estimate.getDrift(), 0);
+    }
+
+    @Test
+    public void tracksDriftAcrossRounds() {
+        ScriptedTimeSource source = new ScriptedTimeSource();
+        ClockSync clockSync = new ClockSync(source, 60000, 1);
+        source.add(0, 2, 2, 100);
+        assertTrue(clockSync.sync());
+        source.add(100000, 2, 2, 110);  //100 ppm
+        assertTrue(clockSync.sync());
+
+        ClockSync.Estimate estimate = clockSync.getEstimate();
+        assertEquals(110, estimate.getOffset());
+        assertEquals(100e-6, estimate.getDrift(), 1e-6);
+        long at = estimate.getMeasuredAt() + 50000;
+        assertEquals(115, estimate.getOffsetAt(at), 0.2);
+        assertTrue(estimate.getUncertaintyAt(at) > estimate.getUncertainty());
+
+        //A clock step is not drift
+        source.add(200000, 2, 2, 5110);
+        assertTrue(clockSync.sync());
+        assertEquals(5110, clockSync.getEstimate().getOffset());
+        assertEquals(0, clockSync.getEstimate().getDrift(), 0);
+    }
+
+    @Test
+    public void keepsTheLastEstimateWhenARoundFails() {
+        ScriptedTimeSource source = new ScriptedTimeSource();
+        ClockSync clockSync = new ClockSync(source, 60000, 2);
+        source.add(0, 2, 2, -40);
+        assertTrue(clockSync.sync());
+
+        final IOException[] reported = new IOException[1];
+        clockSync.setOnSyncFailedListener(new ClockSync.OnSyncFailedListener() {
+            @Override
+            public void onSyncFailed(IOException e) {
+                reported[0] = e;
+            }
+        });
+        assertFalse(clockSync.sync());
+        assertNotNull(reported[0]);
+        assertEquals(-40, clockSync.getEstimate().getOffset());
+        assertEquals(3, source.failures);
+    }
+
+    @Test
+    public void ntpTimestampsRoundTrip() {
+        byte[] buffer = new byte[SntpTimeSource.PACKET_SIZE];
+        for (long time : new long[]{0, 1, 999, 1542384000123L, 2000000000999L}) {
+            SntpTimeSource.writeTimestamp(buffer, SntpTimeSource.TRANSMIT_OFFSET, time);
+            assertEquals(time, SntpTimeSource.readTimestamp(buffer, SntpTimeSource.TRANSMIT_OFFSET));
+        }
+    }
+
+    @Test
+    public void syncsAgainstALocalServer() throws Exception {
+        StandInServer server = new StandInServer(-3456, 1);
+        server.start();
+        SntpTimeSource source = new SntpTimeSource("127.0.0.1", server.socket.getLocalPort(), 1000);
+        try {
+            ClockSync clockSync = new ClockSync(source, 60000, 4);
+            assertTrue(clockSync.sync());
+            ClockSync.Estimate estimate = clockSync.getEstimate();
+            assertEquals(-3456, estimate.getOffset(), 20);
+            assertTrue(estimate.getUncertainty() < 20);
+        } finally {
+            source.close();
+            server.socket.close();
+        }
+    }
+
+    @Test
+    public void timesOutWithoutAServer() throws Exception {
+        DatagramSocket silent = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        SntpTimeSource source = new SntpTimeSource("127.0.0.1", silent.getLocalPort(), 200);
+        try {
+            source.exchange();
+            fail();
+        } catch (IOException ignored) {
+        } finally {
+            source.close();
+            silent.close();
+        }
+    }
+}
@@ -35,13 +35,9 @@ import android.util.Log;
 import android.view.View;
 
 import org.md2k.datakitapi.DataKitAPI;
-import org.md2k.demoapp.classifiers.tfclassifier_1;
-import org.md2k.demoapp.classifiers.tfclassifier_1_s;
-import org.md2k.demoapp.classifiers.tfclassifier_2_m;
-import org.md2k.demoapp.classifiers.tfclassifier_s1m;
-import org.md2k.demoapp.classifiers.tfclassifier_s1s2;
-import org.md2k.demoapp.classifiers.tfclassifier_s1s2m;
-import org.md2k.demoapp.classifiers.tfclassifier_s2m;
+import org.md2k.demoapp.classifiers.InferenceEngine;
+import org.md2k.demoapp.classifiers.InferenceExecutor;
+import org.md2k.demoapp.classifiers.ModelSpec;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -78,85 +74,66 @@ public class BTEntryManager extends Service {
     private String UUIDStr = "71b37966-2466-45b7-ae2c-f42851fcac8e";  //UUID for communicating with android wear
 
     private boolean doneConnecting = false;
-    private tfclassifier_1 classifier1;
-    private tfclassifier_1_s classifier2;
-    private tfclassifier_2_m classifier3;
-    private tfclassifier_s1s2 classifier4;
-    private tfclassifier_s1m classifier5;
-    private tfclassifier_s2m classifier6;
-    private tfclassifier_s1s2m classifier7;
+    private InferenceEngine inferenceEngine;
+    private InferenceExecutor inferenceExecutor;
 
     String appName = "";
 
+    //Message.what of a missing window notice, obj is the MissingWindow
+    public static final int MSG_MISSING_WINDOW = 1;
+
     public Handler _handler = new Handler() {
         @Override
         public void handleMessage(Message msg) {
             //Log.d(TAG, String.format("Handler.handleMessage(): msg=%s", msg));
-            String data = (String) msg.obj;
-            //Log.d(TAG, "Recieved Data: " + data);
-            String[] splitData1 = data.split("\\*");
-            String devPurpose = splitData1[1];
-            //Log.d(TAG, "Received Purpose: " + splitData1[1]);
-            String[] splitData2 = splitData1[0].split(":");
-            for(String dataPoint : splitData2) {
-                //Log.d(TAG, "Other: " + dataPoint);
-                //float[] results = classifier.pushToList(dataPoint);
-                //TODO: Bring this back if you want to send it to the classifier
-                //sendToClassifier(dataPoint, devPurpose);
-                //Log.d(TAG, "Prediction results: " + results[0] + "," + results[1] + "," + results[2]);
+            if(msg.what == MSG_MISSING_WINDOW) {
+                if(inferenceExecutor != null) {
+                    MissingWindow window = (MissingWindow) msg.obj;
+                    inferenceExecutor.offerMissingWindow(window.getDevicePurpose(), window.getStart(),
+                            window.getEnd(), window.getSamples());
+                }
+                return;
             }
-            //float x =
-
-            //
+            if(!(msg.obj instanceof SampleBatch)) {
+                return;
+            }
+            SampleBatch batch = (SampleBatch) msg.obj;
+            //Only queues the samples, the models run on the inference thread
+            sendToClassifier(batch);
+            batch.recycle();
         }
 
     };
 
     /*
+            The models are listed in assets/models.json, ids match the old classifier numbers:
             Classifier 1: Just the pillow sensor
             Classifier 2: Just Blanket Sensor
             Classifier 3: Just Motionsense Sensor
             Classifier 4: Pillow and Blanket Sensors
             Classifier 5: Pillow and MotionSense Sensors
             Classifier 6: Blanket and MotionSense Sensors
-            Classifier 6: Pillow, Blanket, and MotionSense Sensors
+            Classifier 7: Pillow, Blanket, and MotionSense Sensors
      */
     //This is called whenever a thread sends a data message
-    /*private void sendToClassifier(String dPoint, String devPurpose) {
-        Log.d(TAG, "RECEIVED: " + devPurpose);
-        float[] results = new float[3];
-        if(devPurpose.equals(getString(R.string.bodySensor_L))) {
-            results = classifier3.pushToList(dPoint);
-            printPrediction(results, devPurpose, 3);
-            results = classifier5.pushToList(dPoint, getString(R.string.bodySensor_L));
-            printPrediction(results, devPurpose, 5);
-            results = classifier6.pushToList(dPoint, getString(R.string.bodySensor_L));
-            printPrediction(results, devPurpose, 6);
-            results = classifier7.pushToList(dPoint, getString(R.string.bodySensor_L));
-            printPrediction(results, devPurpose, 7);
-        }
-        else if(devPurpose.equals(getString(R.string.pillowSensor))) {
-            results = classifier1.pushToList(dPoint);
-            printPrediction(results, devPurpose, 1);
-            results = classifier4.pushToList(dPoint, getString(R.string.pillowSensor));
-            printPrediction(results, devPurpose, 4);
-            results = classifier5.pushToList(dPoint, getString(R.string.pillowSensor));
-            printPrediction(results, devPurpose, 5);
-            results = classifier7.pushToList(dPoint, getString(R.string.pillowSensor));
-            printPrediction(results, devPurpose, 7);
+    //The samples are handed to the inference thread, which writes them once into the shared window
+    //of their device and updates each model using it. This never blocks the service looper.
+    private void sendToClassifier(SampleBatch batch) {
+        if(inferenceExecutor == null) {
+            return;
         }
-        else if(devPurpose.equals(getString(R.string.blanketSensor))) {
-            results = classifier2.pushToList(dPoint);
-            printPrediction(results, devPurpose, 2);
-            results = classifier4.pushToList(dPoint, getString(R.string.blanketSensor));
-            printPrediction(results, devPurpose, 4);
-            results = classifier6.pushToList(dPoint, getString(R.string.blanketSensor));
-            printPrediction(results, devPurpose, 6);
-            results = classifier7.pushToList(dPoint, getString(R.string.blanketSensor));
-            printPrediction(results, devPurpose, 7);
+        String devPurpose = batch.getDevicePurpose();
+        for(int i = 0; i < batch.getCount(); i++) {
+            inferenceExecutor.offer(devPurpose, batch.getTimestamp(i), batch.getX(i), batch.getY(i), batch.getZ(i));
         }
+    }
 
-    }*/
+    private InferenceEngine.OnPredictionListener predictionListener = new InferenceEngine.OnPredictionListener() {
+        @Override
+        public void onPrediction(ModelSpec model, String devPurpose, float[] probabilities) {
+            printPrediction(probabilities, devPurpose, model.getId());
+        }
+    };
 
     private void printPrediction(float[] results, String devPurpose, int classifierNum) {
         if(results[0] == 0.0 && results[1] == 0.0 && results[2] == 0.0) {
@@ -201,14 +178,15 @@ public class BTEntryManager extends Service {
             }
         }
 
-        //Initialize classifier
-        classifier1 = new tfclassifier_1(getApplicationContext());
-        classifier2 = new tfclassifier_1_s(getApplicationContext());
-        classifier3 = new tfclassifier_2_m(getApplicationContext());
-        classifier4 = new tfclassifier_s1s2(getApplicationContext());
-        classifier5 = new tfclassifier_s1m(getApplicationContext());
-        classifier6 = new tfclassifier_s2m(getApplicationContext());
-        classifier7 = new tfclassifier_s1s2m(getApplicationContext());
+        //Initialize classifiers from the model manifest
+        try {
+            inferenceEngine = new InferenceEngine(getApplicationContext());
+            inferenceEngine.setOnPredictionListener(predictionListener);
+            inferenceExecutor = new InferenceExecutor(inferenceEngine);
+            inferenceExecutor.start();
+        } catch (Exception e) {
+            Log.d(TAG, "ERROR! Unable to load models: " + e.getMessage());
+        }
         //beginScan();
 
     }
@@ -265,6 +243,14 @@ public class BTEntryManager extends Service {
         }
 
         stopScan();
+        mDataPackager.close();
+
+        //The executor closes the engine on the inference thread, a run may still be going
+        if(inferenceExecutor != null) {
+            inferenceExecutor.stop();
+        } else if(inferenceEngine != null) {
+            inferenceEngine.close();
+        }
     }
 
     @Nullable
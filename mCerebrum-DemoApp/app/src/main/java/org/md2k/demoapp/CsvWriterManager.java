@@ -0,0 +1,192 @@
+package org.md2k.demoapp;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Keeps one open, buffered writer per export folder for the current day.
+ *
+ * Lines are appended to root/folder/yyyy-MM-dd.csv. A writer is flushed once it holds
+ * flushChars characters or its oldest unflushed line is older than flushIntervalMillis,
+ * and everything is closed when the day rolls over at local midnight and on {@link #close()}.
+ * Writes only check the interval of the streams they touch, call {@link #flushExpired()}
+ * periodically so a stream that went quiet still gets its tail written out.
+ * This replaces opening, appending to and closing the file for every single sample.
+ */
+public class CsvWriterManager {
+
+    public static final int DEFAULT_FLUSH_CHARS = 32 * 1024;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 5000;
+
+    private static class StreamWriter {
+        final BufferedWriter writer;
+        int pendingChars = 0;
+        long firstPendingTime = 0;
+
+        StreamWriter(BufferedWriter writer) {
+            this.writer = writer;
+        }
+    }
+
+    private final File root;
+    private final int flushChars;
+    private final long flushIntervalMillis;
+    private final Map<String, StreamWriter> writers = new HashMap<>();
+    private final SimpleDateFormat dayFormat = new SimpleDateFormat("yyyy-MM-dd");
+
+    private String currentDay = null;
+    private long nextRollover = 0;
+
+    public CsvWriterManager(File root) {
+        this(root, DEFAULT_FLUSH_CHARS, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    public CsvWriterManager(File root, int flushChars, long flushIntervalMillis) {
+        this.root = root;
+        this.flushChars = flushChars;
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    //Appends one line to today's file of the folder
+    public void write(String folderName, String line) throws IOException {
+        write(folderName, line, System.currentTimeMillis());
+    }
+
+    synchronized void write(String folderName, String line, long now) throws IOException {
+        if(now >= nextRollover) {
+            rollOver(now);
+        }
+
+        StreamWriter stream = writers.get(folderName);
+        if(stream == null) {
+            stream = open(folderName);
+            writers.put(folderName, stream);
+        }
+        try {
+            stream.writer.write(line);
+            stream.writer.newLine();
+        } catch (IOException e) {
+            //Drop the broken writer so the next line reopens the file
+            writers.remove(folderName);
+            try {
+                stream.writer.close();
+            } catch (IOException ignored) {
+            }
+            throw e;
+        }
+        if(stream.pendingChars == 0) {
+            stream.firstPendingTime = now;
+        }
+        stream.pendingChars += line.length() + 1;
+
+        if(stream.pendingChars >= flushChars || now - stream.firstPendingTime >= flushIntervalMillis) {
+            flush(stream);
+        }
+    }
+
+    //Flushes every stream whose oldest unflushed line is older than flushIntervalMillis
+    public void flushExpired() throws IOException {
+        flushExpired(System.currentTimeMillis());
+    }
+
+    synchronized void flushExpired(long now) throws IOException {
+        IOException failure = null;
+        for(StreamWriter stream : writers.values()) {
+            if(stream.pendingChars > 0 && now - stream.firstPendingTime >= flushIntervalMillis) {
+                try {
+                    flush(stream);
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+        }
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    public synchronized void flush() throws IOException {
+        IOException failure = null;
+        for(StreamWriter stream : writers.values()) {
+            try {
+                flush(stream);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+    //Flushes and closes all files, the next write reopens them
+    public synchronized void close() throws IOException {
+        IOException failure = null;
+        Iterator<StreamWriter> iterator = writers.values().iterator();
+        while(iterator.hasNext()) {
+            StreamWriter stream = iterator.next();
+            iterator.remove();
+            try {
+                stream.writer.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+    public synchronized String getCurrentDay() {
+        return currentDay;
+    }
+
+    private void flush(StreamWriter stream) throws IOException {
+        if(stream.pendingChars > 0) {
+            stream.writer.flush();
+            stream.pendingChars = 0;
+        }
+    }
+
+    private StreamWriter open(String folderName) throws IOException {
+        File exportDir = new File(root, folderName);
+        if(!exportDir.exists() && !exportDir.mkdirs()) {
+            throw new IOException("Unable to create " + exportDir);
+        }
+        File file = new File(exportDir, currentDay + ".csv");
+        BufferedWriter writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8"), flushChars);
+        return new StreamWriter(writer);
+    }
+
+    private void rollOver(long now) throws IOException {
+        String previousDay = currentDay;
+        currentDay = dayFormat.format(new Date(now));
+
+        Calendar midnight = Calendar.getInstance();
+        midnight.setTimeInMillis(now);
+        midnight.set(Calendar.HOUR_OF_DAY, 0);
+        midnight.set(Calendar.MINUTE, 0);
+        midnight.set(Calendar.SECOND, 0);
+        midnight.set(Calendar.MILLISECOND, 0);
+        midnight.add(Calendar.DAY_OF_MONTH, 1);
+        nextRollover = midnight.getTimeInMillis();
+
+        if(previousDay != null) {
+            close();
+        }
+    }
+}
@@ -3,42 +3,34 @@ package org.md2k.demoapp;
 import android.os.Environment;
 import android.util.Log;
 
+import org.md2k.datakitapi.time.ClockSync;
+
 import java.io.File;
-import java.io.FileWriter;
-import java.io.PrintWriter;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 public class DataPackager {
 
     final String TAG = "DBG-DATAPACKAGER:";
 
-    String mCurrentDateString = "";
-
     String mCurrentGroundTruth = "NULL";
 
     long currentNumberOfValues = 0;
 
-    ntpUpdateThread ntpThread = null;
+    //Keeps the NTP clock offset (NTP - local time, in ms) up to date on its own thread
+    private final ClockSync clockSync;
 
-    private long last_time_updated = 0;
-    private long update_delay_millis = 10000; //Every 10 seconds we update the NTP time
+    //Lazily created once external storage is available
+    private CsvWriterManager writerManager = null;
+    //Writes out the streams that went quiet, runs while writerManager is open
+    private ScheduledExecutorService flushTimer = null;
 
     public DataPackager() {
-        mCurrentDateString = getCurrentDate();
-        Log.d(TAG, "Setting current date: " + mCurrentDateString);
-
-        //Get the ntp update thread so we can add the clock offset to each entry
-        ntpThread = new ntpUpdateThread();
-        last_time_updated = System.currentTimeMillis();
-    }
-
-    private String getCurrentDate() {
-
-        String currentDateString = "";
-        SimpleDateFormat formatter = new SimpleDateFormat("YYYY-MM-dd");
-        currentDateString = formatter.format(new Date(System.currentTimeMillis()));
-        return currentDateString;
+        //Get the clock sync so we can add the clock offset to each entry
+        clockSync = ClockSync.getInstance();
     }
 
     public void setGT(String gt) {
@@ -51,52 +43,99 @@ public class DataPackager {
 
 
     //THIS EXPORTS ONE LINE OF DATA FROM A DATABASE
+    //The line goes into a buffered writer that stays open for the day, see CsvWriterManager
     public boolean exportData(String folderName, String message) {
 
-        if(System.currentTimeMillis() > last_time_updated + update_delay_millis) {
-            last_time_updated = System.currentTimeMillis();
-            ntpThread.getNTPTime();
-        }
-
         currentNumberOfValues += 1;
 
-        String state = Environment.getExternalStorageState();
-        if (!Environment.MEDIA_MOUNTED.equals(state)) {
-            Log.d(TAG, "No SD card, can't export Mood Data");
+        CsvWriterManager writers = getWriterManager();
+        if(writers == null) {
             return false;
-        } else {
-            //We use the Download directory for saving our .csv file.
-            File exportRoot = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOCUMENTS);
-            File exportDir = new File(exportRoot, "MD2KEXTRAS/" + folderName);
-            if (!exportDir.exists()) {
-                exportDir.mkdirs();
-            }
-
-            File file;
-            PrintWriter printWriter = null;
-            try
-            {
-                file = new File(exportDir, mCurrentDateString + ".csv");
-                file.createNewFile();
-                printWriter = new PrintWriter(new FileWriter(file, true));
+        }
+        try {
+            //Take the offset at the time of writing so the drift since the last sync is applied
+            long clockOffset = Math.round(clockSync.getEstimate().getOffsetAt(System.currentTimeMillis()));
+            writers.write(folderName, message + "," + mCurrentGroundTruth + "," + Long.toString(clockOffset)); //write the record to the mood textfile
+        }
+        catch(IOException exc) {
+            //if there are any exceptions, return false
+            Log.d(TAG, exc.getMessage());
+            return false;
+        }
+        return true;
+    }
 
-                printWriter.println(message + "," + mCurrentGroundTruth + "," + Long.toString(ntpThread.getOffset())); //write the record to the mood textfile
-                //Log.d(TAG, "Successfully wrote to " + folderName);
+    private synchronized CsvWriterManager getWriterManager() {
+        if(writerManager == null) {
+            String state = Environment.getExternalStorageState();
+            if (!Environment.MEDIA_MOUNTED.equals(state)) {
+                Log.d(TAG, "No SD card, can't export Mood Data");
+                return null;
             }
+            //We use the Documents directory for saving our .csv files.
+            File exportRoot = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOCUMENTS);
+            writerManager = new CsvWriterManager(new File(exportRoot, "MD2KEXTRAS"));
+            startFlushTimer(writerManager);
+        }
+        return writerManager;
+    }
 
-            catch(Exception exc) {
-                //if there are any exceptions, return false
-                Log.d(TAG, exc.getMessage());
-                return false;
+    private void startFlushTimer(final CsvWriterManager writers) {
+        flushTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "CsvFlush");
+                thread.setDaemon(true);
+                return thread;
             }
-            finally {
-                if(printWriter != null) printWriter.close();
+        });
+        long interval = writers.getFlushIntervalMillis();
+        flushTimer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    writers.flushExpired();
+                } catch (IOException exc) {
+                    Log.d(TAG, exc.getMessage());
+                }
             }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
 
-            return true;
+    //Writes out everything still buffered, call when the data sources stop
+    public void flush() {
+        CsvWriterManager writers;
+        synchronized (this) {
+            writers = writerManager;
+        }
+        if(writers == null) {
+            return;
+        }
+        try {
+            writers.flush();
+        } catch (IOException exc) {
+            Log.d(TAG, exc.getMessage());
         }
     }
 
-
-
+    //Closes the files and stops the flush timer, a later export opens them again
+    public void close() {
+        CsvWriterManager writers;
+        synchronized (this) {
+            writers = writerManager;
+            writerManager = null;
+            if(flushTimer != null) {
+                flushTimer.shutdown();
+                flushTimer = null;
+            }
+        }
+        if(writers == null) {
+            return;
+        }
+        try {
+            writers.close();
+        } catch (IOException exc) {
+            Log.d(TAG, exc.getMessage());
+        }
+    }
 }
@@ -187,6 +187,7 @@ public class MainActivity extends AppCompatActivity {
 
         super.onDestroy();
         stopServices();
+        mDataPackager.close();
 
     }
 
@@ -0,0 +1,39 @@
+package org.md2k.demoapp;
+
+/**
+ * A window of samples the MotionSense app reported missing for one device, sent from the
+ * sensor threads to BTEntryManager in Message.obj.
+ *
+ * Start and end are the sensor times (DateTime.getDateTime()) of the last sample before and
+ * the first sample after the gap, the same time base as the samples in a {@link SampleBatch}.
+ */
+public class MissingWindow {
+
+    private final String devicePurpose;
+    private final long start;
+    private final long end;
+    private final long samples;
+
+    public MissingWindow(String devicePurpose, long start, long end, long samples) {
+        this.devicePurpose = devicePurpose;
+        this.start = start;
+        this.end = end;
+        this.samples = samples;
+    }
+
+    public String getDevicePurpose() {
+        return devicePurpose;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+}
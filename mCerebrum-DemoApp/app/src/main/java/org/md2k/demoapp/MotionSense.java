@@ -24,6 +24,7 @@ import org.md2k.datakitapi.datatype.DataTypeDoubleArray;
 import org.md2k.datakitapi.exception.DataKitException;
 import org.md2k.datakitapi.messagehandler.OnConnectionListener;
 import org.md2k.datakitapi.messagehandler.OnReceiveListener;
+import org.md2k.datakitapi.source.METADATA;
 import org.md2k.datakitapi.source.application.Application;
 import org.md2k.datakitapi.source.application.ApplicationBuilder;
 import org.md2k.datakitapi.source.datasource.DataSourceBuilder;
@@ -71,6 +72,10 @@ public class MotionSense extends Thread {
     private final String UUID_battery_char = "00002a19-0000-1000-8000-00805f9b34fb";
     private final String UUID_led_service = "da395d22-1d81-48e2-9c68-d0ae4bbd351f";
     private final String UUID_led_char = "da39c921-1d81-48e2-9c68-d0ae4bbd351f";
+    //Names the MotionSense app gives the characteristic behind UUID_led_char, the only one inference reads.
+    //It is the accelerometer characteristic on a MotionSense and the LED one on the HRV models.
+    private static final List<String> INFERENCE_CHARACTERISTICS =
+            Arrays.asList("CHARACTERISTIC_ACCELEROMETER", "CHARACTERISTIC_LED");
 
     private BluetoothGattCharacteristic dataC = null;
 
@@ -78,13 +83,14 @@ public class MotionSense extends Thread {
     String dataKitId = "";
     private DataSourceClient regDataSourceClient = null;
     private DataSourceClient subDataSourceClient = null;
+    //DATA_LOSS streams the MotionSense app publishes for this device
+    private ArrayList<DataSourceClient> lossDataSourceClients = new ArrayList<>();
     private ArrayList<DataType> dataTypeQuery = null;
 
     DataPackager mDataPackager;
 
     Handler mMessageHandler = null;
-    String mMessageToSend = "";
-    int messageAdds = 0;
+    SampleBatch mBatchToSend = null;
 
     long totalInserts = 0;
 
@@ -180,6 +186,7 @@ public class MotionSense extends Thread {
                         registerDataSource();
                         //Subscribe to updates made in the database
                         subscribeDataSource();
+                        subscribeMissingWindows();
                     }
                 });
         } catch (DataKitException ignored) {
@@ -190,6 +197,7 @@ public class MotionSense extends Thread {
     public void stopUpdates() {
         endConnection();
 
+        unsubscribeMissingWindows();
         unsubscribeDataSource();
         unregisterDataSource(false);
     }
@@ -292,6 +300,85 @@ public class MotionSense extends Thread {
         }
     };
 
+    /**
+     * Subscribes to the missing windows the MotionSense app reports for this device, one
+     * DATA_LOSS stream per characteristic. Only the stream of the characteristic inference reads
+     * is subscribed, windows of the other characteristics (battery, magnetometer) say nothing about
+     * the samples inference sees. Each window is passed on to the service handler, so inference
+     * learns about lost samples as soon as they are detected instead of waiting for the device
+     * to go silent.
+     */
+    public void subscribeMissingWindows() {
+        try {
+            ArrayList<DataSourceClient> dataSourceClients = datakitapi.find(new DataSourceBuilder().setType(DataSourceType.DATA_LOSS));
+            for(DataSourceClient dataSourceClient : dataSourceClients) {
+                if(!isThisDevice(dataSourceClient) || !feedsInference(dataSourceClient)
+                        || isSubscribed(dataSourceClient.getDs_id())) {
+                    continue;
+                }
+                datakitapi.subscribe(dataSourceClient, missingWindowListener);
+                lossDataSourceClients.add(dataSourceClient);
+            }
+            Log.d(TAG, "Subscribed to " + lossDataSourceClients.size() + " missing window streams");
+        } catch (DataKitException ignored) {
+            Log.d(TAG, ignored.getMessage());
+        }
+    }
+
+    private boolean isSubscribed(int ds_id) {
+        for(DataSourceClient dataSourceClient : lossDataSourceClients) {
+            if(dataSourceClient.getDs_id() == ds_id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isThisDevice(DataSourceClient dataSourceClient) {
+        if(dataSourceClient.getDataSource().getPlatform() == null
+                || dataSourceClient.getDataSource().getPlatform().getMetadata() == null) {
+            return false;
+        }
+        return mDeviceAddr.equalsIgnoreCase(dataSourceClient.getDataSource().getPlatform().getMetadata().get(METADATA.DEVICE_ID));
+    }
+
+    private boolean feedsInference(DataSourceClient dataSourceClient) {
+        if(dataSourceClient.getDataSource().getMetadata() == null) {
+            return false;
+        }
+        return INFERENCE_CHARACTERISTICS.contains(dataSourceClient.getDataSource().getMetadata().get("CHARACTERISTIC_NAME"));
+    }
+
+    /**
+     * <code>OnReceiveListener</code> for the missing windows. A window is stored as the time of the
+     * last sample before it and {end, missing samples, cause}, it is passed on with all of that
+     * so inference can decide whether the gap is worth rebuilding the window for.
+     */
+    public OnReceiveListener missingWindowListener = new OnReceiveListener() {
+        @Override
+        public void onReceived(DataType dataType) {
+            double[] sample = ((DataTypeDoubleArray) dataType).getSample();
+            if(sample == null || sample.length < 2) {
+                return;
+            }
+            MissingWindow window = new MissingWindow(mDevicePurpose, dataType.getDateTime(), (long) sample[0], (long) sample[1]);
+            Log.d(TAG, window.getSamples() + " samples missing from " + mDevicePurpose + " over "
+                    + (window.getEnd() - window.getStart()) + " ms");
+            Message.obtain(mMessageHandler, BTEntryManager.MSG_MISSING_WINDOW, window).sendToTarget();
+        }
+    };
+
+    public void unsubscribeMissingWindows() {
+        for(DataSourceClient dataSourceClient : lossDataSourceClients) {
+            try {
+                datakitapi.unsubscribe(dataSourceClient);
+            } catch (DataKitException ignored) {
+                Log.d(TAG, ignored.getMessage());
+            }
+        }
+        lossDataSourceClients.clear();
+    }
+
     /**
      * Unsubscribing a data source only unregisters the callback interface. Data is still collected
      * and inserted. Nullifying the associated <code>DataSourceClient</code> variable prevents conflicts
@@ -380,6 +467,7 @@ public class MotionSense extends Thread {
         registerDataSource();
         //Subscribe to updates made in the database
         subscribeDataSource();
+        subscribeMissingWindows();
 
         if(mDeviceAddr.isEmpty() || mDeviceName.isEmpty()) {
             Log.d(TAG, "ERROR, device addresses/names are empty!");
@@ -715,18 +803,18 @@ public class MotionSense extends Thread {
         //String dataString = timeString + "," + sample[0] + "," + sample[1] + "," + sample[2];
         //mDataPackager.exportData(mDevicePurpose, dataString);
 
-        /*mMessageToSend += sample[0] + "," + sample[1] + "," + sample[2] + ":";
-        messageAdds++;
+        /*if(mBatchToSend == null) {
+            mBatchToSend = SampleBatch.obtain(mDevicePurpose);
+        }
+        mBatchToSend.add(curTime, (float) sample[0], (float) sample[1], (float) sample[2]);
 
-        if(messageAdds >= 5) {
-            mMessageToSend += "*" + mDevicePurpose;
+        if(mBatchToSend.getCount() >= 5) {
             Message msg = Message.obtain();
-            msg.obj = mMessageToSend; // Put the string into Message, into "obj" field.
+            msg.obj = mBatchToSend; // Put the batch into Message, into "obj" field. The handler recycles it.
             msg.setTarget(mMessageHandler); // Set the Handler
             msg.sendToTarget(); //Send the message
 
-            messageAdds = 0;
-            mMessageToSend = "";
+            mBatchToSend = null;
         }*/
 
         return sample;
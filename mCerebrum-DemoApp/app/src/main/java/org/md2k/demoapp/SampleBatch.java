@@ -0,0 +1,112 @@
+package org.md2k.demoapp;
+
+/**
+ * A batch of x,y,z samples from one device, sent from the sensor threads to BTEntryManager
+ * in Message.obj.
+ *
+ * Replaces the old "x,y,z:x,y,z:...*Purpose" strings: values stay primitive from the
+ * producer to the consumer, so there is no formatting or parsing on either side. Batches are
+ * pooled like android.os.Message, get one with {@link #obtain(String)} and hand it back with
+ * {@link #recycle()} once it has been consumed.
+ */
+public class SampleBatch {
+
+    public static final int CHANNELS = 3;
+    public static final int DEFAULT_CAPACITY = 64;
+    private static final int MAX_POOL_SIZE = 32;
+
+    private static final Object sPoolSync = new Object();
+    private static SampleBatch sPool = null;
+    private static int sPoolSize = 0;
+
+    private String devicePurpose;
+    private long[] timestamps;
+    private float[] values;  //CHANNELS values per sample, sample after sample
+    private int count;
+    private SampleBatch next;  //Pool link
+
+    private SampleBatch(int capacity) {
+        timestamps = new long[capacity];
+        values = new float[capacity * CHANNELS];
+    }
+
+    public static SampleBatch obtain(String devicePurpose) {
+        SampleBatch batch = null;
+        synchronized (sPoolSync) {
+            if(sPool != null) {
+                batch = sPool;
+                sPool = batch.next;
+                batch.next = null;
+                sPoolSize--;
+            }
+        }
+        if(batch == null) {
+            batch = new SampleBatch(DEFAULT_CAPACITY);
+        }
+        batch.devicePurpose = devicePurpose;
+        batch.count = 0;
+        return batch;
+    }
+
+    //The batch must not be used after this
+    public void recycle() {
+        devicePurpose = null;
+        count = 0;
+        synchronized (sPoolSync) {
+            if(sPoolSize < MAX_POOL_SIZE) {
+                next = sPool;
+                sPool = this;
+                sPoolSize++;
+            }
+        }
+    }
+
+    public void add(long timestamp, float x, float y, float z) {
+        if(count == timestamps.length) {
+            grow();
+        }
+        timestamps[count] = timestamp;
+        int base = count * CHANNELS;
+        values[base] = x;
+        values[base + 1] = y;
+        values[base + 2] = z;
+        count++;
+    }
+
+    private void grow() {
+        long[] newTimestamps = new long[timestamps.length * 2];
+        float[] newValues = new float[values.length * 2];
+        System.arraycopy(timestamps, 0, newTimestamps, 0, count);
+        System.arraycopy(values, 0, newValues, 0, count * CHANNELS);
+        timestamps = newTimestamps;
+        values = newValues;
+    }
+
+    public String getDevicePurpose() {
+        return devicePurpose;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    public float getValue(int index, int channel) {
+        return values[index * CHANNELS + channel];
+    }
+
+    public float getX(int index) {
+        return values[index * CHANNELS];
+    }
+
+    public float getY(int index) {
+        return values[index * CHANNELS + 1];
+    }
+
+    public float getZ(int index) {
+        return values[index * CHANNELS + 2];
+    }
+}
@@ -81,8 +81,8 @@ public class SensorTag extends Thread {
     private ArrayList<DataType> dataTypeQuery = null;
 
     Handler mMessageHandler = null;
-    String mMessageToSend = "";
-    int messageAdds = 0;
+    SampleBatch mBatchToSend = null;
+    private static final int SAMPLES_PER_MESSAGE = 5;
 
     DataPackager mDataPackager;
 
@@ -424,18 +424,18 @@ public class SensorTag extends Thread {
         Log.d("SensorTag:", dataString);
         mDataPackager.exportData(mDevicePurpose, dataString);
 
-        mMessageToSend += samples[0] + "," + samples[1] + "," + samples[2] + ":";
-        messageAdds++;
+        if(mBatchToSend == null) {
+            mBatchToSend = SampleBatch.obtain(mDevicePurpose);
+        }
+        mBatchToSend.add(curTime, result_x, result_y, result_z);
 
-        if(messageAdds >= 5) {
-            mMessageToSend += "*" + mDevicePurpose;
+        if(mBatchToSend.getCount() >= SAMPLES_PER_MESSAGE) {
             Message msg = Message.obtain();
-            msg.obj = mMessageToSend; // Put the string into Message, into "obj" field.
+            msg.obj = mBatchToSend; // Put the batch into Message, into "obj" field. The handler recycles it.
             msg.setTarget(mMessageHandler); // Set the Handler
             msg.sendToTarget(); //Send the message
 
-            messageAdds = 0;
-            mMessageToSend = "";
+            mBatchToSend = null;
         }
     }
 
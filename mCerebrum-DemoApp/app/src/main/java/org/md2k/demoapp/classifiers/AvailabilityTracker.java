@@ -0,0 +1,126 @@
+package org.md2k.demoapp.classifiers;
+
+import java.util.Arrays;
+
+/**
+ * Tracks, per device slot of the {@link WindowStore}, when the last sample arrived and
+ * whether the device is still considered available.
+ *
+ * A device is fresh while its last sample is no older than its staleness threshold, or until
+ * the source reports a gap in its samples too long to bridge ({@link #onMissingWindow}).
+ * Short gaps, a dropped packet or two, leave the device fresh and its window intact.
+ * Times are passed in by the caller (elapsedRealtime on the phone) so this stays usable
+ * from plain JVM tests.
+ */
+public class AvailabilityTracker {
+
+    private static final long NEVER = Long.MIN_VALUE;
+    public static final long DEFAULT_MAX_GAP_SAMPLES = 5;
+
+    private final long[] lastSampleTime;
+    private final long[] stalenessMillis;
+    private final long[] segmentStart;  //Sensor time of the first sample after the device was last stale
+    private long maxGapSamples = DEFAULT_MAX_GAP_SAMPLES;
+
+    public AvailabilityTracker(int deviceCount, long defaultStalenessMillis) {
+        lastSampleTime = new long[deviceCount];
+        stalenessMillis = new long[deviceCount];
+        segmentStart = new long[deviceCount];
+        Arrays.fill(lastSampleTime, NEVER);
+        Arrays.fill(stalenessMillis, defaultStalenessMillis);
+    }
+
+    public void setStaleness(int device, long millis) {
+        stalenessMillis[device] = millis;
+    }
+
+    public long getStaleness(int device) {
+        return stalenessMillis[device];
+    }
+
+    //Longest run of missing samples that is bridged rather than rebuilding the window
+    public void setMaxGapSamples(long samples) {
+        maxGapSamples = samples;
+    }
+
+    public long getMaxGapSamples() {
+        return maxGapSamples;
+    }
+
+    /**
+     * Records a sample from the device.
+     *
+     * @return true if the device was stale (or never seen) before this sample, meaning
+     * whatever is left in its window predates the gap and should not be mixed with new data.
+     */
+    public boolean onSample(int device, long nowMillis) {
+        return onSample(device, nowMillis, nowMillis);
+    }
+
+    /**
+     * Records a sample from the device that was taken at the given sensor time.
+     *
+     * @return true if the device was stale before this sample, see {@link #onSample(int, long)}.
+     */
+    public boolean onSample(int device, long nowMillis, long timestampMillis) {
+        boolean wasStale = !isFresh(device, nowMillis);
+        lastSampleTime[device] = nowMillis;
+        if(wasStale) {
+            segmentStart[device] = timestampMillis;
+        }
+        return wasStale;
+    }
+
+    /**
+     * Records that samples of the device were lost, as reported by the sensor app. The device
+     * is stale right away instead of once its silence exceeds the threshold, and its next
+     * sample reports the gap like any other.
+     */
+    public void markLost(int device) {
+        lastSampleTime[device] = NEVER;
+    }
+
+    /**
+     * Records a gap the sensor app reported in the samples of the device, between the sensor
+     * times start and end. A gap with more than the bridged number of missing samples, or longer
+     * than the staleness threshold, marks the device lost. Anything shorter is left to the
+     * window, which just misses those samples. The notice may arrive after the samples that
+     * follow the gap: if the device already started over since then, it is ignored.
+     *
+     * @return true if the device was marked lost.
+     */
+    public boolean onMissingWindow(int device, long start, long end, long samples) {
+        if(lastSampleTime[device] == NEVER || end <= segmentStart[device]) {
+            return false;
+        }
+        if(samples <= maxGapSamples && end - start <= stalenessMillis[device]) {
+            return false;
+        }
+        markLost(device);
+        return true;
+    }
+
+    public boolean isFresh(int device, long nowMillis) {
+        long last = lastSampleTime[device];
+        return last != NEVER && nowMillis - last <= stalenessMillis[device];
+    }
+
+    //Bit i is set when device slot i is fresh
+    public int getFreshMask(long nowMillis) {
+        int mask = 0;
+        for(int device = 0; device < lastSampleTime.length; device++) {
+            if(isFresh(device, nowMillis)) {
+                mask |= 1 << device;
+            }
+        }
+        return mask;
+    }
+
+    public long getLastSampleTime(int device) {
+        return lastSampleTime[device];
+    }
+
+    public int getDeviceCount() {
+        return lastSampleTime.length;
+    }
+}
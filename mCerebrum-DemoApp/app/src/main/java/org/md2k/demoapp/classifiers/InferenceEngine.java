@@ -0,0 +1,382 @@
+package org.md2k.demoapp.classifiers;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.tensorflow.contrib.android.TensorFlowInferenceInterface;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs every model listed in the model manifest over a single shared {@link WindowStore}.
+ *
+ * Replaces the old per-subset tfclassifier_* classes: a sample is written once into the
+ * window of its device, and each model that uses that device copies its input view out
+ * of the store when it is ready to predict. Adding a sensor-subset model is a manifest
+ * entry rather than a new class.
+ *
+ * In robust mode an {@link AvailabilityTracker} follows which devices are still delivering
+ * data and an {@link InferenceRouter} runs only the richest model whose inputs are all
+ * fresh, so losing a sensor falls back to the best remaining subset model right away.
+ *
+ * When a model runs is up to its {@link InferenceScheduler}: windows are taken every hop
+ * rounds, fed several at a time with a batch dimension, and held back by a per-model rate
+ * budget, so CPU use follows the decision rate rather than the sensor rate.
+ *
+ * With a manifest "sample_rate" every device is resampled to that rate on its sensor timestamps
+ * by a {@link WindowResampler} before it reaches its window ("resample_mode" first, linear or
+ * anti_aliased), so a window spans the same time as in training whatever rate the sensor
+ * delivers at. "first" keeps the samples CNN Training/Downsampler.py keeps.
+ *
+ * The engine is not thread safe, push from a single thread ({@link InferenceExecutor}).
+ */
+public class InferenceEngine {
+    static {
+        System.loadLibrary("tensorflow_inference");
+    }
+
+    private final static String TAG = "DBG-InferenceEngine";
+    public static final String DEFAULT_MANIFEST = "models.json";
+    public static final long DEFAULT_STALENESS_MILLIS = 1500;
+
+    public interface OnPredictionListener {
+        //probabilities is reused by the engine, copy it if it has to outlive the callback
+        void onPrediction(ModelSpec model, String devPurpose, float[] probabilities);
+    }
+
+    //A manifest entry together with its loaded graph and reusable buffers
+    private static class LoadedModel {
+        final ModelSpec spec;
+        final TensorFlowInferenceInterface inferenceInterface;
+        final int[] deviceIndices;
+        final int requiredMask;
+        final InferenceScheduler scheduler;
+        final int windowStride;  //Floats per window in the feed buffer
+        final float[] feedBuffer;
+        final String[] slotPurpose;  //Device whose sample completed the window in each batch slot
+        final float[] batchResult;
+        final float[] result;
+        final long[] inputSize;
+        final String[] outputNodes;
+        int freshMask = 0;  //Devices that delivered a sample since the last prediction
+
+        LoadedModel(ModelSpec spec, TensorFlowInferenceInterface inferenceInterface, int[] deviceIndices) {
+            this.spec = spec;
+            this.inferenceInterface = inferenceInterface;
+            this.deviceIndices = deviceIndices;
+            int mask = 0;
+            for(int index : deviceIndices) {
+                mask |= 1 << index;
+            }
+            this.requiredMask = mask;
+            long minInterval = spec.getMaxRunsPerSecond() > 0 ? (long) (1000 / spec.getMaxRunsPerSecond()) : 0;
+            this.scheduler = new InferenceScheduler(spec.getHop(), spec.getBatchSize(), minInterval);
+            this.windowStride = spec.getWindowSize() * spec.getNumChannels();
+            this.feedBuffer = new float[spec.getBatchSize() * windowStride];
+            this.slotPurpose = new String[spec.getBatchSize()];
+            this.batchResult = new float[spec.getBatchSize() * spec.getOutputSize()];
+            this.result = new float[spec.getOutputSize()];
+            this.inputSize = new long[]{spec.getBatchSize(), 1, spec.getWindowSize(), spec.getNumChannels()};
+            this.outputNodes = new String[]{spec.getOutputNode()};
+        }
+    }
+
+    private final WindowStore windowStore;
+    private final List<LoadedModel> models = new ArrayList<>();
+    private int[][] modelsByDevice;  //For each device slot, the models that read it
+    private AvailabilityTracker availability;
+    private InferenceRouter router;
+    private boolean[] modelReady;  //Reused by onSample, whether each model has full windows
+    private boolean robustMode;
+    private OnPredictionListener listener;
+    private WindowResampler resampler;  //Null when the samples are used as they arrive
+
+    public InferenceEngine(Context context) throws IOException, JSONException {
+        this(context, DEFAULT_MANIFEST);
+    }
+
+    public InferenceEngine(Context context, String manifestAsset) throws IOException, JSONException {
+        JSONObject manifest = readManifestJson(context, manifestAsset);
+        List<ModelSpec> specs = parseModels(manifest);
+
+        int windowSize = 0;
+        int channelsPerDevice = 0;
+        for(ModelSpec spec : specs) {
+            windowSize = Math.max(windowSize, spec.getWindowSize());
+            channelsPerDevice = Math.max(channelsPerDevice, spec.getChannelsPerDevice());
+        }
+        windowStore = new WindowStore(windowSize, channelsPerDevice);
+
+        for(ModelSpec spec : specs) {
+            if(spec.getChannelsPerDevice() != channelsPerDevice) {
+                throw new JSONException("Model " + spec.getName() + " uses " + spec.getChannelsPerDevice()
+                        + " channels per device, the store holds " + channelsPerDevice);
+            }
+            int[] deviceIndices = new int[spec.getInputs().length];
+            for(int i = 0; i < deviceIndices.length; i++) {
+                deviceIndices[i] = windowStore.register(spec.getInputs()[i]);
+            }
+            TensorFlowInferenceInterface tf = new TensorFlowInferenceInterface(context.getAssets(), spec.getModelFile());
+            models.add(new LoadedModel(spec, tf, deviceIndices));
+            Log.d(TAG, "Loaded model " + spec.getId() + " (" + spec.getName() + ") from " + spec.getModelFile());
+        }
+        if(windowStore.getDeviceCount() > 31) {
+            throw new JSONException("At most 31 distinct devices are supported");
+        }
+        buildDeviceIndex();
+        buildAvailability(manifest);
+        buildResamplers(manifest);
+    }
+
+    public static List<ModelSpec> readManifest(Context context, String manifestAsset) throws IOException, JSONException {
+        return parseModels(readManifestJson(context, manifestAsset));
+    }
+
+    private static JSONObject readManifestJson(Context context, String manifestAsset) throws IOException, JSONException {
+        InputStream in = context.getAssets().open(manifestAsset);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            byte[] buffer = new byte[4096];
+            int read;
+            while((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+
+        return new JSONObject(out.toString("UTF-8"));
+    }
+
+    private static List<ModelSpec> parseModels(JSONObject manifest) throws JSONException {
+        JSONArray modelArray = manifest.getJSONArray("models");
+        List<ModelSpec> specs = new ArrayList<>();
+        for(int i = 0; i < modelArray.length(); i++) {
+            specs.add(ModelSpec.fromJson(modelArray.getJSONObject(i), manifest));
+        }
+        return specs;
+    }
+
+    private void buildDeviceIndex() {
+        modelsByDevice = new int[windowStore.getDeviceCount()][];
+        for(int device = 0; device < modelsByDevice.length; device++) {
+            List<Integer> users = new ArrayList<>();
+            for(int m = 0; m < models.size(); m++) {
+                if((models.get(m).requiredMask & (1 << device)) != 0) {
+                    users.add(m);
+                }
+            }
+            modelsByDevice[device] = new int[users.size()];
+            for(int i = 0; i < users.size(); i++) {
+                modelsByDevice[device][i] = users.get(i);
+            }
+        }
+    }
+
+    //"staleness_ms" applies to every device, "device_staleness_ms" overrides it per device purpose
+    private void buildAvailability(JSONObject manifest) throws JSONException {
+        availability = new AvailabilityTracker(windowStore.getDeviceCount(),
+                manifest.optLong("staleness_ms", DEFAULT_STALENESS_MILLIS));
+        JSONObject perDevice = manifest.optJSONObject("device_staleness_ms");
+        if(perDevice != null) {
+            for(int device = 0; device < windowStore.getDeviceCount(); device++) {
+                String purpose = windowStore.getPurpose(device);
+                if(perDevice.has(purpose)) {
+                    availability.setStaleness(device, perDevice.getLong(purpose));
+                }
+            }
+        }
+
+        int[] requiredMasks = new int[models.size()];
+        for(int m = 0; m < requiredMasks.length; m++) {
+            requiredMasks[m] = models.get(m).requiredMask;
+        }
+        router = new InferenceRouter(requiredMasks);
+        modelReady = new boolean[models.size()];
+        robustMode = manifest.optBoolean("robust_mode", true);
+        availability.setMaxGapSamples(manifest.optLong("max_gap_samples", AvailabilityTracker.DEFAULT_MAX_GAP_SAMPLES));
+    }
+
+    private void buildResamplers(JSONObject manifest) throws JSONException {
+        double sampleRate = manifest.optDouble("sample_rate", 0);
+        if(sampleRate <= 0) {
+            return;
+        }
+        try {
+            resampler = new WindowResampler(windowStore, sampleRate,
+                    WindowResampler.parseMode(manifest.optString("resample_mode", "first")),
+                    new WindowResampler.OnWindowSampleListener() {
+                        @Override
+                        public void onWindowSample(int device, long arrivalMillis) {
+                            onSample(device, arrivalMillis);
+                        }
+                    });
+        } catch (IllegalArgumentException e) {
+            throw new JSONException(e.getMessage());
+        }
+    }
+
+    public void setRobustMode(boolean robustMode) {
+        this.robustMode = robustMode;
+    }
+
+    public boolean isRobustMode() {
+        return robustMode;
+    }
+
+    public AvailabilityTracker getAvailability() {
+        return availability;
+    }
+
+    public void setOnPredictionListener(OnPredictionListener listener) {
+        this.listener = listener;
+    }
+
+    public WindowStore getWindowStore() {
+        return windowStore;
+    }
+
+    public List<ModelSpec> getModels() {
+        List<ModelSpec> specs = new ArrayList<>();
+        for(LoadedModel model : models) {
+            specs.add(model.spec);
+        }
+        return specs;
+    }
+
+    public void push(String devPurpose, float x, float y, float z) {
+        push(devPurpose, x, y, z, SystemClock.elapsedRealtime());
+    }
+
+    //arrivalMillis is on the SystemClock.elapsedRealtime() time base and also stands in for the sensor time
+    public void push(String devPurpose, float x, float y, float z, long arrivalMillis) {
+        push(devPurpose, arrivalMillis, x, y, z, arrivalMillis);
+    }
+
+    //timestampMillis is the sensor time of the sample, used for resampling and to place reported gaps. arrivalMillis is on
+    //the SystemClock.elapsedRealtime() time base and decides freshness and the rate budget
+    public void push(String devPurpose, long timestampMillis, float x, float y, float z, long arrivalMillis) {
+        int device = windowStore.indexOf(devPurpose);
+        if(device < 0) {
+            return;  //No model uses this device
+        }
+        long now = arrivalMillis;
+        SampleWindow window = windowStore.getWindow(device);
+        if(availability.onSample(device, now, timestampMillis)) {
+            //The device was gone, don't stitch the data from before the gap onto the new samples
+            window.clear();
+            for(int m : modelsByDevice[device]) {
+                models.get(m).scheduler.reset();
+            }
+            if(resampler != null) {
+                resampler.reset(device);
+            }
+        }
+        if(resampler != null) {
+            resampler.push(device, timestampMillis, x, y, z, now);
+            return;
+        }
+        window.push(x, y, z);
+        onSample(device, now);
+    }
+
+    //Samples of the device were lost upstream between the sensor times start and end. Only a gap
+    //too long to bridge stops the device feeding models until its window is rebuilt
+    public void onMissingWindow(String devPurpose, long start, long end, long samples) {
+        int device = windowStore.indexOf(devPurpose);
+        if(device >= 0 && availability.onMissingWindow(device, start, end, samples)) {
+            Log.d(TAG, devPurpose + " lost " + samples + " samples over " + (end - start) + " ms");
+        }
+    }
+
+    //Each device has to contribute a new point before a model that uses it completes a round,
+    //so single-device models see a round on every sample and fused models once all inputs moved on
+    private void onSample(int device, long now) {
+        int selected = -1;
+        if(robustMode) {
+            //A model whose windows are still filling can't run, so it must not hold back a smaller ready one
+            for(int m = 0; m < modelReady.length; m++) {
+                modelReady[m] = isReady(models.get(m));
+            }
+            selected = router.select(availability.getFreshMask(now), modelReady);
+        }
+        int bit = 1 << device;
+        for(int m : modelsByDevice[device]) {
+            LoadedModel model = models.get(m);
+            model.freshMask |= bit;
+            if(robustMode && m != selected) {
+                continue;  //Only the richest model with all inputs available runs
+            }
+            if(model.freshMask == model.requiredMask && isReady(model)) {
+                model.freshMask = 0;
+                if(model.scheduler.onRound()) {
+                    capture(model, windowStore.getPurpose(device));
+                }
+                if(model.scheduler.tryRun(now)) {
+                    runBatch(model);
+                }
+            }
+        }
+    }
+
+    private boolean isReady(LoadedModel model) {
+        for(int index : model.deviceIndices) {
+            if(windowStore.getWindow(index).getCount() < model.spec.getWindowSize()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //Copies the current window of every input into the next batch slot of the feed buffer
+    private void capture(LoadedModel model, String devPurpose) {
+        int slot = model.scheduler.nextSlot();
+        if(slot < 0) {
+            //Batch is full and waiting on the rate budget, drop the oldest window
+            System.arraycopy(model.feedBuffer, model.windowStride, model.feedBuffer, 0,
+                    model.feedBuffer.length - model.windowStride);
+            System.arraycopy(model.slotPurpose, 1, model.slotPurpose, 0, model.slotPurpose.length - 1);
+            slot = model.spec.getBatchSize() - 1;
+        }
+        model.slotPurpose[slot] = devPurpose;
+        int offset = slot * model.windowStride;
+        for(int index : model.deviceIndices) {
+            offset = windowStore.getWindow(index).linearize(model.feedBuffer, offset, model.spec.getWindowSize());
+        }
+    }
+
+    //One session run for the whole batch, then one callback per window, oldest first, each
+    //reported under the device it was captured for
+    private void runBatch(LoadedModel model) {
+        model.inferenceInterface.feed(model.spec.getInputNode(), model.feedBuffer, model.inputSize);
+        model.inferenceInterface.run(model.outputNodes);
+        model.inferenceInterface.fetch(model.spec.getOutputNode(), model.batchResult);
+        if(listener == null) {
+            return;
+        }
+        int outputSize = model.spec.getOutputSize();
+        for(int b = 0; b < model.spec.getBatchSize(); b++) {
+            System.arraycopy(model.batchResult, b * outputSize, model.result, 0, outputSize);
+            listener.onPrediction(model.spec, model.slotPurpose[b], model.result);
+        }
+    }
+
+    public InferenceScheduler getScheduler(int modelIndex) {
+        return models.get(modelIndex).scheduler;
+    }
+
+    public void close() {
+        for(LoadedModel model : models) {
+            model.inferenceInterface.close();
+        }
+        models.clear();
+    }
+}
@@ -0,0 +1,354 @@
+package org.md2k.demoapp.classifiers;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Runs an {@link InferenceEngine} on its own background thread.
+ *
+ * Producers (the service handler and the BLE threads) hand samples over with {@link #offer},
+ * which never blocks: samples go into a bounded ring of primitive slots and, when the
+ * inference thread falls behind, the oldest queued sample is dropped. Missing window notices
+ * are kept, they move up past the dropped sample. The inference thread
+ * drains whatever is queued in one go and pushes it through the engine, so TensorFlow never
+ * runs on the service looper or inside a BLE callback.
+ *
+ * Once started the executor owns the engine: it is closed on the inference thread after its
+ * last run, so {@link #stop} never closes it under a session run that is still going.
+ */
+public class InferenceExecutor {
+
+    private final static String TAG = "DBG-InferenceExec";
+    public static final int DEFAULT_CAPACITY = 512;
+    private static final long STATS_INTERVAL_MILLIS = 10000;
+
+    private final InferenceEngine engine;
+    private final int capacity;
+
+    //Queue slots, guarded by lock
+    private final Object lock = new Object();
+    private final String[] queuePurpose;
+    private final float[] queueX;
+    private final float[] queueY;
+    private final float[] queueZ;
+    private final long[] queueTimestamp;  //Sensor time of the sample in ms
+    private final long[] queueArrival;  //SystemClock.elapsedRealtimeNanos() at offer
+    private final boolean[] queueMissing;  //Slot holds a missing window notice rather than a sample
+    private final long[] queueGapStart;  //Of a notice: sensor time before the gap, queueTimestamp holds its end
+    private final long[] queueGapSamples;  //Of a notice: number of missing samples
+    private int head = 0;
+    private int size = 0;
+    private boolean running = false;
+
+    //Drain buffers, only touched by the inference thread
+    private final String[] drainPurpose;
+    private final float[] drainX;
+    private final float[] drainY;
+    private final float[] drainZ;
+    private final long[] drainTimestamp;
+    private final long[] drainArrival;
+    private final boolean[] drainMissing;
+    private final long[] drainGapStart;
+    private final long[] drainGapSamples;
+
+    //Counters, guarded by lock
+    private long offered = 0;
+    private long dropped = 0;
+    private long processed = 0;
+    private int maxDepth = 0;
+    private long totalWaitNanos = 0;
+    private long maxWaitNanos = 0;
+    private long totalRunNanos = 0;
+    private long maxRunNanos = 0;
+
+    private Thread thread = null;
+
+    public InferenceExecutor(InferenceEngine engine) {
+        this(engine, DEFAULT_CAPACITY);
+    }
+
+    public InferenceExecutor(InferenceEngine engine, int capacity) {
+        this.engine = engine;
+        this.capacity = capacity;
+        queuePurpose = new String[capacity];
+        queueX = new float[capacity];
+        queueY = new float[capacity];
+        queueZ = new float[capacity];
+        queueTimestamp = new long[capacity];
+        queueArrival = new long[capacity];
+        queueMissing = new boolean[capacity];
+        queueGapStart = new long[capacity];
+        queueGapSamples = new long[capacity];
+        drainPurpose = new String[capacity];
+        drainX = new float[capacity];
+        drainY = new float[capacity];
+        drainZ = new float[capacity];
+        drainTimestamp = new long[capacity];
+        drainArrival = new long[capacity];
+        drainMissing = new boolean[capacity];
+        drainGapStart = new long[capacity];
+        drainGapSamples = new long[capacity];
+    }
+
+    public void start() {
+        synchronized (lock) {
+            if(running) {
+                return;
+            }
+            running = true;
+        }
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                try {
+                    loop();
+                } finally {
+                    engine.close();
+                }
+            }
+        }, "InferenceThread");
+        thread.start();
+    }
+
+    //Stops the inference thread, samples still queued are discarded. The engine is closed by the
+    //inference thread once its current run is over, which may be after this returns
+    public void stop() {
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+        if(thread != null) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+        Log.d(TAG, getStats());
+    }
+
+    /**
+     * Queues one sample for inference without blocking.
+     *
+     * @param timestamp Sensor time of the sample in ms, the samples of a batch keep their own
+     *                  times even though they are offered together.
+     * @return false if the queue was full and the oldest sample was dropped to make room.
+     */
+    public boolean offer(String devPurpose, long timestamp, float x, float y, float z) {
+        return enqueue(devPurpose, timestamp, x, y, z, false, 0, 0);
+    }
+
+    /**
+     * Queues a notice that samples of the device went missing, it reaches the engine in order
+     * with the samples.
+     *
+     * @param start Sensor time in ms of the last sample before the gap.
+     * @param end Sensor time in ms of the first sample after the gap.
+     * @param samples Number of missing samples.
+     * @return false if the queue was full and the oldest sample was dropped to make room.
+     */
+    public boolean offerMissingWindow(String devPurpose, long start, long end, long samples) {
+        return enqueue(devPurpose, end, 0, 0, 0, true, start, samples);
+    }
+
+    private boolean enqueue(String devPurpose, long timestamp, float x, float y, float z, boolean missing,
+                            long gapStart, long gapSamples) {
+        long arrival = SystemClock.elapsedRealtimeNanos();
+        boolean keptAll = true;
+        synchronized (lock) {
+            offered++;
+            if(size == capacity) {
+                evictOldestSample();
+                dropped++;
+                keptAll = false;
+            }
+            int tail = (head + size) % capacity;
+            queuePurpose[tail] = devPurpose;
+            queueX[tail] = x;
+            queueY[tail] = y;
+            queueZ[tail] = z;
+            queueTimestamp[tail] = timestamp;
+            queueArrival[tail] = arrival;
+            queueMissing[tail] = missing;
+            queueGapStart[tail] = gapStart;
+            queueGapSamples[tail] = gapSamples;
+            size++;
+            if(size > maxDepth) {
+                maxDepth = size;
+            }
+            if(size == 1) {
+                lock.notify();
+            }
+        }
+        return keptAll;
+    }
+
+    //Frees a slot by dropping the oldest queued sample. Missing window notices are moved up
+    //instead, losing one would let the engine stitch samples across the gap. Holds lock
+    private void evictOldestSample() {
+        int victim = 0;
+        while(victim < size && queueMissing[(head + victim) % capacity]) {
+            victim++;
+        }
+        if(victim == size) {
+            victim = 0;  //Nothing but notices queued, the oldest one goes
+        }
+        for(int i = victim; i > 0; i--) {
+            int to = (head + i) % capacity;
+            int from = (head + i - 1) % capacity;
+            queuePurpose[to] = queuePurpose[from];
+            queueX[to] = queueX[from];
+            queueY[to] = queueY[from];
+            queueZ[to] = queueZ[from];
+            queueTimestamp[to] = queueTimestamp[from];
+            queueArrival[to] = queueArrival[from];
+            queueMissing[to] = queueMissing[from];
+            queueGapStart[to] = queueGapStart[from];
+            queueGapSamples[to] = queueGapSamples[from];
+        }
+        queuePurpose[head] = null;
+        head = (head + 1) % capacity;
+        size--;
+    }
+
+    private void loop() {
+        long lastStats = SystemClock.elapsedRealtime();
+        while(true) {
+            int count;
+            synchronized (lock) {
+                while(size == 0 && running) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        running = false;
+                    }
+                }
+                if(!running) {
+                    return;
+                }
+                count = size;
+                for(int i = 0; i < count; i++) {
+                    int slot = (head + i) % capacity;
+                    drainPurpose[i] = queuePurpose[slot];
+                    drainX[i] = queueX[slot];
+                    drainY[i] = queueY[slot];
+                    drainZ[i] = queueZ[slot];
+                    drainTimestamp[i] = queueTimestamp[slot];
+                    drainArrival[i] = queueArrival[slot];
+                    drainMissing[i] = queueMissing[slot];
+                    drainGapStart[i] = queueGapStart[slot];
+                    drainGapSamples[i] = queueGapSamples[slot];
+                    queuePurpose[slot] = null;
+                }
+                head = (head + count) % capacity;
+                size = 0;
+            }
+
+            long waitNanos = 0;
+            long waitMax = 0;
+            long start = SystemClock.elapsedRealtimeNanos();
+            for(int i = 0; i < count; i++) {
+                long wait = start - drainArrival[i];
+                waitNanos += wait;
+                if(wait > waitMax) {
+                    waitMax = wait;
+                }
+                try {
+                    if(drainMissing[i]) {
+                        engine.onMissingWindow(drainPurpose[i], drainGapStart[i], drainTimestamp[i], drainGapSamples[i]);
+                    } else {
+                        engine.push(drainPurpose[i], drainTimestamp[i], drainX[i], drainY[i], drainZ[i],
+                                drainArrival[i] / 1000000);
+                    }
+                } catch (Exception e) {
+                    Log.d(TAG, "Inference failed: " + e.getMessage());
+                }
+                drainPurpose[i] = null;
+            }
+            long runNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+            synchronized (lock) {
+                processed += count;
+                totalWaitNanos += waitNanos;
+                if(waitMax > maxWaitNanos) {
+                    maxWaitNanos = waitMax;
+                }
+                totalRunNanos += runNanos;
+                if(runNanos > maxRunNanos) {
+                    maxRunNanos = runNanos;
+                }
+            }
+
+            long now = SystemClock.elapsedRealtime();
+            if(now - lastStats > STATS_INTERVAL_MILLIS) {
+                lastStats = now;
+                Log.d(TAG, getStats());
+            }
+        }
+    }
+
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return size;
+        }
+    }
+
+    public int getMaxQueueDepth() {
+        synchronized (lock) {
+            return maxDepth;
+        }
+    }
+
+    public long getDropped() {
+        synchronized (lock) {
+            return dropped;
+        }
+    }
+
+    public long getProcessed() {
+        synchronized (lock) {
+            return processed;
+        }
+    }
+
+    //Average time a sample spent queued before the engine saw it
+    public long getAverageWaitNanos() {
+        synchronized (lock) {
+            return processed == 0 ? 0 : totalWaitNanos / processed;
+        }
+    }
+
+    public long getMaxWaitNanos() {
+        synchronized (lock) {
+            return maxWaitNanos;
+        }
+    }
+
+    //Average engine time per sample, including model runs
+    public long getAverageRunNanos() {
+        synchronized (lock) {
+            return processed == 0 ? 0 : totalRunNanos / processed;
+        }
+    }
+
+    //Longest single drain, which may cover several queued samples
+    public long getMaxRunNanos() {
+        synchronized (lock) {
+            return maxRunNanos;
+        }
+    }
+
+    public String getStats() {
+        synchronized (lock) {
+            return "offered=" + offered + " processed=" + processed + " dropped=" + dropped
+                    + " depth=" + size + "/" + capacity + " maxDepth=" + maxDepth
+                    + " avgWaitUs=" + (processed == 0 ? 0 : totalWaitNanos / processed / 1000)
+                    + " maxWaitUs=" + maxWaitNanos / 1000
+                    + " avgRunUs=" + (processed == 0 ? 0 : totalRunNanos / processed / 1000)
+                    + " maxDrainRunUs=" + maxRunNanos / 1000;
+        }
+    }
+}
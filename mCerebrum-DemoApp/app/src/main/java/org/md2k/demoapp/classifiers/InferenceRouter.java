@@ -0,0 +1,56 @@
+package org.md2k.demoapp.classifiers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Picks the single model to run for the current set of available devices.
+ *
+ * Models are ranked once by how many devices they fuse (ties keep manifest order), and
+ * {@link #select(int)} returns the richest one whose inputs are all fresh. Models that
+ * cannot fire because one of their devices dropped out are never run, and neither are
+ * models whose windows are still filling up after a start or a reconnect, see
+ * {@link #select(int, boolean[])}.
+ */
+public class InferenceRouter {
+
+    private final int[] rankedModels;   //Model indices, richest first
+    private final int[] requiredMasks;  //Indexed by model index
+
+    public InferenceRouter(final int[] requiredMasks) {
+        this.requiredMasks = requiredMasks.clone();
+
+        List<Integer> order = new ArrayList<>();
+        for(int m = 0; m < requiredMasks.length; m++) {
+            order.add(m);
+        }
+        //Collections.sort is stable, so equally rich models keep their manifest order
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Integer.bitCount(requiredMasks[b]) - Integer.bitCount(requiredMasks[a]);
+            }
+        });
+        rankedModels = new int[order.size()];
+        for(int i = 0; i < rankedModels.length; i++) {
+            rankedModels[i] = order.get(i);
+        }
+    }
+
+    //Returns the index of the richest model whose devices are all in freshMask, or -1
+    public int select(int freshMask) {
+        return select(freshMask, null);
+    }
+
+    //Same as select(freshMask), skipping the models whose entry in ready is false
+    public int select(int freshMask, boolean[] ready) {
+        for(int m : rankedModels) {
+            if((requiredMasks[m] & freshMask) == requiredMasks[m] && (ready == null || ready[m])) {
+                return m;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,110 @@
+package org.md2k.demoapp.classifiers;
+
+/**
+ * Decides, for one model, which windows are captured and when the session is run.
+ *
+ * hop: a window is captured every hop rounds (a round is one new sample from every device
+ * the model uses), instead of on every sample.
+ * batchSize: captured windows are collected and fed together, with a batch dimension of
+ * batchSize, in a single run() call.
+ * minIntervalMillis: rate budget, a full batch is not run sooner than this after the
+ * previous run. While the budget holds a run back, newer windows push out the oldest
+ * pending one so the batch stays evenly spaced and current.
+ */
+public class InferenceScheduler {
+
+    private static final long NEVER = Long.MIN_VALUE;
+
+    private final int hop;
+    private final int batchSize;
+    private final long minIntervalMillis;
+
+    private int roundsSinceCapture = 0;
+    private int pending = 0;  //Windows captured into the batch since the last run
+    private long lastRunTime = NEVER;
+
+    private long captured = 0;
+    private long runs = 0;
+    private long droppedByBudget = 0;
+
+    public InferenceScheduler(int hop, int batchSize, long minIntervalMillis) {
+        if(hop <= 0 || batchSize <= 0 || minIntervalMillis < 0) {
+            throw new IllegalArgumentException("hop and batchSize must be positive, minIntervalMillis not negative");
+        }
+        this.hop = hop;
+        this.batchSize = batchSize;
+        this.minIntervalMillis = minIntervalMillis;
+        //Capture the very first complete window
+        this.roundsSinceCapture = hop - 1;
+    }
+
+    //Called once per completed round, returns true if the current window should be captured
+    public boolean onRound() {
+        roundsSinceCapture++;
+        if(roundsSinceCapture < hop) {
+            return false;
+        }
+        roundsSinceCapture = 0;
+        return true;
+    }
+
+    /**
+     * Reserves the batch slot for a captured window.
+     *
+     * @return the slot to write, or -1 if the batch is full and still waiting for its budget.
+     * In that case the caller drops the oldest slot (shifts the batch down by one window) and
+     * writes the new window into the last slot.
+     */
+    public int nextSlot() {
+        captured++;
+        if(pending < batchSize) {
+            return pending++;
+        }
+        droppedByBudget++;
+        return -1;
+    }
+
+    //Returns true, and starts a new batch, if the pending batch is full and the budget allows a run
+    public boolean tryRun(long nowMillis) {
+        if(pending < batchSize) {
+            return false;
+        }
+        if(lastRunTime != NEVER && nowMillis - lastRunTime < minIntervalMillis) {
+            return false;
+        }
+        lastRunTime = nowMillis;
+        pending = 0;
+        runs++;
+        return true;
+    }
+
+    //Forgets a partly filled batch, e.g. after the window it was built from was cleared
+    public void reset() {
+        pending = 0;
+        roundsSinceCapture = hop - 1;
+    }
+
+    public int getHop() {
+        return hop;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getMinIntervalMillis() {
+        return minIntervalMillis;
+    }
+
+    public long getCaptured() {
+        return captured;
+    }
+
+    public long getRuns() {
+        return runs;
+    }
+
+    public long getDroppedByBudget() {
+        return droppedByBudget;
+    }
+}
@@ -0,0 +1,129 @@
+package org.md2k.demoapp.classifiers;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * One entry of the model manifest (assets/models.json).
+ *
+ * The input tensor is laid out as the windows of each device in {@link #getInputs()} order,
+ * each device contributing channelsPerDevice channels of windowSize samples.
+ */
+public class ModelSpec {
+
+    private final int id;
+    private final String name;
+    private final String modelFile;
+    private final String inputNode;
+    private final String outputNode;
+    private final int outputSize;
+    private final String[] inputs;
+    private final int windowSize;
+    private final int channelsPerDevice;
+    private final int hop;
+    private final int batchSize;
+    private final float maxRunsPerSecond;
+
+    public ModelSpec(int id, String name, String modelFile, String inputNode, String outputNode,
+                     int outputSize, String[] inputs, int windowSize, int channelsPerDevice) {
+        this(id, name, modelFile, inputNode, outputNode, outputSize, inputs, windowSize, channelsPerDevice, 1, 1, 0);
+    }
+
+    public ModelSpec(int id, String name, String modelFile, String inputNode, String outputNode,
+                     int outputSize, String[] inputs, int windowSize, int channelsPerDevice,
+                     int hop, int batchSize, float maxRunsPerSecond) {
+        this.id = id;
+        this.name = name;
+        this.modelFile = modelFile;
+        this.inputNode = inputNode;
+        this.outputNode = outputNode;
+        this.outputSize = outputSize;
+        this.inputs = inputs;
+        this.windowSize = windowSize;
+        this.channelsPerDevice = channelsPerDevice;
+        this.hop = hop;
+        this.batchSize = batchSize;
+        this.maxRunsPerSecond = maxRunsPerSecond;
+    }
+
+    //Per-model values override the manifest wide defaults
+    static ModelSpec fromJson(JSONObject json, JSONObject defaults) throws JSONException {
+        JSONArray inputArray = json.getJSONArray("inputs");
+        String[] inputs = new String[inputArray.length()];
+        for(int i = 0; i < inputs.length; i++) {
+            inputs[i] = inputArray.getString(i);
+        }
+        String file = json.getString("file");
+        if(!file.startsWith("file://")) {
+            file = "file:///android_asset/" + file;
+        }
+        return new ModelSpec(json.getInt("id"),
+                json.getString("name"),
+                file,
+                json.optString("input_node", "input"),
+                json.optString("output_node", "y_"),
+                json.optInt("output_size", 3),
+                inputs,
+                json.optInt("window_size", defaults.optInt("window_size", 30)),
+                json.optInt("channels_per_device", defaults.optInt("channels_per_device", 3)),
+                json.optInt("hop", defaults.optInt("hop", 1)),
+                json.optInt("batch", defaults.optInt("batch", 1)),
+                (float) json.optDouble("max_runs_per_second", defaults.optDouble("max_runs_per_second", 0)));
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getModelFile() {
+        return modelFile;
+    }
+
+    public String getInputNode() {
+        return inputNode;
+    }
+
+    public String getOutputNode() {
+        return outputNode;
+    }
+
+    public int getOutputSize() {
+        return outputSize;
+    }
+
+    public String[] getInputs() {
+        return inputs;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public int getChannelsPerDevice() {
+        return channelsPerDevice;
+    }
+
+    //Number of rounds (one new sample from every input) between captured windows
+    public int getHop() {
+        return hop;
+    }
+
+    //Number of windows fed together in one run
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    //0 means no budget
+    public float getMaxRunsPerSecond() {
+        return maxRunsPerSecond;
+    }
+
+    public int getNumChannels() {
+        return inputs.length * channelsPerDevice;
+    }
+}
@@ -0,0 +1,111 @@
+package org.md2k.demoapp.classifiers;
+
+/**
+ * Fixed-size circular window over one or more float channels.
+ *
+ * Samples are kept channel-major in a single float[] so that a full window can be
+ * copied out in the x...,y...,z... layout the models were trained on, without boxing
+ * and without shifting the history on every new sample.
+ */
+public class SampleWindow {
+
+    private final int size;
+    private final int numChannels;
+    private final float[] data;
+
+    private int head = 0;   //Slot the next sample is written to
+    private int count = 0;  //Number of valid samples, saturates at size
+
+    public SampleWindow(int size, int numChannels) {
+        if(size <= 0 || numChannels <= 0) {
+            throw new IllegalArgumentException("size and numChannels must be positive");
+        }
+        this.size = size;
+        this.numChannels = numChannels;
+        this.data = new float[size * numChannels];
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getNumChannels() {
+        return numChannels;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public boolean isFull() {
+        return count == size;
+    }
+
+    public void clear() {
+        head = 0;
+        count = 0;
+    }
+
+    //Convenience for the common x,y,z case
+    public void push(float x, float y, float z) {
+        if(numChannels != 3) {
+            throw new IllegalStateException("Window has " + numChannels + " channels, not 3");
+        }
+        data[head] = x;
+        data[size + head] = y;
+        data[2 * size + head] = z;
+        advance();
+    }
+
+    //Pushes one sample made of numChannels consecutive values starting at offset
+    public void push(float[] sample, int offset) {
+        for(int c = 0; c < numChannels; c++) {
+            data[c * size + head] = sample[offset + c];
+        }
+        advance();
+    }
+
+    private void advance() {
+        head++;
+        if(head == size) {
+            head = 0;
+        }
+        if(count < size) {
+            count++;
+        }
+    }
+
+    /**
+     * Copies the window into dst starting at dstOffset, oldest sample first, one channel
+     * after another. Nothing is allocated, so the same feed buffer can be reused for
+     * every inference.
+     *
+     * @return the offset just past the last value written.
+     */
+    public int linearize(float[] dst, int dstOffset) {
+        return linearize(dst, dstOffset, count);
+    }
+
+    /**
+     * Same as {@link #linearize(float[], int)} but only copies the newest n samples, so models
+     * with a shorter window can read from a longer shared one.
+     */
+    public int linearize(float[] dst, int dstOffset, int n) {
+        if(n > count) {
+            throw new IllegalArgumentException("Window only holds " + count + " samples, " + n + " requested");
+        }
+        int oldest = head - n;
+        if(oldest < 0) {
+            oldest += size;
+        }
+        int firstPart = Math.min(n, size - oldest);
+        int secondPart = n - firstPart;
+        for(int c = 0; c < numChannels; c++) {
+            int base = c * size;
+            System.arraycopy(data, base + oldest, dst, dstOffset, firstPart);
+            System.arraycopy(data, base, dst, dstOffset + firstPart, secondPart);
+            dstOffset += n;
+        }
+        return dstOffset;
+    }
+}
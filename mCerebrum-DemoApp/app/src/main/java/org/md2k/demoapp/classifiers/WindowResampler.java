@@ -0,0 +1,74 @@
+package org.md2k.demoapp.classifiers;
+
+import org.md2k.datakitapi.signal.Resampler;
+
+/**
+ * Resamples every device of a {@link WindowStore} to a fixed rate before its samples are
+ * written into the device window.
+ *
+ * Samples are resampled on their sensor timestamp, so a batch that is handed over at once
+ * still spans the time it was sampled over. The arrival time only travels along to the
+ * listener, which uses it for freshness and scheduling.
+ */
+public class WindowResampler {
+
+    public interface OnWindowSampleListener {
+        //Called after a resampled sample was written into the window of the device
+        void onWindowSample(int device, long arrivalMillis);
+    }
+
+    private final WindowStore windowStore;
+    private final Resampler[] resamplers;
+    private final OnWindowSampleListener listener;
+    private long currentArrival;  //Arrival time of the sample being resampled
+
+    public WindowResampler(WindowStore windowStore, double sampleRate, Resampler.Mode mode,
+                           OnWindowSampleListener listener) {
+        this.windowStore = windowStore;
+        this.listener = listener;
+        resamplers = new Resampler[windowStore.getDeviceCount()];
+        for(int device = 0; device < resamplers.length; device++) {
+            resamplers[device] = new Resampler(3, sampleRate, mode, new DeviceListener(device));
+        }
+    }
+
+    //"first", "linear" or "anti_aliased", as written in the model manifest
+    public static Resampler.Mode parseMode(String name) {
+        if(name.equals("first")) {
+            return Resampler.Mode.FIRST;
+        } else if(name.equals("linear")) {
+            return Resampler.Mode.LINEAR;
+        } else if(name.equals("anti_aliased")) {
+            return Resampler.Mode.ANTI_ALIASED;
+        }
+        throw new IllegalArgumentException("Unknown resample_mode " + name);
+    }
+
+    //timestampMillis is the sensor time of the sample, arrivalMillis when it reached the engine
+    public void push(int device, long timestampMillis, float x, float y, float z, long arrivalMillis) {
+        currentArrival = arrivalMillis;
+        resamplers[device].push(timestampMillis, x, y, z);
+    }
+
+    //Starts the device over, e.g. after its window was cleared
+    public void reset(int device) {
+        resamplers[device].reset();
+    }
+
+    //Moves the resampled samples of one device into its window
+    private class DeviceListener implements Resampler.OnSampleListener {
+        private final int device;
+
+        DeviceListener(int device) {
+            this.device = device;
+        }
+
+        @Override
+        public void onSample(long timestamp, double[] values) {
+            windowStore.getWindow(device).push((float) values[0], (float) values[1], (float) values[2]);
+            if(listener != null) {
+                listener.onWindowSample(device, currentArrival);
+            }
+        }
+    }
+}
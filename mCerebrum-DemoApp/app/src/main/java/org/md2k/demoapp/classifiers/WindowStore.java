@@ -0,0 +1,61 @@
+package org.md2k.demoapp.classifiers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds exactly one {@link SampleWindow} per device purpose.
+ *
+ * Every sample is written once here, and all models that use that device read their
+ * view from the same window instead of keeping their own copy.
+ */
+public class WindowStore {
+
+    private final int windowSize;
+    private final int channelsPerDevice;
+    private final Map<String, Integer> indexByPurpose = new HashMap<>();
+    private final List<String> purposes = new ArrayList<>();
+    private final List<SampleWindow> windows = new ArrayList<>();
+
+    public WindowStore(int windowSize, int channelsPerDevice) {
+        this.windowSize = windowSize;
+        this.channelsPerDevice = channelsPerDevice;
+    }
+
+    //Returns the slot of the device, creating its window the first time it is seen
+    public int register(String devPurpose) {
+        Integer index = indexByPurpose.get(devPurpose);
+        if(index != null) {
+            return index;
+        }
+        index = windows.size();
+        indexByPurpose.put(devPurpose, index);
+        purposes.add(devPurpose);
+        windows.add(new SampleWindow(windowSize, channelsPerDevice));
+        return index;
+    }
+
+    //Returns -1 if no model listens to this device
+    public int indexOf(String devPurpose) {
+        Integer index = indexByPurpose.get(devPurpose);
+        return index == null ? -1 : index;
+    }
+
+    public SampleWindow getWindow(int index) {
+        return windows.get(index);
+    }
+
+    public String getPurpose(int index) {
+        return purposes.get(index);
+    }
+
+    public int getDeviceCount() {
+        return windows.size();
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+}
@@ -0,0 +1,61 @@
+package org.md2k.demoapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link CsvWriterManager}.
+ */
+public class CsvWriterManagerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final long INTERVAL = 5000;
+
+    private File file(CsvWriterManager writers, String stream) {
+        return new File(new File(folder.getRoot(), stream), writers.getCurrentDay() + ".csv");
+    }
+
+    @Test
+    public void quietStream_isFlushedOnceItsIntervalHasPassed() throws IOException {
+        CsvWriterManager writers = new CsvWriterManager(folder.getRoot(), 1024, INTERVAL);
+        long start = System.currentTimeMillis();
+        writers.write("Pillow", "1,2,3", start);
+
+        writers.flushExpired(start + INTERVAL - 1);
+        assertEquals(0, file(writers, "Pillow").length());
+
+        writers.flushExpired(start + INTERVAL);
+        assertEquals("1,2,3".length() + System.lineSeparator().length(), file(writers, "Pillow").length());
+        writers.close();
+    }
+
+    @Test
+    public void flushExpired_leavesFreshStreamsBuffered() throws IOException {
+        CsvWriterManager writers = new CsvWriterManager(folder.getRoot(), 1024, INTERVAL);
+        long start = System.currentTimeMillis();
+        writers.write("Pillow", "old", start);
+        writers.write("Blanket", "new", start + INTERVAL - 100);
+
+        writers.flushExpired(start + INTERVAL);
+        assertTrue(file(writers, "Pillow").length() > 0);
+        assertEquals(0, file(writers, "Blanket").length());
+        writers.close();
+    }
+
+    @Test
+    public void fullBuffer_isFlushedRightAway() throws IOException {
+        CsvWriterManager writers = new CsvWriterManager(folder.getRoot(), 16, INTERVAL);
+        long start = System.currentTimeMillis();
+        writers.write("Pillow", "0123456789abcdef", start);
+        assertTrue(file(writers, "Pillow").length() > 0);
+        writers.close();
+    }
+}
@@ -0,0 +1,127 @@
+package org.md2k.demoapp;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the old "x,y,z:...*Purpose" string messages with pooled {@link SampleBatch}es,
+ * producing and consuming batches of 5 and 50 samples on the local JVM.
+ */
+public class SampleBatchBenchmarkTest {
+
+    private static final String PURPOSE = "PillowSensor";
+    private static final int ROUNDS = 20000;
+
+    private float sink;  //Keeps the JIT from dropping the consumer side
+
+    @Test
+    public void roundTrip_preservesValues() {
+        SampleBatch batch = SampleBatch.obtain(PURPOSE);
+        for(int i = 0; i < 100; i++) {
+            batch.add(1000 + i, i, -i, i * 0.5f);
+        }
+        assertEquals(PURPOSE, batch.getDevicePurpose());
+        assertEquals(100, batch.getCount());
+        assertEquals(1099, batch.getTimestamp(99));
+        assertEquals(-42f, batch.getY(42), 0f);
+        assertEquals(21f, batch.getValue(42, 2), 0f);
+        batch.recycle();
+
+        SampleBatch reused = SampleBatch.obtain("BodySensor");
+        assertEquals(0, reused.getCount());
+        assertEquals("BodySensor", reused.getDevicePurpose());
+        reused.recycle();
+    }
+
+    @Test
+    public void benchmark_5SampleBatches() {
+        compare(5);
+    }
+
+    @Test
+    public void benchmark_50SampleBatches() {
+        compare(50);
+    }
+
+    private void compare(int samplesPerBatch) {
+        //Warm up both paths
+        for(int i = 0; i < ROUNDS; i++) {
+            stringRound(samplesPerBatch, i);
+            batchRound(samplesPerBatch, i);
+        }
+
+        long[] stringCost = measure(samplesPerBatch, false);
+        long[] batchCost = measure(samplesPerBatch, true);
+        long samples = (long) ROUNDS * samplesPerBatch;
+        System.out.println(samplesPerBatch + "-sample batches: string protocol "
+                + stringCost[0] / samples + " ns/sample, " + bytesPerSample(stringCost[1], samples) + " B/sample; "
+                + "SampleBatch " + batchCost[0] / samples + " ns/sample, " + bytesPerSample(batchCost[1], samples) + " B/sample");
+
+        if(batchCost[1] >= 0) {
+            assertTrue("SampleBatch allocated " + batchCost[1] + " bytes", batchCost[1] < 1024);
+        }
+    }
+
+    private static String bytesPerSample(long bytes, long samples) {
+        return bytes < 0 ? "n/a" : Long.toString(bytes / samples);
+    }
+
+    //Returns {elapsed nanos, allocated bytes or -1 if the JVM can't tell}
+    private long[] measure(int samplesPerBatch, boolean useBatch) {
+        long before = allocatedBytes();
+        long start = System.nanoTime();
+        for(int i = 0; i < ROUNDS; i++) {
+            if(useBatch) {
+                batchRound(samplesPerBatch, i);
+            } else {
+                stringRound(samplesPerBatch, i);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long after = allocatedBytes();
+        return new long[]{elapsed, before < 0 ? -1 : after - before};
+    }
+
+    //What SensorTag.convertAcc and BTEntryManager._handler used to do
+    private void stringRound(int samplesPerBatch, int seed) {
+        String message = "";
+        for(int s = 0; s < samplesPerBatch; s++) {
+            double x = (seed + s) / 4096.0, y = -x, z = x * 0.5;
+            message += x + "," + y + "," + z + ":";
+        }
+        message += "*" + PURPOSE;
+
+        String[] splitData1 = message.split("\\*");
+        String devPurpose = splitData1[1];
+        for(String dataPoint : splitData1[0].split(":")) {
+            String[] dataSplit = dataPoint.split(",");
+            sink += Float.valueOf(dataSplit[0]) + Float.valueOf(dataSplit[1]) + Float.valueOf(dataSplit[2]);
+        }
+        sink += devPurpose.length();
+    }
+
+    private void batchRound(int samplesPerBatch, int seed) {
+        SampleBatch batch = SampleBatch.obtain(PURPOSE);
+        for(int s = 0; s < samplesPerBatch; s++) {
+            float x = (seed + s) / 4096f;
+            batch.add(seed + s, x, -x, x * 0.5f);
+        }
+
+        for(int s = 0; s < batch.getCount(); s++) {
+            sink += batch.getX(s) + batch.getY(s) + batch.getZ(s);
+        }
+        sink += batch.getDevicePurpose().length();
+        batch.recycle();
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,220 @@
+package org.md2k.demoapp.classifiers;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link AvailabilityTracker} and {@link InferenceRouter}.
+ */
+public class InferenceRouterTest {
+
+    private static final int PILLOW = 1;
+    private static final int BLANKET = 1 << 1;
+    private static final int BODY = 1 << 2;
+
+    //Same model set as assets/models.json
+    private static final int[] MODELS = {
+            PILLOW, BLANKET, BODY,
+            PILLOW | BLANKET, PILLOW | BODY, BLANKET | BODY,
+            PILLOW | BLANKET | BODY};
+
+    @Test
+    public void select_allFresh_picksFusedModel() {
+        InferenceRouter router = new InferenceRouter(MODELS);
+        assertEquals(6, router.select(PILLOW | BLANKET | BODY));
+    }
+
+    @Test
+    public void select_deviceDropped_picksRichestRemainingSubset() {
+        InferenceRouter router = new InferenceRouter(MODELS);
+        assertEquals(3, router.select(PILLOW | BLANKET));
+        assertEquals(5, router.select(BLANKET | BODY));
+        assertEquals(2, router.select(BODY));
+        assertEquals(-1, router.select(0));
+    }
+
+    @Test
+    public void select_equallyRich_keepsManifestOrder() {
+        InferenceRouter router = new InferenceRouter(new int[]{PILLOW, BLANKET | BODY, PILLOW | BODY});
+        assertEquals(1, router.select(PILLOW | BLANKET | BODY));
+    }
+
+    @Test
+    public void tracker_marksDeviceStaleAfterThreshold() {
+        AvailabilityTracker tracker = new AvailabilityTracker(3, 1000);
+        tracker.setStaleness(2, 200);
+
+        assertTrue(tracker.onSample(0, 0));  //Never seen before counts as stale
+        assertTrue(tracker.onSample(2, 0));
+        assertEquals(PILLOW | BODY, tracker.getFreshMask(100));
+        assertEquals(PILLOW, tracker.getFreshMask(500));
+        assertEquals(0, tracker.getFreshMask(1001));
+
+        assertFalse(tracker.onSample(0, 900));
+        assertTrue(tracker.onSample(2, 900));
+    }
+
+    @Test
+    public void tracker_markLost_isStaleUntilTheNextSample() {
+        AvailabilityTracker tracker = new AvailabilityTracker(3, 1000);
+        for(int device = 0; device < 3; device++) {
+            tracker.onSample(device, 0);
+        }
+        //The sensor app reports lost body samples long before the body feed would go stale
+        tracker.markLost(2);
+        assertEquals(PILLOW | BLANKET, tracker.getFreshMask(10));
+
+        //The next sample after the loss reports the gap, so the engine clears the window
+        assertTrue(tracker.onSample(2, 20));
+        assertEquals(PILLOW | BLANKET | BODY, tracker.getFreshMask(20));
+    }
+
+    //Same reset as InferenceEngine.push: a stale device starts its window and batch over
+    private static void push(AvailabilityTracker tracker, SampleWindow window, InferenceScheduler scheduler,
+                             long now, long timestamp) {
+        if(tracker.onSample(0, now, timestamp)) {
+            window.clear();
+            scheduler.reset();
+        }
+        window.push(1, 1, 1);
+    }
+
+    @Test
+    public void missingWindow_oneSampleGap_keepsTheWindowAndScheduler() {
+        AvailabilityTracker tracker = new AvailabilityTracker(1, 1000);
+        SampleWindow window = new SampleWindow(4, 3);
+        InferenceScheduler scheduler = new InferenceScheduler(1, 2, 0);
+        long sensorStart = 1500000000000L;
+        for(int i = 0; i < 4; i++) {
+            push(tracker, window, scheduler, 40 * i, sensorStart + 40 * i);
+        }
+        assertEquals(0, scheduler.nextSlot());
+
+        //One packet dropped between the 4th and 5th sample
+        assertFalse(tracker.onMissingWindow(0, sensorStart + 120, sensorStart + 200, 1));
+        push(tracker, window, scheduler, 200, sensorStart + 200);
+
+        assertEquals(4, window.getCount());
+        assertEquals(1, scheduler.nextSlot());  //The batch was not started over
+    }
+
+    @Test
+    public void missingWindow_longGap_resetsOnTheNextSample() {
+        AvailabilityTracker tracker = new AvailabilityTracker(1, 1000);
+        SampleWindow window = new SampleWindow(4, 3);
+        InferenceScheduler scheduler = new InferenceScheduler(1, 2, 0);
+        long sensorStart = 1500000000000L;
+        for(int i = 0; i < 4; i++) {
+            push(tracker, window, scheduler, 40 * i, sensorStart + 40 * i);
+        }
+        assertEquals(0, scheduler.nextSlot());
+
+        //The buffered samples after a 60 sample gap arrive right behind the notice
+        assertTrue(tracker.onMissingWindow(0, sensorStart + 120, sensorStart + 2560, 60));
+        push(tracker, window, scheduler, 200, sensorStart + 2560);
+
+        assertEquals(1, window.getCount());
+        assertEquals(0, scheduler.nextSlot());
+    }
+
+    @Test
+    public void missingWindow_lateNotice_keepsTheSamplesAfterTheGap() {
+        AvailabilityTracker tracker = new AvailabilityTracker(1, 1000);
+        SampleWindow window = new SampleWindow(4, 3);
+        InferenceScheduler scheduler = new InferenceScheduler(1, 2, 0);
+        long sensorStart = 1500000000000L;
+        push(tracker, window, scheduler, 0, sensorStart);
+
+        //The device went silent long enough to go stale, its window starts over on the next sample
+        push(tracker, window, scheduler, 3000, sensorStart + 3000);
+        push(tracker, window, scheduler, 3040, sensorStart + 3040);
+        //The notice for that gap only arrives now
+        assertFalse(tracker.onMissingWindow(0, sensorStart, sensorStart + 3000, 74));
+        push(tracker, window, scheduler, 3080, sensorStart + 3080);
+
+        assertEquals(3, window.getCount());
+    }
+
+    @Test
+    public void trackerAndRouter_fallBackWithinOneTick() {
+        AvailabilityTracker tracker = new AvailabilityTracker(3, 1000);
+        InferenceRouter router = new InferenceRouter(MODELS);
+        for(int device = 0; device < 3; device++) {
+            tracker.onSample(device, 0);
+        }
+        assertEquals(6, router.select(tracker.getFreshMask(500)));
+
+        //Body sensor stops, pillow and blanket keep going
+        tracker.onSample(0, 1200);
+        tracker.onSample(1, 1200);
+        assertEquals(3, router.select(tracker.getFreshMask(1200)));
+    }
+
+    @Test
+    public void select_fusedModelNotReady_picksReadySubset() {
+        InferenceRouter router = new InferenceRouter(MODELS);
+        boolean[] ready = new boolean[MODELS.length];
+        for(int m = 0; m < ready.length; m++) {
+            ready[m] = (MODELS[m] & BODY) == 0;  //Body window still filling
+        }
+        assertEquals(3, router.select(PILLOW | BLANKET | BODY, ready));
+        assertEquals(0, router.select(PILLOW | BODY, ready));
+    }
+
+    @Test
+    public void reconnect_clearedWindowFallsBackUntilItRefills() {
+        int windowSize = 4;
+        WindowStore store = new WindowStore(windowSize, 3);
+        AvailabilityTracker tracker = new AvailabilityTracker(3, 1000);
+        InferenceRouter router = new InferenceRouter(MODELS);
+        boolean[] ready = new boolean[MODELS.length];
+        for(String purpose : new String[]{"PillowSensor", "BlanketSensor", "BodySensor"}) {
+            store.register(purpose);
+        }
+
+        long now = 0;
+        for(int i = 0; i < windowSize; i++, now += 100) {
+            for(int device = 0; device < 3; device++) {
+                tracker.onSample(device, now);
+                store.getWindow(device).push(i, i, i);
+            }
+        }
+        assertEquals(6, router.select(tracker.getFreshMask(now), readiness(store, ready)));
+
+        //Body sensor drops out for two seconds while pillow and blanket keep going
+        for(int i = 0; i < 20; i++, now += 100) {
+            for(int device = 0; device < 2; device++) {
+                tracker.onSample(device, now);
+                store.getWindow(device).push(i, i, i);
+            }
+        }
+        //Body reconnects, the engine clears its window
+        assertTrue(tracker.onSample(2, now));
+        store.getWindow(2).clear();
+        store.getWindow(2).push(0, 0, 0);
+
+        //All three are fresh, but until the body window refills the fused model can't run
+        assertEquals(PILLOW | BLANKET | BODY, tracker.getFreshMask(now));
+        assertEquals(6, router.select(tracker.getFreshMask(now)));
+        assertEquals(3, router.select(tracker.getFreshMask(now), readiness(store, ready)));
+
+        for(int i = 1; i < windowSize; i++) {
+            store.getWindow(2).push(i, i, i);
+        }
+        assertEquals(6, router.select(tracker.getFreshMask(now), readiness(store, ready)));
+    }
+
+    //Same readiness rule as InferenceEngine: every input window holds a full window
+    private static boolean[] readiness(WindowStore store, boolean[] ready) {
+        for(int m = 0; m < MODELS.length; m++) {
+            ready[m] = true;
+            for(int device = 0; device < store.getDeviceCount(); device++) {
+                if((MODELS[m] & (1 << device)) != 0 && !store.getWindow(device).isFull()) {
+                    ready[m] = false;
+                }
+            }
+        }
+        return ready;
+    }
+}
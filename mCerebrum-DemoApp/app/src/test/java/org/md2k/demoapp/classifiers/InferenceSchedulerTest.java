@@ -0,0 +1,62 @@
+package org.md2k.demoapp.classifiers;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link InferenceScheduler}.
+ */
+public class InferenceSchedulerTest {
+
+    @Test
+    public void hop_capturesFirstWindowThenEveryHopRounds() {
+        InferenceScheduler scheduler = new InferenceScheduler(5, 1, 0);
+        int captured = 0;
+        for(int round = 0; round < 21; round++) {
+            if(scheduler.onRound()) {
+                assertEquals(0, round % 5);
+                captured++;
+            }
+        }
+        assertEquals(5, captured);
+    }
+
+    @Test
+    public void batch_runsOnceAllSlotsAreFilled() {
+        InferenceScheduler scheduler = new InferenceScheduler(1, 3, 0);
+        assertEquals(0, scheduler.nextSlot());
+        assertFalse(scheduler.tryRun(0));
+        assertEquals(1, scheduler.nextSlot());
+        assertEquals(2, scheduler.nextSlot());
+        assertTrue(scheduler.tryRun(0));
+        assertEquals(0, scheduler.nextSlot());
+        assertEquals(1, scheduler.getRuns());
+    }
+
+    @Test
+    public void budget_holdsRunsBackAndDropsOldestWindow() {
+        InferenceScheduler scheduler = new InferenceScheduler(1, 1, 250);
+        assertEquals(0, scheduler.nextSlot());
+        assertTrue(scheduler.tryRun(1000));
+
+        assertEquals(0, scheduler.nextSlot());
+        assertFalse(scheduler.tryRun(1100));
+        assertEquals(-1, scheduler.nextSlot());
+        assertFalse(scheduler.tryRun(1200));
+        assertTrue(scheduler.tryRun(1250));
+
+        assertEquals(2, scheduler.getRuns());
+        assertEquals(1, scheduler.getDroppedByBudget());
+    }
+
+    @Test
+    public void reset_discardsPartialBatch() {
+        InferenceScheduler scheduler = new InferenceScheduler(4, 2, 0);
+        assertTrue(scheduler.onRound());
+        assertEquals(0, scheduler.nextSlot());
+        scheduler.reset();
+        assertTrue(scheduler.onRound());
+        assertEquals(0, scheduler.nextSlot());
+    }
+}
@@ -0,0 +1,118 @@
+package org.md2k.demoapp.classifiers;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link SampleWindow}, including a steady-state allocation check.
+ */
+public class SampleWindowTest {
+
+    @Test
+    public void linearize_beforeWrap_keepsInsertionOrder() {
+        SampleWindow window = new SampleWindow(4, 3);
+        window.push(1, 10, 100);
+        window.push(2, 20, 200);
+
+        float[] out = new float[6];
+        assertEquals(6, window.linearize(out, 0));
+        assertArrayEquals(new float[]{1, 2, 10, 20, 100, 200}, out, 0f);
+        assertFalse(window.isFull());
+    }
+
+    @Test
+    public void linearize_afterWrap_isOldestFirstPerChannel() {
+        SampleWindow window = new SampleWindow(3, 3);
+        for(int i = 1; i <= 5; i++) {
+            window.push(i, 10 * i, 100 * i);
+        }
+
+        float[] out = new float[1 + 9];
+        assertEquals(10, window.linearize(out, 1));
+        assertArrayEquals(new float[]{0, 3, 4, 5, 30, 40, 50, 300, 400, 500}, out, 0f);
+        assertTrue(window.isFull());
+    }
+
+    @Test
+    public void linearize_newestN_readsTailOfLongerWindow() {
+        SampleWindow window = new SampleWindow(5, 1);
+        float[] sample = new float[1];
+        for(int i = 1; i <= 7; i++) {
+            sample[0] = i;
+            window.push(sample, 0);
+        }
+
+        float[] out = new float[3];
+        assertEquals(3, window.linearize(out, 0, 3));
+        assertArrayEquals(new float[]{5, 6, 7}, out, 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void linearize_moreThanHeld_throws() {
+        SampleWindow window = new SampleWindow(5, 3);
+        window.push(1, 2, 3);
+        window.linearize(new float[15], 0, 2);
+    }
+
+    @Test
+    public void linearize_matchesOldListLayout() {
+        //The classifiers used to append x, then y, then z lists into one feed array
+        SampleWindow window = new SampleWindow(30, 3);
+        List<Float> x = new ArrayList<>();
+        List<Float> y = new ArrayList<>();
+        List<Float> z = new ArrayList<>();
+        for(int i = 0; i < 77; i++) {
+            float fx = i * 0.5f, fy = -i, fz = i * i;
+            window.push(fx, fy, fz);
+            x.add(fx); y.add(fy); z.add(fz);
+            if(x.size() > 30) { x.remove(0); y.remove(0); z.remove(0); }
+        }
+        float[] out = new float[90];
+        window.linearize(out, 0);
+        for(int i = 0; i < 30; i++) {
+            assertEquals(x.get(i), out[i], 0f);
+            assertEquals(y.get(i), out[30 + i], 0f);
+            assertEquals(z.get(i), out[60 + i], 0f);
+        }
+    }
+
+    @Test
+    public void pushAndLinearize_steadyState_allocatesNothing() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return;  //Allocation counters are not available on this JVM
+        }
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        long threadId = Thread.currentThread().getId();
+
+        SampleWindow window = new SampleWindow(30, 3);
+        float[] feed = new float[90];
+        float[] sample = new float[3];
+        //Warm up so the JIT has compiled the hot path before we measure
+        for(int i = 0; i < 200000; i++) {
+            window.push(i, i, i);
+            window.linearize(feed, 0);
+        }
+
+        long iterations = 1000000;
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for(int i = 0; i < iterations; i++) {
+            sample[0] = i;
+            window.push(sample, 0);
+            window.linearize(feed, 0);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        System.out.println("SampleWindow push+linearize: " + (elapsed / iterations) + " ns/op, "
+                + allocated + " bytes allocated over " + iterations + " ops");
+        //Allow for a little noise from the measurement itself, far below one float[] per op
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+}
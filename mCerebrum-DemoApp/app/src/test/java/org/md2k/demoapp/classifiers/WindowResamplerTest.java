@@ -0,0 +1,75 @@
+package org.md2k.demoapp.classifiers;
+
+import org.junit.Test;
+import org.md2k.datakitapi.signal.Resampler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link WindowResampler}.
+ */
+public class WindowResamplerTest {
+
+    @Test
+    public void burstWithOneArrivalTime_isResampledOnSensorTime() {
+        WindowStore store = new WindowStore(16, 3);
+        final int device = store.register("BodySensor");
+        final List<Long> arrivals = new ArrayList<>();
+        WindowResampler resampler = new WindowResampler(store, 50, Resampler.Mode.LINEAR,
+                new WindowResampler.OnWindowSampleListener() {
+                    @Override
+                    public void onWindowSample(int d, long arrivalMillis) {
+                        assertEquals(device, d);
+                        arrivals.add(arrivalMillis);
+                    }
+                });
+
+        //25 samples at 100 Hz handed over in one go, x is a ramp of the sensor time
+        for(int i = 0; i < 25; i++) {
+            long timestamp = 1000 + 10 * i;
+            resampler.push(device, timestamp, timestamp, -timestamp, 1, 5000);
+        }
+
+        //1000..1240 ms at 50 Hz is 13 grid points
+        SampleWindow window = store.getWindow(device);
+        assertEquals(13, window.getCount());
+        assertEquals(13, arrivals.size());
+        for(long arrival : arrivals) {
+            assertEquals(5000, arrival);
+        }
+        float[] out = new float[13 * 3];
+        window.linearize(out, 0, 13);
+        for(int i = 0; i < 13; i++) {
+            assertEquals(1000 + 20 * i, out[i], 1e-3);
+            assertEquals(-(1000 + 20 * i), out[13 + i], 1e-3);
+            assertEquals(1, out[26 + i], 1e-6);
+        }
+    }
+
+    @Test
+    public void reset_startsTheDeviceOver() {
+        WindowStore store = new WindowStore(16, 3);
+        int device = store.register("PillowSensor");
+        WindowResampler resampler = new WindowResampler(store, 50, Resampler.Mode.FIRST, null);
+
+        resampler.push(device, 1000, 1, 1, 1, 0);
+        resampler.push(device, 1010, 2, 2, 2, 0);
+        //Without the reset an older timestamp would be dropped
+        resampler.reset(device);
+        resampler.push(device, 500, 3, 3, 3, 0);
+
+        float[] out = new float[2 * 3];
+        store.getWindow(device).linearize(out, 0, 2);
+        assertEquals(2, store.getWindow(device).getCount());
+        assertEquals(1, out[0], 0f);
+        assertEquals(3, out[1], 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseMode_unknownName_throws() {
+        WindowResampler.parseMode("cubic");
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.mcerebrum.commons.plot;
+
+/**
+ * Fixed-capacity ring of multi-channel samples for a realtime plot.
+ *
+ * Only the newest capacity samples are kept, so memory and the cost of drawing stay the same
+ * however long the plot runs. Every sample gets an increasing index that is used as its x
+ * value. {@link #decimate(int, int, float[], float[])} reduces the buffer to at most a given
+ * number of points, about one per pixel, by keeping the minimum and the maximum of every bucket,
+ * so peaks are still drawn when there are far more samples than pixels.
+ */
+public class PlotRingBuffer {
+    private final int channels;
+    private float[][] values;
+    private int capacity;
+    private int head;
+    private int size;
+    private long total;
+
+    /**
+     * Constructor
+     * @param channels Number of values per sample.
+     * @param capacity Number of samples kept.
+     */
+    public PlotRingBuffer(int channels, int capacity) {
+        if (channels <= 0 || capacity <= 0)
+            throw new IllegalArgumentException("channels and capacity must be positive");
+        this.channels = channels;
+        this.capacity = capacity;
+        values = new float[channels][capacity];
+    }
+
+    /**
+     * Appends a sample, dropping the oldest one if the buffer is full.
+     * @param sample One value per channel, extra values are ignored.
+     */
+    public void add(float[] sample) {
+        int slot = (head + size) % capacity;
+        for (int c = 0; c < channels; c++)
+            values[c][slot] = sample[c];
+        if (size < capacity)
+            size++;
+        else
+            head = (head + 1) % capacity;
+        total++;
+    }
+
+    /**
+     * Changes the number of samples kept, the newest samples are preserved.
+     * @param newCapacity Number of samples to keep.
+     */
+    public void setCapacity(int newCapacity) {
+        if (newCapacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive");
+        if (newCapacity == capacity)
+            return;
+        int keep = Math.min(size, newCapacity);
+        float[][] newValues = new float[channels][newCapacity];
+        for (int c = 0; c < channels; c++) {
+            for (int i = 0; i < keep; i++)
+                newValues[c][i] = values[c][(head + size - keep + i) % capacity];
+        }
+        values = newValues;
+        capacity = newCapacity;
+        head = 0;
+        size = keep;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of samples in the buffer.
+     * @return The number of samples in the buffer.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of samples added since the buffer was created.
+     * @return The number of samples added since the buffer was created.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the x value of a buffered sample.
+     * @param i Position in the buffer, 0 is the oldest sample.
+     * @return The index of the sample since the buffer was created.
+     */
+    public long getIndex(int i) {
+        return total - size + i;
+    }
+
+    /**
+     * Returns a buffered value.
+     * @param channel Channel of the value.
+     * @param i Position in the buffer, 0 is the oldest sample.
+     * @return The value.
+     */
+    public float get(int channel, int i) {
+        return values[channel][(head + i) % capacity];
+    }
+
+    /**
+     * Reduces one channel to at most maxPoints points. If the buffer holds more samples, it is
+     * split into maxPoints / 2 buckets and the minimum and maximum of each bucket are kept in
+     * time order.
+     * @param channel Channel to reduce.
+     * @param maxPoints Maximum number of points, at least 2.
+     * @param xs Receives the x values, at least maxPoints long.
+     * @param ys Receives the y values, at least maxPoints long.
+     * @return The number of points written.
+     */
+    public int decimate(int channel, int maxPoints, float[] xs, float[] ys) {
+        float[] column = values[channel];
+        long first = total - size;
+        if (size <= maxPoints) {
+            for (int i = 0; i < size; i++) {
+                xs[i] = first + i;
+                ys[i] = column[(head + i) % capacity];
+            }
+            return size;
+        }
+        int buckets = maxPoints / 2;
+        int n = 0;
+        for (int b = 0; b < buckets; b++) {
+            int start = (int) ((long) b * size / buckets);
+            int end = (int) ((long) (b + 1) * size / buckets);
+            int minAt = start;
+            int maxAt = start;
+            float min = column[(head + start) % capacity];
+            float max = min;
+            for (int i = start + 1; i < end; i++) {
+                float v = column[(head + i) % capacity];
+                if (v < min) {
+                    min = v;
+                    minAt = i;
+                } else if (v > max) {
+                    max = v;
+                    maxAt = i;
+                }
+            }
+            int firstAt = Math.min(minAt, maxAt);
+            int lastAt = Math.max(minAt, maxAt);
+            xs[n] = first + firstAt;
+            ys[n++] = column[(head + firstAt) % capacity];
+            if (lastAt != firstAt) {
+                xs[n] = first + lastAt;
+                ys[n++] = column[(head + lastAt) % capacity];
+            }
+        }
+        return n;
+    }
+}
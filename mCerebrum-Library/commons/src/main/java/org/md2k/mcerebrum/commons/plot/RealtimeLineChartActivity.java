@@ -30,6 +30,7 @@ import android.content.pm.ActivityInfo;
 import android.graphics.Color;
 import android.os.Bundle;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.WindowManager;
@@ -42,7 +43,6 @@ import com.github.mikephil.charting.data.Entry;
 import com.github.mikephil.charting.data.LineData;
 import com.github.mikephil.charting.data.LineDataSet;
 import com.github.mikephil.charting.highlight.Highlight;
-import com.github.mikephil.charting.interfaces.datasets.ILineDataSet;
 import com.github.mikephil.charting.listener.OnChartValueSelectedListener;
 import com.github.mikephil.charting.utils.ColorTemplate;
 
@@ -59,6 +59,24 @@ public abstract class RealtimeLineChartActivity extends DemoBase implements
 
     private LineChart mChart;
 
+    /** Samples of the plotted window, the chart only ever holds a decimated copy of it. */
+    private PlotRingBuffer buffer;
+    private final List<List<Entry>> entries = new ArrayList<>();
+    private float[] xs = new float[0];
+    private float[] ys = new float[0];
+    private boolean framePending;
+
+    /**
+     * Redraws the chart once per frame with everything added since the last frame.
+     */
+    private final Choreographer.FrameCallback drawFrame = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            framePending = false;
+            redraw();
+        }
+    };
+
     /**
      * Returns the line chart.
      * @return The line chart.
@@ -167,39 +185,74 @@ public abstract class RealtimeLineChartActivity extends DemoBase implements
 
 
     /**
-     * Adds a data point to the chart, notifies the chart, and updates the view of the chart.
+     * Adds a data point to the chart. The chart is updated on the next frame, so several points
+     * added within one frame cost a single redraw.
      * @param value Array of values to add.
      * @param legend Array of value descriptors.
-     * @param noPoints Used to limit the number of visible entries.
+     * @param noPoints Number of most recent points that are kept and shown.
      */
     public void addEntry(float[] value, String[] legend, int noPoints) {
 
         LineData data = mChart.getData();
 
         if (data != null) {
-            List<ILineDataSet> dataSets = data.getDataSets();
-            if(dataSets == null || dataSets.size()<value.length){
-                dataSets = new ArrayList<>();
-                for(int i = 0; i < value.length; i++){
-                    LineDataSet set = createSet(i, legend[i]);
-                    dataSets.add(set);
-                    data.addDataSet(set);
+            if (buffer == null || buffer.getChannels() != value.length) {
+                data.clearValues();
+                entries.clear();
+                for (int i = 0; i < value.length; i++) {
+                    data.addDataSet(createSet(i, legend[i]));
+                    entries.add(new ArrayList<Entry>());
                 }
+                buffer = new PlotRingBuffer(value.length, noPoints);
+            } else if (buffer.getCapacity() != noPoints) {
+                buffer.setCapacity(noPoints);
             }
-            for(int i = 0; i < value.length; i++){
-                data.addEntry(new Entry(dataSets.get(i).getEntryCount(),value[i]), i);
+            buffer.add(value);
+            if (!framePending) {
+                framePending = true;
+                Choreographer.getInstance().postFrameCallback(drawFrame);
             }
-            data.notifyDataChanged();
+        }
+    }
 
-            // let the chart know it's data has changed
-            mChart.notifyDataSetChanged();
+    /**
+     * Replaces the chart entries with the buffered window, reduced to about one point per pixel,
+     * notifies the chart, and updates the view of the chart.
+     */
+    private void redraw() {
+        LineData data = mChart.getData();
+        if (data == null || buffer == null || buffer.size() == 0)
+            return;
+        int maxPoints = (int) mChart.getViewPortHandler().contentWidth();
+        if (maxPoints < 2)
+            maxPoints = buffer.getCapacity();
+        if (xs.length < maxPoints) {
+            xs = new float[maxPoints];
+            ys = new float[maxPoints];
+        }
+        for (int i = 0; i < buffer.getChannels(); i++) {
+            int n = buffer.decimate(i, maxPoints, xs, ys);
+            List<Entry> values = entries.get(i);
+            while (values.size() > n)
+                values.remove(values.size() - 1);
+            while (values.size() < n)
+                values.add(new Entry());
+            for (int j = 0; j < n; j++) {
+                values.get(j).setX(xs[j]);
+                values.get(j).setY(ys[j]);
+            }
+            ((LineDataSet) data.getDataSetByIndex(i)).setValues(values);
+        }
+        data.notifyDataChanged();
 
-            // limit the number of visible entries
-            mChart.setVisibleXRangeMaximum(noPoints);
+        // let the chart know it's data has changed
+        mChart.notifyDataSetChanged();
 
-            // move to the latest entry
-            mChart.moveViewToX(data.getEntryCount());
-        }
+        // limit the number of visible entries
+        mChart.setVisibleXRangeMaximum(buffer.getCapacity());
+
+        // move to the latest entry
+        mChart.moveViewToX(buffer.getTotal());
     }
 
     /**
@@ -244,10 +297,12 @@ public abstract class RealtimeLineChartActivity extends DemoBase implements
     }
 
     /**
-     * Calls it's superclass to resume the activity
+     * Drops a pending redraw and calls it's superclass to pause the activity
      */
     @Override
     protected void onPause() {
+        Choreographer.getInstance().removeFrameCallback(drawFrame);
+        framePending = false;
         super.onPause();
     }
 }
\ No newline at end of file
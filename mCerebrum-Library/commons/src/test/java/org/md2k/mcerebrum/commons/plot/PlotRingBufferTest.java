@@ -0,0 +1,172 @@
+package org.md2k.mcerebrum.commons.plot;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks PlotRingBuffer. {@link #main} compares the per-frame cost of plotting from it with
+ * keeping every point, as RealtimeLineChartActivity used to, over a long plot session.
+ */
+public class PlotRingBufferTest {
+
+    @Test
+    public void keepsNewestSamples() {
+        PlotRingBuffer buffer = new PlotRingBuffer(2, 4);
+        for (int i = 0; i < 10; i++)
+            buffer.add(new float[]{i, -i});
+        assertEquals(4, buffer.size());
+        assertEquals(10, buffer.getTotal());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(6 + i, buffer.getIndex(i));
+            assertEquals(6 + i, buffer.get(0, i), 0);
+            assertEquals(-6 - i, buffer.get(1, i), 0);
+        }
+
+        buffer.setCapacity(2);
+        assertEquals(2, buffer.size());
+        assertEquals(8, buffer.get(0, 0), 0);
+        assertEquals(9, buffer.getIndex(1));
+        buffer.setCapacity(8);
+        buffer.add(new float[]{10, -10});
+        assertEquals(3, buffer.size());
+        assertEquals(10, buffer.get(0, 2), 0);
+        assertEquals(10, buffer.getIndex(2));
+    }
+
+    @Test
+    public void decimationKeepsExtremes() {
+        PlotRingBuffer buffer = new PlotRingBuffer(1, 1000);
+        Random random = new Random(1);
+        for (int i = 0; i < 1500; i++)
+            buffer.add(new float[]{(float) random.nextGaussian()});
+        buffer.add(new float[]{100});
+        for (int i = 0; i < 200; i++)
+            buffer.add(new float[]{(float) random.nextGaussian()});
+        buffer.add(new float[]{-100});
+
+        float[] xs = new float[100];
+        float[] ys = new float[100];
+        int n = buffer.decimate(0, 100, xs, ys);
+        assertTrue(n <= 100);
+        float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            if (i > 0)
+                assertTrue(xs[i] > xs[i - 1]);
+            assertEquals(buffer.get(0, (int) (xs[i] - buffer.getIndex(0))), ys[i], 0);
+            min = Math.min(min, ys[i]);
+            max = Math.max(max, ys[i]);
+        }
+        assertEquals(100, max, 0);
+        assertEquals(-100, min, 0);
+        assertEquals(buffer.getTotal() - 1, xs[n - 1], 0);
+
+        //Fewer samples than points are copied as they are
+        PlotRingBuffer small = new PlotRingBuffer(1, 10);
+        small.add(new float[]{1});
+        small.add(new float[]{2});
+        assertEquals(2, small.decimate(0, 100, xs, ys));
+        assertEquals(1, ys[0], 0);
+        assertEquals(2, ys[1], 0);
+    }
+
+    private static double sink;
+
+    //What a frame cost before: the chart's data set held every point and rescanned it
+    private static void unboundedFrame(ArrayList<float[]> points) {
+        float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+        for (int i = 0; i < points.size(); i++) {
+            float[] p = points.get(i);
+            for (float v : p) {
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+        }
+        sink += min + max;
+    }
+
+    private static void boundedFrame(PlotRingBuffer buffer, float[] xs, float[] ys) {
+        for (int c = 0; c < buffer.getChannels(); c++)
+            sink += buffer.decimate(c, xs.length, xs, ys);
+    }
+
+    @Test
+    public void longSessionStaysBounded() {
+        int window = 600;       //noPoints used by ActivityPlot
+        int width = 1080;       //Pixels
+        PlotRingBuffer buffer = new PlotRingBuffer(3, window);
+        for (int i = 0; i < 20 * window; i++)
+            buffer.add(new float[]{i, -i, i % 7});
+        assertEquals(window, buffer.size());
+        assertEquals(20 * window, buffer.getTotal());
+
+        float[] xs = new float[width];
+        float[] ys = new float[width];
+        for (int c = 0; c < 3; c++) {
+            //A window narrower than the chart is plotted point for point
+            assertEquals(window, buffer.decimate(c, width, xs, ys));
+            for (int i = 0; i < window; i++) {
+                assertEquals(buffer.getIndex(i), xs[i], 0);
+                assertEquals(buffer.get(c, i), ys[i], 0);
+            }
+        }
+        assertEquals(19 * window, xs[0], 0);
+        assertEquals(20 * window - 1, xs[window - 1], 0);
+    }
+
+    /**
+     * Compares the per-frame cost after one minute and after three hours of plotting, run by
+     * hand. Kept out of the unit tests since it adds 270k samples and times them on the wall clock.
+     */
+    public static void main(String[] args) {
+        int rate = 25;          //Samples per second, like a MotionSense stream
+        int window = 600;
+        int width = 1080;
+        long hours = 3;
+        long samples = hours * 3600 * rate;
+        PlotRingBuffer buffer = new PlotRingBuffer(3, window);
+        ArrayList<float[]> unbounded = new ArrayList<>();
+        float[] xs = new float[width];
+        float[] ys = new float[width];
+        Random random = new Random(2);
+        int frames = 200;
+
+        double boundedEarly = 0, unboundedEarly = 0;
+        for (long i = 0; i < samples; i++) {
+            float[] value = {(float) random.nextGaussian(), (float) random.nextGaussian(), (float) random.nextGaussian()};
+            buffer.add(value);
+            unbounded.add(value);
+            if (i == 60 * rate) {
+                //Warm up, then time frames one minute in
+                for (int f = 0; f < frames; f++) {
+                    boundedFrame(buffer, xs, ys);
+                    unboundedFrame(unbounded);
+                }
+                boundedEarly = timeBounded(buffer, xs, ys, frames);
+                unboundedEarly = timeUnbounded(unbounded, frames);
+            }
+        }
+        double boundedLate = timeBounded(buffer, xs, ys, frames);
+        double unboundedLate = timeUnbounded(unbounded, 20);
+
+        System.out.println("PlotRingBuffer frame: " + boundedEarly / 1000 + " us after 1 min, " + boundedLate / 1000 + " us after " + hours + " h");
+        System.out.println("Unbounded data set frame: " + unboundedEarly / 1000 + " us after 1 min, " + unboundedLate / 1000 + " us after " + hours + " h");
+    }
+
+    private static double timeBounded(PlotRingBuffer buffer, float[] xs, float[] ys, int frames) {
+        long start = System.nanoTime();
+        for (int f = 0; f < frames; f++)
+            boundedFrame(buffer, xs, ys);
+        return (double) (System.nanoTime() - start) / frames;
+    }
+
+    private static double timeUnbounded(ArrayList<float[]> points, int frames) {
+        long start = System.nanoTime();
+        for (int f = 0; f < frames; f++)
+            unboundedFrame(points);
+        return (double) (System.nanoTime() - start) / frames;
+    }
+}
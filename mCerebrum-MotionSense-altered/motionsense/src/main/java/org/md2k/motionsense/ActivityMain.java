@@ -27,15 +27,11 @@
 
 package org.md2k.motionsense;
 
-import android.content.BroadcastReceiver;
-import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.graphics.Typeface;
 import android.os.Bundle;
 import android.os.Handler;
 import android.support.v4.content.ContextCompat;
-import android.support.v4.content.LocalBroadcastManager;
 import android.support.v7.app.AppCompatActivity;
 import android.util.Log;
 import android.view.Menu;
@@ -97,6 +93,9 @@ public class ActivityMain extends AppCompatActivity {
     /** Delay in milliseconds. */
     public static final int DELAY_MILLIS = 1000;
 
+    /** Interval between table refreshes in milliseconds, the service publishes every 500 ms. */
+    public static final int REFRESH_MILLIS = 500;
+
     int operation;
 
     List<String> phoneSources = Arrays.asList("Phone-ACC", "Phone-GYRO");
@@ -196,27 +195,49 @@ public class ActivityMain extends AppCompatActivity {
             }
         }
     };
-    private BroadcastReceiver mMessageReceiver = new BroadcastReceiver() {
+    private HashMap<String, UiDataBus.Reader> readers = new HashMap<>();
+    private Runnable refresh = new Runnable() {
         /**
-         * Creates a new broadcast receiver that updates the table widget when it receives new data.
-         * @param context Android context
-         * @param intent Received intent.
+         * Pulls the latest values of the streams shown in the table.
          */
         @Override
-        public void onReceive(Context context, Intent intent) {
-
-            if(intent.getStringExtra("phone-src") != null) {
-                Log.d("abcde", "Updating Phone Table");
-                updatePhoneTable(intent);
-            }
-            else {
-                Log.d("abcde", "Updating MotionSense Table");
-                updateTable(intent);
+        public void run() {
+            for (String id : readers.keySet()) {
+                if (phoneSources.contains(id))
+                    updatePhoneTable(id, readers.get(id));
+                else
+                    updateTable(id, readers.get(id));
             }
-
+            mHandler.postDelayed(this, REFRESH_MILLIS);
         }
     };
 
+    /**
+     * Subscribes to the streams of the table on the <code>UiDataBus</code>.
+     */
+    private void subscribe() {
+        UiDataBus bus = UiDataBus.getInstance();
+        ArrayList<DataSource> dataSources = ConfigurationManager.read(this);
+        for (int i = 0; dataSources != null && i < dataSources.size(); i++) {
+            String id = getId(dataSources.get(i));
+            if (!readers.containsKey(id))
+                readers.put(id, bus.getChannel(id).subscribe());
+        }
+        for (String name : phoneSources) {
+            if (!readers.containsKey(name))
+                readers.put(name, bus.getChannel(name).subscribe());
+        }
+    }
+
+    /**
+     * Closes all subscriptions so the service stops publishing to this screen.
+     */
+    private void unsubscribe() {
+        for (UiDataBus.Reader reader : readers.values())
+            reader.close();
+        readers.clear();
+    }
+
     /**
      * Creates a <code>TableRow</code> widget using default settings.
      *
@@ -253,11 +274,7 @@ public class ActivityMain extends AppCompatActivity {
      * @return The id of the given <code>DataSource</code>.
      */
     private String getId(DataSource dataSource) {
-        String id = dataSource.getType();
-        if (dataSource.getId() != null) id += dataSource.getId();
-        id += dataSource.getPlatform().getType();
-        id += dataSource.getPlatform().getId();
-        return id;
+        return UiDataBus.getKey(dataSource);
     }
 
     /**
@@ -340,13 +357,10 @@ public class ActivityMain extends AppCompatActivity {
     }
 
     //Updates the widget for just phone data
-    private void updatePhoneTable(Intent intent) {
-
-        String sourceName = intent.getStringExtra("phone-src");
-        String freq = intent.getStringExtra("phone-freq");
-
-        if(hashMapData.containsKey(sourceName + "_freq")) {
-            hashMapData.get(sourceName + "_freq").setText(freq);
+    private void updatePhoneTable(String sourceName, UiDataBus.Reader reader) {
+        double freq = reader.getReportedFrequency();
+        if(freq >= 0 && hashMapData.containsKey(sourceName + "_freq")) {
+            hashMapData.get(sourceName + "_freq").setText(String.valueOf((long) freq));
         }
     }
 
@@ -354,19 +368,19 @@ public class ActivityMain extends AppCompatActivity {
     /**
      * Updates the table widget with refreshed data from the sensors.
      *
-     * @param intent Android intent
+     * @param id Id of the data source.
+     * @param reader Reader of the data source on the <code>UiDataBus</code>.
      */
-    private void updateTable(Intent intent) {
+    private void updateTable(String id, UiDataBus.Reader reader) {
         try {
-            DataSource dataSource = intent.getParcelableExtra(DataSource.class.getSimpleName());
-            Summary summary=intent.getParcelableExtra(Summary.class.getSimpleName());
-            DataType dataType = (DataType) intent.getParcelableArrayExtra(DataType.class.getSimpleName())[0];
-            String id=getId(dataSource);
+            DataType dataType = reader.getLatest();
+            if (dataType == null)
+                return;
             if (hashMapData.containsKey(id + "_count"))
-                hashMapData.get(id + "_count").setText(String.valueOf(summary.getCount()));
+                hashMapData.get(id + "_count").setText(String.valueOf(reader.getCount()));
             if (hashMapData.containsKey(id + "_freq"))
                 hashMapData.get(id + "_freq").setText(String.format(Locale.getDefault(),
-                        "%.1f", summary.getFrequency()));
+                        "%.1f", reader.getFrequency()));
             String sampleStr = "";
             if (dataType instanceof DataTypeFloat) {
                 sampleStr = String.format(Locale.getDefault(), "%.1f", ((DataTypeFloat) dataType).getSample());
@@ -408,26 +422,27 @@ public class ActivityMain extends AppCompatActivity {
     }
 
     /**
-     * Registers receivers, prepares a new table widget and adds the relevant <code>runnable</code>
+     * Subscribes to the streams, prepares a new table widget and adds the relevant <code>runnable</code>
      * methods to the message queue upon resuming the activity.
      */
     @Override
     public void onResume() {
         initializeUI();
-        LocalBroadcastManager.getInstance(this).registerReceiver(mMessageReceiver,
-                new IntentFilter(ServiceMotionSense.INTENT_DATA));
+        subscribe();
         mHandler.post(runnable);
+        mHandler.post(refresh);
         super.onResume();
     }
 
     /**
-     * Removes <code>runnable</code> callbacks and unregisters <code>mMessageReciver</code> when the
+     * Removes <code>runnable</code> callbacks and closes the stream subscriptions when the
      * activity is paused.
      */
     @Override
     public void onPause() {
         mHandler.removeCallbacks(runnable);
-        LocalBroadcastManager.getInstance(this).unregisterReceiver(mMessageReceiver);
+        mHandler.removeCallbacks(refresh);
+        unsubscribe();
         super.onPause();
     }
 
@@ -76,6 +76,14 @@ public class Data {
         }
     }
 
+    //The values of a double array sample, or null for any other data type
+    public double[] getDoubleArraySample() {
+        if (dataType instanceof DataTypeDoubleArray) {
+            return ((DataTypeDoubleArray) dataType).getSample();
+        }
+        return null;
+    }
+
     public String getDoubleArrayData() {
         String timeString = Long.toString(dataType.getDateTime());
 
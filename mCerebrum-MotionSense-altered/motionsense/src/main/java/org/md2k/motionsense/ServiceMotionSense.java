@@ -37,9 +37,7 @@ import android.content.IntentFilter;
 import android.location.LocationManager;
 import android.os.IBinder;
 import android.support.v4.app.NotificationCompat;
-import android.support.v4.content.LocalBroadcastManager;
 import android.util.Log;
-import android.util.SparseArray;
 
 
 import com.orhanobut.logger.Logger;
@@ -48,6 +46,7 @@ import org.md2k.datakitapi.datatype.DataType;
 import org.md2k.datakitapi.datatype.DataTypeDoubleArray;
 import org.md2k.datakitapi.datatype.DataTypeLong;
 import org.md2k.datakitapi.exception.DataKitException;
+import org.md2k.datakitapi.signal.Resampler;
 import org.md2k.datakitapi.source.METADATA;
 import org.md2k.datakitapi.source.datasource.DataSource;
 import org.md2k.datakitapi.source.datasource.DataSourceBuilder;
@@ -55,19 +54,22 @@ import org.md2k.datakitapi.source.datasource.DataSourceClient;
 import org.md2k.datakitapi.source.datasource.DataSourceType;
 import org.md2k.motionsense.configuration.ConfigurationManager;
 import org.md2k.motionsense.datakit.DataKitManager;
+import org.md2k.motionsense.device.BatchDecoder;
+import org.md2k.motionsense.device.Characteristic;
 import org.md2k.motionsense.device.DeviceManager;
+import org.md2k.motionsense.device.LossAccountant;
+import org.md2k.motionsense.device.LossMonitor;
 import org.md2k.motionsense.device.Sensor;
+import org.md2k.motionsense.device.data_quality.DataQuality;
 import org.md2k.motionsense.device.data_quality.DataQualityManager;
 import org.md2k.motionsense.error.ErrorNotify;
 import org.md2k.motionsense.permission.Permission;
 import org.md2k.motionsense.phone.sensorSourceManager;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -86,11 +88,9 @@ import static org.md2k.motionsense.ActivitySettings.ACTION_LOCATION_CHANGED;
  * Manages the motion sense service.
  */
 public class ServiceMotionSense extends Service {
-    public static final String INTENT_DATA = "INTENT_DATA";
     private DataKitManager dataKitManager;
     DeviceManager deviceManager;
     Subscription subscription;
-    SparseArray<Summary> summary;
     DataQualityManager dataQualityManager;
 
     //ArrayList<Sensor> sensorsToQuery = new ArrayList<Sensor>();
@@ -108,39 +108,23 @@ public class ServiceMotionSense extends Service {
      */
     sensorSourceManager ssm;
     exporter exp;
-    List<exportRunnable> writeQueue;  //This is created from a synchronized list
+    //CSV keeps the text files the Python tooling reads, BINARY writes .bin recordings (see recording.BinaryToCsv)
+    static final exporter.Mode EXPORT_MODE = exporter.Mode.CSV;
+    //Pass BLE notifications through the 500 ms buffer undecoded and decode each buffer at once
+    static final boolean BATCH_DECODING = true;
+    BatchDecoder batchDecoder = new BatchDecoder();
+    //Capture the phone accelerometer and gyroscope through the sensor FIFO, a batch at a time
+    static final boolean BATCHED_PHONE_CAPTURE = true;
+    //Rate in Hz the ACC/GYRO folders are resampled to before they are written, 0 keeps every sample.
+    // Resampler.Mode.FIRST keeps the same samples as CNN Training/Downsampler.py
+    static final double EXPORT_SAMPLE_RATE = 0;
+    static final Resampler.Mode EXPORT_RESAMPLE_MODE = Resampler.Mode.LINEAR;
+    exportQueue writeQueue;  //Bounded queue drained by writeThread
     Thread writeThread;
     frequencyTester ft = new frequencyTester("WristWatch Acc", 0, 1000);
-    HashMap<String, Long> deviceInsertedTimestamps = new HashMap<String, Long>();
-
-
-    //Check if should insert this data - high frequency data from MotionSense HRV sometimes arrives multiple times
-    // This function checks if we are recieving data that is old; i.e. the timestamp of the recieved data
-    // is older than the most recent timestamp
-    // Surprisingly, even though this misses the case where we could miss old data that wasn't recorded already,
-    //  we still get around 25Hz of data for each modality
-    public boolean isInsertAllowed(String key, long timestamp) {
-        boolean insertAllowed = false;
-
-        //If the key is in the current hash map
-        if(deviceInsertedTimestamps.containsKey(key)) {
-            long lastTimestamp = deviceInsertedTimestamps.get(key);
-
-            //Check if we should insert or not
-            if(timestamp > lastTimestamp) {
-                insertAllowed = true;
-                deviceInsertedTimestamps.put(key, timestamp);
-            }
-
-        }
-        else {  //Key not found - add to hashmap
-            deviceInsertedTimestamps.put(key, timestamp);
-        }
-
-        return insertAllowed;
-
-    }
-
+    StreamPartitioner streamPartitioner;  //Per-stream batches and routing, built when the sensors are registered
+    //DATA_LOSS stream of every characteristic, by device id/characteristic name like the LossMonitor
+    ConcurrentHashMap<String, DataSourceClient> lossSources = new ConcurrentHashMap<>();
 
     /**
      * Logs the creation of the service, calls <code>loadListener()</code>, and subscribes an
@@ -150,15 +134,20 @@ public class ServiceMotionSense extends Service {
     public void onCreate() {
         super.onCreate();
         Logger.d("Service: onCreate()...");
-        summary = new SparseArray<>();
 
-        writeQueue = Collections.synchronizedList(new ArrayList<exportRunnable>());
-        exp  = new exporter(this);
+        writeQueue = new exportQueue();
+        exp  = new exporter(this, EXPORT_MODE);
+        setExportResampling("Phone-ACC");
+        setExportResampling("Phone-GYRO");
 
+        Characteristic.setBatchDecoding(BATCH_DECODING);
+        //Missing windows of every BLE stream are exported next to its data as deviceId-NAME-GAPS
+        // and published to DataKit as the DATA_LOSS stream of the characteristic
+        LossMonitor.getInstance().setOnMissingWindowListener(this::onMissingWindow);
         ErrorNotify.removeNotification(ServiceMotionSense.this);
         loadListener();
 
-        ssm = new sensorSourceManager(this, exp, writeQueue);
+        ssm = new sensorSourceManager(this, exp, writeQueue, BATCHED_PHONE_CAPTURE);
         ssm.registerListeners();
 
 
@@ -166,11 +155,9 @@ public class ServiceMotionSense extends Service {
         writeThread = new Thread(new Runnable() {
             @Override
             public void run() {
-                while(true){
-                    writeToFile();
-                }
+                writeToFile();
             }
-        });
+        }, "CsvWriteThread");
         writeThread.start();
 
         subscription = Observable.just(true)
@@ -220,6 +207,7 @@ public class ServiceMotionSense extends Service {
                     ArrayList<DataSource> dataSources = ConfigurationManager.read(ServiceMotionSense.this);
                     deviceManager = new DeviceManager();
                     dataQualityManager = new DataQualityManager();
+                    streamPartitioner = new StreamPartitioner();
                     if (dataSources == null || dataSources.size() == 0) return false;
                     for (int i = 0; i < dataSources.size(); i++) {
                         DataSourceClient dataSourceClient = dataKitManager.register(dataSources.get(i));
@@ -245,7 +233,12 @@ public class ServiceMotionSense extends Service {
                         } else {
                             deviceManager.add(sensor);
                         }
+                        streamPartitioner.register(sensor);
+                        if (!dataSources.get(i).getType().equals(DataSourceType.DATA_QUALITY))
+                            registerLossSource(dataSources.get(i), sensor);
+                        setExportResampling(streamPartitioner.getRoute(sensor.getDataSourceClient().getDs_id()).getExportFolder());
                     }
+                    streamPartitioner.setDataQualityManager(dataQualityManager);
                     return true;
                 }).filter(x -> x)
                 .flatMap(aBoolean -> {
@@ -266,72 +259,43 @@ public class ServiceMotionSense extends Service {
                 .flatMap(new Func1<List<ArrayList<Data>>, Observable<Data>>() {
                     @Override
                     public Observable<Data> call(List<ArrayList<Data>> arrayLists) {
-                        ArrayList<Data> data = new ArrayList<>();
-                        for(int i=0;i<arrayLists.size();i++){
-                            ArrayList<Data> x = arrayLists.get(i);
-                            data.addAll(x);
-                        }
+                        //Decodes the raw packets of the whole buffer (if batch decoding is on) and flattens the lists
+                        ArrayList<Data> data = batchDecoder.decode(arrayLists);
                         if(data.size()==0) return null;
-                        HashSet<Integer> dsIds = new HashSet<>();
-                        for (int i = 0; i < data.size(); i++)
-                            dsIds.add(data.get(i).getSensor().getDataSourceClient().getDs_id());
-
-                        for (Integer dsId : dsIds) {
-                            ArrayList<Data> dataTemp = new ArrayList<>();
-                            for (int i = 0; i < data.size(); i++) {
-                                if (data.get(i).getSensor().getDataSourceClient().getDs_id() == dsId) {
-                                    dataTemp.add(data.get(i));
-                                }
-
-                                /*
-                                       ADDED CODE:
-                                       - Upon receiving data, check if data source type matches what we want (ACC & Gyro)
-                                       - If this data is in the correct order - sometimes we get redundant data
-                                       - Store the data using another thread so we don't block new incoming data
-                                 */
-
-                                if(data.get(i).getSensor().getDataSourceType().equals("ACCELEROMETER")) {
-                                    String message = data.get(i).getDoubleArrayData();
-                                    String foldername = data.get(i).getSensor().getDeviceId() + "-ACC";
-                                    exportRunnable dataToQueue = new exportRunnable(foldername, message);
-
-                                    if(isInsertAllowed(foldername, data.get(i).getDataType().getDateTime())) {
-                                        writeQueue.add(dataToQueue);
-                                    }
-
-
-                                }
-                                else if(data.get(i).getSensor().getDataSourceType().equals("GYROSCOPE")) {
-                                    String message = data.get(i).getDoubleArrayData();
-                                    String foldername = data.get(i).getSensor().getDeviceId() + "-GYRO";
-                                    exportRunnable dataToQueue = new exportRunnable(foldername, message);
-
-                                    if(isInsertAllowed(foldername, data.get(i).getDataType().getDateTime())) {
-                                        writeQueue.add(dataToQueue);
+                        List<StreamPartitioner.Route> routes = streamPartitioner.partition(data);
+                        for (int r = 0; r < routes.size(); r++) {
+                            StreamPartitioner.Route route = routes.get(r);
+                            ArrayList<Data> dataTemp = route.getBatch();
+
+                            /*
+                                   ADDED CODE:
+                                   - Upon receiving data, check if data source type matches what we want (ACC & Gyro)
+                                   - If this data is in the correct order - sometimes we get redundant data
+                                   - Store the data using another thread so we don't block new incoming data
+                             */
+                            String foldername = route.getExportFolder();
+                            if (foldername != null) {
+                                for (int i = 0; i < dataTemp.size(); i++) {
+                                    double[] sample = dataTemp.get(i).getDoubleArraySample();
+                                    long timestamp = dataTemp.get(i).getDataType().getDateTime();
+                                    if (sample != null && route.isExportAllowed(timestamp)) {
+                                        writeQueue.offer(new exportRunnable(foldername, timestamp, sample));
                                     }
-
                                 }
                             }
-                            if (dataTemp.size() == 0) continue;
+
                             DataType[] dataTypes = dataKitManager.insert(dataTemp);
+                            DataQuality qualitySink = route.getQualitySink();
                             for (int i = 0; i < dataTemp.size(); i++) {
-                                if (dataTemp.get(i).getSensor().getDataSourceType().equals(DataSourceType.DATA_QUALITY)) {
-                                    dataKitManager.setSummary(dataTemp.get(i).getSensor().getDataSourceClient(), dataQualityManager.getSummary(dataTemp.get(i)));
-                                } else
-                                    dataQualityManager.addData(dataTemp.get(i));
-                                Summary s = summary.get(dataTemp.get(i).getSensor().getDataSourceClient().getDs_id());
-                                if (s == null) {
-                                    s = new Summary();
-                                    summary.put(dataTemp.get(i).getSensor().getDataSourceClient().getDs_id(), s);
-                                }
-                                s.set();
+                                if (route.isDataQuality()) {
+                                    dataKitManager.setSummary(route.getSensor().getDataSourceClient(), dataQualityManager.getSummary(dataTemp.get(i)));
+                                } else if (qualitySink != null)
+                                    qualitySink.add((DataTypeDoubleArray) dataTemp.get(i).getDataType());
                             }
-                            //Log.d("abcde", Integer.toString(dsId) + " : " + );
-                            Intent intent = new Intent(INTENT_DATA);
-                            intent.putExtra(DataSource.class.getSimpleName(), dataTemp.get(0).getSensor().getDataSourceClient().getDataSource());
-                            intent.putExtra(DataType.class.getSimpleName(), dataTypes);
-                            intent.putExtra(Summary.class.getSimpleName(), summary.get(dataTemp.get(0).getSensor().getDataSourceClient().getDs_id()));
-                            LocalBroadcastManager.getInstance(ServiceMotionSense.this).sendBroadcast(intent);
+                            Summary s = route.getSummary();
+                            s.add(dataTemp.size());
+                            //Only copied anywhere if a screen is showing this stream
+                            route.getUiChannel().publish(dataTypes, s);
 
                         }
 //                        dataKitManager.insert(data.getSensor().getDataSourceClient(), data.getDataType());
@@ -471,14 +435,24 @@ public class ServiceMotionSense extends Service {
         //endTime = System.currentTimeMillis();
 
         ssm.destroy();  //Stop the Phone Sensor Manager
-        //Interrupt the write thread and force the rest of the queue to be written to file
-        writeThread.interrupt();
-        //completeWriting();
-
 
         if (ConfigurationManager.isForegroundApp())
             stopForegroundService();
         unsubscribe();
+
+        LossMonitor.getInstance().setOnMissingWindowListener(null);
+        for (LossAccountant accountant : LossMonitor.getInstance().getAccountants()) {
+            Log.d("abcde", accountant.getDeviceId() + " " + accountant.getName() + " - packets: " + accountant.getPackets()
+                    + " missing: " + accountant.getMissingSamples() + " in " + accountant.getGapCount() + " gaps"
+                    + " duplicates: " + accountant.getDuplicates() + " overflows: " + accountant.getOverflows()
+                    + " disconnects: " + accountant.getDisconnects()
+                    + String.format(Locale.US, " rate: %.2f Hz jitter: %.2f ms", accountant.getRate(), accountant.getJitter()));
+        }
+        LossMonitor.getInstance().clear();
+        lossSources.clear();
+
+        //Both producers are stopped, let the write thread drain the rest of the queue to file
+        completeWriting();
         try {
             unregisterReceiver(mReceiver);
         } catch (Exception ignored) {
@@ -486,45 +460,113 @@ public class ServiceMotionSense extends Service {
         super.onDestroy();
     }
 
-    long lastOutputTime = 0;
-    long delay = 1000;
-    long writeCount = 0;
-    //Write an exportRunnable object to the CSV
-    private void writeToFile() {
-        if(!writeQueue.isEmpty()) {
+    //Registers the DATA_LOSS stream of the characteristic of the sensor, once per characteristic
+    private void registerLossSource(DataSource dataSource, Sensor sensor) {
+        String key = sensor.getDeviceId() + "/" + sensor.getCharacteristicName();
+        if (lossSources.containsKey(key))
+            return;
+        DataSource lossSource = new DataSourceBuilder(dataSource).setType(DataSourceType.DATA_LOSS)
+                .setDataDescriptors(null).build();
+        DataSourceClient lossClient = dataKitManager.register(lossSource);
+        if (lossClient != null)
+            lossSources.put(key, lossClient);
+    }
 
-            if(System.currentTimeMillis() > lastOutputTime + delay) {
+    private void onMissingWindow(LossAccountant accountant, LossAccountant.Window window) {
+        exportMissingWindow(accountant, window);
+        publishMissingWindow(accountant, window);
+    }
 
-                lastOutputTime = System.currentTimeMillis();
-                Log.d("abcde", "Current Queue Size: " + Long.toString(writeQueue.size()));
-                Log.d("abcde", "Writes: " + Long.toString(writeCount));
+    //Queues a row of the gap index: start timestamp, duration in ms, missing samples and cause
+    private void exportMissingWindow(LossAccountant accountant, LossAccountant.Window window) {
+        String foldername = accountant.getDeviceId() + "-" + accountant.getName().replace("CHARACTERISTIC_", "") + "-GAPS";
+        double[] row = {window.getEnd() - window.getStart(), window.getSamples(), window.getCause()};
+        writeQueue.offer(new exportRunnable(foldername, window.getStart(), row));
+    }
 
-                writeCount = 0;
-            }
+    //Inserts the window into the DATA_LOSS stream, so subscribers learn about the loss right away.
+    // A regular insert, so the window is not held back in the high frequency buffer
+    private void publishMissingWindow(LossAccountant accountant, LossAccountant.Window window) {
+        DataSourceClient lossSource = lossSources.get(accountant.getDeviceId() + "/" + accountant.getName());
+        if (lossSource == null || dataKitManager == null)
+            return;
+        double[] sample = {window.getEnd(), window.getSamples(), window.getCause()};
+        try {
+            dataKitManager.getDatakit().insert(lossSource, new DataTypeDoubleArray(window.getStart(), sample));
+        } catch (DataKitException e) {
+            Logger.e("datakit exception on missing window insert error=" + e.getMessage());
+        }
+    }
 
-            //Get the first object in the writeQueue
-            exportRunnable toWrite = writeQueue.get(0);
-            //Remove the first object from the queue
-            writeQueue.remove(0);
-            //Buffer the data for writing to a CSV
-            exp.bufferData(toWrite.foldername, toWrite.message);
+    //Resamples an exported folder to EXPORT_SAMPLE_RATE, the -GAPS folders are written as they are
+    private void setExportResampling(String folderName) {
+        if (EXPORT_SAMPLE_RATE > 0 && folderName != null)
+            exp.setResampling(folderName, 3, EXPORT_SAMPLE_RATE, EXPORT_RESAMPLE_MODE);
+    }
+
+    private static final int WRITE_BATCH_SIZE = 512;
+    private static final long WRITE_POLL_MILLIS = 500;
+    private static final long WRITE_SHUTDOWN_MILLIS = 3000;
 
-            writeCount++;
+    long lastOutputTime = 0;
+    long delay = 1000;
+    long writeCount = 0;
+    //Write loop of writeThread - blocks until data is queued and writes it out in batches
+    // until the queue is closed and empty
+    private void writeToFile() {
+        ArrayList<exportRunnable> batch = new ArrayList<>(WRITE_BATCH_SIZE);
+        try {
+            while (true) {
+                int n = writeQueue.drainTo(batch, WRITE_BATCH_SIZE, WRITE_POLL_MILLIS);
+                if (n < 0) {
+                    break;
+                }
+                if (n == 0) {
+                    //Nothing came in, still write out streams that have waited long enough
+                    exp.flushExpired();
+                    continue;
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    exportRunnable toWrite = batch.get(i);
+                    //Buffer the data for writing to a CSV
+                    if (toWrite.isBatch()) {
+                        exp.bufferSamples(toWrite.foldername, toWrite.timestamps, toWrite.values, toWrite.channels, toWrite.getCount());
+                    } else if (toWrite.hasValues()) {
+                        exp.bufferSample(toWrite.foldername, toWrite.timestamp, toWrite.values);
+                    } else {
+                        exp.bufferData(toWrite.foldername, toWrite.message);
+                    }
+                }
+                writeCount += n;
+                batch.clear();
+
+                if (System.currentTimeMillis() > lastOutputTime + delay) {
+                    lastOutputTime = System.currentTimeMillis();
+                    Log.d("abcde", "Current Queue Size: " + writeQueue.size() + " Writes: " + writeCount
+                            + " Max Depth: " + writeQueue.getMaxDepth() + " Dropped: " + writeQueue.getDropped());
+                    writeCount = 0;
+                }
+            }
+        } catch (InterruptedException e) {
+            Log.d("abcde", "Write thread interrupted with " + writeQueue.size() + " entries left");
         }
+        exp.close();
     }
 
     //Write the rest of the writeQueue to file - this is called before this service is destroyed
     private void completeWriting() {
         Log.d("abcde", " Completing Writes to file!");
-        synchronized (writeQueue) {
-            Iterator i = writeQueue.iterator(); // Must be in synchronized block
-            while (i.hasNext()) {
-                exportRunnable toWrite = (exportRunnable) i.next();
-                exp.exportData(toWrite.foldername, toWrite.message);
-            }
-            writeQueue.clear();
+        writeQueue.close();
+        try {
+            writeThread.join(WRITE_SHUTDOWN_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-
+        if (writeThread.isAlive()) {
+            //Don't hold up onDestroy any longer, whatever is still queued is lost
+            writeThread.interrupt();
+        }
+        Log.d("abcde", "Queued: " + writeQueue.getOffered() + " Dropped: " + writeQueue.getDropped());
     }
 
     /*public void printQuery (ArrayList<DataType> query) {
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.motionsense;
+
+import org.md2k.datakitapi.source.datasource.DataSourceType;
+import org.md2k.motionsense.device.Sensor;
+import org.md2k.motionsense.device.data_quality.DataQuality;
+import org.md2k.motionsense.device.data_quality.DataQualityManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Splits each buffer of <code>Data</code> into one batch per data source (ds_id) in a single pass.
+ *
+ * Everything the service needs to know about a stream, its CSV export folder, whether it is a
+ * data quality stream, which <code>DataQuality</code> its samples feed and its UI channel, is
+ * worked out once when the sensor is registered and kept in a <code>Route</code>. The
+ * per-stream batches are allocated once and reused for every buffer.
+ *
+ * Not thread safe, the service partitions from the single Rx thread that consumes the buffers.
+ */
+public class StreamPartitioner {
+
+    /**
+     * Routing metadata and the current batch of one data source.
+     */
+    public static class Route {
+        private final Sensor sensor;
+        private final int dsId;
+        private final String exportFolder;
+        private final boolean dataQuality;
+        private final UiDataBus.Channel uiChannel;
+        private final ArrayList<Data> batch = new ArrayList<>();
+        private DataQuality qualitySink;
+        private Summary summary;
+        private long lastExportedTimestamp = Long.MIN_VALUE;
+
+        Route(Sensor sensor) {
+            this.sensor = sensor;
+            this.dsId = sensor.getDataSourceClient().getDs_id();
+            this.exportFolder = exportFolder(sensor);
+            this.dataQuality = DataSourceType.DATA_QUALITY.equals(sensor.getDataSourceType());
+            this.uiChannel = UiDataBus.getInstance().getChannel(UiDataBus.getKey(sensor.getDataSourceClient().getDataSource()));
+        }
+
+        private static String exportFolder(Sensor sensor) {
+            if (DataSourceType.ACCELEROMETER.equals(sensor.getDataSourceType()))
+                return sensor.getDeviceId() + "-ACC";
+            if (DataSourceType.GYROSCOPE.equals(sensor.getDataSourceType()))
+                return sensor.getDeviceId() + "-GYRO";
+            return null;
+        }
+
+        public Sensor getSensor() {
+            return sensor;
+        }
+
+        public int getDsId() {
+            return dsId;
+        }
+
+        /**
+         * Returns the CSV export folder of the stream.
+         * @return The export folder, null if the stream is not exported.
+         */
+        public String getExportFolder() {
+            return exportFolder;
+        }
+
+        /**
+         * Returns whether the stream carries data quality values rather than sensor samples.
+         * @return Whether this is a data quality stream.
+         */
+        public boolean isDataQuality() {
+            return dataQuality;
+        }
+
+        /**
+         * Returns the <code>DataQuality</code> the samples of this stream are added to.
+         * @return The data quality sink, null if no data quality is computed from this stream.
+         */
+        public DataQuality getQualitySink() {
+            return qualitySink;
+        }
+
+        /**
+         * Returns the channel the UI reads this stream from.
+         * @return The UI channel of the stream.
+         */
+        public UiDataBus.Channel getUiChannel() {
+            return uiChannel;
+        }
+
+        /**
+         * Returns the samples of this stream in the current buffer, in arrival order.
+         * @return The samples of this stream in the current buffer.
+         */
+        public ArrayList<Data> getBatch() {
+            return batch;
+        }
+
+        /**
+         * Returns the summary of the stream, created when the first batch arrives.
+         * @return The summary of the stream.
+         */
+        public Summary getSummary() {
+            if (summary == null)
+                summary = new Summary();
+            return summary;
+        }
+
+        /**
+         * Returns whether a sample with the given timestamp should be exported. High frequency
+         * data from the MotionSense HRV sometimes arrives more than once, so only samples newer
+         * than the last exported one are let through.
+         * @param timestamp Timestamp of the sample.
+         * @return Whether the sample should be exported.
+         */
+        public boolean isExportAllowed(long timestamp) {
+            if (timestamp <= lastExportedTimestamp)
+                return false;
+            lastExportedTimestamp = timestamp;
+            return true;
+        }
+    }
+
+    private final HashMap<Integer, Route> routes = new HashMap<>();
+    private final ArrayList<Route> active = new ArrayList<>();
+    private DataQualityManager dataQualityManager;
+
+    /**
+     * Registers the stream of the given sensor.
+     * @param sensor Sensor to register.
+     */
+    public void register(Sensor sensor) {
+        Route route = new Route(sensor);
+        bindQuality(route);
+        routes.put(route.dsId, route);
+    }
+
+    /**
+     * Looks up the <code>DataQuality</code> each registered stream feeds, call once all
+     * data quality sensors have been added to the manager.
+     * @param dataQualityManager Manager that holds the data quality sensors.
+     */
+    public void setDataQualityManager(DataQualityManager dataQualityManager) {
+        this.dataQualityManager = dataQualityManager;
+        for (Route route : routes.values())
+            bindQuality(route);
+    }
+
+    private void bindQuality(Route route) {
+        if (dataQualityManager != null && !route.dataQuality)
+            route.qualitySink = dataQualityManager.findDataQuality(route.sensor);
+    }
+
+    /**
+     * Returns the route of the given data source.
+     * @param dsId Data source id.
+     * @return The route, null if the data source is not registered.
+     */
+    public Route getRoute(int dsId) {
+        return routes.get(dsId);
+    }
+
+    /**
+     * Sorts the given samples into the batches of their streams. The batches of the previous call
+     * are cleared first.
+     * @param data Samples of one buffer.
+     * @return The routes that received samples, in the order they were first seen. The list is
+     * reused by the next call.
+     */
+    public List<Route> partition(List<Data> data) {
+        for (int i = 0; i < active.size(); i++)
+            active.get(i).batch.clear();
+        active.clear();
+        Route route = null;
+        for (int i = 0; i < data.size(); i++) {
+            Data d = data.get(i);
+            Sensor sensor = d.getSensor();
+            //Samples of a stream mostly come in runs, so the last route is checked first
+            if (route == null || route.sensor != sensor) {
+                int dsId = sensor.getDataSourceClient().getDs_id();
+                if (route == null || route.dsId != dsId) {
+                    route = routes.get(dsId);
+                    if (route == null) {
+                        route = new Route(sensor);
+                        bindQuality(route);
+                        routes.put(dsId, route);
+                    }
+                }
+            }
+            if (route.batch.isEmpty())
+                active.add(route);
+            route.batch.add(d);
+        }
+        return active;
+    }
+}
@@ -85,6 +85,14 @@ public class Summary implements Parcelable{
         count++;
     }
 
+    /**
+     * Adds the given number of samples to <code>count</code>.
+     * @param samples Number of samples received.
+     */
+    public void add(int samples){
+        count += samples;
+    }
+
     /**
      * Returns the starting timestamp.
      * @return The starting timestamp.
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.motionsense;
+
+import org.md2k.datakitapi.datatype.DataType;
+import org.md2k.datakitapi.source.datasource.DataSource;
+import org.md2k.datakitapi.time.DateTime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * In-process data bus between the service and the UI, replacing one LocalBroadcast per stream
+ * batch.
+ *
+ * Every stream has a <code>Channel</code> that holds its latest sample, its summary and a ring
+ * of recent samples. Screens subscribe to the streams they show and pull from their
+ * <code>Reader</code> when they redraw. A channel nobody reads from drops published data right
+ * away, so nothing is copied or parceled while no screen is watching.
+ *
+ * Each channel has a single publisher and any number of readers, neither side takes a lock.
+ */
+public class UiDataBus {
+    /** Samples kept per channel for readers that draw the history, a power of two. */
+    public static final int HISTORY = 1024;
+
+    private static final UiDataBus instance = new UiDataBus();
+
+    private final ConcurrentHashMap<String, Channel> channels = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the bus of this process.
+     * @return The bus of this process.
+     */
+    public static UiDataBus getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the key of the stream of the given <code>DataSource</code>.
+     * @param dataSource <code>DataSource</code> of the stream.
+     * @return The key of the stream.
+     */
+    public static String getKey(DataSource dataSource) {
+        String id = dataSource.getType();
+        if (dataSource.getId() != null) id += dataSource.getId();
+        id += dataSource.getPlatform().getType();
+        id += dataSource.getPlatform().getId();
+        return id;
+    }
+
+    /**
+     * Returns the channel of the given stream, creating it if needed.
+     * @param key Key of the stream.
+     * @return The channel of the stream.
+     */
+    public Channel getChannel(String key) {
+        Channel channel = channels.get(key);
+        if (channel == null) {
+            Channel created = new Channel(key);
+            channel = channels.putIfAbsent(key, created);
+            if (channel == null)
+                channel = created;
+        }
+        return channel;
+    }
+
+    /**
+     * Latest value, summary and recent samples of one stream.
+     */
+    public static class Channel {
+        private final String key;
+        private final AtomicInteger watchers = new AtomicInteger();
+        private final AtomicReferenceArray<DataType> history = new AtomicReferenceArray<>(HISTORY);
+        private final AtomicLong published = new AtomicLong();  //Samples visible to readers
+        private final AtomicLong claimed = new AtomicLong();    //Samples being written, >= published
+        private volatile DataType latest;
+        private volatile int count;
+        private volatile long startTimestamp;
+        private volatile double frequency = -1;
+
+        Channel(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Returns whether any reader is subscribed.
+         * @return Whether any reader is subscribed.
+         */
+        public boolean isWatched() {
+            return watchers.get() > 0;
+        }
+
+        /**
+         * Publishes a batch of samples and the summary of the stream. Does nothing if no reader is
+         * subscribed. The samples must not be changed afterwards.
+         * @param samples Samples of the batch, oldest first.
+         * @param summary Summary of the stream.
+         */
+        public void publish(DataType[] samples, Summary summary) {
+            if (watchers.get() == 0 || samples == null || samples.length == 0)
+                return;
+            long sequence = published.get();
+            claimed.set(sequence + samples.length);
+            for (DataType sample : samples) {
+                history.lazySet((int) (sequence & (HISTORY - 1)), sample);
+                sequence++;
+            }
+            latest = samples[samples.length - 1];
+            if (summary != null) {
+                count = summary.getCount();
+                startTimestamp = summary.getStartTimestamp();
+            }
+            published.set(sequence);
+        }
+
+        /**
+         * Publishes a sampling frequency measured by the producer itself, used by the phone sensors.
+         * Does nothing if no reader is subscribed.
+         * @param frequency Samples per second.
+         */
+        public void publishFrequency(double frequency) {
+            if (watchers.get() == 0)
+                return;
+            this.frequency = frequency;
+        }
+
+        /**
+         * Subscribes a new reader, it sees the samples published from now on.
+         * @return The reader, close it when the screen stops showing the stream.
+         */
+        public Reader subscribe() {
+            watchers.incrementAndGet();
+            return new Reader(this, published.get());
+        }
+    }
+
+    /**
+     * Pulls the data of one channel for one screen.
+     */
+    public static class Reader {
+        private final Channel channel;
+        private long cursor;
+        private boolean closed;
+
+        Reader(Channel channel, long cursor) {
+            this.channel = channel;
+            this.cursor = cursor;
+        }
+
+        /**
+         * Adds the samples published since the last call to the given list. Samples that the ring
+         * overwrote before they were read are skipped.
+         * @param out List that receives the samples, oldest first.
+         * @param max Maximum number of samples to add, the newest ones are kept.
+         * @return The number of samples added.
+         */
+        public int drain(List<DataType> out, int max) {
+            long end = channel.published.get();
+            long start = Math.max(cursor, Math.max(end - HISTORY, end - max));
+            int base = out.size();
+            for (long sequence = start; sequence < end; sequence++)
+                out.add(channel.history.get((int) (sequence & (HISTORY - 1))));
+            //The publisher may have wrapped around onto the slots read above
+            long overwritten = channel.claimed.get() - HISTORY - start;
+            if (overwritten > 0)
+                out.subList(base, base + (int) Math.min(overwritten, end - start)).clear();
+            cursor = end;
+            return out.size() - base;
+        }
+
+        /**
+         * Returns the samples published since the last call.
+         * @return The samples published since the last call, oldest first.
+         */
+        public ArrayList<DataType> drain() {
+            ArrayList<DataType> samples = new ArrayList<>();
+            drain(samples, HISTORY);
+            return samples;
+        }
+
+        /**
+         * Returns the latest published sample.
+         * @return The latest sample, null if nothing was published while watched.
+         */
+        public DataType getLatest() {
+            return channel.latest;
+        }
+
+        /**
+         * Returns the number of samples received by the stream.
+         * @return The number of samples received by the stream.
+         */
+        public int getCount() {
+            return channel.count;
+        }
+
+        /**
+         * Returns the average sampling frequency of the stream since it started.
+         * @return Samples per second.
+         */
+        public double getFrequency() {
+            long start = channel.startTimestamp;
+            if (start == 0)
+                return 0;
+            return (double) channel.count / ((DateTime.getDateTime() - start) / 1000.0);
+        }
+
+        /**
+         * Returns the frequency reported with {@link Channel#publishFrequency(double)}.
+         * @return Samples per second, -1 if none was reported.
+         */
+        public double getReportedFrequency() {
+            return channel.frequency;
+        }
+
+        /**
+         * Unsubscribes the reader.
+         */
+        public void close() {
+            if (!closed) {
+                closed = true;
+                channel.watchers.decrementAndGet();
+            }
+        }
+    }
+}
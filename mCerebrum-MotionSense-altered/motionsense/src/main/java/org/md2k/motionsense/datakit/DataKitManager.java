@@ -35,6 +35,7 @@ import com.orhanobut.logger.Logger;
 import org.md2k.datakitapi.DataKitAPI;
 import org.md2k.datakitapi.datatype.DataType;
 import org.md2k.datakitapi.datatype.DataTypeDoubleArray;
+import org.md2k.datakitapi.datatype.DataTypeDoubleMatrix;
 import org.md2k.datakitapi.exception.DataKitException;
 import org.md2k.datakitapi.messagehandler.OnConnectionListener;
 import org.md2k.datakitapi.source.datasource.DataSource;
@@ -94,14 +95,29 @@ public class DataKitManager {
         }
 
     }
+    /**
+     * Inserts a batch of data of one data source into <code>DataKitAPI</code>.
+     *
+     * With block transport, high frequency samples of equal width go out as a single
+     * <code>DataTypeDoubleMatrix</code>.
+     * @param dataTemp Batch of data, all from the same data source.
+     * @return The per-sample <code>DataType</code>s of the batch.
+     */
     public DataType[] insert(ArrayList<Data> dataTemp) {
         if(dataTemp.size()==0) return null;
         try {
             if (dataTemp.get(0).getDataType() instanceof DataTypeDoubleArray) {
                 DataTypeDoubleArray[] dataTypeDoubleArrays = new DataTypeDoubleArray[dataTemp.size()];
-                for (int i = 0; i < dataTemp.size(); i++)
+                boolean isUniform = true;
+                for (int i = 0; i < dataTemp.size(); i++) {
                     dataTypeDoubleArrays[i] = (DataTypeDoubleArray) dataTemp.get(i).getDataType();
-                dataKitAPI.insertHighFrequency(dataTemp.get(0).getSensor().getDataSourceClient(), dataTypeDoubleArrays);
+                    isUniform &= dataTypeDoubleArrays[i].getSample().length == dataTypeDoubleArrays[0].getSample().length;
+                }
+                DataSourceClient dataSourceClient = dataTemp.get(0).getSensor().getDataSourceClient();
+                if (isUniform && dataKitAPI.isHighFrequencyBlockTransport())
+                    dataKitAPI.insertHighFrequency(dataSourceClient, DataTypeDoubleMatrix.fromDoubleArrays(dataTypeDoubleArrays));
+                else
+                    dataKitAPI.insertHighFrequency(dataSourceClient, dataTypeDoubleArrays);
                 return dataTypeDoubleArrays;
             } else {
                 DataType[] dataTypes = new DataType[dataTemp.size()];
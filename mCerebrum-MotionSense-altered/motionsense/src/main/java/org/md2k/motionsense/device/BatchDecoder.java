@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.motionsense.device;
+
+import org.md2k.motionsense.Data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Decodes the <code>PacketData</code> collected by the service's 500 ms buffer.
+ *
+ * The packets of each characteristic are decoded in one loop into a <code>DecodedBatch</code>
+ * that is kept per characteristic and reused, so every channel of the buffer ends up in a
+ * contiguous column. A batch that is too small for the packets of a buffer is replaced by a
+ * larger one before decoding, so each characteristic is always decoded in a single batch. The
+ * <code>Data</code> DataKit needs is created from the columns afterwards. Everything else in the
+ * buffer is passed through unchanged. Not thread safe.
+ */
+public class BatchDecoder {
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final int capacity;
+    private final HashMap<Characteristic, DecodedBatch> batches = new HashMap<>();
+    private final ArrayList<Characteristic> pending = new ArrayList<>();
+    private int[] packetCounts = new int[4];  //Packets of pending.get(i) in the current buffer
+
+    public BatchDecoder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor
+     * @param capacity Initial number of packets per characteristic, batches grow for larger buffers.
+     */
+    public BatchDecoder(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+    }
+
+    /**
+     * Decodes the packets in the buffered lists.
+     * @param buffered Lists emitted by the devices during one buffer period.
+     * @return The data of all lists with the packets replaced by their decoded data.
+     */
+    public ArrayList<Data> decode(List<ArrayList<Data>> buffered) {
+        countPackets(buffered);
+        //A reconnect creates new characteristics, forget the ones that went quiet
+        batches.keySet().retainAll(pending);
+        for (int i = 0; i < pending.size(); i++)
+            prepareBatch(pending.get(i), packetCounts[i]);
+
+        ArrayList<Data> data = new ArrayList<>();
+        for (int i = 0; i < buffered.size(); i++) {
+            ArrayList<Data> list = buffered.get(i);
+            for (int j = 0; j < list.size(); j++) {
+                Data d = list.get(j);
+                if (!(d instanceof PacketData)) {
+                    data.add(d);
+                    continue;
+                }
+                PacketData packet = (PacketData) d;
+                Characteristic characteristic = packet.getCharacteristic();
+                characteristic.decodeInto(packet.getBytes(), packet.getArrivalTime(), batches.get(characteristic));
+            }
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            Characteristic characteristic = pending.get(i);
+            characteristic.toData(batches.get(characteristic), data);
+        }
+        return data;
+    }
+
+    /**
+     * Returns the characteristics that had packets in the last call to <code>decode()</code>.
+     * @return The characteristics that had packets in the last call to <code>decode()</code>.
+     */
+    public List<Characteristic> getDecodedCharacteristics() {
+        return pending;
+    }
+
+    /**
+     * Returns the columns decoded for a characteristic by the last call to <code>decode()</code>,
+     * all of its packets in that call. Valid until the next call.
+     * @param characteristic Characteristic to look up.
+     * @return The batch, or null if the characteristic had no packets in the last call.
+     */
+    public DecodedBatch getDecoded(Characteristic characteristic) {
+        return batches.get(characteristic);
+    }
+
+    //Collects the characteristics of the buffer in pending and their packets in packetCounts
+    private void countPackets(List<ArrayList<Data>> buffered) {
+        pending.clear();
+        for (int i = 0; i < buffered.size(); i++) {
+            ArrayList<Data> list = buffered.get(i);
+            for (int j = 0; j < list.size(); j++) {
+                Data d = list.get(j);
+                if (!(d instanceof PacketData))
+                    continue;
+                Characteristic characteristic = ((PacketData) d).getCharacteristic();
+                int index = pending.indexOf(characteristic);
+                if (index < 0) {
+                    index = pending.size();
+                    pending.add(characteristic);
+                    if (index == packetCounts.length)
+                        packetCounts = Arrays.copyOf(packetCounts, 2 * index);
+                    packetCounts[index] = 0;
+                }
+                packetCounts[index]++;
+            }
+        }
+    }
+
+    //Clears the batch of a characteristic, or replaces it if it can't hold the given packets
+    private void prepareBatch(Characteristic characteristic, int packets) {
+        DecodedBatch batch = batches.get(characteristic);
+        if (batch == null || batch.getCapacity() < packets) {
+            int size = batch == null ? capacity : batch.getCapacity();
+            while (size < packets)
+                size *= 2;
+            batches.put(characteristic, characteristic.getDecoder().createBatch(size));
+        } else {
+            batch.clear();
+        }
+    }
+}
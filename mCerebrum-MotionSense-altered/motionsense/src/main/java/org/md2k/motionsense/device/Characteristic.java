@@ -40,11 +40,15 @@ import rx.Observable;
  * Base class for defining sensor characteristics.
  */
 public abstract class Characteristic {
-    protected long lastTimestamp;
-    protected int lastSequence;
+    //When set, notifications are passed on undecoded and decoded a buffer at a time by BatchDecoder
+    private static volatile boolean batchDecoding = false;
+
     private String id;
     protected double frequency;
     private String name;
+    private DecodedBatch singlePacket;
+    private TimestampReconstructor timestampReconstructor;
+    private LossAccountant lossAccountant;
 
     /**
      * Constructor
@@ -84,6 +88,14 @@ public abstract class Characteristic {
     abstract public Observable<ArrayList<Data>> getObservable(RxBleConnection rxBleConnection, ArrayList<Sensor> sensors);
 
 
+    /**
+     * Returns the decoder for the notifications of this characteristic.
+     * @return The decoder, or null if the notifications are not decoded into a <code>DecodedBatch</code>.
+     */
+    public PacketDecoder getDecoder() {
+        return null;
+    }
+
     /**
      * Returns the id.
      * @return The id.
@@ -93,19 +105,130 @@ public abstract class Characteristic {
     }
 
     /**
-     * Returns the correct timestamp.
-     * @param curSequence
-     * @param maxLimit
-     * @return The correct timestamp.
+     * Sets whether notifications are decoded one by one as they arrive or passed on as
+     * <code>PacketData</code> and decoded in batches. Takes effect for new notifications.
+     * @param enabled True to decode in batches.
+     */
+    public static void setBatchDecoding(boolean enabled) {
+        batchDecoding = enabled;
+    }
+
+    /**
+     * Returns whether notifications are decoded in batches.
+     * @return Whether notifications are decoded in batches.
+     */
+    public static boolean isBatchDecoding() {
+        return batchDecoding;
+    }
+
+    /**
+     * Returns the value at which the sequence number of the notifications wraps around.
+     * @return The value at which the sequence number wraps around.
+     */
+    protected int getSequenceLimit() {
+        return 1;
+    }
+
+    /**
+     * Returns the reconstructor of the packet timestamps, which also reports the estimated
+     * sample rate and jitter of the device.
+     * @return The timestamp reconstructor.
+     */
+    public TimestampReconstructor getTimestampReconstructor() {
+        if (timestampReconstructor == null)
+            timestampReconstructor = new TimestampReconstructor(frequency, getTimingSequence(getSequenceLimit()));
+        return timestampReconstructor;
+    }
+
+    /**
+     * Attaches the loss accountant of this characteristic on the device of the given sensors.
+     * @param sensors Arraylist of <code>Sensor</code>s of this characteristic.
+     */
+    protected void prepareLossAccountant(ArrayList<Sensor> sensors) {
+        if (sensors.size() > 0)
+            lossAccountant = LossMonitor.getInstance().getAccountant(sensors.get(0).getDeviceId(), name);
+    }
+
+    /**
+     * Returns the loss accountant of this characteristic.
+     * @return The loss accountant, or null before <code>getObservable()</code>.
+     */
+    public LossAccountant getLossAccountant() {
+        return lossAccountant;
+    }
+
+    /**
+     * Counts a packet dropped by the overflow buffer of the notifications.
+     */
+    protected void onOverflow() {
+        if (lossAccountant != null)
+            lossAccountant.onOverflow();
+    }
+
+    /**
+     * Returns the sequence number used for correcting the timestamp of a packet.
+     * @param sequenceNumber Sequence number carried in the packet.
+     * @return The sequence number used for correcting the timestamp.
+     */
+    protected int getTimingSequence(int sequenceNumber) {
+        return sequenceNumber;
+    }
+
+    /**
+     * Creates the <code>Data</code> of every configured sensor from a decoded packet.
+     * @param batch Batch holding the decoded packet.
+     * @param row Row of the packet in the batch.
+     * @param data List to add the <code>Data</code> to.
+     */
+    protected void toData(DecodedBatch batch, int row, ArrayList<Data> data) {
+    }
+
+    /**
+     * Creates the <code>Data</code> of every packet in the batch, in order.
+     * @param batch Batch of decoded packets.
+     * @param data List to add the <code>Data</code> to.
+     */
+    public void toData(DecodedBatch batch, ArrayList<Data> data) {
+        for (int row = 0; row < batch.getCount(); row++)
+            toData(batch, row, data);
+    }
+
+    /**
+     * Corrects the timestamp of a packet and decodes it into the batch. Packets have to be
+     * passed in the order they arrived.
+     * @param bytes Notification bytes.
+     * @param arrivalTime Time at which the notification arrived.
+     * @param batch Batch created by <code>getDecoder()</code>.
+     */
+    public void decodeInto(byte[] bytes, long arrivalTime, DecodedBatch batch) {
+        PacketDecoder decoder = getDecoder();
+        int curSeq = getTimingSequence(decoder.getSequenceNumber(bytes));
+        TimestampReconstructor reconstructor = getTimestampReconstructor();
+        long previousIndex = reconstructor.getLastIndex();
+        long curTime = reconstructor.reconstruct(curSeq, arrivalTime);
+        if (lossAccountant != null)
+            lossAccountant.onPacket(reconstructor, previousIndex, curTime);
+        decoder.decode(bytes, curTime, batch);
+    }
+
+    /**
+     * Handles a notification: decodes it right away, or wraps it in a <code>PacketData</code>
+     * when batch decoding is on.
+     * @param bytes Notification bytes.
+     * @return The <code>Data</code> of the notification.
      */
-    protected long correctTimeStamp(int curSequence, int maxLimit) {
-        long time;
-        long curTime = DateTime.getDateTime();
-        int diff = (curSequence - lastSequence + maxLimit) % maxLimit;
-        time = (long) (lastTimestamp + (1000.0 * diff) / frequency);
-        if (curTime < time || curTime - time > 5000)
-            time = curTime;
-        return time;
+    protected ArrayList<Data> decodeNotification(byte[] bytes) {
+        ArrayList<Data> data = new ArrayList<>();
+        if (batchDecoding) {
+            data.add(new PacketData(this, bytes, DateTime.getDateTime()));
+            return data;
+        }
+        if (singlePacket == null)
+            singlePacket = getDecoder().createBatch(1);
+        singlePacket.clear();
+        decodeInto(bytes, DateTime.getDateTime(), singlePacket);
+        toData(singlePacket, 0, data);
+        return data;
     }
 
 }
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.motionsense.device;
+
+/**
+ * Struct-of-arrays batch of decoded BLE notifications.
+ *
+ * Every decoded packet is one row: a timestamp, the sequence number, the raw packet bytes and
+ * getColumnCount() decoded values. Values are stored column by column in a single double[], so
+ * column c of row i is at values[c * capacity + i] and each column is a contiguous run that can
+ * be processed with a plain loop. The batch is allocated once and reused with {@link #clear()},
+ * decoding into it does not allocate.
+ */
+public class DecodedBatch {
+    /** Bytes kept per packet for the raw data path, a BLE notification carries at most 20. */
+    public static final int RAW_BYTES = 20;
+
+    private final int capacity;
+    private final int columns;
+    private final long[] timestamps;
+    private final int[] sequenceNumbers;
+    private final double[] values;
+    private final byte[] raw;
+    private final int[] rawLength;
+    private int count;
+
+    /**
+     * Constructor
+     * @param capacity Maximum number of packets in the batch.
+     * @param columns Number of decoded values per packet.
+     */
+    public DecodedBatch(int capacity, int columns) {
+        if (capacity <= 0 || columns <= 0)
+            throw new IllegalArgumentException("capacity and columns must be positive");
+        this.capacity = capacity;
+        this.columns = columns;
+        timestamps = new long[capacity];
+        sequenceNumbers = new int[capacity];
+        values = new double[capacity * columns];
+        raw = new byte[capacity * RAW_BYTES];
+        rawLength = new int[capacity];
+    }
+
+    /**
+     * Adds a row for the given packet and copies its raw bytes.
+     * @return The index of the new row, the decoder fills in its values.
+     */
+    public int addRow(long timestamp, int sequenceNumber, byte[] packet) {
+        if (count == capacity)
+            throw new IllegalStateException("Batch is full");
+        int row = count++;
+        timestamps[row] = timestamp;
+        sequenceNumbers[row] = sequenceNumber;
+        int length = Math.min(packet.length, RAW_BYTES);
+        System.arraycopy(packet, 0, raw, row * RAW_BYTES, length);
+        rawLength[row] = length;
+        return row;
+    }
+
+    /**
+     * Sets a decoded value.
+     */
+    public void setValue(int column, int row, double value) {
+        values[column * capacity + row] = value;
+    }
+
+    public void setTimestamp(int row, long timestamp) {
+        timestamps[row] = timestamp;
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    public boolean isFull() {
+        return count == capacity;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getColumnCount() {
+        return columns;
+    }
+
+    public long getTimestamp(int row) {
+        return timestamps[row];
+    }
+
+    public int getSequenceNumber(int row) {
+        return sequenceNumbers[row];
+    }
+
+    public double getValue(int column, int row) {
+        return values[column * capacity + row];
+    }
+
+    /**
+     * Returns the backing array of all values, column c starts at {@link #getColumnOffset(int)}.
+     */
+    public double[] getValues() {
+        return values;
+    }
+
+    public int getColumnOffset(int column) {
+        return column * capacity;
+    }
+
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+
+    public int[] getSequenceNumbers() {
+        return sequenceNumbers;
+    }
+
+    /**
+     * Copies n consecutive columns of a row, starting at firstColumn, into dst.
+     * @return The offset in dst just past the last copied value.
+     */
+    public int copyRow(int row, int firstColumn, int n, double[] dst, int dstOffset) {
+        int index = firstColumn * capacity + row;
+        for (int c = 0; c < n; c++) {
+            dst[dstOffset++] = values[index];
+            index += capacity;
+        }
+        return dstOffset;
+    }
+
+    /**
+     * Returns the values of n columns of a row as a new array, i.e. for a <code>DataTypeDoubleArray</code>.
+     */
+    public double[] getRow(int row, int firstColumn, int n) {
+        double[] sample = new double[n];
+        copyRow(row, firstColumn, n, sample, 0);
+        return sample;
+    }
+
+    /**
+     * Copies the raw bytes of a packet into dst without widening them.
+     * @return The number of bytes copied.
+     */
+    public int getRaw(int row, byte[] dst, int dstOffset) {
+        System.arraycopy(raw, row * RAW_BYTES, dst, dstOffset, rawLength[row]);
+        return rawLength[row];
+    }
+
+    public int getRawLength(int row) {
+        return rawLength[row];
+    }
+
+    /**
+     * Returns the raw bytes as a new double array, the layout the RAW data sources are stored in.
+     */
+    public double[] getRawAsDouble(int row) {
+        double[] sample = new double[rawLength[row]];
+        int base = row * RAW_BYTES;
+        for (int i = 0; i < sample.length; i++)
+            sample[i] = raw[base + i];
+        return sample;
+    }
+}
@@ -163,6 +163,7 @@ public abstract class Device {
                                                 @Override
                                                 public void call() {
                                                     Logger.e("Device...subscribeConnect()...Data Overflow occurs...after buffer... drop oldest packet");
+                                                    LossMonitor.getInstance().onDecodedOverflow(deviceId);
                                                 }
                                             }, BackpressureOverflow.ON_OVERFLOW_DROP_OLDEST);
                                 });
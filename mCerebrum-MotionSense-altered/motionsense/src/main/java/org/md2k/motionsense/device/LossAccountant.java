@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.motionsense.device;
+
+import java.util.ArrayList;
+
+/**
+ * Accounts for the samples lost on one characteristic of one device.
+ *
+ * Every decoded packet is passed in with its place in the sample index of the
+ * <code>TimestampReconstructor</code>. Skipped sequence numbers become a missing
+ * <code>Window</code>, so do the samples that went by while the device was disconnected. A
+ * window whose packets were dropped by a drop-oldest overflow buffer is marked as such. Duplicate
+ * and late packets and overflow events are counted.
+ *
+ * The last <code>GAP_INDEX_SIZE</code> windows are kept as a gap index and every new window is
+ * published through the <code>LossMonitor</code>, so loss does not have to be inferred from
+ * silence. The accountant lives as long as the service, across reconnects of the device.
+ */
+public class LossAccountant {
+    /** Sequence numbers were skipped. */
+    public static final int CAUSE_SEQUENCE_GAP = 0;
+    /** Sequence numbers were skipped after a drop-oldest overflow buffer dropped packets. */
+    public static final int CAUSE_OVERFLOW = 1;
+    /** The device was disconnected. */
+    public static final int CAUSE_DISCONNECT = 2;
+
+    /** Number of windows kept in the gap index. */
+    public static final int GAP_INDEX_SIZE = 256;
+
+    /**
+     * Window of missing samples between two received samples.
+     */
+    public static class Window {
+        private final long start;
+        private final long end;
+        private final long samples;
+        private final int cause;
+
+        Window(long start, long end, long samples, int cause) {
+            this.start = start;
+            this.end = end;
+            this.samples = samples;
+            this.cause = cause;
+        }
+
+        /**
+         * Returns the timestamp of the last sample received before the window.
+         * @return The start of the window.
+         */
+        public long getStart() {
+            return start;
+        }
+
+        /**
+         * Returns the timestamp of the first sample received after the window.
+         * @return The end of the window.
+         */
+        public long getEnd() {
+            return end;
+        }
+
+        /**
+         * Returns the number of missing samples.
+         * @return The number of missing samples.
+         */
+        public long getSamples() {
+            return samples;
+        }
+
+        /**
+         * Returns why the samples are missing, one of the <code>CAUSE_</code> constants.
+         * @return The cause.
+         */
+        public int getCause() {
+            return cause;
+        }
+    }
+
+    private final String deviceId;
+    private final String name;
+    private final LossMonitor monitor;
+
+    private final Window[] gapIndex = new Window[GAP_INDEX_SIZE];
+
+    private long lastTimestamp = Long.MIN_VALUE;
+    private boolean overflowPending = false;
+
+    private long packets;
+    private long missingSamples;
+    private long gaps;
+    private long duplicates;
+    private long overflows;
+    private long disconnects;
+
+    private double rate = Double.NaN;
+    private double jitter = Double.NaN;
+
+    /**
+     * Constructor
+     * @param deviceId Id of the device.
+     * @param name Name of the characteristic.
+     * @param monitor Monitor to publish the windows to, or null.
+     */
+    LossAccountant(String deviceId, String name, LossMonitor monitor) {
+        this.deviceId = deviceId;
+        this.name = name;
+        this.monitor = monitor;
+    }
+
+    /**
+     * Returns the id of the device.
+     * @return The id of the device.
+     */
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    /**
+     * Returns the name of the characteristic.
+     * @return The name of the characteristic.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Accounts for a packet right after the reconstructor placed it.
+     * @param reconstructor Reconstructor of the connection the packet arrived on.
+     * @param previousIndex Sample index of the reconstructor before the packet.
+     * @param timestamp Timestamp the reconstructor gave the packet.
+     */
+    public void onPacket(TimestampReconstructor reconstructor, long previousIndex, long timestamp) {
+        Window window = null;
+        synchronized (this) {
+            packets++;
+            rate = reconstructor.getRate();
+            jitter = reconstructor.getJitter();
+            if (reconstructor.getPackets() == 1) {
+                //First packet of a connection, the device was disconnected since the last one
+                if (lastTimestamp != Long.MIN_VALUE) {
+                    disconnects++;
+                    long samples = Math.round((timestamp - lastTimestamp) * reconstructor.getRate() / 1000.0) - 1;
+                    if (samples > 0)
+                        window = add(new Window(lastTimestamp, timestamp, samples, CAUSE_DISCONNECT));
+                }
+            } else {
+                long step = reconstructor.getLastIndex() - previousIndex;
+                if (step <= 0) {
+                    duplicates++;
+                    return;
+                }
+                if (step > 1)
+                    window = add(new Window(lastTimestamp, timestamp, step - 1,
+                            overflowPending ? CAUSE_OVERFLOW : CAUSE_SEQUENCE_GAP));
+            }
+            overflowPending = false;
+            lastTimestamp = timestamp;
+        }
+        if (window != null && monitor != null)
+            monitor.publish(this, window);
+    }
+
+    /**
+     * Counts a packet dropped by a drop-oldest overflow buffer in front of the decoder. The
+     * next window is attributed to the overflow.
+     */
+    public synchronized void onOverflow() {
+        overflows++;
+        overflowPending = true;
+    }
+
+    /**
+     * Counts data dropped by a drop-oldest overflow buffer after the decoder. Its samples
+     * were already accounted for as received, so only the event is counted.
+     */
+    public synchronized void onDecodedOverflow() {
+        overflows++;
+    }
+
+    /**
+     * Returns the missing windows of the gap index, oldest first.
+     * @return The missing windows.
+     */
+    public synchronized ArrayList<Window> getGaps() {
+        int size = (int) Math.min(gaps, GAP_INDEX_SIZE);
+        ArrayList<Window> windows = new ArrayList<>(size);
+        for (long i = gaps - size; i < gaps; i++)
+            windows.add(gapIndex[(int) (i % GAP_INDEX_SIZE)]);
+        return windows;
+    }
+
+    /**
+     * Returns the number of packets passed in.
+     * @return The number of packets.
+     */
+    public synchronized long getPackets() {
+        return packets;
+    }
+
+    /**
+     * Returns the number of missing samples over all windows.
+     * @return The number of missing samples.
+     */
+    public synchronized long getMissingSamples() {
+        return missingSamples;
+    }
+
+    /**
+     * Returns the number of missing windows.
+     * @return The number of missing windows.
+     */
+    public synchronized long getGapCount() {
+        return gaps;
+    }
+
+    /**
+     * Returns the number of duplicate and late packets.
+     * @return The number of duplicate and late packets.
+     */
+    public synchronized long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Returns the number of overflow events.
+     * @return The number of overflow events.
+     */
+    public synchronized long getOverflows() {
+        return overflows;
+    }
+
+    /**
+     * Returns the number of reconnects of the device.
+     * @return The number of reconnects.
+     */
+    public synchronized long getDisconnects() {
+        return disconnects;
+    }
+
+    /**
+     * Returns the sample rate estimated on the current connection, as of the last packet.
+     * @return The estimated sample rate in Hz, or NaN before the first packet.
+     */
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    /**
+     * Returns the arrival jitter measured on the current connection, as of the last packet.
+     * @return The jitter in milliseconds, or NaN before the first packet.
+     */
+    public synchronized double getJitter() {
+        return jitter;
+    }
+
+    private Window add(Window window) {
+        gapIndex[(int) (gaps % GAP_INDEX_SIZE)] = window;
+        gaps++;
+        missingSamples += window.getSamples();
+        return window;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.motionsense.device;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the <code>LossAccountant</code> of every characteristic of every device and publishes
+ * their missing windows.
+ *
+ * Characteristics are created again on every connection, the accountants are kept here so
+ * their counters and gap index cover the whole session.
+ */
+public class LossMonitor {
+    /**
+     * Listener for new missing windows.
+     */
+    public interface OnMissingWindowListener {
+        /**
+         * Called on the decoding thread when samples are found missing.
+         * @param accountant Accountant of the stream the samples are missing from.
+         * @param window Window of the missing samples.
+         */
+        void onMissingWindow(LossAccountant accountant, LossAccountant.Window window);
+    }
+
+    private static final LossMonitor instance = new LossMonitor();
+
+    private final ConcurrentHashMap<String, LossAccountant> accountants = new ConcurrentHashMap<>();
+    private volatile OnMissingWindowListener listener;
+
+    /**
+     * Returns the monitor of this process.
+     * @return The monitor of this process.
+     */
+    public static LossMonitor getInstance() {
+        return instance;
+    }
+
+    LossMonitor() {
+    }
+
+    /**
+     * Returns the accountant of a characteristic of a device, creating it if needed.
+     * @param deviceId Id of the device.
+     * @param name Name of the characteristic.
+     * @return The accountant.
+     */
+    public LossAccountant getAccountant(String deviceId, String name) {
+        String key = deviceId + "/" + name;
+        LossAccountant accountant = accountants.get(key);
+        if (accountant == null) {
+            LossAccountant created = new LossAccountant(deviceId, name, this);
+            accountant = accountants.putIfAbsent(key, created);
+            if (accountant == null)
+                accountant = created;
+        }
+        return accountant;
+    }
+
+    /**
+     * Returns the accountants of all characteristics.
+     * @return The accountants.
+     */
+    public ArrayList<LossAccountant> getAccountants() {
+        return new ArrayList<>(accountants.values());
+    }
+
+    /**
+     * Counts an overflow of the buffer of a device, which holds decoded data of all its
+     * characteristics.
+     * @param deviceId Id of the device.
+     */
+    public void onDecodedOverflow(String deviceId) {
+        for (LossAccountant accountant : accountants.values())
+            if (accountant.getDeviceId().equals(deviceId))
+                accountant.onDecodedOverflow();
+    }
+
+    /**
+     * Sets the listener for new missing windows.
+     * @param listener Listener, or null to remove it.
+     */
+    public void setOnMissingWindowListener(OnMissingWindowListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Removes all accountants, at the end of a session.
+     */
+    public void clear() {
+        accountants.clear();
+    }
+
+    void publish(LossAccountant accountant, LossAccountant.Window window) {
+        OnMissingWindowListener current = listener;
+        if (current != null)
+            current.onMissingWindow(accountant, window);
+    }
+}
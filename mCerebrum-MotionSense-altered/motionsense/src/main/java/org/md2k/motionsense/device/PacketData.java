@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.motionsense.device;
+
+import org.md2k.motionsense.Data;
+
+/**
+ * An undecoded notification, passed on by a <code>Characteristic</code> when batch decoding
+ * is on. It has no sensor or data type yet, <code>BatchDecoder</code> turns it into the
+ * <code>Data</code> of the characteristic's sensors.
+ */
+public class PacketData extends Data {
+    private final Characteristic characteristic;
+    private final byte[] bytes;
+    private final long arrivalTime;
+
+    /**
+     * Constructor
+     * @param characteristic Characteristic the notification belongs to.
+     * @param bytes Notification bytes.
+     * @param arrivalTime Time at which the notification arrived.
+     */
+    PacketData(Characteristic characteristic, byte[] bytes, long arrivalTime) {
+        super(null, null);
+        this.characteristic = characteristic;
+        this.bytes = bytes;
+        this.arrivalTime = arrivalTime;
+    }
+
+    public Characteristic getCharacteristic() {
+        return characteristic;
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public long getArrivalTime() {
+        return arrivalTime;
+    }
+}
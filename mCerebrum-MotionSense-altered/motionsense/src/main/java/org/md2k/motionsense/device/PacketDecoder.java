@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.motionsense.device;
+
+/**
+ * Decodes the notifications of one characteristic into a {@link DecodedBatch} in a single pass
+ * over the packet, without allocating.
+ */
+public abstract class PacketDecoder {
+
+    /**
+     * Returns the number of values decoded from each packet.
+     * @return The number of values decoded from each packet.
+     */
+    public abstract int getColumnCount();
+
+    /**
+     * Returns the sequence number carried in the packet.
+     * @param packet Notification bytes.
+     * @return The sequence number.
+     */
+    public abstract int getSequenceNumber(byte[] packet);
+
+    /**
+     * Decodes the values of a packet into the given row of the batch.
+     * @param packet Notification bytes.
+     * @param batch Batch to write to.
+     * @param row Row of the batch.
+     */
+    protected abstract void decodeValues(byte[] packet, DecodedBatch batch, int row);
+
+    /**
+     * Creates a batch with the column layout of this decoder.
+     * @param capacity Maximum number of packets.
+     * @return The new batch.
+     */
+    public DecodedBatch createBatch(int capacity) {
+        return new DecodedBatch(capacity, getColumnCount());
+    }
+
+    /**
+     * Appends a packet to the batch.
+     * @param packet Notification bytes.
+     * @param timestamp Timestamp of the packet.
+     * @param batch Batch to append to, it must have been created by this decoder.
+     * @return The row the packet was written to.
+     */
+    public int decode(byte[] packet, long timestamp, DecodedBatch batch) {
+        int row = batch.addRow(timestamp, getSequenceNumber(packet), packet);
+        decodeValues(packet, batch, row);
+        return row;
+    }
+
+    /**
+     * Reads a big-endian signed 16 bit value.
+     */
+    protected static int readShort(byte[] bytes, int offset) {
+        return (short) (((bytes[offset] & 0xff) << 8) | (bytes[offset + 1] & 0xff));
+    }
+
+    /**
+     * Reads a big-endian unsigned 16 bit value.
+     */
+    protected static int readUnsignedShort(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xff) << 8) | (bytes[offset + 1] & 0xff);
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.motionsense.device;
+
+/**
+ * Reconstructs the timestamps of the packets of one characteristic of one device from their
+ * sequence numbers and arrival times.
+ *
+ * The sequence numbers are unrolled into a sample index that keeps counting across wrap
+ * arounds, and a line <code>time = offset + index * period</code> is fitted online to the
+ * (index, arrival time) pairs by exponentially weighted least squares. The fit tracks the true
+ * sample rate of the sensor clock instead of the nominal one, so the timestamps of a packet are
+ * placed from its sample position and do not build up drift or jump back to the arrival time.
+ *
+ * Over a gap the arrival times tell how many samples went by, which picks the right number of
+ * wrap arounds even when the sequence number wrapped several times. Duplicate and late packets
+ * get the timestamp of the last packet, the timestamps of new packets strictly increase. When
+ * the arrival times stop matching the fit, e.g. after the device restarted, the fit starts over.
+ *
+ * Not thread safe, packets of a characteristic are decoded one at a time in arrival order.
+ */
+public class TimestampReconstructor {
+    /** Weight kept by the older pairs on every new pair, about the last 500 packets count. */
+    static final double FORGETTING = 0.998;
+    /** Pairs needed before the fitted period is used instead of the nominal one. */
+    static final int MIN_FIT_PACKETS = 16;
+    /** Largest relative difference between the fitted and the nominal sample rate. */
+    static final double MAX_RATE_ERROR = 0.05;
+    /** Residual after which the fit is thrown away, e.g. when the device was restarted. */
+    static final long MAX_RESIDUAL_MILLIS = 1000;
+
+    private final double nominalPeriod;
+    private final int sequenceLimit;
+
+    private boolean started = false;
+    private int lastSequence;
+    private long lastIndex;
+    private long lastArrival;
+    private long lastTimestamp;
+
+    //Weighted sums over the pairs, relative to the last pair to keep them small
+    private double weight;
+    private double sumIndex;
+    private double sumTime;
+    private double sumIndexIndex;
+    private double sumIndexTime;
+    private int fitPackets;
+    private double jitterSquared;
+
+    private long packets;
+    private long missing;
+    private long duplicates;
+    private long resyncs;
+
+    /**
+     * Constructor
+     * @param frequency Nominal sampling frequency in Hz.
+     * @param sequenceLimit Value at which the sequence number wraps around.
+     */
+    public TimestampReconstructor(double frequency, int sequenceLimit) {
+        if (frequency <= 0 || sequenceLimit <= 1)
+            throw new IllegalArgumentException("frequency and sequenceLimit must be positive");
+        this.nominalPeriod = 1000.0 / frequency;
+        this.sequenceLimit = sequenceLimit;
+    }
+
+    /**
+     * Returns the timestamp of a packet. Packets have to be passed in the order they arrived.
+     * @param sequence Sequence number of the packet.
+     * @param arrivalTime Time at which the packet arrived.
+     * @return The reconstructed timestamp.
+     */
+    public long reconstruct(int sequence, long arrivalTime) {
+        packets++;
+        if (!started) {
+            started = true;
+            lastSequence = sequence;
+            lastTimestamp = arrivalTime;
+            addPair(0, arrivalTime);
+            return arrivalTime;
+        }
+
+        long step = unroll(sequence, arrivalTime);
+        if (step <= 0) {
+            if (arrivalTime - predict(lastIndex) <= MAX_RESIDUAL_MILLIS) {
+                duplicates++;
+                return lastTimestamp;
+            }
+            //Went back long after the last packet, the device restarted its sequence numbers
+            resyncs++;
+            clearFit();
+            step = Math.max(1, Math.round((arrivalTime - lastArrival) / nominalPeriod));
+        } else {
+            missing += step - 1;
+        }
+        long index = lastIndex + step;
+
+        double residual = arrivalTime - predict(index);
+        if (fitPackets >= MIN_FIT_PACKETS && Math.abs(residual) > MAX_RESIDUAL_MILLIS) {
+            resyncs++;
+            clearFit();
+        } else if (fitPackets > 0) {
+            jitterSquared = FORGETTING * jitterSquared + (1 - FORGETTING) * residual * residual;
+        }
+        addPair(index, arrivalTime);
+
+        long timestamp = Math.round(predict(index));
+        if (timestamp <= lastTimestamp)
+            timestamp = lastTimestamp + 1;
+        lastSequence = sequence;
+        lastTimestamp = timestamp;
+        return timestamp;
+    }
+
+    /**
+     * Returns the sample index of the last new packet, counted from the first packet.
+     * @return The sample index of the last new packet.
+     */
+    public long getLastIndex() {
+        return lastIndex;
+    }
+
+    /**
+     * Returns the estimated sample rate of the sensor.
+     * @return The estimated sample rate in Hz.
+     */
+    public double getRate() {
+        return 1000.0 / getPeriod();
+    }
+
+    /**
+     * Returns the root mean square difference between the arrival times and the fit.
+     * @return The jitter in milliseconds.
+     */
+    public double getJitter() {
+        return Math.sqrt(jitterSquared);
+    }
+
+    /**
+     * Returns the number of packets passed in.
+     * @return The number of packets.
+     */
+    public long getPackets() {
+        return packets;
+    }
+
+    /**
+     * Returns the number of samples skipped by the sequence numbers.
+     * @return The number of missing samples.
+     */
+    public long getMissing() {
+        return missing;
+    }
+
+    /**
+     * Returns the number of duplicate and late packets.
+     * @return The number of duplicate and late packets.
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Returns the number of times the fit was thrown away.
+     * @return The number of resyncs.
+     */
+    public long getResyncs() {
+        return resyncs;
+    }
+
+    /**
+     * Returns the number of samples since the last packet, choosing the number of wrap
+     * arounds that best matches the time since the last packet.
+     */
+    private long unroll(int sequence, long arrivalTime) {
+        long step = ((sequence - lastSequence) % sequenceLimit + sequenceLimit) % sequenceLimit;
+        double expected = (arrivalTime - lastArrival) / getPeriod();
+        long wraps = Math.round((expected - step) / sequenceLimit);
+        return step + wraps * sequenceLimit;
+    }
+
+    private double getPeriod() {
+        if (fitPackets < MIN_FIT_PACKETS)
+            return nominalPeriod;
+        double meanIndex = sumIndex / weight;
+        double varIndex = sumIndexIndex / weight - meanIndex * meanIndex;
+        if (varIndex <= 0)
+            return nominalPeriod;
+        double period = (sumIndexTime / weight - meanIndex * sumTime / weight) / varIndex;
+        double min = nominalPeriod / (1 + MAX_RATE_ERROR);
+        double max = nominalPeriod / (1 - MAX_RATE_ERROR);
+        return Math.min(max, Math.max(min, period));
+    }
+
+    private double predict(long index) {
+        if (fitPackets == 0)
+            return lastArrival + (index - lastIndex) * nominalPeriod;
+        double relative = index - lastIndex;
+        return lastArrival + sumTime / weight + (relative - sumIndex / weight) * getPeriod();
+    }
+
+    /**
+     * Adds a pair to the fit and moves the sums so they are relative to it, it becomes the
+     * last pair.
+     */
+    private void addPair(long index, long arrivalTime) {
+        if (fitPackets > 0) {
+            double d = index - lastIndex;
+            double e = arrivalTime - lastArrival;
+            sumIndexIndex += d * (d * weight - 2 * sumIndex);
+            sumIndexTime += d * e * weight - e * sumIndex - d * sumTime;
+            sumIndex -= d * weight;
+            sumTime -= e * weight;
+        }
+        weight = FORGETTING * weight + 1;
+        sumIndex *= FORGETTING;
+        sumTime *= FORGETTING;
+        sumIndexIndex *= FORGETTING;
+        sumIndexTime *= FORGETTING;
+        fitPackets++;
+        lastIndex = index;
+        lastArrival = arrivalTime;
+    }
+
+    private void clearFit() {
+        weight = 0;
+        sumIndex = 0;
+        sumTime = 0;
+        sumIndexIndex = 0;
+        sumIndexTime = 0;
+        fitPackets = 0;
+    }
+}
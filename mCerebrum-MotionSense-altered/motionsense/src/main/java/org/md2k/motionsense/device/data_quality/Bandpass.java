@@ -31,7 +31,10 @@ package org.md2k.motionsense.device.data_quality;
  * Implements an band-pass filter.
  */
 public class Bandpass {
-    private final double[] impulse = {-0.0035133392894004505000000,-0.0018185253897897561000000,0.0001362300456919887800000,0.0021757465621752453000000,0.0039102182197532582000000,0.0049643563411005667000000,0.0051890043988177927000000,0.0047307680573089881000000,0.0039322637031608317000000,0.0031398991804260394000000,0.0025399483749335501000000,0.0021066456524945483000000,0.0016646758380298170000000,0.0010044546080956633000000,-0.0000188626247056277020000,-0.0014325649293422124000000,-0.0031288036945600933000000,-0.0048665007259995965000000,-0.0063048807335999461000000,-0.0070998572651411879000000,-0.0070653205826583824000000,-0.0063300549201346567000000,-0.0053665976021896496000000,-0.0048000144783939295000000,-0.0050370770617146603000000,-0.0059168001564718544000000,-0.0066463209076342471000000,-0.0061643773844565564000000,-0.0038031063088687011000000,0.0001382974264806456700000,0.0043380873564161449000000,0.0070850938389917786000000,0.0073231155570259148000000,0.0054741694118614695000000,0.0034226232786069362000000,0.0034958176961065570000000,0.0069395486345310538000000,0.0128346382018060240000000,0.0182794822759374530000000,0.0199506827224721490000000,0.0162341647866930910000000,0.0085873448026112555000000,0.0010791942436752867000000,-0.0018968515670296047000000,0.0014851999053178940000000,0.0088194911290716185000000,0.0143490051388851010000000,0.0122347609069132120000000,0.0004501570679003431900000,-0.0171646009278480260000000,-0.0323527534114383610000000,-0.0370522570581575740000000,-0.0287230585082790710000000,-0.0130802830847105460000000,-0.0020193810740987313000000,-0.0071652144566099075000000,-0.0322463659747337440000000,-0.0687131252563716600000000,-0.0977562602794080640000000,-0.0986035450562728760000000,-0.0593739948230820260000000,0.0150998897109112970000000,0.1029979617032396200000000,0.1736608660230861400000000,0.2006737282636335800000000,0.1736608660230861400000000,0.1029979617032396200000000,0.0150998897109112970000000,-0.0593739948230820260000000,-0.0986035450562728760000000,-0.0977562602794080640000000,-0.0687131252563716600000000,-0.0322463659747337440000000,-0.0071652144566099075000000,-0.0020193810740987313000000,-0.0130802830847105460000000,-0.0287230585082790710000000,-0.0370522570581575740000000,-0.0323527534114383610000000,-0.0171646009278480260000000,0.0004501570679003431900000,0.0122347609069132120000000,0.0143490051388851010000000,0.0088194911290716185000000,0.0014851999053178940000000,-0.0018968515670296047000000,0.0010791942436752867000000,0.0085873448026112555000000,0.0162341647866930910000000,0.0199506827224721490000000,0.0182794822759374530000000,0.0128346382018060240000000,0.0069395486345310538000000,0.0034958176961065570000000,0.0034226232786069362000000,0.0054741694118614695000000,0.0073231155570259148000000,0.0070850938389917786000000,0.0043380873564161449000000,0.0001382974264806456700000,-0.0038031063088687011000000,-0.0061643773844565564000000,-0.0066463209076342471000000,-0.0059168001564718544000000,-0.0050370770617146603000000,-0.0048000144783939295000000,-0.0053665976021896496000000,-0.0063300549201346567000000,-0.0070653205826583824000000,-0.0070998572651411879000000,-0.0063048807335999461000000,-0.0048665007259995965000000,-0.0031288036945600933000000,-0.0014325649293422124000000,-0.0000188626247056277020000,0.0010044546080956633000000,0.0016646758380298170000000,0.0021066456524945483000000,0.0025399483749335501000000,0.0031398991804260394000000,0.0039322637031608317000000,0.0047307680573089881000000,0.0051890043988177927000000,0.0049643563411005667000000,0.0039102182197532582000000,0.0021757465621752453000000,0.0001362300456919887800000,-0.0018185253897897561000000,-0.0035133392894004505000000};
+    static final double[] IMPULSE = {-0.0035133392894004505000000,-0.0018185253897897561000000,0.0001362300456919887800000,0.0021757465621752453000000,0.0039102182197532582000000,0.0049643563411005667000000,0.0051890043988177927000000,0.0047307680573089881000000,0.0039322637031608317000000,0.0031398991804260394000000,0.0025399483749335501000000,0.0021066456524945483000000,0.0016646758380298170000000,0.0010044546080956633000000,-0.0000188626247056277020000,-0.0014325649293422124000000,-0.0031288036945600933000000,-0.0048665007259995965000000,-0.0063048807335999461000000,-0.0070998572651411879000000,-0.0070653205826583824000000,-0.0063300549201346567000000,-0.0053665976021896496000000,-0.0048000144783939295000000,-0.0050370770617146603000000,-0.0059168001564718544000000,-0.0066463209076342471000000,-0.0061643773844565564000000,-0.0038031063088687011000000,0.0001382974264806456700000,0.0043380873564161449000000,0.0070850938389917786000000,0.0073231155570259148000000,0.0054741694118614695000000,0.0034226232786069362000000,0.0034958176961065570000000,0.0069395486345310538000000,0.0128346382018060240000000,0.0182794822759374530000000,0.0199506827224721490000000,0.0162341647866930910000000,0.0085873448026112555000000,0.0010791942436752867000000,-0.0018968515670296047000000,0.0014851999053178940000000,0.0088194911290716185000000,0.0143490051388851010000000,0.0122347609069132120000000,0.0004501570679003431900000,-0.0171646009278480260000000,-0.0323527534114383610000000,-0.0370522570581575740000000,-0.0287230585082790710000000,-0.0130802830847105460000000,-0.0020193810740987313000000,-0.0071652144566099075000000,-0.0322463659747337440000000,-0.0687131252563716600000000,-0.0977562602794080640000000,-0.0986035450562728760000000,-0.0593739948230820260000000,0.0150998897109112970000000,0.1029979617032396200000000,0.1736608660230861400000000,0.2006737282636335800000000,0.1736608660230861400000000,0.1029979617032396200000000,0.0150998897109112970000000,-0.0593739948230820260000000,-0.0986035450562728760000000,-0.0977562602794080640000000,-0.0687131252563716600000000,-0.0322463659747337440000000,-0.0071652144566099075000000,-0.0020193810740987313000000,-0.0130802830847105460000000,-0.0287230585082790710000000,-0.0370522570581575740000000,-0.0323527534114383610000000,-0.0171646009278480260000000,0.0004501570679003431900000,0.0122347609069132120000000,0.0143490051388851010000000,0.0088194911290716185000000,0.0014851999053178940000000,-0.0018968515670296047000000,0.0010791942436752867000000,0.0085873448026112555000000,0.0162341647866930910000000,0.0199506827224721490000000,0.0182794822759374530000000,0.0128346382018060240000000,0.0069395486345310538000000,0.0034958176961065570000000,0.0034226232786069362000000,0.0054741694118614695000000,0.0073231155570259148000000,0.0070850938389917786000000,0.0043380873564161449000000,0.0001382974264806456700000,-0.0038031063088687011000000,-0.0061643773844565564000000,-0.0066463209076342471000000,-0.0059168001564718544000000,-0.0050370770617146603000000,-0.0048000144783939295000000,-0.0053665976021896496000000,-0.0063300549201346567000000,-0.0070653205826583824000000,-0.0070998572651411879000000,-0.0063048807335999461000000,-0.0048665007259995965000000,-0.0031288036945600933000000,-0.0014325649293422124000000,-0.0000188626247056277020000,0.0010044546080956633000000,0.0016646758380298170000000,0.0021066456524945483000000,0.0025399483749335501000000,0.0031398991804260394000000,0.0039322637031608317000000,0.0047307680573089881000000,0.0051890043988177927000000,0.0049643563411005667000000,0.0039102182197532582000000,0.0021757465621752453000000,0.0001362300456919887800000,-0.0018185253897897561000000,-0.0035133392894004505000000};
+    /** Shortest valid output for which the FFT path is faster than the direct convolution. */
+    static final int FFT_MIN_OUTPUTS = 4 * IMPULSE.length;
+    private static final OverlapSaveFilter FFT_FILTER = new OverlapSaveFilter(IMPULSE);
     private double[] data;
     private int len_of_filter;
     public double[] output;
@@ -42,8 +45,8 @@ public class Bandpass {
      */
     public Bandpass(double[] data){
         this.data = data;
-        this.len_of_filter = this.impulse.length;
-        this.output = new double[data.length-impulse.length + 1];
+        this.len_of_filter = IMPULSE.length;
+        this.output = new double[data.length-IMPULSE.length + 1];
         normalize();
         convolve();
     }
@@ -93,15 +96,13 @@ public class Bandpass {
     }
 
     /**
-     * Applies the bandpass filter to the signal.
+     * Applies the bandpass filter to the signal, long signals go through the FFT.
      */
     private void convolve(){
-        for(int i = len_of_filter - 1; i < data.length; i++){
-            output[i - len_of_filter + 1] = 0;
-            for (int j = 0; j < impulse.length; j++){
-                output[i - len_of_filter + 1] = output[i - len_of_filter + 1] + impulse[j] * data[i-j];
-            }
-        }
+        if (output.length >= FFT_MIN_OUTPUTS)
+            FFT_FILTER.filter(data, data.length, output);
+        else
+            FirFilter.convolve(IMPULSE, data, output);
     }
 
     /**
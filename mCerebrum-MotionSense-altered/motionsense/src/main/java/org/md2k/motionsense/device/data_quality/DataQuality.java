@@ -35,7 +35,6 @@ import org.md2k.datakitapi.time.DateTime;
 import org.md2k.motionsense.Data;
 import org.md2k.motionsense.device.Sensor;
 
-import java.util.ArrayList;
 import java.util.concurrent.TimeUnit;
 
 import rx.Observable;
@@ -44,14 +43,12 @@ import rx.Observable;
  * Provides methods for starting data collection and summarizing said data.
  */
 public abstract class DataQuality {
-    private static final int DELAY = 3000;
-    ArrayList<DataTypeDoubleArray> samples;
+    static final int DELAY = 3000;
 
     /**
      * Constructor
      */
     DataQuality(){
-        samples = new ArrayList<>();
     }
 
     /**
@@ -73,12 +70,10 @@ public abstract class DataQuality {
     }
 
     /**
-     * Adds the given sample.
+     * Adds the given sample to the running statistics.
      * @param sample Sample to add.
      */
-    public synchronized void add(DataTypeDoubleArray sample) {
-        samples.add(sample);
-    }
+    public abstract void add(DataTypeDoubleArray sample);
 
     /**
      * Returns the summary.
@@ -27,8 +27,8 @@
 
 package org.md2k.motionsense.device.data_quality;
 
-import android.util.Log;
-
+import org.md2k.datakitapi.datatype.DataTypeDoubleArray;
+import org.md2k.datakitapi.time.DateTime;
 import org.md2k.mcerebrum.core.data_format.DATA_QUALITY;
 
 /**
@@ -39,72 +39,48 @@ public class DataQualityAccelerometer extends DataQuality{
     // It compares with the wrist accelerometer on-body from participant #11 (smoking pilot study)
     private final static float MAGNITUDE_VARIANCE_THRESHOLD = (float) 0.01;
 
-    /**
-     * Returns the current data quality.
-     * @return The current data quality.
-     */
-    public synchronized int getStatus() {
-        try {
-            int status;
-            int size = samples.size();
-            double samps[] = new double[size];
-            for (int i = 0; i < size; i++)
-                samps[i] = samples.get(i).getSample()[0];
-            samples.clear();
-            status = currentQuality(samps);
-            return status;
-        }catch (Exception e){
-            return DATA_QUALITY.GOOD;
-        }
-    }
-
-    /**
-     * Returns the mean of the given data.
-     * @param data Data to process.
-     * @return The mean of the given data.
-     */
-    private double getMean(double[] data) {
-        double sum = 0.0;
-        for (double a : data)
-            sum += a;
-        return sum / data.length;
-    }
+    // x axis over the last status period, it used to be collected and cleared on every check
+    private final WindowedStatistics x = new WindowedStatistics(DELAY);
 
     /**
-     * Returns the variance in the given data.
-     * @param data Data to process.
-     * @return The variance in the given data.
+     * Adds the x axis of the given sample to the running statistics.
+     * @param sample Sample to add.
      */
-    private double getVariance(double[] data) {
-        double mean = getMean(data);
-        double temp = 0;
-        for (double a : data)
-            temp += (mean - a) * (mean - a);
-        return temp / data.length;
+    @Override
+    public synchronized void add(DataTypeDoubleArray sample) {
+        double[] values = sample.getSample();
+        if (values != null && values.length > 0)
+            x.add(sample.getDateTime(), values[0]);
     }
 
     /**
-     * Returns the standard deviation of the given data.
-     * @param data Data to process.
-     * @return The standard deviation of the given data.
+     * Returns the current data quality.
+     * @return The current data quality.
      */
-    private double getStdDev(double[] data) {
-        return Math.sqrt(getVariance(data));
+    public int getStatus() {
+        long curTime = DateTime.getDateTime();
+        int count;
+        double sd;
+        synchronized (this) {
+            x.expire(curTime);
+            count = x.getCount();
+            sd = x.getStdDev();
+        }
+        return currentQuality(count, sd);
     }
 
     /**
      * Determines if the MotionSense sensor is turned off, not worn, or good.
-     * @param x Data from the x axis.
+     * @param count Number of x axis samples in the window.
+     * @param sd Standard deviation of the x axis.
      * @return The data quality.
      */
-    private int currentQuality(double[] x) {
-        int len_x = x.length;
-        if (len_x == 0)
+    private int currentQuality(int count, double sd) {
+        if (count == 0)
             return DATA_QUALITY.BAND_OFF;
-        double sd = getStdDev(x);
         if (sd < MAGNITUDE_VARIANCE_THRESHOLD)
             return DATA_QUALITY.NOT_WORN;
 
         return DATA_QUALITY.GOOD;
     }
-}
\ No newline at end of file
+}
@@ -31,86 +31,61 @@ import org.md2k.datakitapi.datatype.DataTypeDoubleArray;
 import org.md2k.datakitapi.time.DateTime;
 import org.md2k.mcerebrum.core.data_format.DATA_QUALITY;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-
 /**
  * Determines what the quality of the data from the LED is.
+ *
+ * Every LED channel keeps windowed statistics of the last eight seconds and runs the samples
+ * through a streaming band-pass filter as they arrive, so a status check only reads a few
+ * running values instead of re-scanning and re-filtering the whole window.
  */
 public class DataQualityLed extends DataQuality {
+    private static final int CHANNELS = 3;
+    private static final long WINDOW = 8000;
+    private static final long RECENT = 3000;
+    private static final double[] LOW = {30000, 140000, 3000};
+    private static final double[] HIGH = {170000, 230000, 20000};
+    /** Minimum standard deviation of the band-pass output of a worn band. */
+    private static final double BANDPASS_THRESHOLD = 5;
 
-    /**
-     * Returns whether the last three seconds of data are good.
-     * @param values Data to check.
-     * @return Whether the last three seconds of data are good.
-     */
-    private boolean[] isGood3Sec(ArrayList<DataTypeDoubleArray> values) {
-        double[] sum = new double[]{0, 0, 0};
-        boolean[] res = new boolean[6];
-        int[] count = new int[3];
-        for (int i = 0; i < values.size(); i++) {
-            sum[0] += values.get(i).getSample()[0];
-            sum[1] += values.get(i).getSample()[1];
-            sum[2] += values.get(i).getSample()[2];
-            if (values.get(i).getSample()[0] < 30000 || values.get(i).getSample()[0] > 170000) {
-                count[0]++;
-            }
-            if (values.get(i).getSample()[1] < 140000 || values.get(i).getSample()[1] > 230000) {
-                count[1]++;
-            }
-            if (values.get(i).getSample()[2] < 3000 || values.get(i).getSample()[2] > 20000) {
-                count[2]++;
-            }
-        }
-        res[0] = count[0] < (int) (.34 * values.size());
-        res[1] = count[1] < (int) (.34 * values.size());
-        res[2] = count[2] < (int) (.34 * values.size());
-        return res;
-    }
+    private final WindowedStatistics[] channels = new WindowedStatistics[CHANNELS];
+    private final FirFilter[] filters = new FirFilter[CHANNELS];
+    private final WindowedStatistics[] filtered = new WindowedStatistics[CHANNELS];
 
     /**
-     * Returns the mean of the given data.
-     * @param values Data to check.
-     * @return The mean of the given data.
+     * Constructor
      */
-    private int[] getMean(ArrayList<DataTypeDoubleArray> values) {
-        int[] sum = new int[3];
-        for (int i = 0; i < values.size(); i++) {
-            sum[0] += values.get(i).getSample()[0];
-            sum[1] += values.get(i).getSample()[1];
-            sum[2] += values.get(i).getSample()[2];
-        }
-        for (int i = 0; i < 3; i++) {
-            sum[i] = sum[i] / values.size();
+    public DataQualityLed() {
+        for (int c = 0; c < CHANNELS; c++) {
+            channels[c] = new WindowedStatistics(WINDOW, LOW[c], HIGH[c]);
+            filters[c] = new FirFilter(Bandpass.IMPULSE);
+            filtered[c] = new WindowedStatistics(WINDOW);
         }
-        return sum;
     }
 
     /**
-     * Returns the last three seconds of data collected.
-     * @return The last three seconds of data collected.
+     * Adds the given sample to the running statistics and the band-pass filters.
+     * @param sample Sample to add.
      */
-    private ArrayList<DataTypeDoubleArray> getLast3Sec() {
-        long curTime = DateTime.getDateTime();
-        ArrayList<DataTypeDoubleArray> l = new ArrayList<>();
-        for (int i = 0; i < samples.size(); i++) {
-            if (curTime - samples.get(i).getDateTime() <= 3000)
-                l.add(samples.get(i));
+    @Override
+    public synchronized void add(DataTypeDoubleArray sample) {
+        long time = sample.getDateTime();
+        double[] values = sample.getSample();
+        if (values == null || values.length < CHANNELS)
+            return;
+        long lastTime = channels[0].getLastTime();
+        if (lastTime != Long.MIN_VALUE && time - lastTime >= WINDOW) {
+            // The band was gone for a whole window, don't filter across the gap
+            for (int c = 0; c < CHANNELS; c++) {
+                filters[c].reset();
+                filtered[c].clear();
+            }
         }
-        return l;
-    }
-
-    /**
-     * Returns the data sample stored at the given index.
-     * @param index Index of the sample to get.
-     * @return The data sample stored at the given index.
-     */
-    private double[] getSample(int index) {
-        double[] d = new double[samples.size()];
-        for (int i = 0; i < samples.size(); i++) {
-            d[i] = samples.get(i).getSample()[index];
+        for (int c = 0; c < CHANNELS; c++) {
+            channels[c].add(time, values[c]);
+            double output = filters[c].process(values[c]);
+            if (filters[c].isPrimed())
+                filtered[c].add(time, output);
         }
-        return d;
     }
 
     /**
@@ -118,48 +93,54 @@ public class DataQualityLed extends DataQuality {
      * @return The data quality status of the LED.
      */
     @Override
-    public synchronized int getStatus() {
-        try {
-            long curTime = DateTime.getDateTime();
-            Iterator<DataTypeDoubleArray> i = samples.iterator();
-            while (i.hasNext()) {
-                if (curTime - i.next().getDateTime() >= 8000)
-                    i.remove();
-            }
-            ArrayList<DataTypeDoubleArray> last3Sec = getLast3Sec();
-            if (last3Sec.size() == 0)
-                return DATA_QUALITY.BAND_OFF;
-            boolean[] sec3mean = isGood3Sec(samples);
-            if (!sec3mean[0] && !sec3mean[1] && !sec3mean[2])
-                return DATA_QUALITY.NOT_WORN;
-            int[] mean = getMean(samples);
-            if (mean[0] < 5000 && mean[1] < 5000 && mean[2] < 5000)
-                return DATA_QUALITY.NOT_WORN;
-            boolean check = mean[0] > mean[2] && mean[1] > mean[0] && mean[1] > mean[2];
-            if (!check)
-                return DATA_QUALITY.BAND_LOOSE;
-            int diff;
-            if (mean[0] > 140000) {
-                diff = 15000;
-            } else {
-                diff = 50000;
-            }
-            boolean check1 = mean[0] - mean[2] > 50000 && mean[1] - mean[0] > diff;
-            if (!check1)
-                return DATA_QUALITY.BAND_LOOSE;
-            if (sec3mean[0] && new Bandpass(getSample(0)).getResult()) {
-                return DATA_QUALITY.GOOD;
-            }
-            if (sec3mean[1] && new Bandpass(getSample(1)).getResult()) {
-                return DATA_QUALITY.GOOD;
-            }
-            if (sec3mean[2] && new Bandpass(getSample(2)).getResult()) {
-
-                return DATA_QUALITY.GOOD;
+    public int getStatus() {
+        long curTime = DateTime.getDateTime();
+        long lastTime;
+        int count;
+        int[] outOfRange = new int[CHANNELS];
+        double[] mean = new double[CHANNELS];
+        double[] filteredSd = new double[CHANNELS];
+        int[] filteredCount = new int[CHANNELS];
+        synchronized (this) {
+            lastTime = channels[0].getLastTime();
+            for (int c = 0; c < CHANNELS; c++) {
+                channels[c].expire(curTime);
+                filtered[c].expire(curTime);
+                outOfRange[c] = channels[c].getOutOfRange();
+                mean[c] = channels[c].getMean();
+                filteredSd[c] = filtered[c].getStdDev();
+                filteredCount[c] = filtered[c].getCount();
             }
+            count = channels[0].getCount();
+        }
+        if (count == 0 || curTime - lastTime > RECENT)
+            return DATA_QUALITY.BAND_OFF;
+        boolean[] sec3mean = new boolean[CHANNELS];
+        for (int c = 0; c < CHANNELS; c++)
+            sec3mean[c] = outOfRange[c] < (int) (.34 * count);
+        if (!sec3mean[0] && !sec3mean[1] && !sec3mean[2])
             return DATA_QUALITY.NOT_WORN;
-        } catch (Exception e) {
+        if (mean[0] < 5000 && mean[1] < 5000 && mean[2] < 5000)
+            return DATA_QUALITY.NOT_WORN;
+        boolean check = mean[0] > mean[2] && mean[1] > mean[0] && mean[1] > mean[2];
+        if (!check)
+            return DATA_QUALITY.BAND_LOOSE;
+        int diff;
+        if (mean[0] > 140000) {
+            diff = 15000;
+        } else {
+            diff = 50000;
+        }
+        boolean check1 = mean[0] - mean[2] > 50000 && mean[1] - mean[0] > diff;
+        if (!check1)
+            return DATA_QUALITY.BAND_LOOSE;
+        // A window shorter than the filter used to make Bandpass throw, which reported GOOD
+        if (count < Bandpass.IMPULSE.length)
             return DATA_QUALITY.GOOD;
+        for (int c = 0; c < CHANNELS; c++) {
+            if (sec3mean[c] && (filteredCount[c] == 0 || filteredSd[c] >= BANDPASS_THRESHOLD))
+                return DATA_QUALITY.GOOD;
         }
+        return DATA_QUALITY.NOT_WORN;
     }
-}
\ No newline at end of file
+}
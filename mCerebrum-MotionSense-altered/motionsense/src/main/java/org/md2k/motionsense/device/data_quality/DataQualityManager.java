@@ -94,11 +94,20 @@ public class DataQualityManager {
      * @param data <code>Data</code> to add.
      */
     public void addData(Data data) {
-        String name = data.getSensor().getDeviceType() + data.getSensor().getDeviceId() +
-                data.getSensor().getDataSourceType();
-        if (!dataQualityHashMap.containsKey(name))
+        DataQuality dataQuality = findDataQuality(data.getSensor());
+        if (dataQuality == null)
             return;
-        dataQualityHashMap.get(name).add((DataTypeDoubleArray) data.getDataType());
+        dataQuality.add((DataTypeDoubleArray) data.getDataType());
+    }
+
+    /**
+     * Returns the <code>DataQuality</code> that the samples of the given data <code>Sensor</code> feed.
+     * @param sensor <code>Sensor</code> that produces the samples.
+     * @return The <code>DataQuality</code>, null if no data quality is computed from this sensor.
+     */
+    public DataQuality findDataQuality(Sensor sensor) {
+        String name = sensor.getDeviceType() + sensor.getDeviceId() + sensor.getDataSourceType();
+        return dataQualityHashMap.get(name);
     }
 
     /**
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.motionsense.device.data_quality;
+
+/**
+ * Streaming finite impulse response filter.
+ *
+ * Samples are pushed one at a time into a circular delay line and each push returns the filter
+ * output for the newest sample, so a filter that runs along a live stream costs O(taps) per
+ * sample and never re-scans earlier data. The delay line is stored twice in a row, which keeps
+ * the last taps samples contiguous without any wrap-around test in the inner loop.
+ *
+ * Once taps samples have been pushed ({@link #isPrimed()}) the outputs are the same as the
+ * valid part of the full convolution that Bandpass computes.
+ */
+public class FirFilter {
+    private final double[] taps;
+    private final double[] delay;
+    private final int length;
+    private int head;
+    private int filled;
+
+    /**
+     * Constructor
+     * @param taps Impulse response of the filter, taps[0] weights the newest sample.
+     */
+    public FirFilter(double[] taps) {
+        if (taps.length == 0)
+            throw new IllegalArgumentException("The filter needs at least one tap");
+        this.taps = taps.clone();
+        this.length = taps.length;
+        this.delay = new double[2 * length];
+        this.head = 0;
+        this.filled = 0;
+    }
+
+    /**
+     * Pushes one sample through the filter.
+     * @param sample New input sample.
+     * @return The filter output for this sample, samples before the first one count as zero.
+     */
+    public double process(double sample) {
+        head = head == 0 ? length - 1 : head - 1;
+        delay[head] = sample;
+        delay[head + length] = sample;
+        if (filled < length)
+            filled++;
+        double sum = 0;
+        for (int j = 0, k = head; j < length; j++, k++)
+            sum += taps[j] * delay[k];
+        return sum;
+    }
+
+    /**
+     * Pushes a run of samples through the filter.
+     * @param in Input samples.
+     * @param inOffset Index of the first input sample.
+     * @param count Number of samples to process.
+     * @param out Receives one output per input sample.
+     * @param outOffset Index of the first output.
+     */
+    public void process(double[] in, int inOffset, int count, double[] out, int outOffset) {
+        for (int i = 0; i < count; i++)
+            out[outOffset + i] = process(in[inOffset + i]);
+    }
+
+    /**
+     * Returns whether the delay line is full, from then on every output depends only on real
+     * samples.
+     * @return Whether taps samples have been pushed since the last reset.
+     */
+    public boolean isPrimed() {
+        return filled == length;
+    }
+
+    /**
+     * Returns the number of taps.
+     * @return The number of taps.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Clears the delay line, used when the stream has a gap.
+     */
+    public void reset() {
+        for (int i = 0; i < delay.length; i++)
+            delay[i] = 0;
+        head = 0;
+        filled = 0;
+    }
+
+    /**
+     * Computes the valid part of the convolution of data with taps directly, out[i] is the
+     * filter output for data[i + taps.length - 1].
+     * @param taps Impulse response.
+     * @param data Input samples.
+     * @param out Receives data.length - taps.length + 1 outputs.
+     */
+    public static void convolve(double[] taps, double[] data, double[] out) {
+        int m = taps.length;
+        for (int i = m - 1; i < data.length; i++) {
+            double sum = 0;
+            for (int j = 0; j < m; j++)
+                sum += taps[j] * data[i - j];
+            out[i - m + 1] = sum;
+        }
+    }
+}
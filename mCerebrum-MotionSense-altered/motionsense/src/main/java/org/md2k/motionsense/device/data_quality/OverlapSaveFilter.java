@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.motionsense.device.data_quality;
+
+import java.util.Arrays;
+
+/**
+ * FIR filter for large batches using FFT overlap-save.
+ *
+ * The input is cut into overlapping blocks of fftSize samples that advance by
+ * fftSize - taps + 1, each block is multiplied with the precomputed spectrum of the taps and
+ * the first taps - 1 outputs of every block, which wrapped around, are thrown away. Since the
+ * input and the taps are real, two blocks are packed into the real and imaginary part of one
+ * complex transform. The cost per output is O(log fftSize) instead of O(taps), which pays off
+ * once a batch is several times longer than the filter.
+ *
+ * The kernel spectrum is computed once and never changed, so one instance can be shared
+ * between threads, {@link #filter(double[], int, double[])} allocates its own work buffers.
+ */
+public class OverlapSaveFilter {
+    private final int taps;
+    private final int fftSize;
+    private final int step;
+    private final double[] kernelRe;
+    private final double[] kernelIm;
+    private final double[] cos;
+    private final double[] sin;
+    private final int[] bitReverse;
+
+    /**
+     * Constructor, picks an FFT size of at least four times the filter length.
+     * @param impulse Impulse response of the filter.
+     */
+    public OverlapSaveFilter(double[] impulse) {
+        this(impulse, Integer.highestOneBit(Math.max(4 * impulse.length - 1, 1)) << 1);
+    }
+
+    /**
+     * Constructor
+     * @param impulse Impulse response of the filter.
+     * @param fftSize Block length, a power of two larger than the filter.
+     */
+    public OverlapSaveFilter(double[] impulse, int fftSize) {
+        if (impulse.length == 0)
+            throw new IllegalArgumentException("The filter needs at least one tap");
+        if (Integer.bitCount(fftSize) != 1 || fftSize <= impulse.length)
+            throw new IllegalArgumentException("fftSize must be a power of two larger than the filter");
+        this.taps = impulse.length;
+        this.fftSize = fftSize;
+        this.step = fftSize - taps + 1;
+
+        cos = new double[fftSize / 2];
+        sin = new double[fftSize / 2];
+        for (int i = 0; i < fftSize / 2; i++) {
+            double angle = -2 * Math.PI * i / fftSize;
+            cos[i] = Math.cos(angle);
+            sin[i] = Math.sin(angle);
+        }
+        bitReverse = new int[fftSize];
+        int bits = Integer.numberOfTrailingZeros(fftSize);
+        for (int i = 0; i < fftSize; i++)
+            bitReverse[i] = Integer.reverse(i) >>> (32 - bits);
+
+        //The 1/fftSize of the inverse transform is folded into the kernel
+        kernelRe = new double[fftSize];
+        kernelIm = new double[fftSize];
+        for (int i = 0; i < taps; i++)
+            kernelRe[i] = impulse[i] / fftSize;
+        transform(kernelRe, kernelIm, false);
+    }
+
+    /**
+     * Returns the number of taps.
+     * @return The number of taps.
+     */
+    public int getLength() {
+        return taps;
+    }
+
+    /**
+     * Returns the FFT block length.
+     * @return The FFT block length.
+     */
+    public int getFftSize() {
+        return fftSize;
+    }
+
+    /**
+     * Computes the valid part of the convolution, the same outputs as
+     * {@link FirFilter#convolve(double[], double[], double[])} up to rounding.
+     * @param data Input samples.
+     * @param count Number of input samples to use.
+     * @param out Receives count - taps + 1 outputs, out[i] is the output for data[i + taps - 1].
+     * @return The number of outputs written.
+     */
+    public int filter(double[] data, int count, double[] out) {
+        int outputs = count - taps + 1;
+        if (outputs <= 0)
+            return 0;
+        double[] re = new double[fftSize];
+        double[] im = new double[fftSize];
+        for (int start = 0; start < outputs; start += 2 * step) {
+            int second = start + step;
+            load(data, count, start, re);
+            if (second < outputs)
+                load(data, count, second, im);
+            else
+                Arrays.fill(im, 0);
+
+            transform(re, im, false);
+            for (int k = 0; k < fftSize; k++) {
+                double r = re[k] * kernelRe[k] - im[k] * kernelIm[k];
+                double i = re[k] * kernelIm[k] + im[k] * kernelRe[k];
+                re[k] = r;
+                im[k] = i;
+            }
+            transform(re, im, true);
+
+            store(re, start, outputs, out);
+            if (second < outputs)
+                store(im, second, outputs, out);
+        }
+        return outputs;
+    }
+
+    /**
+     * Copies the block that starts at the given input index, zero padded past the end.
+     */
+    private void load(double[] data, int count, int start, double[] block) {
+        int n = Math.min(fftSize, count - start);
+        System.arraycopy(data, start, block, 0, n);
+        for (int i = n; i < fftSize; i++)
+            block[i] = 0;
+    }
+
+    /**
+     * Keeps the outputs of a block that did not wrap around.
+     */
+    private void store(double[] block, int start, int outputs, double[] out) {
+        int n = Math.min(step, outputs - start);
+        System.arraycopy(block, taps - 1, out, start, n);
+    }
+
+    /**
+     * In-place iterative radix-2 FFT, the inverse is not scaled.
+     */
+    private void transform(double[] re, double[] im, boolean inverse) {
+        for (int i = 0; i < fftSize; i++) {
+            int j = bitReverse[i];
+            if (j > i) {
+                double t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+        double sign = inverse ? -1 : 1;
+        for (int size = 2; size <= fftSize; size <<= 1) {
+            int half = size >> 1;
+            int stride = fftSize / size;
+            for (int start = 0; start < fftSize; start += size) {
+                for (int k = 0, t = 0; k < half; k++, t += stride) {
+                    double wr = cos[t];
+                    double wi = sign * sin[t];
+                    int a = start + k;
+                    int b = a + half;
+                    double xr = re[b] * wr - im[b] * wi;
+                    double xi = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - xr;
+                    im[b] = im[a] - xi;
+                    re[a] += xr;
+                    im[a] += xi;
+                }
+            }
+        }
+    }
+}
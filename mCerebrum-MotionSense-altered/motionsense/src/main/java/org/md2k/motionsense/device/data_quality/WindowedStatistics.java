@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.motionsense.device.data_quality;
+
+/**
+ * Running statistics over the samples of the last windowMillis milliseconds.
+ *
+ * Samples are kept in a ring buffer together with their timestamps. Count, mean and the sum of
+ * squared deviations are updated with Welford's method when a sample is added and reversed when
+ * it expires, and samples outside [low, high] are counted as they pass, so every statistic can
+ * be read in O(1) at any time. To keep rounding from piling up over a long run, the sums are
+ * recomputed from the buffer once as many samples have expired as it can hold.
+ *
+ * Samples are expected in time order, expiry stops at the first sample that is still in the
+ * window. The class is not thread safe.
+ */
+public class WindowedStatistics {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private final long windowMillis;
+    private final double low;
+    private final double high;
+    private long[] times;
+    private double[] values;
+    private int head;
+    private int count;
+    private double mean;
+    private double m2;
+    private int outOfRange;
+    private int removals;
+    private long lastTime;
+
+    /**
+     * Constructor
+     * @param windowMillis Length of the window in milliseconds.
+     */
+    public WindowedStatistics(long windowMillis) {
+        this(windowMillis, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Constructor
+     * @param windowMillis Length of the window in milliseconds.
+     * @param low Samples below this value are counted as out of range.
+     * @param high Samples above this value are counted as out of range.
+     */
+    public WindowedStatistics(long windowMillis, double low, double high) {
+        this.windowMillis = windowMillis;
+        this.low = low;
+        this.high = high;
+        times = new long[DEFAULT_CAPACITY];
+        values = new double[DEFAULT_CAPACITY];
+        clear();
+    }
+
+    /**
+     * Adds a sample and drops the ones that fell out of the window at its time.
+     * @param time Timestamp of the sample in milliseconds.
+     * @param value Value of the sample.
+     */
+    public void add(long time, double value) {
+        expire(time);
+        if (count == times.length)
+            grow();
+        int tail = (head + count) % times.length;
+        times[tail] = time;
+        values[tail] = value;
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        if (isOutOfRange(value))
+            outOfRange++;
+        lastTime = time;
+    }
+
+    /**
+     * Drops the samples that are windowMillis or more older than the given time.
+     * @param now Current time in milliseconds.
+     */
+    public void expire(long now) {
+        while (count > 0 && now - times[head] >= windowMillis) {
+            double value = values[head];
+            head = (head + 1) % times.length;
+            count--;
+            if (isOutOfRange(value))
+                outOfRange--;
+            if (count == 0) {
+                mean = 0;
+                m2 = 0;
+            } else {
+                double oldMean = mean;
+                mean = (oldMean * (count + 1) - value) / count;
+                m2 -= (value - oldMean) * (value - mean);
+            }
+            if (++removals >= times.length)
+                recompute();
+        }
+    }
+
+    /**
+     * Removes all samples.
+     */
+    public void clear() {
+        head = 0;
+        count = 0;
+        mean = 0;
+        m2 = 0;
+        outOfRange = 0;
+        removals = 0;
+        lastTime = Long.MIN_VALUE;
+    }
+
+    /**
+     * Returns the number of samples in the window.
+     * @return The number of samples in the window.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the mean of the samples in the window, 0 if it is empty.
+     * @return The mean of the samples in the window.
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * Returns the population variance of the samples in the window.
+     * @return The population variance of the samples in the window.
+     */
+    public double getVariance() {
+        return count == 0 ? 0 : Math.max(m2, 0) / count;
+    }
+
+    /**
+     * Returns the population standard deviation of the samples in the window.
+     * @return The population standard deviation of the samples in the window.
+     */
+    public double getStdDev() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Returns the number of samples in the window outside [low, high].
+     * @return The number of samples in the window outside [low, high].
+     */
+    public int getOutOfRange() {
+        return outOfRange;
+    }
+
+    /**
+     * Returns the timestamp of the newest sample ever added, Long.MIN_VALUE if there is none.
+     * @return The timestamp of the newest sample.
+     */
+    public long getLastTime() {
+        return lastTime;
+    }
+
+    private boolean isOutOfRange(double value) {
+        return value < low || value > high;
+    }
+
+    /**
+     * Recomputes mean and squared deviations exactly from the buffered samples.
+     */
+    private void recompute() {
+        removals = 0;
+        double sum = 0;
+        for (int i = 0; i < count; i++)
+            sum += values[(head + i) % values.length];
+        mean = count == 0 ? 0 : sum / count;
+        m2 = 0;
+        for (int i = 0; i < count; i++) {
+            double d = values[(head + i) % values.length] - mean;
+            m2 += d * d;
+        }
+    }
+
+    private void grow() {
+        long[] newTimes = new long[times.length * 2];
+        double[] newValues = new double[values.length * 2];
+        for (int i = 0; i < count; i++) {
+            newTimes[i] = times[(head + i) % times.length];
+            newValues[i] = values[(head + i) % values.length];
+        }
+        times = newTimes;
+        values = newValues;
+        head = 0;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.motionsense.device.motionsense;
+
+import org.md2k.motionsense.device.DecodedBatch;
+import org.md2k.motionsense.device.PacketDecoder;
+
+/**
+ * Decodes MotionSense accelerometer/gyroscope notifications, see {@link TranslateAcl}.
+ * Each packet holds one accelerometer sample and two gyroscope samples.
+ */
+public class AclPacketDecoder extends PacketDecoder {
+    public static final int ACCELEROMETER = 0;
+    public static final int GYROSCOPE_1 = 3;
+    public static final int GYROSCOPE_2 = 6;
+    public static final int COLUMNS = 9;
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS;
+    }
+
+    @Override
+    public int getSequenceNumber(byte[] packet) {
+        return ((packet[18] & 0xff) << 8) + (packet[19] & 0xff);
+    }
+
+    @Override
+    protected void decodeValues(byte[] packet, DecodedBatch batch, int row) {
+        for (int c = 0; c < 3; c++) {
+            batch.setValue(ACCELEROMETER + c, row, TranslateAcl.convertAccelADCtoSI(readShort(packet, 2 * c)));
+            batch.setValue(GYROSCOPE_1 + c, row, TranslateAcl.convertGyroADCtoSI(readShort(packet, 6 + 2 * c)));
+            batch.setValue(GYROSCOPE_2 + c, row, TranslateAcl.convertGyroADCtoSI(readShort(packet, 12 + 2 * c)));
+        }
+    }
+}
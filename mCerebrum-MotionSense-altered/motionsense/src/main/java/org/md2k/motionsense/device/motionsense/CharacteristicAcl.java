@@ -34,6 +34,8 @@ import org.md2k.datakitapi.datatype.DataTypeDoubleArray;
 import org.md2k.datakitapi.source.datasource.DataSourceType;
 import org.md2k.motionsense.Data;
 import org.md2k.motionsense.device.Characteristic;
+import org.md2k.motionsense.device.DecodedBatch;
+import org.md2k.motionsense.device.PacketDecoder;
 import org.md2k.motionsense.device.Sensor;
 
 import java.util.ArrayList;
@@ -49,6 +51,7 @@ import rx.functions.Action0;
  */
 public class CharacteristicAcl extends Characteristic {
     private HashMap<String, Sensor> listSensor;
+    private final AclPacketDecoder decoder = new AclPacketDecoder();
 
     /**
      * Constructor
@@ -67,9 +70,28 @@ public class CharacteristicAcl extends Characteristic {
     @Override
     public Observable<ArrayList<Data>> getObservable(RxBleConnection rxBleConnection, ArrayList<Sensor> sensors) {
         prepareList(sensors);
+        prepareLossAccountant(sensors);
         return setNotify(rxBleConnection);
     }
 
+    /**
+     * Returns the decoder for the notifications of this characteristic.
+     * @return The decoder for the notifications of this characteristic.
+     */
+    @Override
+    public PacketDecoder getDecoder() {
+        return decoder;
+    }
+
+    /**
+     * Returns the value at which the sequence number wraps around.
+     * @return The value at which the sequence number wraps around.
+     */
+    @Override
+    protected int getSequenceLimit() {
+        return 65536;
+    }
+
     /**
      * Prepares a hashmap of <code>Sensor</code>s and their <code>DataSourceType</code>.
      * @param sensors List of <code>Sensor</code>s to add.
@@ -97,34 +119,40 @@ public class CharacteristicAcl extends Characteristic {
                     @Override
                     public void call() {
                         Logger.e("CharactericsicACL...Data Overflow occurs...after buffer... drop oldest packet");
+                        onOverflow();
                     }
                 }, BackpressureOverflow.ON_OVERFLOW_DROP_OLDEST)
 
-                .map(bytes -> {
-                    ArrayList<Data> data = new ArrayList<>();
-                    int curSeq = (int) TranslateAcl.getSequenceNumber(bytes)[0];
-                    long curTime = correctTimeStamp(curSeq,65636);
-                    if (listSensor.containsKey(DataSourceType.ACCELEROMETER)) {
-                        DataType d = new DataTypeDoubleArray(curTime, TranslateAcl.getAccelerometer(bytes));
-                        data.add(new Data(listSensor.get(DataSourceType.ACCELEROMETER), d));
-                    }
-                    if (listSensor.containsKey(DataSourceType.GYROSCOPE)) {
-                        DataType d = new DataTypeDoubleArray((long) (curTime - 1000.0 / (2.0 * frequency)), TranslateAcl.getGyroscope1(bytes));
-                        data.add(new Data(listSensor.get(DataSourceType.GYROSCOPE), d));
-                        d = new DataTypeDoubleArray(curTime, TranslateAcl.getGyroscope2(bytes));
-                        data.add(new Data(listSensor.get(DataSourceType.GYROSCOPE), d));
-                    }
-                    if (listSensor.containsKey(DataSourceType.SEQUENCE_NUMBER + getName())) {
-                        DataType d = new DataTypeDoubleArray(curTime, TranslateAcl.getSequenceNumber(bytes));
-                        data.add(new Data(listSensor.get(DataSourceType.SEQUENCE_NUMBER + getName()), d));
-                    }
-                    if (listSensor.containsKey(DataSourceType.RAW + getName())) {
-                        DataType d = new DataTypeDoubleArray(curTime, TranslateAcl.getRaw(bytes));
-                        data.add(new Data(listSensor.get(DataSourceType.RAW + getName()), d));
-                    }
-                    lastSequence = curSeq;
-                    lastTimestamp = curTime;
-                    return data;
-                });
+                .map(this::decodeNotification);
+    }
+
+    /**
+     * Creates the <code>Data</code> of every configured sensor from a decoded packet.
+     * @param batch Batch holding the decoded packet.
+     * @param row Row of the packet in the batch.
+     * @param data List to add the <code>Data</code> to.
+     */
+    @Override
+    protected void toData(DecodedBatch batch, int row, ArrayList<Data> data) {
+        long curTime = batch.getTimestamp(row);
+        if (listSensor.containsKey(DataSourceType.ACCELEROMETER)) {
+            DataType d = new DataTypeDoubleArray(curTime, batch.getRow(row, AclPacketDecoder.ACCELEROMETER, 3));
+            data.add(new Data(listSensor.get(DataSourceType.ACCELEROMETER), d));
+        }
+        if (listSensor.containsKey(DataSourceType.GYROSCOPE)) {
+            DataType d = new DataTypeDoubleArray((long) (curTime - 1000.0 / (2.0 * frequency)), batch.getRow(row, AclPacketDecoder.GYROSCOPE_1, 3));
+            data.add(new Data(listSensor.get(DataSourceType.GYROSCOPE), d));
+            d = new DataTypeDoubleArray(curTime, batch.getRow(row, AclPacketDecoder.GYROSCOPE_2, 3));
+            data.add(new Data(listSensor.get(DataSourceType.GYROSCOPE), d));
+        }
+        if (listSensor.containsKey(DataSourceType.SEQUENCE_NUMBER + getName())) {
+            DataType d = new DataTypeDoubleArray(curTime, new double[]{batch.getSequenceNumber(row)});
+            data.add(new Data(listSensor.get(DataSourceType.SEQUENCE_NUMBER + getName()), d));
+        }
+        if (listSensor.containsKey(DataSourceType.RAW + getName())) {
+            DataType d = new DataTypeDoubleArray(curTime, batch.getRawAsDouble(row));
+            data.add(new Data(listSensor.get(DataSourceType.RAW + getName()), d));
+        }
     }
+
 }
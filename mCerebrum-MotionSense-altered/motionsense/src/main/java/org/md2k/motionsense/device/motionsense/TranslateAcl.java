@@ -87,7 +87,7 @@ class TranslateAcl {
      * @param x Value to convert.
      * @return The value in SI units.
      */
-    private static double convertAccelADCtoSI(double x) {
+    static double convertAccelADCtoSI(double x) {
         return 2.0 * x / 16384;
     }
 
@@ -96,7 +96,7 @@ class TranslateAcl {
      * @param x Value to convert.
      * @return The value in SI units.
      */
-    private static double convertGyroADCtoSI(double x) {
+    static double convertGyroADCtoSI(double x) {
         return 500.0 * x / 32768;
     }
 
@@ -35,6 +35,8 @@ import org.md2k.datakitapi.datatype.DataTypeDoubleArray;
 import org.md2k.datakitapi.source.datasource.DataSourceType;
 import org.md2k.motionsense.Data;
 import org.md2k.motionsense.device.Characteristic;
+import org.md2k.motionsense.device.DecodedBatch;
+import org.md2k.motionsense.device.PacketDecoder;
 import org.md2k.motionsense.device.Sensor;
 
 import java.util.ArrayList;
@@ -50,6 +52,7 @@ import rx.functions.Action0;
  */
 public class CharacteristicLed extends Characteristic {
     private HashMap<String, Sensor> listSensor;
+    private final LedPacketDecoder decoder = new LedPacketDecoder();
 
     /**
      * Constructor
@@ -66,9 +69,28 @@ public class CharacteristicLed extends Characteristic {
      */
     public Observable<ArrayList<Data>> getObservable(RxBleConnection rxBleConnection, ArrayList<Sensor> sensors) {
         prepareList(sensors);
+        prepareLossAccountant(sensors);
         return setNotify(rxBleConnection);
     }
 
+    /**
+     * Returns the decoder for the notifications of this characteristic.
+     * @return The decoder for the notifications of this characteristic.
+     */
+    @Override
+    public PacketDecoder getDecoder() {
+        return decoder;
+    }
+
+    /**
+     * Returns the value at which the sequence number wraps around.
+     * @return The value at which the sequence number wraps around.
+     */
+    @Override
+    protected int getSequenceLimit() {
+        return 1024;
+    }
+
     /**
      * Prepares a hashmap of <code>Sensor</code>s and their <code>DataSourceType</code>.
      * @param sensors List of <code>Sensor</code>s to add.
@@ -96,37 +118,44 @@ public class CharacteristicLed extends Characteristic {
                     @Override
                     public void call() {
                         Logger.e("CharacteristicLed...Data Overflow occurs...after buffer... drop oldest packet");
+                        onOverflow();
                     }
                 }, BackpressureOverflow.ON_OVERFLOW_DROP_OLDEST)
-                .map(bytes -> {
-                    ArrayList<Data> data = new ArrayList<>();
-                    int curSeq = (int) TranslateLed.getSequenceNumber(bytes)[0];
-                    long curTime = correctTimeStamp(curSeq,1024);
-                    DataType d = new DataTypeDoubleArray(curTime, TranslateLed.getAccelerometer(bytes));
-                    if (listSensor.containsKey(DataSourceType.ACCELEROMETER))
-                        data.add(new Data(listSensor.get(DataSourceType.ACCELEROMETER), d));
-                    if (listSensor.containsKey(DataSourceType.GYROSCOPE)) {
-                        d = new DataTypeDoubleArray(curTime, TranslateLed.getGyroscope(bytes));
-                        data.add(new Data(listSensor.get(DataSourceType.GYROSCOPE), d));
-                    }
+                .map(this::decodeNotification);
+    }
 
-                    d = new DataTypeDoubleArray(curTime, TranslateLed.getLED(bytes));
-                    if (listSensor.containsKey(DataSourceType.LED))
-                        data.add(new Data(listSensor.get(DataSourceType.LED), d));
+    /**
+     * Creates the <code>Data</code> of every configured sensor from a decoded packet.
+     * @param batch Batch holding the decoded packet.
+     * @param row Row of the packet in the batch.
+     * @param data List to add the <code>Data</code> to.
+     */
+    @Override
+    protected void toData(DecodedBatch batch, int row, ArrayList<Data> data) {
+        long curTime = batch.getTimestamp(row);
+        if (listSensor.containsKey(DataSourceType.ACCELEROMETER)) {
+            DataType d = new DataTypeDoubleArray(curTime, batch.getRow(row, LedPacketDecoder.ACCELEROMETER, 3));
+            data.add(new Data(listSensor.get(DataSourceType.ACCELEROMETER), d));
+        }
+        if (listSensor.containsKey(DataSourceType.GYROSCOPE)) {
+            DataType d = new DataTypeDoubleArray(curTime, batch.getRow(row, LedPacketDecoder.GYROSCOPE, 3));
+            data.add(new Data(listSensor.get(DataSourceType.GYROSCOPE), d));
+        }
 
-                    if (listSensor.containsKey(DataSourceType.SEQUENCE_NUMBER + getName())) {
-                        d = new DataTypeDoubleArray(curTime, TranslateLed.getSequenceNumber(bytes));
-                        data.add(new Data(listSensor.get(DataSourceType.SEQUENCE_NUMBER + getName()), d));
-                    }
+        if (listSensor.containsKey(DataSourceType.LED)) {
+            DataType d = new DataTypeDoubleArray(curTime, batch.getRow(row, LedPacketDecoder.LED, 3));
+            data.add(new Data(listSensor.get(DataSourceType.LED), d));
+        }
 
-                    if (listSensor.containsKey(DataSourceType.RAW + getName())) {
-                        d = new DataTypeDoubleArray(curTime, TranslateLed.getRaw(bytes));
-                        data.add(new Data(listSensor.get(DataSourceType.RAW + getName()), d));
-                    }
-                    lastTimestamp = curTime;
-                    lastSequence = curSeq;
-                    return data;
-                });
+        if (listSensor.containsKey(DataSourceType.SEQUENCE_NUMBER + getName())) {
+            DataType d = new DataTypeDoubleArray(curTime, new double[]{batch.getSequenceNumber(row)});
+            data.add(new Data(listSensor.get(DataSourceType.SEQUENCE_NUMBER + getName()), d));
+        }
+
+        if (listSensor.containsKey(DataSourceType.RAW + getName())) {
+            DataType d = new DataTypeDoubleArray(curTime, batch.getRawAsDouble(row));
+            data.add(new Data(listSensor.get(DataSourceType.RAW + getName()), d));
+        }
     }
 
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.motionsense.device.motionsense_hrv;
+
+import org.md2k.motionsense.device.DecodedBatch;
+import org.md2k.motionsense.device.PacketDecoder;
+
+/**
+ * Decodes MotionSense HRV LED notifications (accelerometer, gyroscope and the three LED
+ * channels), see {@link TranslateLed}.
+ */
+public class LedPacketDecoder extends PacketDecoder {
+    public static final int ACCELEROMETER = 0;
+    public static final int GYROSCOPE = 3;
+    public static final int LED = 6;
+    public static final int COLUMNS = 9;
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS;
+    }
+
+    @Override
+    public int getSequenceNumber(byte[] packet) {
+        return ((packet[18] & 0x03) << 8) + (packet[19] & 0xff);
+    }
+
+    @Override
+    protected void decodeValues(byte[] packet, DecodedBatch batch, int row) {
+        for (int c = 0; c < 3; c++) {
+            batch.setValue(ACCELEROMETER + c, row, TranslateLed.convertAccelADCtoSI(readShort(packet, 2 * c)));
+            batch.setValue(GYROSCOPE + c, row, TranslateLed.convertGyroADCtoSI(readShort(packet, 6 + 2 * c)));
+        }
+        batch.setValue(LED, row, ((packet[12] & 0xff) << 10) | ((packet[13] & 0xff) << 2) | ((packet[14] & 0xc0) >> 6));
+        batch.setValue(LED + 1, row, ((packet[14] & 0x3f) << 12) | ((packet[15] & 0xff) << 4) | ((packet[16] & 0xf0) >> 4));
+        batch.setValue(LED + 2, row, ((packet[16] & 0x0f) << 14) | ((packet[17] & 0xff) << 6) | ((packet[18] & 0xfc) >> 2));
+    }
+}
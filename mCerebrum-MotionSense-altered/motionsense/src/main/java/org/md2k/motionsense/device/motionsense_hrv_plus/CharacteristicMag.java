@@ -35,6 +35,8 @@ import org.md2k.datakitapi.datatype.DataTypeDoubleArray;
 import org.md2k.datakitapi.source.datasource.DataSourceType;
 import org.md2k.motionsense.Data;
 import org.md2k.motionsense.device.Characteristic;
+import org.md2k.motionsense.device.DecodedBatch;
+import org.md2k.motionsense.device.PacketDecoder;
 import org.md2k.motionsense.device.Sensor;
 
 import java.util.ArrayList;
@@ -50,6 +52,7 @@ import rx.functions.Action0;
  */
 public class CharacteristicMag extends Characteristic {
     private HashMap<String, Sensor> listSensor;
+    private final MagPacketDecoder decoder = new MagPacketDecoder();
 
     /**
      * Constructor
@@ -67,9 +70,38 @@ public class CharacteristicMag extends Characteristic {
     @Override
     public Observable<ArrayList<Data>> getObservable(RxBleConnection rxBleConnection, ArrayList<Sensor> sensors) {
         prepareList(sensors);
+        prepareLossAccountant(sensors);
         return setNotify(rxBleConnection);
     }
 
+    /**
+     * Returns the decoder for the notifications of this characteristic.
+     * @return The decoder for the notifications of this characteristic.
+     */
+    @Override
+    public PacketDecoder getDecoder() {
+        return decoder;
+    }
+
+    /**
+     * Returns the value at which the sequence number wraps around.
+     * @return The value at which the sequence number wraps around.
+     */
+    @Override
+    protected int getSequenceLimit() {
+        return 1024;
+    }
+
+    /**
+     * Every sample is counted twice in the sequence number, halve it for the timing.
+     * @param sequenceNumber Sequence number of the packet.
+     * @return The sequence number used for correcting the timestamp.
+     */
+    @Override
+    protected int getTimingSequence(int sequenceNumber) {
+        return sequenceNumber / 2;
+    }
+
     /**
      * Prepares a hashmap of <code>Sensor</code>s and their <code>DataSourceType</code>.
      * @param sensors List of <code>Sensor</code>s to add.
@@ -97,35 +129,39 @@ public class CharacteristicMag extends Characteristic {
                     @Override
                     public void call() {
                         Logger.e("CharacteristicMag....Data Overflow occurs...after buffer... drop oldest packet");
+                        onOverflow();
                     }
                 }, BackpressureOverflow.ON_OVERFLOW_DROP_OLDEST)
 
-                .map(bytes -> {
-                    ArrayList<Data> data = new ArrayList<>();
-                    int curSeq = (int) TranslateMag.getSequenceNumber(bytes)[0]/2;
-                    long curTime = correctTimeStamp(curSeq, 1024);
-                    if (listSensor.containsKey(DataSourceType.MAGNETOMETER)) {
-                        DataType d = new DataTypeDoubleArray((long) (curTime - 1000.0 / (2.0 * frequency)), TranslateMag.getMagnetometer1(bytes));
-                        data.add(new Data(listSensor.get(DataSourceType.MAGNETOMETER), d));
-                        d = new DataTypeDoubleArray(curTime, TranslateMag.getMagnetometer2(bytes));
-                        data.add(new Data(listSensor.get(DataSourceType.MAGNETOMETER), d));
-                        d = new DataTypeDoubleArray(curTime, TranslateMag.getSensitivity(bytes));
-                        data.add(new Data(listSensor.get(DataSourceType.MAGNETOMETER_SENSITIVITY), d));
-                    }
-                    if (listSensor.containsKey(DataSourceType.SEQUENCE_NUMBER+getName())) {
-                        DataType d = new DataTypeDoubleArray(curTime, TranslateMag.getSequenceNumber(bytes));
-                        data.add(new Data(listSensor.get(DataSourceType.SEQUENCE_NUMBER+getName()), d));
-                    }
+                .map(this::decodeNotification);
+    }
 
-                    if (listSensor.containsKey(DataSourceType.RAW+getName())) {
-                        DataType d = new DataTypeDoubleArray(curTime, TranslateMag.getRaw(bytes));
-                        data.add(new Data(listSensor.get(DataSourceType.RAW+getName()), d));
-                    }
-                    lastSequence = curSeq;
-                    lastTimestamp = curTime;
+    /**
+     * Creates the <code>Data</code> of every configured sensor from a decoded packet.
+     * @param batch Batch holding the decoded packet.
+     * @param row Row of the packet in the batch.
+     * @param data List to add the <code>Data</code> to.
+     */
+    @Override
+    protected void toData(DecodedBatch batch, int row, ArrayList<Data> data) {
+        long curTime = batch.getTimestamp(row);
+        if (listSensor.containsKey(DataSourceType.MAGNETOMETER)) {
+            DataType d = new DataTypeDoubleArray((long) (curTime - 1000.0 / (2.0 * frequency)), batch.getRow(row, MagPacketDecoder.MAGNETOMETER_1, 3));
+            data.add(new Data(listSensor.get(DataSourceType.MAGNETOMETER), d));
+            d = new DataTypeDoubleArray(curTime, batch.getRow(row, MagPacketDecoder.MAGNETOMETER_2, 3));
+            data.add(new Data(listSensor.get(DataSourceType.MAGNETOMETER), d));
+            d = new DataTypeDoubleArray(curTime, batch.getRow(row, MagPacketDecoder.SENSITIVITY, 3));
+            data.add(new Data(listSensor.get(DataSourceType.MAGNETOMETER_SENSITIVITY), d));
+        }
+        if (listSensor.containsKey(DataSourceType.SEQUENCE_NUMBER+getName())) {
+            DataType d = new DataTypeDoubleArray(curTime, new double[]{batch.getSequenceNumber(row)});
+            data.add(new Data(listSensor.get(DataSourceType.SEQUENCE_NUMBER+getName()), d));
+        }
 
-                    return data;
-                });
+        if (listSensor.containsKey(DataSourceType.RAW+getName())) {
+            DataType d = new DataTypeDoubleArray(curTime, batch.getRawAsDouble(row));
+            data.add(new Data(listSensor.get(DataSourceType.RAW+getName()), d));
+        }
     }
 
 }
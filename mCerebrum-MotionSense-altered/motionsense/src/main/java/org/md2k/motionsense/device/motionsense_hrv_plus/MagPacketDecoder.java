@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2018, The University of Memphis, MD2K Center of Excellence
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.md2k.motionsense.device.motionsense_hrv_plus;
+
+import org.md2k.motionsense.device.DecodedBatch;
+import org.md2k.motionsense.device.PacketDecoder;
+
+/**
+ * Decodes MotionSense HRV+ magnetometer notifications (two magnetometer samples and the
+ * sensitivity), see {@link TranslateMag}.
+ */
+public class MagPacketDecoder extends PacketDecoder {
+    public static final int MAGNETOMETER_1 = 0;
+    public static final int MAGNETOMETER_2 = 3;
+    public static final int SENSITIVITY = 6;
+    public static final int COLUMNS = 9;
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS;
+    }
+
+    @Override
+    public int getSequenceNumber(byte[] packet) {
+        return ((packet[15] & 0x03) << 8) | (packet[16] & 0xff);
+    }
+
+    @Override
+    protected void decodeValues(byte[] packet, DecodedBatch batch, int row) {
+        int sx = packet[12] & 0xff;
+        int sy = packet[13] & 0xff;
+        int sz = packet[14] & 0xff;
+        batch.setValue(MAGNETOMETER_1, row, TranslateMag.convertADCtoSI(readShort(packet, 0), sx));
+        batch.setValue(MAGNETOMETER_1 + 1, row, TranslateMag.convertADCtoSI(readShort(packet, 4), sy));
+        batch.setValue(MAGNETOMETER_1 + 2, row, TranslateMag.convertADCtoSI(readShort(packet, 8), sz));
+        //Same byte layout as TranslateMag.getMagnetometer2
+        batch.setValue(MAGNETOMETER_2, row, TranslateMag.convertADCtoSI((short) ((packet[2] & 0xff) << 8) | (packet[1] & 0xff), sx));
+        batch.setValue(MAGNETOMETER_2 + 1, row, TranslateMag.convertADCtoSI((short) ((packet[6] & 0xff) << 8) | (packet[5] & 0xff), sy));
+        batch.setValue(MAGNETOMETER_2 + 2, row, TranslateMag.convertADCtoSI(readShort(packet, 8), sz));
+        batch.setValue(SENSITIVITY, row, sx);
+        batch.setValue(SENSITIVITY + 1, row, sy);
+        batch.setValue(SENSITIVITY + 2, row, sz);
+    }
+}
@@ -49,7 +49,7 @@ class TranslateLed {
      * @param x Value to convert.
      * @return The quaternion into SI units.
      */
-    private static double convertQuaternionToSI(double x){
+    static double convertQuaternionToSI(double x){
         return (2.0*x)/(65535.0) - 1;
     }
 
@@ -96,7 +96,7 @@ class TranslateLed {
      * @param x Value to convert.
      * @return The value in SI units.
      */
-    private static double convertAccelADCtoSI(double x) {
+    static double convertAccelADCtoSI(double x) {
         return 2.0 * x / 16384;
     }
 
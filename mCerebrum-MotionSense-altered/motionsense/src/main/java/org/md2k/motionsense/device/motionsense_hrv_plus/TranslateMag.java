@@ -66,7 +66,7 @@ class TranslateMag {
      * @param sensitivity Sensitivity of the sensor.
      * @return The value in SI units.
      */
-    private static double convertADCtoSI(double mag, double sensitivity){
+    static double convertADCtoSI(double mag, double sensitivity){
         return mag*((sensitivity-128)*.5/128.0+1);
     }
 
@@ -0,0 +1,120 @@
+package org.md2k.motionsense;
+
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    Bounded queue between the data producers (phone accelerometer/gyroscope listeners and the
+    MotionSense Rx pipeline) and the single CSV writer thread.
+
+    - Producers never block: when the queue is full the overflow policy decides whether the
+      oldest queued entry or the new one is dropped, and the drop is counted.
+    - The writer blocks until there is data and then takes everything that is queued in one go,
+      instead of spinning on isEmpty() and removing entries one at a time.
+    - close() stops accepting new entries; the writer keeps draining until the queue is empty.
+      The closed check and the enqueue happen under one lock, so once close() returns no entry
+      can be accepted that the writer would never see.
+ */
+public class exportQueue {
+
+    public static final int DEFAULT_CAPACITY = 16384;
+
+    public enum OverflowPolicy {
+        DROP_OLDEST,  //Keep the most recent data, discard what has waited the longest
+        DROP_NEWEST   //Keep what is already queued, discard the new entry
+    }
+
+    private final ArrayBlockingQueue<exportRunnable> queue;
+    private final OverflowPolicy policy;
+    private final Object lock = new Object();  //Guards closed against offers in flight
+    private volatile boolean closed = false;
+
+    private final AtomicLong offered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile int maxDepth = 0;
+
+    public exportQueue() {
+        this(DEFAULT_CAPACITY, OverflowPolicy.DROP_OLDEST);
+    }
+
+    public exportQueue(int capacity, OverflowPolicy policy) {
+        queue = new ArrayBlockingQueue<>(capacity);
+        this.policy = policy;
+    }
+
+    //Called from the producer threads, returns false if the entry was not queued
+    public boolean offer(exportRunnable entry) {
+        synchronized(lock) {
+            if(closed) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            offered.incrementAndGet();
+            while(!queue.offer(entry)) {
+                if(policy == OverflowPolicy.DROP_NEWEST) {
+                    dropped.incrementAndGet();
+                    return false;
+                }
+                if(queue.poll() != null) {
+                    dropped.incrementAndGet();
+                }
+            }
+            int depth = queue.size();
+            if(depth > maxDepth) {
+                maxDepth = depth;
+            }
+            return true;
+        }
+    }
+
+    /*
+        Waits up to timeoutMillis for data, then moves up to maxEntries queued entries into batch.
+        Returns the number of entries added, or -1 once the queue is closed and fully drained.
+     */
+    public int drainTo(Collection<exportRunnable> batch, int maxEntries, long timeoutMillis) throws InterruptedException {
+        exportRunnable first = queue.poll();
+        if(first == null) {
+            if(closed) {
+                return -1;
+            }
+            first = queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+            if(first == null) {
+                return 0;
+            }
+        }
+        batch.add(first);
+        return 1 + queue.drainTo(batch, maxEntries - 1);
+    }
+
+    public void close() {
+        synchronized(lock) {
+            closed = true;
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    public long getOffered() {
+        return offered.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+}
@@ -5,6 +5,10 @@ package org.md2k.motionsense;
 
     Class for a data object
     -  Using the exporter class, we export the string message to a specific folder
+    -  Samples can also be queued as numbers (timestamp and values), then the text is only built by
+       the write thread, and not at all when the exporter writes binary recordings
+    -  A whole batch of samples of one folder can be queued as one entry (timestamps and the
+       values of all samples back to back)
 
  */
 
@@ -12,14 +16,79 @@ public class exportRunnable {
 
     final String foldername;
     final String message;
+    final long timestamp;
+    final double[] values;
+    final long[] timestamps;  //Only for a batch
+    final int channels;
 
 
     public exportRunnable(String foldername, String message) {
         this.foldername = foldername;
         this.message = message;
+        this.timestamp = 0;
+        this.values = null;
+        this.timestamps = null;
+        this.channels = 0;
+    }
+
+    public exportRunnable(String foldername, long timestamp, double[] values) {
+        this.foldername = foldername;
+        this.message = null;
+        this.timestamp = timestamp;
+        this.values = values;
+        this.timestamps = null;
+        this.channels = values.length;
+    }
+
+    public exportRunnable(String foldername, long[] timestamps, double[] values, int channels) {
+        this.foldername = foldername;
+        this.message = null;
+        this.timestamp = timestamps.length > 0 ? timestamps[0] : 0;
+        this.values = values;
+        this.timestamps = timestamps;
+        this.channels = channels;
+    }
+
+    public boolean hasValues() {
+        return values != null;
+    }
+
+    public boolean isBatch() {
+        return timestamps != null;
+    }
+
+    //Number of samples in this entry
+    public int getCount() {
+        return isBatch() ? timestamps.length : 1;
+    }
+
+    //The CSV text of this entry (timestamp,x,y,z), one line per sample for a batch
+    public String getMessage() {
+        if(message != null) {
+            return message;
+        }
+        if(!isBatch()) {
+            return appendLine(new StringBuilder(64), timestamp, 0).toString();
+        }
+        StringBuilder builder = new StringBuilder(64 * timestamps.length);
+        for(int i = 0; i < timestamps.length; i++) {
+            if(i > 0) {
+                builder.append('\n');
+            }
+            appendLine(builder, timestamps[i], i * channels);
+        }
+        return builder.toString();
+    }
+
+    private StringBuilder appendLine(StringBuilder builder, long time, int offset) {
+        builder.append(time);
+        for(int c = offset; c < offset + channels; c++) {
+            builder.append(',').append(values[c]);
+        }
+        return builder;
     }
 
     /*public void run() {
         exp.exportData(foldername, message);
     }*/
-}
\ No newline at end of file
+}
@@ -1,15 +1,32 @@
 package org.md2k.motionsense;
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
 import android.content.Context;
+import android.content.Intent;
 import android.os.Environment;
+import android.os.SystemClock;
+import android.support.v7.app.NotificationCompat;
 import android.util.Log;
 
 import java.io.File;
-import java.io.FileWriter;
-import java.io.PrintWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.Charset;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.md2k.datakitapi.signal.Resampler;
+import org.md2k.datakitapi.time.ClockSync;
+import org.md2k.motionsense.recording.BinaryRecordFormat;
+import org.md2k.motionsense.recording.BinaryRecordWriter;
 
 
 /*
@@ -17,31 +34,102 @@ import java.util.List;
     All files are stored under Documents/MD2KHF
     Each device sensor has its own folder (i.e. Phone-ACC)
 
-    This file also uses the ntpUpdateThread to update the NTP times and store them with
-      the data values.
-
+    Every value line also stores the NTP clock offset (local - NTP time, in ms). The offset comes
+      from the process-wide ClockSync, reading it is a volatile read and never waits on the network.
+
+    Writing is group-committed: every folder has a stream with a StringBuilder that collects lines
+      and a file channel that stays open for the life of the exporter. A stream is written out once
+      it holds flushBytes characters or its oldest line is older than flushIntervalMillis, so many
+      samples go to the file with a single write instead of reopening the file every 31 lines.
+    In BINARY mode samples are stored as .bin recordings instead (see recording.BinaryRecordFormat),
+      float32 by default or int16 for the streams configured with setStreamFormat(). Use
+      recording.BinaryToCsv to turn them back into the CSV files.
+    The exporter is only used from the write thread of ServiceMotionSense and is not thread safe.
  */
 public class exporter {
 
-    public class dataBuffer {
-        String output = "";
-        String filename = "";
-        int bufferCount = 0;
-        dataBuffer(String filename, String message) {
-            this.filename = filename;
-            this.output = "\n" + message;
+    public static final int DEFAULT_FLUSH_BYTES = 64 * 1024;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 2000;
+
+    public enum Mode {
+        CSV,
+        BINARY
+    }
+
+    //Format of the binary recording of one folder
+    private static class streamFormat {
+        final int channels;
+        final BinaryRecordFormat.ValueType valueType;
+        final float sampleRate;
+        final float scale;
+
+        streamFormat(int channels, BinaryRecordFormat.ValueType valueType, float sampleRate, float scale) {
+            this.channels = channels;
+            this.valueType = valueType;
+            this.sampleRate = sampleRate;
+            this.scale = scale;
         }
+    }
 
-        void addToBuffer(String message) {
-            output += "\n" + message;
-            bufferCount++;
+    //Rate a folder is resampled to before it is written
+    private static class resampling {
+        final int channels;
+        final double sampleRate;
+        final Resampler.Mode mode;
 
+        resampling(int channels, double sampleRate, Resampler.Mode mode) {
+            this.channels = channels;
+            this.sampleRate = sampleRate;
+            this.mode = mode;
         }
-        void clearBuffer() {
-            output = "";
-            bufferCount = 0;
+    }
+
+    private static final streamFormat DEFAULT_STREAM_FORMAT =
+            new streamFormat(3, BinaryRecordFormat.ValueType.FLOAT32, 0, 1);
+
+    //When the written data is forced to the storage device with FileChannel.force()
+    public enum SyncPolicy {
+        NONE,       //Leave it to the OS
+        ON_FLUSH,   //After every group commit
+        ON_CLOSE    //Only when the exporter is closed
+    }
+
+    //Accumulator and open file of one folder
+    public class dataStream {
+        final String folderName;
+        final StringBuilder pending = new StringBuilder();
+        BinaryRecordWriter binary = null;  //Only in BINARY mode
+        Resampler resampler = null;  //Only for folders set up with setResampling
+        FileChannel channel = null;
+        long firstPendingTime = 0;
+        int pendingLines = 0;
+
+        //Counters for the life of the stream
+        long bytesWritten = 0;
+        long linesWritten = 0;
+        long flushes = 0;
+        long syncs = 0;
+        long failures = 0;
+
+        dataStream(String folderName) {
+            this.folderName = folderName;
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        public long getLinesWritten() {
+            return linesWritten;
         }
 
+        public long getFlushes() {
+            return flushes;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
     }
 
     final String TAG = "DBG-exporter";
@@ -49,14 +137,8 @@ public class exporter {
     //This is the filename (i.e. 2018-12-16.csv)
     String mCurrentDateString = "";
 
-    //String mCurrentGroundTruth = "NULL";
-
-    //This is the thread for updating the NTP values
-    ntpUpdateThread ntpThread = null;
-
-    // This is the timestamp when the NTP was last updated
-    private long last_time_updated = 0;
-    private long update_delay_millis = 10000; //Every 10 seconds we update the NTP time
+    //Keeps the NTP clock offset up to date on its own thread
+    private final ClockSync clockSync;
 
     //Service Context - used for sending notifications
     private Context ctx;
@@ -64,19 +146,79 @@ public class exporter {
     // This is the session number - basically, every time the user clicks start, a new session begins
     private int session_number = -1;
 
-    //set up dataBuffer - this is so we can do writing in batches instead of line by line
-    private List<dataBuffer> bufferList;
+    private final Mode mode;
+    private final HashMap<String, streamFormat> streamFormats = new HashMap<>();
+    //Set from the service threads while the write thread runs
+    private final ConcurrentHashMap<String, resampling> resamplings = new ConcurrentHashMap<>();
+    private final int flushBytes;
+    private final long flushIntervalMillis;
+    private final SyncPolicy syncPolicy;
+
+    //One stream per folder name
+    private final HashMap<String, dataStream> streams = new HashMap<>();
+    private long lastSweep = 0;
+
+    //Reused for encoding the accumulated text into the file channels
+    private final CharsetEncoder encoder = Charset.forName("UTF-8").newEncoder();
+    private final ByteBuffer encodeBuffer = ByteBuffer.allocateDirect(16 * 1024);
 
     public exporter(Context ctx) {
+        this(ctx, Mode.CSV);
+    }
+
+    public exporter(Context ctx, Mode mode) {
+        this(ctx, mode, DEFAULT_FLUSH_BYTES, DEFAULT_FLUSH_INTERVAL_MILLIS, SyncPolicy.ON_CLOSE);
+    }
+
+    public exporter(Context ctx, Mode mode, int flushBytes, long flushIntervalMillis, SyncPolicy syncPolicy) {
         this.ctx = ctx;
+        this.mode = mode;
+        this.flushBytes = flushBytes;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.syncPolicy = syncPolicy;
         mCurrentDateString = getCurrentDate();
         Log.d(TAG, "Setting current date: " + mCurrentDateString);
 
-        //Get the ntp update thread so we can add the clock offset to each entry
-        ntpThread = new ntpUpdateThread(this.ctx);
-        last_time_updated = System.currentTimeMillis();
+        //Get the clock sync so we can add the clock offset to each entry
+        clockSync = ClockSync.getInstance();
+        final Context appContext = ctx.getApplicationContext();
+        clockSync.setOnSyncFailedListener(new ClockSync.OnSyncFailedListener() {
+            @Override
+            public void onSyncFailed(IOException e) {
+                Log.d(TAG, "NTP sync failed: " + e.getMessage());
+                //Notify the user that something went wrong with the NTP request
+                notifyUser(appContext, "NTP Timeout! Are you connected to the correct WiFi?");
+            }
+        });
+    }
 
-        bufferList = new ArrayList<dataBuffer>();
+    //The files store local - NTP time, ClockSync reports NTP - local time
+    //The offset is taken when the line is written so the estimated drift since the last sync is applied
+    private long getClockOffset() {
+        return -Math.round(clockSync.getEstimate().getOffsetAt(System.currentTimeMillis()));
+    }
+
+    //Let the user know if something is wrong with the NTP request
+    private static void notifyUser(Context ctx, String message) {
+        NotificationCompat.Builder mBuilder = new NotificationCompat.Builder(ctx);
+
+        //Create the intent that'll fire when the user taps the notification
+        Intent intent = new Intent(ctx, ActivityMain.class);
+        intent.putExtra("notification", 0);
+        PendingIntent pendingIntent = PendingIntent.getActivity(ctx, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+
+        mBuilder.setContentIntent(pendingIntent);
+        mBuilder.setSmallIcon(R.mipmap.ic_launcher);
+        mBuilder.setContentTitle("Alert!");
+        mBuilder.setContentText(message);
+        mBuilder.setPriority(Notification.PRIORITY_MAX);
+
+        NotificationManager notificationManager =
+                (NotificationManager) ctx.getSystemService(Context.NOTIFICATION_SERVICE);
+
+        Notification surveyNotification = mBuilder.build();
+        surveyNotification.flags = Notification.FLAG_AUTO_CANCEL;
+        notificationManager.notify(299, surveyNotification);
     }
 
     //Get the current date for creating the file
@@ -88,108 +230,369 @@ public class exporter {
         return currentDateString;
     }
 
-    /*public void setGT(String gt) {
-        mCurrentGroundTruth = gt;
-    }
-
-    public long getCurrentCount() {
-        return currentNumberOfValues;
-    }*/
-
 
     //Buffer data to be exported later - basically, instead of writing line by line,
     // write a large number of lines at once occasionally
     public void bufferData(String folderName, String message) {
-
-        //Update the NTP time if sufficient time has passed
-        if(System.currentTimeMillis() > last_time_updated + update_delay_millis) {
-            last_time_updated = System.currentTimeMillis();
-            ntpThread.getNTPTime();
+        if(mode == Mode.BINARY) {
+            //Text entries are parsed back into numbers, queue exportRunnables with values to avoid this
+            String[] fields = message.split(",");
+            try {
+                double[] values = new double[fields.length - 1];
+                for(int i = 0; i < values.length; i++) {
+                    values[i] = Double.parseDouble(fields[i + 1].trim());
+                }
+                bufferSample(folderName, Long.parseLong(fields[0].trim()), values);
+            } catch (NumberFormatException e) {
+                Log.d(TAG, "Dropping unparsable line for " + folderName + ": " + message);
+            }
+            return;
         }
+        dataStream stream = startLine(folderName);
+        stream.pending.append('\n').append(message).append(',').append(getClockOffset());
+        endLine(stream);
+    }
 
-        boolean foundData = false;
+    //Same as bufferData but takes the sample as numbers, the line is formatted straight into the buffer
+    public void bufferSample(String folderName, long timestamp, double[] values) {
+        dataStream stream = startLine(folderName);
+        if(stream.resampler != null) {
+            if(values.length < resamplings.get(folderName).channels) {
+                Log.d(TAG, "Dropping sample with " + values.length + " values for " + folderName);
+            } else {
+                stream.resampler.push(timestamp, values, 0);
+            }
+        } else {
+            appendSample(stream, timestamp, values, 0, values.length, getClockOffset());
+        }
+        endLine(stream, 0);
+    }
 
-        //For each databuffer, we check if it matches the current folder
-        // If it does, we add the message to its buffer
-        for (dataBuffer d : bufferList) {
-            if (d.filename.equals(folderName)) {
-                foundData = true;
-                d.addToBuffer(message + "," + Long.toString(ntpThread.getOffset()));
+    //Same as bufferSample for a whole batch, values holds the channels values of each sample back to back
+    public void bufferSamples(String folderName, long[] timestamps, double[] values, int channels, int count) {
+        if(count == 0) {
+            return;
+        }
+        dataStream stream = startLine(folderName);
+        if(stream.resampler != null && channels < resamplings.get(folderName).channels) {
+            Log.d(TAG, "Dropping " + count + " samples with " + channels + " values for " + folderName);
+            return;
+        }
+        long clockOffset = getClockOffset();
+        for(int i = 0; i < count; i++) {
+            if(stream.resampler != null) {
+                stream.resampler.push(timestamps[i], values, i * channels);
+            } else {
+                appendSample(stream, timestamps[i], values, i * channels, channels, clockOffset);
+            }
+        }
+        endLine(stream, 0);
+    }
 
-                //If we have greater than 30 items in the buffer, we export the items
-                if(d.bufferCount > 30) {
-                    exportData(d.filename, d.output);
-                    d.clearBuffer();
-                }
+    //Formats one sample of channels values starting at values[offset] into the stream
+    private void appendSample(dataStream stream, long timestamp, double[] values, int offset, int channels, long clockOffset) {
+        if(mode == Mode.BINARY) {
+            if(stream.binary == null) {
+                stream.binary = createBinaryWriter(stream.folderName, channels);
             }
+            if(channels < stream.binary.getChannels()) {
+                Log.d(TAG, "Dropping sample with " + channels + " values for " + stream.folderName);
+                return;
+            }
+            stream.binary.append(timestamp, values, offset, clockOffset);
+        } else {
+            StringBuilder pending = stream.pending;
+            pending.append('\n').append(timestamp);
+            for(int c = offset; c < offset + channels; c++) {
+                pending.append(',').append(values[c]);
+            }
+            pending.append(',').append(clockOffset);
         }
+        stream.pendingLines++;
+    }
 
-        //If this folder is not already in the list of databuffers, we add it.
-        if(!foundData) {
-            dataBuffer d = new dataBuffer(folderName, message + "," + Long.toString(ntpThread.getOffset()));
-            bufferList.add(d);
+    private dataStream startLine(String folderName) {
+        dataStream stream = getStream(folderName);
+        if(stream.pendingLines == 0) {
+            stream.firstPendingTime = SystemClock.elapsedRealtime();
         }
+        return stream;
     }
 
+    private void endLine(dataStream stream) {
+        endLine(stream, 1);
+    }
 
+    //lines - number of lines added to the stream that are not counted yet
+    private void endLine(dataStream stream, int lines) {
+        stream.pendingLines += lines;
+        int pendingBytes = stream.binary != null ? stream.binary.getPendingBytes() : stream.pending.length();
+        if(pendingBytes >= flushBytes) {
+            commit(stream);
+        }
+        flushExpired(SystemClock.elapsedRealtime());
+    }
 
+    /*
+        Sets the binary format of a folder, must be called before its first sample.
+          Params:  channels - values per sample
+                   valueType - FLOAT32, or INT16 where a stored value v stands for v * scale
+                   sampleRate - nominal rate in Hz, only informational
+     */
+    public void setStreamFormat(String folderName, int channels, BinaryRecordFormat.ValueType valueType,
+                                float sampleRate, float scale) {
+        streamFormats.put(folderName, new streamFormat(channels, valueType, sampleRate, scale));
+    }
 
-    //Exports a set of values to a CSV file
     /*
-          Params:  String folderName - directory name of the folder (i.e. Phone-ACC)
-                   String message - values that we are appending to the CSV file.
-                                    Usually the message will be timestamp, x, y, z
+        Resamples the samples of a folder to a fixed rate before they are written, must be called
+        before its first sample.
+          Params:  channels - values per sample
+                   sampleRate - output rate in Hz
+                   resamplerMode - see Resampler, FIRST keeps the samples Downsampler.py would keep
      */
-    public boolean exportData(String folderName, String message) {
+    public void setResampling(String folderName, int channels, double sampleRate, Resampler.Mode resamplerMode) {
+        resamplings.put(folderName, new resampling(channels, sampleRate, resamplerMode));
+    }
 
+    //The resampled samples are appended to the stream as they come out of the resampler
+    private Resampler createResampler(final dataStream stream, final resampling config) {
+        return new Resampler(config.channels, config.sampleRate, config.mode, new Resampler.OnSampleListener() {
+            @Override
+            public void onSample(long timestamp, double[] values) {
+                appendSample(stream, timestamp, values, 0, config.channels, getClockOffset());
+            }
+        });
+    }
 
-        String state = Environment.getExternalStorageState();
-        if (!Environment.MEDIA_MOUNTED.equals(state)) {
-            Log.d(TAG, "No SD card, can't export Mood Data");
-            return false;
-        } else {
-            //We use the Documents directory for saving our .csv file.
-            File exportRoot = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOCUMENTS);
-            File exportDir = new File(exportRoot, "MD2KHF/" + folderName + "/" + mCurrentDateString);
-            if (!exportDir.exists()) {
-                exportDir.mkdirs();
-            }
-
-            File file;
-            PrintWriter printWriter = null;
-            try
-            {
-                //If we don't have a session number, we find what session we are on.
-                //If the current session number is 0 (i.e. we haven't started the sessions for this exporter)
-                //  Then we check the directory to see if we already have an active session for today
-                //  We use the number of files in the directory to determine what session we are on.
-                if(session_number == -1) {
-                    if(exportDir.listFiles() != null) {
-                        session_number = exportDir.listFiles().length;
-                    }
+    private BinaryRecordWriter createBinaryWriter(String folderName, int channels) {
+        streamFormat format = streamFormats.get(folderName);
+        if(format == null) {
+            format = new streamFormat(channels, DEFAULT_STREAM_FORMAT.valueType,
+                    DEFAULT_STREAM_FORMAT.sampleRate, DEFAULT_STREAM_FORMAT.scale);
+        }
+        return new BinaryRecordWriter(folderName, format.channels, format.valueType, format.sampleRate, format.scale);
+    }
+
+    //Writes out the streams whose oldest line has waited longer than the flush interval.
+    // The write thread also calls this when the queue is idle so quiet streams don't hold data back
+    public void flushExpired() {
+        flushExpired(SystemClock.elapsedRealtime());
+    }
+
+    private void flushExpired(long now) {
+        if(now - lastSweep < flushIntervalMillis) {
+            return;
+        }
+        lastSweep = now;
+        for(dataStream stream : streams.values()) {
+            if(stream.pendingLines > 0 && now - stream.firstPendingTime >= flushIntervalMillis) {
+                commit(stream);
+            }
+        }
+    }
+
+    //Writes out whatever is still sitting in the buffers
+    public void flush() {
+        for(dataStream stream : streams.values()) {
+            commit(stream);
+        }
+    }
+
+    //Flushes, syncs (unless the policy is NONE) and closes every file
+    public void close() {
+        flush();
+        for(dataStream stream : streams.values()) {
+            if(stream.channel == null) {
+                continue;
+            }
+            try {
+                if(syncPolicy != SyncPolicy.NONE) {
+                    stream.channel.force(false);
+                    stream.syncs++;
                 }
-                file = new File(exportDir, Integer.toString(session_number) +  ".csv");
-                file.createNewFile();
+                stream.channel.close();
+            } catch (IOException e) {
+                stream.failures++;
+                Log.d(TAG, "Unable to close " + stream.folderName + ": " + e.getMessage());
+            }
+            stream.channel = null;
+            Log.d(TAG, stream.folderName + " - lines: " + stream.linesWritten + " bytes: " + stream.bytesWritten
+                    + " flushes: " + stream.flushes + " syncs: " + stream.syncs + " failures: " + stream.failures);
+        }
+    }
 
-                //This is set in append mode - if the file already exists we append this data to it
-                printWriter = new PrintWriter(new FileWriter(file, true));
+    public dataStream getStatistics(String folderName) {
+        return streams.get(folderName);
+    }
 
-                //Append the data to the file
-                printWriter.print(message);
-                //Log.d(TAG, "Successfully wrote to " + folderName);
+    private dataStream getStream(String folderName) {
+        dataStream stream = streams.get(folderName);
+        if(stream == null) {
+            stream = new dataStream(folderName);
+            streams.put(folderName, stream);
+            resampling config = resamplings.get(folderName);
+            if(config != null) {
+                stream.resampler = createResampler(stream, config);
             }
+        }
+        return stream;
+    }
 
-            catch(Exception exc) {
-                //if there are any exceptions, return false
-                Log.d(TAG, exc.getMessage());
+    //Group commit: one write of everything accumulated for the stream
+    private boolean commit(dataStream stream) {
+        if(stream.binary != null) {
+            return commitBinary(stream);
+        }
+        if(stream.pending.length() == 0) {
+            return true;
+        }
+        boolean success = writeToChannel(stream, stream.pending);
+        if(success) {
+            stream.linesWritten += stream.pendingLines;
+            stream.flushes++;
+        }
+        //On failure the lines are dropped as before, there is no point in growing the buffer forever
+        stream.pending.setLength(0);
+        stream.pendingLines = 0;
+        return success;
+    }
+
+    private boolean commitBinary(dataStream stream) {
+        if(stream.binary.getPendingBytes() == 0) {
+            return true;
+        }
+        try {
+            if(!ensureChannel(stream)) {
+                return false;
+            }
+            long before = stream.binary.getBytesWritten();
+            stream.binary.writeTo(stream.channel);
+            stream.bytesWritten += stream.binary.getBytesWritten() - before;
+            if(syncPolicy == SyncPolicy.ON_FLUSH) {
+                stream.channel.force(false);
+                stream.syncs++;
+            }
+            stream.linesWritten += stream.pendingLines;
+            stream.flushes++;
+            stream.pendingLines = 0;
+            return true;
+        } catch (IOException exc) {
+            onWriteFailure(stream, exc);
+            //Drop what was pending, the reopened file starts a new segment with its own header
+            stream.binary.reset();
+            stream.pendingLines = 0;
+            return false;
+        }
+    }
+
+    private boolean ensureChannel(dataStream stream) throws IOException {
+        if(stream.channel == null) {
+            stream.channel = openChannel(stream.folderName);
+            if(stream.channel == null) {
+                stream.failures++;
                 return false;
             }
-            finally {
-                if(printWriter != null) printWriter.close();
+        }
+        return true;
+    }
+
+    private void onWriteFailure(dataStream stream, Exception exc) {
+        //Drop the channel so the next commit reopens the file
+        stream.failures++;
+        Log.d(TAG, "Unable to write " + stream.folderName + ": " + exc.getMessage());
+        if(stream.channel != null) {
+            try {
+                stream.channel.close();
+            } catch (IOException ignored) {
             }
+            stream.channel = null;
+        }
+    }
 
+    private boolean writeToChannel(dataStream stream, CharSequence text) {
+        try {
+            if(!ensureChannel(stream)) {
+                return false;
+            }
+            CharBuffer chars = CharBuffer.wrap(text);
+            encoder.reset();
+            while(true) {
+                CoderResult result = encoder.encode(chars, encodeBuffer, true);
+                if(result.isUnderflow()) {
+                    result = encoder.flush(encodeBuffer);
+                }
+                encodeBuffer.flip();
+                while(encodeBuffer.hasRemaining()) {
+                    stream.bytesWritten += stream.channel.write(encodeBuffer);
+                }
+                encodeBuffer.clear();
+                if(result.isUnderflow()) {
+                    break;
+                }
+                if(result.isError()) {
+                    result.throwException();
+                }
+            }
+            if(syncPolicy == SyncPolicy.ON_FLUSH) {
+                stream.channel.force(false);
+                stream.syncs++;
+            }
             return true;
         }
+        catch(Exception exc) {
+            onWriteFailure(stream, exc);
+            return false;
+        }
+    }
+
+    private FileChannel openChannel(String folderName) throws IOException {
+        String state = Environment.getExternalStorageState();
+        if (!Environment.MEDIA_MOUNTED.equals(state)) {
+            Log.d(TAG, "No SD card, can't export Mood Data");
+            return null;
+        }
+        //We use the Documents directory for saving our .csv file.
+        File exportRoot = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOCUMENTS);
+        File exportDir = new File(exportRoot, "MD2KHF/" + folderName + "/" + mCurrentDateString);
+        if (!exportDir.exists()) {
+            exportDir.mkdirs();
+        }
+
+        //If we don't have a session number, we find what session we are on.
+        //If the current session number is 0 (i.e. we haven't started the sessions for this exporter)
+        //  Then we check the directory to see if we already have an active session for today
+        //  We use the number of files in the directory to determine what session we are on.
+        if(session_number == -1) {
+            if(exportDir.listFiles() != null) {
+                session_number = exportDir.listFiles().length;
+            }
+        }
+        String extension = mode == Mode.BINARY ? BinaryRecordFormat.FILE_EXTENSION : ".csv";
+        File file = new File(exportDir, Integer.toString(session_number) +  extension);
+
+        //This is opened in append mode - if the file already exists we append this data to it
+        return new FileOutputStream(file, true).getChannel();
+    }
+
+
+    //Exports a set of values to a CSV file
+    /*
+          Params:  String folderName - directory name of the folder (i.e. Phone-ACC)
+                   String message - values that we are appending to the CSV file.
+                                    Usually the message will be timestamp, x, y, z
+     */
+    public boolean exportData(String folderName, String message) {
+        if(mode == Mode.BINARY) {
+            bufferData(folderName, message);
+            return commit(getStream(folderName));
+        }
+        dataStream stream = getStream(folderName);
+        //Keep the order with anything already buffered for this folder
+        if(!commit(stream)) {
+            return false;
+        }
+        return writeToChannel(stream, message);
     }
 
 }
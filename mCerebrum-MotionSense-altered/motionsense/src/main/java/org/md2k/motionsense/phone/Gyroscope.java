@@ -28,12 +28,10 @@ package org.md2k.motionsense.phone;
  */
 
 import android.content.Context;
-import android.content.Intent;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
-import android.support.v4.content.LocalBroadcastManager;
 import android.util.Log;
 
 import org.md2k.datakitapi.exception.DataKitException;
@@ -41,6 +39,8 @@ import org.md2k.datakitapi.source.METADATA;
 import org.md2k.datakitapi.source.datasource.DataSource;
 import org.md2k.mcerebrum.core.data_format.DataFormat;
 import org.md2k.motionsense.ActivityMain;
+import org.md2k.motionsense.UiDataBus;
+import org.md2k.motionsense.exportQueue;
 import org.md2k.motionsense.exportRunnable;
 import org.md2k.motionsense.exporter;
 
@@ -59,7 +59,8 @@ public class Gyroscope implements SensorEventListener {
     private static final String SENSOR_DELAY_GAME = "50";
     private static final String SENSOR_DELAY_FASTEST = "100";
 
-    public static final String INTENT_DATA = "INTENT_DATA";
+    //The main screen shows the sampling rate of the last second
+    private final UiDataBus.Channel uiChannel = UiDataBus.getInstance().getChannel("Phone-GYRO");
 
 
     private static final String TAG = "DBG-GYRO";
@@ -90,18 +91,43 @@ public class Gyroscope implements SensorEventListener {
     private long entryDelay = 9; //9 milliseconds have to pass between every sample
 
     //Queue for writing to a file
-    List<exportRunnable> writeQueue;
+    exportQueue writeQueue;
+
+    //Batched capture: events are sampled at 100 Hz and the sensor hub may hold them for up to
+    // MAX_REPORT_LATENCY_US, so the CPU is woken about once a second for a whole batch
+    private static final int SAMPLING_PERIOD_US = 10000;
+    private static final int MAX_REPORT_LATENCY_US = 1000000;
+    private static final int BATCH_CAPACITY = 256;
+    private static final long MAX_BATCH_NANOS = 1000000000L;
+    private final boolean batched;
+    private SampleBatcher batcher;
+    //Same as lastSaved and lastFrequencyOutput, in the sensor time base
+    private long lastSavedNanos;
+    private long lastFrequencyOutputNanos;
 
     /**
      * Constructor
      *
      * @param context Android context
+     * @param wQueue Queue for writing to a file
      */
-    public Gyroscope(Context context, List<exportRunnable> wQueue) {
+    public Gyroscope(Context context, exportQueue wQueue) {
+        this(context, wQueue, false);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param context Android context
+     * @param wQueue Queue for writing to a file
+     * @param batched Whether to capture in batches through the sensor FIFO
+     */
+    public Gyroscope(Context context, exportQueue wQueue, boolean batched) {
         //super(context, DataSourceType.GYROSCOPE);
         frequency = SENSOR_DELAY_FASTEST;
         ctx = context;
         writeQueue = wQueue;
+        this.batched = batched;
     }
 
 
@@ -111,6 +137,11 @@ public class Gyroscope implements SensorEventListener {
      */
     @Override
     public void onSensorChanged(SensorEvent event) {
+        if (batched) {
+            onSensorChangedBatched(event);
+            return;
+        }
+
         //long curTime = System.currentTimeMillis();
 
         //Why not divide by 1000000 directly?  http://fixermark.blogspot.com/2014/06/quirkiness-of-android-sensor-library.html
@@ -130,25 +161,21 @@ public class Gyroscope implements SensorEventListener {
             samples[DataFormat.Gyroscope.X] = event.values[0];
             samples[DataFormat.Gyroscope.Y] = event.values[1];
             samples[DataFormat.Gyroscope.Z] = event.values[2];
-            String message = curTime + "," + samples[0] + "," + samples[1] + "," + samples[2];
 
             //This is meant for output debugging - just to check how much data is sampled every second
             if ((curTime - lastFrequencyOutput) > filterDataMinTime) {
                 lastFrequencyOutput = curTime;
                 Log.d(TAG, " Sampling at " + Long.toString(dataCount) + " samples");
 
-                Intent intent = new Intent(INTENT_DATA);
-                intent.putExtra("phone-src", "Phone-GYRO");
-                intent.putExtra("phone-freq", Long.toString(dataCount));
-                LocalBroadcastManager.getInstance(ctx).sendBroadcast(intent);
+                uiChannel.publishFrequency(dataCount);
 
                 dataCount = 0;
-                Log.d(TAG, message);
+                Log.d(TAG, curTime + "," + samples[0] + "," + samples[1] + "," + samples[2]);
             }
 
             //Append the data to a queue for exporting
-            exportRunnable dataToQueue = new exportRunnable("Phone-GYRO", message);
-            writeQueue.add(dataToQueue);
+            exportRunnable dataToQueue = new exportRunnable("Phone-GYRO", curTime, samples);
+            writeQueue.offer(dataToQueue);
 
 
             dataCount += 1;
@@ -156,6 +183,28 @@ public class Gyroscope implements SensorEventListener {
         }
     }
 
+    /**
+     * Adds the sample of a sensor event to the batch, all times are in the sensor time base.
+     *
+     * @param event event that triggered the method call
+     */
+    private void onSensorChangedBatched(SensorEvent event) {
+        long timestamp = event.timestamp;
+        if ((timestamp - lastSavedNanos) <= entryDelay * 1000000L)
+            return;
+        lastSavedNanos = timestamp;
+
+        if ((timestamp - lastFrequencyOutputNanos) > filterDataMinTime * 1000000L) {
+            lastFrequencyOutputNanos = timestamp;
+            uiChannel.publishFrequency(dataCount);
+            dataCount = 0;
+        }
+
+        if (batcher.add(timestamp, event.values))
+            batcher.handOff(writeQueue);
+        dataCount += 1;
+    }
+
     /**
      * Called when the accuracy of this sensor changes.
      *
@@ -174,6 +223,10 @@ public class Gyroscope implements SensorEventListener {
         if (mSensorManager != null) {
             mSensorManager.unregisterListener(this);
         }
+        //Events are delivered on the thread that unregisters, nothing is added after this
+        if (batcher != null) {
+            batcher.handOff(writeQueue);
+        }
     }
 
     //Register the Sensor
@@ -181,6 +234,13 @@ public class Gyroscope implements SensorEventListener {
         //super.register(dataSourceBuilder, newCallBack);
         mSensorManager = (SensorManager) ctx.getSystemService(Context.SENSOR_SERVICE);
         Sensor mSensor = mSensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
+        if (batched) {
+            batcher = new SampleBatcher("Phone-GYRO", 3, 1, BATCH_CAPACITY, MAX_BATCH_NANOS);
+            lastSavedNanos = 0;
+            lastFrequencyOutputNanos = 0;
+            mSensorManager.registerListener(this, mSensor, SAMPLING_PERIOD_US, MAX_REPORT_LATENCY_US);
+            return;
+        }
         switch (frequency) {
             case SENSOR_DELAY_UI:
                 //filterDataMinTime = 1000.0 / (SENSOR_DELAY_UI_DOUBLE + EPSILON_UI);
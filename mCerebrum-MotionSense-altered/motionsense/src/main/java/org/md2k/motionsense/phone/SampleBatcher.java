@@ -0,0 +1,99 @@
+package org.md2k.motionsense.phone;
+
+import android.os.SystemClock;
+
+import org.md2k.motionsense.exportQueue;
+import org.md2k.motionsense.exportRunnable;
+
+/*
+    Collects the samples of one phone sensor in primitive arrays and queues them for export as one
+    exportRunnable per batch, instead of one entry (and one wall clock lookup) per sensor event.
+
+    - Sample timestamps stay in the sensor's time base (nanoseconds since boot) while they are
+      collected. They are converted to wall clock milliseconds when the batch is handed off, with
+      one boot time -> epoch offset read for the whole batch.
+    - A batch is handed off once it is full or spans more than maxBatchNanos of sensor time.
+
+    Only used from the thread the sensor events are delivered on.
+ */
+public class SampleBatcher {
+
+    private final String folderName;
+    private final int channels;
+    private final double divisor;
+    private final long maxBatchNanos;
+
+    private final long[] timestamps;
+    private final double[] values;
+    private int count = 0;
+
+    //Whether event timestamps are in the elapsedRealtimeNanos() base (most devices) or in the
+    // uptime base of System.nanoTime(), decided on the first hand-off
+    private int timeBase = UNKNOWN_BASE;
+    private static final int UNKNOWN_BASE = 0;
+    private static final int ELAPSED_REALTIME_BASE = 1;
+    private static final int UPTIME_BASE = 2;
+
+    /*
+        Params:  folderName - export folder of the sensor (i.e. Phone-ACC)
+                 channels - values per sample
+                 divisor - every event value is divided by it (i.e. gravity for the accelerometer)
+                 capacity - samples per batch
+                 maxBatchNanos - longest stretch of sensor time in one batch
+     */
+    public SampleBatcher(String folderName, int channels, double divisor, int capacity, long maxBatchNanos) {
+        this.folderName = folderName;
+        this.channels = channels;
+        this.divisor = divisor;
+        this.maxBatchNanos = maxBatchNanos;
+        timestamps = new long[capacity];
+        values = new double[capacity * channels];
+    }
+
+    //Adds a sample, returns true when the batch should be handed off
+    public boolean add(long timestampNanos, float[] eventValues) {
+        timestamps[count] = timestampNanos;
+        int offset = count * channels;
+        for(int c = 0; c < channels; c++) {
+            values[offset + c] = eventValues[c] / divisor;
+        }
+        count++;
+        return count == timestamps.length || timestampNanos - timestamps[0] >= maxBatchNanos;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    //Queues the collected samples, converting their timestamps with the current boot time -> epoch offset
+    public void handOff(exportQueue queue) {
+        if(count == 0) {
+            return;
+        }
+        queue.offer(drain(getEpochOffsetNanos(timestamps[count - 1])));
+    }
+
+    //Takes the collected samples as one export entry, epochOffsetNanos is added to the sensor timestamps
+    exportRunnable drain(long epochOffsetNanos) {
+        long[] batchTimestamps = new long[count];
+        for(int i = 0; i < count; i++) {
+            batchTimestamps[i] = (timestamps[i] + epochOffsetNanos) / 1000000L;
+        }
+        double[] batchValues = new double[count * channels];
+        System.arraycopy(values, 0, batchValues, 0, batchValues.length);
+        count = 0;
+        return new exportRunnable(folderName, batchTimestamps, batchValues, channels);
+    }
+
+    //Offset from the sensor time base to epoch time, the latest sample tells which base the sensor uses
+    private long getEpochOffsetNanos(long latestTimestampNanos) {
+        long epochNanos = System.currentTimeMillis() * 1000000L;
+        long elapsedRealtime = SystemClock.elapsedRealtimeNanos();
+        long uptime = System.nanoTime();
+        if(timeBase == UNKNOWN_BASE) {
+            timeBase = Math.abs(elapsedRealtime - latestTimestampNanos) <= Math.abs(uptime - latestTimestampNanos)
+                    ? ELAPSED_REALTIME_BASE : UPTIME_BASE;
+        }
+        return epochNanos - (timeBase == ELAPSED_REALTIME_BASE ? elapsedRealtime : uptime);
+    }
+}
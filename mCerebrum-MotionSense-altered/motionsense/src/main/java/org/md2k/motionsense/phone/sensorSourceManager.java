@@ -2,12 +2,9 @@ package org.md2k.motionsense.phone;
 
 import android.content.Context;
 
-import org.md2k.motionsense.exportRunnable;
+import org.md2k.motionsense.exportQueue;
 import org.md2k.motionsense.exporter;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -25,16 +22,21 @@ public class sensorSourceManager {
 
     ExecutorService executor;
 
-    List<exportRunnable> writeQueue;
+    exportQueue writeQueue;
 
-    public sensorSourceManager(Context context, exporter exp, List<exportRunnable> wQueue) {
+    public sensorSourceManager(Context context, exporter exp, exportQueue wQueue) {
+        this(context, exp, wQueue, false);
+    }
+
+    //batched - capture through the sensor FIFO and queue whole batches, see SampleBatcher
+    public sensorSourceManager(Context context, exporter exp, exportQueue wQueue, boolean batched) {
         ctx = context;
 
         writeQueue = wQueue;
         executor = Executors.newSingleThreadExecutor();
 
-        accSensor = new Accelerometer(ctx, writeQueue);
-        gyroSensor = new Gyroscope(ctx, writeQueue);
+        accSensor = new Accelerometer(ctx, writeQueue, batched);
+        gyroSensor = new Gyroscope(ctx, writeQueue, batched);
 
     }
 
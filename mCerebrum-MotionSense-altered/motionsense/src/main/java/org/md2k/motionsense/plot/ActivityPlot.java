@@ -27,13 +27,9 @@
 
 package org.md2k.motionsense.plot;
 
-import android.content.BroadcastReceiver;
-import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.graphics.Color;
 import android.os.Bundle;
-import android.support.v4.content.LocalBroadcastManager;
+import android.view.Choreographer;
 
 import org.md2k.datakitapi.datatype.DataType;
 import org.md2k.datakitapi.datatype.DataTypeDouble;
@@ -43,13 +39,18 @@ import org.md2k.datakitapi.datatype.DataTypeFloatArray;
 import org.md2k.datakitapi.source.datasource.DataSource;
 import org.md2k.datakitapi.source.datasource.DataSourceType;
 import org.md2k.mcerebrum.commons.plot.RealtimeLineChartActivity;
-import org.md2k.motionsense.ServiceMotionSense;
+import org.md2k.motionsense.UiDataBus;
+import org.md2k.motionsense.configuration.ConfigurationManager;
+
+import java.util.ArrayList;
 
 /**
  * This class is for the plotting activity.
  */
 public class ActivityPlot extends RealtimeLineChartActivity {
     DataSource dataSource;
+    UiDataBus.Reader reader;
+    private final ArrayList<DataType> samples = new ArrayList<>();
 
     /**
      * Fetches the data source for the plot.
@@ -68,52 +69,77 @@ public class ActivityPlot extends RealtimeLineChartActivity {
     }
 
     /**
-     * Unregisters <code>mMessageReceiver</code> when this activity is paused.
+     * Subscribes to the plotted stream and starts pulling it on every frame when the activity is
+     * resumed.
      */
     @Override
     public void onResume() {
-        LocalBroadcastManager.getInstance(this).registerReceiver(mMessageReceiver,
-                new IntentFilter(ServiceMotionSense.INTENT_DATA));
-
+        if (dataSource != null)
+            reader = UiDataBus.getInstance().getChannel(getKey()).subscribe();
+        Choreographer.getInstance().postFrameCallback(frameCallback);
         super.onResume();
     }
 
     /**
-     * Creates a new broadcast receiver that updates the plot when it receives new data.
+     * Stops pulling the plotted stream and closes the subscription when the activity is paused.
+     */
+    @Override
+    public void onPause() {
+        Choreographer.getInstance().removeFrameCallback(frameCallback);
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+        super.onPause();
+    }
+
+    /**
+     * Adds the samples published since the last frame to the plot.
      */
-    private BroadcastReceiver mMessageReceiver = new BroadcastReceiver() {
+    private Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
         @Override
-        public void onReceive(Context context, Intent intent) {
-            DataSource ds = intent.getParcelableExtra(DataSource.class.getSimpleName());
+        public void doFrame(long frameTimeNanos) {
+            if (reader != null) {
+                samples.clear();
+                if (reader.drain(samples, UiDataBus.HISTORY) > 0)
+                    updatePlot(samples, dataSource.getType());
+            }
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    };
+
+    /**
+     * Returns the bus key of the plotted stream. The <code>DataSource</code> from the intent is
+     * matched against the configured ones the same way the broadcasts used to be filtered, so a
+     * caller that leaves out the platform type still finds its stream.
+     * @return The bus key of the plotted stream.
+     */
+    private String getKey() {
+        ArrayList<DataSource> dataSources = ConfigurationManager.read(this);
+        for (int i = 0; dataSources != null && i < dataSources.size(); i++) {
+            DataSource ds = dataSources.get(i);
             if(!ds.getType().equals(dataSource.getType()))
-                return;
+                continue;
             if(ds.getId()!= null && dataSource.getId()!= null && !ds.getId().equals(dataSource.getId()))
-                return;
+                continue;
             if(ds.getId() == null && dataSource.getId()!= null)
-                return;
+                continue;
             if(ds.getId()!=null && dataSource.getId() == null)
-                return;
+                continue;
             if(!ds.getPlatform().getId().equals(dataSource.getPlatform().getId()))
-                return;
-            updatePlot(intent, ds.getType());
+                continue;
+            return UiDataBus.getKey(ds);
         }
-    };
-
-    /**
-     * Registers <code>mMessageReceiver</code> when the activity is resumed.
-     */
-    @Override
-    public void onPause() {
-        LocalBroadcastManager.getInstance(this).unregisterReceiver(mMessageReceiver);
-        super.onPause();
+        return UiDataBus.getKey(dataSource);
     }
 
     /**
      * Updates the plot with data.
      *
-     * @param intent Android intent
+     * @param datas Samples to add, oldest first.
+     * @param ds Data source type.
      */
-    void updatePlot(Intent intent, String ds) {
+    void updatePlot(ArrayList<DataType> datas, String ds) {
         float[] sample = new float[1];
         String[] legends;
 
@@ -144,9 +170,8 @@ public class ActivityPlot extends RealtimeLineChartActivity {
                 legends = new String[]{ds};
                 break;
         }
-        DataType[] datas = (DataType[]) intent.getParcelableArrayExtra(DataType.class.getSimpleName());
-        for(int ii = 0;ii<datas.length;ii++) {
-            DataType data = datas[ii];
+        for(int ii = 0;ii<datas.size();ii++) {
+            DataType data = datas.get(ii);
             if (data instanceof DataTypeFloat) {
                 sample = new float[]{((DataTypeFloat) data).getSample()};
             } else if (data instanceof DataTypeFloatArray) {
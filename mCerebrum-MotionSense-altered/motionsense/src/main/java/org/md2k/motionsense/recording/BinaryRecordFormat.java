@@ -0,0 +1,69 @@
+package org.md2k.motionsense.recording;
+
+/*
+    Layout of the binary MD2KHF recordings (all numbers big-endian).
+
+    A file is one or more segments, a new segment starts every time the file is (re)opened for
+    appending. Each segment is a header followed by blocks:
+
+    Header:
+        int32   MAGIC ("MDHF")
+        uint16  VERSION
+        uint8   value type (0 = float32, 1 = int16)
+        uint8   channels per sample
+        float32 nominal sample rate in Hz (0 if unknown)
+        float32 scale, an int16 value v stands for v * scale
+        uint16  length of the stream id, followed by the UTF-8 stream id (i.e. Phone-ACC)
+        int32   CRC32 of all the header bytes above
+
+    Block:
+        uint16  BLOCK_MAGIC
+        uint16  number of samples
+        int32   payload length in bytes
+        int64   timestamp of the first sample (ms)
+        int64   NTP offset (ms) that applies to every sample in the block
+        payload: for every sample a zigzag varint timestamp delta to the previous sample
+                 (the first one to the block timestamp), then the channel values
+        int32   CRC32 of the block header and payload
+
+    A block whose CRC does not match is skipped by the reader, a block cut short by a crash ends
+    the file.
+ */
+public final class BinaryRecordFormat {
+
+    public static final int MAGIC = 0x4D444846;
+    public static final int VERSION = 1;
+    public static final short BLOCK_MAGIC = (short) 0xB10C;
+
+    public static final int HEADER_FIXED_BYTES = 4 + 2 + 1 + 1 + 4 + 4 + 2;  //Up to the stream id
+    public static final int BLOCK_HEADER_BYTES = 2 + 2 + 4 + 8 + 8;
+    public static final int CRC_BYTES = 4;
+    public static final int MAX_SAMPLES_PER_BLOCK = 0xFFFF;
+
+    public static final String FILE_EXTENSION = ".bin";
+
+    public enum ValueType {
+        FLOAT32(0, 4),
+        INT16(1, 2);
+
+        public final int code;
+        public final int bytes;
+
+        ValueType(int code, int bytes) {
+            this.code = code;
+            this.bytes = bytes;
+        }
+
+        public static ValueType fromCode(int code) {
+            for (ValueType type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("Unknown value type " + code);
+        }
+    }
+
+    private BinaryRecordFormat() {
+    }
+}
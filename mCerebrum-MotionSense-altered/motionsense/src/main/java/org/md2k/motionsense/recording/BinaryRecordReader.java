@@ -0,0 +1,301 @@
+package org.md2k.motionsense.recording;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+
+/*
+    Reads a binary recording back sample by sample (see BinaryRecordFormat).
+
+        BinaryRecordReader reader = new BinaryRecordReader(in);
+        while (reader.next()) {
+            reader.getTimestamp(); reader.getValue(0); ...
+        }
+
+    Blocks with a bad CRC are skipped and counted. A block with a damaged length, or garbage
+    between blocks, is counted too and reading resyncs at the next block or header marker. A
+    header after the first that fails its checks, i.e. payload bytes that happen to look like the
+    marker, is counted the same way and scanning goes on right after the marker; only a bad first
+    header is fatal. A block that was cut short (i.e. the app was killed while writing) ends the
+    recording and sets isTruncated().
+ */
+public class BinaryRecordReader implements Closeable {
+
+    private static final int BLOCK_OK = 0;
+    private static final int BLOCK_BAD_CRC = 1;     //The block was read up to its end
+    private static final int BLOCK_BAD_LENGTH = 2;  //Where the block ends is unknown
+    private static final short HEADER_MARKER = (short) (BinaryRecordFormat.MAGIC >>> 16);
+    //Bytes a header can span after its marker, read ahead while it is checked
+    private static final int HEADER_MAX_BYTES = BinaryRecordFormat.HEADER_FIXED_BYTES + 0xFFFF + 4;
+
+    private final DataInputStream in;
+    private final CRC32 crc = new CRC32();
+
+    //Current segment header
+    private boolean hasHeader = false;
+    private String streamId;
+    private int channels;
+    private BinaryRecordFormat.ValueType valueType;
+    private float sampleRate;
+    private float scale;
+
+    //Current block, decoded
+    private long[] timestamps = new long[0];
+    private float[] values = new float[0];
+    private long ntpOffset;
+    private int blockSamples = 0;
+    private int index = -1;
+
+    private byte[] blockBytes = new byte[256];
+    private boolean truncated = false;
+    private boolean finished = false;
+    private long corruptBlocks = 0;
+    private int segments = 0;
+
+    public BinaryRecordReader(InputStream in) {
+        //Mark and reset step back out of a header that turns out not to be one
+        this.in = new DataInputStream(in.markSupported() ? in : new BufferedInputStream(in));
+    }
+
+    //Moves to the next sample, returns false at the end of the recording
+    public boolean next() throws IOException {
+        index++;
+        while (index >= blockSamples) {
+            if (finished || !readBlock()) {
+                finished = true;
+                return false;
+            }
+            index = 0;
+        }
+        return true;
+    }
+
+    private boolean readBlock() throws IOException {
+        boolean resync = false;
+        while (true) {
+            short magic;
+            try {
+                magic = resync ? findMarker() : in.readShort();
+            } catch (EOFException e) {
+                return false;
+            }
+            resync = false;
+            try {
+                if (magic == BinaryRecordFormat.BLOCK_MAGIC && hasHeader) {
+                    int result = decodeBlock();
+                    if (result == BLOCK_OK) {
+                        return true;
+                    }
+                    corruptBlocks++;
+                    resync = result == BLOCK_BAD_LENGTH;
+                } else if (magic == HEADER_MARKER && segments == 0) {
+                    readHeader(true);
+                } else if (magic == HEADER_MARKER) {
+                    in.mark(HEADER_MAX_BYTES);
+                    boolean valid;
+                    try {
+                        valid = readHeader(false);
+                    } catch (EOFException e) {
+                        valid = false;  //A false marker may claim more bytes than are left
+                    }
+                    if (!valid) {
+                        in.reset();
+                        corruptBlocks++;
+                        resync = true;
+                    }
+                } else if (hasHeader) {
+                    //Damaged data between blocks
+                    corruptBlocks++;
+                    resync = true;
+                } else {
+                    throw new IOException("Not a binary recording, or the file is damaged");
+                }
+            } catch (EOFException e) {
+                truncated = true;
+                return false;
+            }
+        }
+    }
+
+    //Skips ahead to the next block or header marker and returns it
+    private short findMarker() throws IOException {
+        int window = in.readUnsignedByte();
+        while (true) {
+            window = ((window << 8) | in.readUnsignedByte()) & 0xFFFF;
+            if ((short) window == BinaryRecordFormat.BLOCK_MAGIC || (short) window == HEADER_MARKER) {
+                return (short) window;
+            }
+        }
+    }
+
+    //Reads the header after its marker. If the magic, version, type or CRC is off it throws when
+    //strict (the first header of the file), otherwise it returns false
+    private boolean readHeader(boolean strict) throws IOException {
+        ByteBuffer fixed = ByteBuffer.allocate(BinaryRecordFormat.HEADER_FIXED_BYTES);
+        fixed.putShort(HEADER_MARKER);
+        in.readFully(fixed.array(), 2, BinaryRecordFormat.HEADER_FIXED_BYTES - 2);
+        if (fixed.getInt(0) != BinaryRecordFormat.MAGIC) {
+            return badHeader(strict, "Bad header magic");
+        }
+        int version = fixed.getShort(4) & 0xFFFF;
+        if (version != BinaryRecordFormat.VERSION) {
+            return badHeader(strict, "Unsupported version " + version);
+        }
+        BinaryRecordFormat.ValueType type;
+        try {
+            type = BinaryRecordFormat.ValueType.fromCode(fixed.get(6) & 0xFF);
+        } catch (IllegalArgumentException e) {
+            return badHeader(strict, e.getMessage());
+        }
+        int idLength = fixed.getShort(16) & 0xFFFF;
+        byte[] id = new byte[idLength];
+        in.readFully(id);
+        int storedCrc = in.readInt();
+
+        crc.reset();
+        crc.update(fixed.array(), 0, BinaryRecordFormat.HEADER_FIXED_BYTES);
+        crc.update(id, 0, idLength);
+        if ((int) crc.getValue() != storedCrc) {
+            return badHeader(strict, "Header CRC mismatch");
+        }
+        valueType = type;
+        channels = fixed.get(7) & 0xFF;
+        sampleRate = fixed.getFloat(8);
+        scale = fixed.getFloat(12);
+        streamId = new String(id, Charset.forName("UTF-8"));
+        hasHeader = true;
+        segments++;
+        return true;
+    }
+
+    private static boolean badHeader(boolean strict, String message) throws IOException {
+        if (strict) {
+            throw new IOException(message);
+        }
+        return false;
+    }
+
+    //Returns BLOCK_OK, or why the block was skipped
+    private int decodeBlock() throws IOException {
+        int count = in.readUnsignedShort();
+        int payloadLength = in.readInt();
+        if (payloadLength < 0 || payloadLength > count * (10 + channels * valueType.bytes)) {
+            blockSamples = 0;
+            return BLOCK_BAD_LENGTH;
+        }
+        int total = BinaryRecordFormat.BLOCK_HEADER_BYTES + payloadLength;
+        if (blockBytes.length < total) {
+            blockBytes = new byte[total];
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(blockBytes, 0, total);
+        buffer.putShort(BinaryRecordFormat.BLOCK_MAGIC);
+        buffer.putShort((short) count);
+        buffer.putInt(payloadLength);
+        in.readFully(blockBytes, 8, total - 8);
+        int storedCrc = in.readInt();
+
+        crc.reset();
+        crc.update(blockBytes, 0, total);
+        if ((int) crc.getValue() != storedCrc) {
+            blockSamples = 0;
+            return BLOCK_BAD_CRC;
+        }
+
+        long timestamp = buffer.getLong(8);
+        ntpOffset = buffer.getLong(16);
+        buffer.position(BinaryRecordFormat.BLOCK_HEADER_BYTES);
+        if (timestamps.length < count) {
+            timestamps = new long[count];
+        }
+        if (values.length < count * channels) {
+            values = new float[count * channels];
+        }
+        for (int i = 0; i < count; i++) {
+            timestamp += unzigzag(getVarLong(buffer));
+            timestamps[i] = timestamp;
+            int base = i * channels;
+            if (valueType == BinaryRecordFormat.ValueType.FLOAT32) {
+                for (int c = 0; c < channels; c++) {
+                    values[base + c] = buffer.getFloat();
+                }
+            } else {
+                for (int c = 0; c < channels; c++) {
+                    values[base + c] = buffer.getShort() * scale;
+                }
+            }
+        }
+        blockSamples = count;
+        return BLOCK_OK;
+    }
+
+    private static long getVarLong(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public long getTimestamp() {
+        return timestamps[index];
+    }
+
+    public float getValue(int channel) {
+        return values[index * channels + channel];
+    }
+
+    public long getNtpOffset() {
+        return ntpOffset;
+    }
+
+    public String getStreamId() {
+        return streamId;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public BinaryRecordFormat.ValueType getValueType() {
+        return valueType;
+    }
+
+    public float getSampleRate() {
+        return sampleRate;
+    }
+
+    public float getScale() {
+        return scale;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public long getCorruptBlocks() {
+        return corruptBlocks;
+    }
+
+    public int getSegments() {
+        return segments;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
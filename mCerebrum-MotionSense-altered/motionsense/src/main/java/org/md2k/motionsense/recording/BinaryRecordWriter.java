@@ -0,0 +1,223 @@
+package org.md2k.motionsense.recording;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+
+/*
+    Encodes the samples of one stream into the binary recording format (see BinaryRecordFormat).
+
+    Samples are encoded straight into a block buffer, nothing is allocated per sample. Completed
+    blocks collect in a pending buffer until writeTo() hands them to the file in a single write,
+    so the caller decides when to commit just like with the CSV text.
+    Not thread safe.
+ */
+public class BinaryRecordWriter {
+
+    public static final int DEFAULT_SAMPLES_PER_BLOCK = 256;
+
+    //Longest possible varint plus the widest values of one sample
+    private static final int MAX_VARINT_BYTES = 10;
+
+    private final String streamId;
+    private final int channels;
+    private final BinaryRecordFormat.ValueType valueType;
+    private final float sampleRate;
+    private final float scale;
+    private final int samplesPerBlock;
+
+    private final ByteBuffer block;  //Header, payload and CRC of the block being filled
+    private ByteBuffer pending;      //Encoded bytes that have not been written yet
+    private final CRC32 crc = new CRC32();
+
+    private int blockSamples = 0;
+    private long blockNtpOffset = 0;
+    private long previousTimestamp = 0;
+
+    //Counters
+    private long samples = 0;
+    private long blocks = 0;
+    private long bytesWritten = 0;
+
+    public BinaryRecordWriter(String streamId, int channels, BinaryRecordFormat.ValueType valueType,
+                              float sampleRate, float scale) {
+        this(streamId, channels, valueType, sampleRate, scale, DEFAULT_SAMPLES_PER_BLOCK);
+    }
+
+    public BinaryRecordWriter(String streamId, int channels, BinaryRecordFormat.ValueType valueType,
+                              float sampleRate, float scale, int samplesPerBlock) {
+        if (channels <= 0 || channels > 255) {
+            throw new IllegalArgumentException("channels must be between 1 and 255");
+        }
+        if (samplesPerBlock <= 0 || samplesPerBlock > BinaryRecordFormat.MAX_SAMPLES_PER_BLOCK) {
+            throw new IllegalArgumentException("samplesPerBlock must be between 1 and "
+                    + BinaryRecordFormat.MAX_SAMPLES_PER_BLOCK);
+        }
+        if (valueType == BinaryRecordFormat.ValueType.INT16 && !(scale > 0)) {
+            throw new IllegalArgumentException("int16 values need a positive scale");
+        }
+        this.streamId = streamId;
+        this.channels = channels;
+        this.valueType = valueType;
+        this.sampleRate = sampleRate;
+        this.scale = scale;
+        this.samplesPerBlock = samplesPerBlock;
+
+        int maxSampleBytes = MAX_VARINT_BYTES + channels * valueType.bytes;
+        block = ByteBuffer.allocate(BinaryRecordFormat.BLOCK_HEADER_BYTES
+                + samplesPerBlock * maxSampleBytes + BinaryRecordFormat.CRC_BYTES);
+        pending = ByteBuffer.allocate(Math.max(4096, 2 * block.capacity()));
+        writeHeader();
+    }
+
+    //Starts a new segment, i.e. when the output file has been reopened
+    public void reset() {
+        block.clear();
+        blockSamples = 0;
+        pending.clear();
+        writeHeader();
+    }
+
+    public void append(long timestamp, double[] values, long ntpOffset) {
+        append(timestamp, values, 0, ntpOffset);
+    }
+
+    //Adds one sample of channels values starting at values[offset]
+    public void append(long timestamp, double[] values, int offset, long ntpOffset) {
+        if (blockSamples > 0 && ntpOffset != blockNtpOffset) {
+            finishBlock();  //The offset is stored per block
+        }
+        if (blockSamples == 0) {
+            block.clear();
+            block.position(BinaryRecordFormat.BLOCK_HEADER_BYTES);
+            blockNtpOffset = ntpOffset;
+            previousTimestamp = timestamp;
+            block.putLong(16, ntpOffset);
+            block.putLong(8, timestamp);
+        }
+        putVarLong(zigzag(timestamp - previousTimestamp));
+        previousTimestamp = timestamp;
+        if (valueType == BinaryRecordFormat.ValueType.FLOAT32) {
+            for (int c = 0; c < channels; c++) {
+                block.putFloat((float) values[offset + c]);
+            }
+        } else {
+            for (int c = 0; c < channels; c++) {
+                long raw = Math.round(values[offset + c] / scale);
+                if (raw > Short.MAX_VALUE) {
+                    raw = Short.MAX_VALUE;
+                } else if (raw < Short.MIN_VALUE) {
+                    raw = Short.MIN_VALUE;
+                }
+                block.putShort((short) raw);
+            }
+        }
+        blockSamples++;
+        samples++;
+        if (blockSamples == samplesPerBlock) {
+            finishBlock();
+        }
+    }
+
+    //Bytes waiting for writeTo(), including the block that is still being filled
+    public int getPendingBytes() {
+        return pending.position() + (blockSamples > 0 ? block.position() : 0);
+    }
+
+    //Closes the current block and writes everything pending to the channel
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        finishBlock();
+        pending.flip();
+        try {
+            while (pending.hasRemaining()) {
+                bytesWritten += channel.write(pending);
+            }
+        } finally {
+            pending.compact();
+        }
+    }
+
+    private void finishBlock() {
+        if (blockSamples == 0) {
+            return;
+        }
+        int end = block.position();
+        block.putShort(0, BinaryRecordFormat.BLOCK_MAGIC);
+        block.putShort(2, (short) blockSamples);
+        block.putInt(4, end - BinaryRecordFormat.BLOCK_HEADER_BYTES);
+        crc.reset();
+        crc.update(block.array(), 0, end);
+        block.putInt((int) crc.getValue());
+        block.flip();
+        ensurePending(block.remaining());
+        pending.put(block);
+        block.clear();
+        blockSamples = 0;
+        blocks++;
+    }
+
+    private void writeHeader() {
+        byte[] id = streamId.getBytes(Charset.forName("UTF-8"));
+        if (id.length > 0xFFFF) {
+            throw new IllegalArgumentException("Stream id is too long");
+        }
+        ByteBuffer header = ByteBuffer.allocate(BinaryRecordFormat.HEADER_FIXED_BYTES + id.length + BinaryRecordFormat.CRC_BYTES);
+        header.putInt(BinaryRecordFormat.MAGIC);
+        header.putShort((short) BinaryRecordFormat.VERSION);
+        header.put((byte) valueType.code);
+        header.put((byte) channels);
+        header.putFloat(sampleRate);
+        header.putFloat(scale);
+        header.putShort((short) id.length);
+        header.put(id);
+        crc.reset();
+        crc.update(header.array(), 0, header.position());
+        header.putInt((int) crc.getValue());
+        header.flip();
+        ensurePending(header.remaining());
+        pending.put(header);
+    }
+
+    private void ensurePending(int bytes) {
+        if (pending.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private void putVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            block.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        block.put((byte) value);
+    }
+
+    public String getStreamId() {
+        return streamId;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+
+    public long getBlocks() {
+        return blocks;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+}
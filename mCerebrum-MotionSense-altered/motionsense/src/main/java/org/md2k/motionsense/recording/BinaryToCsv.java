@@ -0,0 +1,115 @@
+package org.md2k.motionsense.recording;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/*
+    Command line converter from the binary recordings back to the MD2KHF CSV layout
+    (timestamp,x,y,z,ntpOffset), so the CNN Training scripts can keep reading CSV files.
+
+    Usage:
+        java -cp <classes> org.md2k.motionsense.recording.BinaryToCsv <file.bin> [out.csv]
+        java -cp <classes> org.md2k.motionsense.recording.BinaryToCsv <directory>
+
+    A directory (i.e. a copy of Documents/MD2KHF) is searched recursively and every .bin file is
+    converted to a .csv file next to it. The classes only depend on the JDK.
+ */
+public class BinaryToCsv {
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: BinaryToCsv <file.bin|directory> [out.csv]");
+            System.exit(2);
+        }
+        File input = new File(args[0]);
+        int failures = 0;
+        try {
+            if (input.isDirectory()) {
+                failures = convertDirectory(input);
+            } else {
+                File output = args.length == 2 ? new File(args[1]) : csvFileFor(input);
+                report(input, output, convert(input, output));
+            }
+        } catch (IOException e) {
+            System.err.println(input + ": " + e.getMessage());
+            failures++;
+        }
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static int convertDirectory(File directory) {
+        int failures = 0;
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                failures += convertDirectory(file);
+            } else if (file.getName().endsWith(BinaryRecordFormat.FILE_EXTENSION)) {
+                File output = csvFileFor(file);
+                try {
+                    report(file, output, convert(file, output));
+                } catch (IOException e) {
+                    System.err.println(file + ": " + e.getMessage());
+                    failures++;
+                }
+            }
+        }
+        return failures;
+    }
+
+    private static File csvFileFor(File input) {
+        String name = input.getName();
+        if (name.endsWith(BinaryRecordFormat.FILE_EXTENSION)) {
+            name = name.substring(0, name.length() - BinaryRecordFormat.FILE_EXTENSION.length());
+        }
+        return new File(input.getParentFile(), name + ".csv");
+    }
+
+    private static void report(File input, File output, BinaryRecordReader reader) {
+        String message = input + " -> " + output;
+        if (reader.getCorruptBlocks() > 0) {
+            message += " (" + reader.getCorruptBlocks() + " corrupt blocks skipped)";
+        }
+        if (reader.isTruncated()) {
+            message += " (truncated)";
+        }
+        System.out.println(message);
+    }
+
+    public static BinaryRecordReader convert(File input, File output) throws IOException {
+        BinaryRecordReader reader = new BinaryRecordReader(new BufferedInputStream(new FileInputStream(input)));
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output), "UTF-8"));
+        try {
+            convert(reader, writer);
+        } finally {
+            writer.close();
+            reader.close();
+        }
+        return reader;
+    }
+
+    //Writes the lines the same way exporter does, each one preceded by a newline
+    public static long convert(BinaryRecordReader reader, Appendable out) throws IOException {
+        long lines = 0;
+        StringBuilder line = new StringBuilder(96);
+        while (reader.next()) {
+            line.setLength(0);
+            line.append('\n').append(reader.getTimestamp());
+            for (int c = 0; c < reader.getChannels(); c++) {
+                line.append(',').append(reader.getValue(c));
+            }
+            line.append(',').append(reader.getNtpOffset());
+            out.append(line);
+            lines++;
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,91 @@
+package org.md2k.motionsense;
+
+import org.junit.Test;
+import org.md2k.datakitapi.datatype.DataType;
+import org.md2k.datakitapi.datatype.DataTypeDouble;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class UiDataBusTest {
+
+    private static DataType[] batch(int first, int n) {
+        DataType[] samples = new DataType[n];
+        for (int i = 0; i < n; i++)
+            samples[i] = new DataTypeDouble(first + i, first + i);
+        return samples;
+    }
+
+    private static double value(DataType sample) {
+        return ((DataTypeDouble) sample).getSample();
+    }
+
+    @Test
+    public void unwatchedChannelDropsData() {
+        UiDataBus.Channel channel = UiDataBus.getInstance().getChannel("unwatched");
+        assertSame(channel, UiDataBus.getInstance().getChannel("unwatched"));
+        assertFalse(channel.isWatched());
+        channel.publish(batch(0, 10), new Summary());
+        channel.publishFrequency(25);
+
+        UiDataBus.Reader reader = channel.subscribe();
+        assertTrue(channel.isWatched());
+        assertNull(reader.getLatest());
+        assertEquals(-1, reader.getReportedFrequency(), 0);
+        assertEquals(0, reader.drain().size());
+        reader.close();
+        reader.close();
+        assertFalse(channel.isWatched());
+    }
+
+    @Test
+    public void readerSeesPublishedSamplesInOrder() {
+        UiDataBus.Channel channel = UiDataBus.getInstance().getChannel("ordered");
+        UiDataBus.Reader reader = channel.subscribe();
+        Summary summary = new Summary();
+        summary.add(10);
+        channel.publish(batch(0, 10), summary);
+        summary.add(5);
+        channel.publish(batch(10, 5), summary);
+        channel.publishFrequency(25);
+
+        ArrayList<DataType> samples = reader.drain();
+        assertEquals(15, samples.size());
+        for (int i = 0; i < samples.size(); i++)
+            assertEquals(i, value(samples.get(i)), 0);
+        assertEquals(14, value(reader.getLatest()), 0);
+        assertEquals(15, reader.getCount());
+        assertEquals(25, reader.getReportedFrequency(), 0);
+        assertEquals(0, reader.drain().size());
+
+        //Each reader has its own position
+        UiDataBus.Reader late = channel.subscribe();
+        channel.publish(batch(15, 3), summary);
+        assertEquals(3, reader.drain().size());
+        assertEquals(3, late.drain().size());
+        reader.close();
+        late.close();
+    }
+
+    @Test
+    public void slowReaderKeepsNewestSamples() {
+        UiDataBus.Channel channel = UiDataBus.getInstance().getChannel("slow");
+        UiDataBus.Reader reader = channel.subscribe();
+        int published = 0;
+        for (int i = 0; i < 5; i++) {
+            channel.publish(batch(published, 500), null);
+            published += 500;
+        }
+        ArrayList<DataType> samples = reader.drain();
+        assertEquals(UiDataBus.HISTORY, samples.size());
+        assertEquals(published - UiDataBus.HISTORY, value(samples.get(0)), 0);
+        assertEquals(published - 1, value(samples.get(samples.size() - 1)), 0);
+
+        channel.publish(batch(published, 20), null);
+        ArrayList<DataType> newest = new ArrayList<>();
+        assertEquals(5, reader.drain(newest, 5));
+        assertEquals(published + 15, value(newest.get(0)), 0);
+        reader.close();
+    }
+}
@@ -0,0 +1,115 @@
+package org.md2k.motionsense.device;
+
+import com.polidea.rxandroidble.RxBleConnection;
+
+import org.junit.Test;
+import org.md2k.motionsense.Data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import rx.Observable;
+
+import static org.junit.Assert.*;
+
+public class BatchDecoderTest {
+
+    private static final long START = 1500000000000L;
+
+    /** Packets carry a sequence number and one value. */
+    private static class TestDecoder extends PacketDecoder {
+        @Override
+        public int getColumnCount() {
+            return 1;
+        }
+
+        @Override
+        public int getSequenceNumber(byte[] packet) {
+            return packet[0] & 0xff;
+        }
+
+        @Override
+        protected void decodeValues(byte[] packet, DecodedBatch batch, int row) {
+            batch.setValue(0, row, packet[1]);
+        }
+    }
+
+    private static class TestCharacteristic extends Characteristic {
+        private final PacketDecoder decoder = new TestDecoder();
+
+        TestCharacteristic(String name) {
+            super("id", name, 25.0);
+        }
+
+        @Override
+        public Observable<ArrayList<Data>> getObservable(RxBleConnection rxBleConnection, ArrayList<Sensor> sensors) {
+            return null;
+        }
+
+        @Override
+        public PacketDecoder getDecoder() {
+            return decoder;
+        }
+
+        @Override
+        protected int getSequenceLimit() {
+            return 256;
+        }
+
+        @Override
+        protected void toData(DecodedBatch batch, int row, ArrayList<Data> data) {
+            data.add(new Data(null, null));
+        }
+    }
+
+    private static PacketData packet(Characteristic characteristic, int sequence, int value) {
+        return new PacketData(characteristic, new byte[]{(byte) sequence, (byte) value}, START + 40 * sequence);
+    }
+
+    @Test
+    public void decodesAllPacketsOfABufferLargerThanTheCapacity() {
+        TestCharacteristic acl = new TestCharacteristic("ACL");
+        TestCharacteristic led = new TestCharacteristic("LED");
+        ArrayList<Data> first = new ArrayList<>();
+        ArrayList<Data> second = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            first.add(packet(acl, i, i));
+        for (int i = 0; i < 3; i++)
+            second.add(packet(led, i, 100 + i));
+        second.add(new Data(null, null));
+
+        BatchDecoder decoder = new BatchDecoder(4);
+        ArrayList<Data> data = decoder.decode(Arrays.asList(first, second));
+
+        assertEquals(10 + 3 + 1, data.size());
+        assertEquals(Arrays.<Characteristic>asList(acl, led), decoder.getDecodedCharacteristics());
+        DecodedBatch decoded = decoder.getDecoded(acl);
+        assertEquals(10, decoded.getCount());
+        for (int i = 0; i < 10; i++)
+            assertEquals(i, decoded.getValue(0, i), 0);
+        assertEquals(3, decoder.getDecoded(led).getCount());
+        assertEquals(102, decoder.getDecoded(led).getValue(0, 2), 0);
+    }
+
+    @Test
+    public void reusesTheBatchAndForgetsQuietCharacteristics() {
+        TestCharacteristic acl = new TestCharacteristic("ACL");
+        TestCharacteristic led = new TestCharacteristic("LED");
+        BatchDecoder decoder = new BatchDecoder(4);
+        ArrayList<Data> buffer = new ArrayList<>();
+        for (int i = 0; i < 6; i++)
+            buffer.add(packet(acl, i, i));
+        buffer.add(packet(led, 0, 0));
+        decoder.decode(Arrays.asList(buffer));
+        DecodedBatch batch = decoder.getDecoded(acl);
+
+        List<ArrayList<Data>> next = Arrays.asList(new ArrayList<Data>(Arrays.<Data>asList(packet(acl, 6, 60), packet(acl, 7, 70))));
+        decoder.decode(next);
+
+        assertSame(batch, decoder.getDecoded(acl));
+        assertEquals(2, batch.getCount());
+        assertEquals(70, batch.getValue(0, 1), 0);
+        assertNull(decoder.getDecoded(led));
+    }
+}
@@ -0,0 +1,97 @@
+package org.md2k.motionsense.device;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class LossAccountantTest {
+
+    private static final long START = 1500000000000L;
+
+    private static void packet(LossAccountant accountant, TimestampReconstructor reconstructor, int sequence, long arrival) {
+        long previousIndex = reconstructor.getLastIndex();
+        long timestamp = reconstructor.reconstruct(sequence, arrival);
+        accountant.onPacket(reconstructor, previousIndex, timestamp);
+    }
+
+    @Test
+    public void recordsSkippedSequenceNumbers() {
+        LossMonitor monitor = new LossMonitor();
+        final ArrayList<LossAccountant.Window> published = new ArrayList<>();
+        monitor.setOnMissingWindowListener(new LossMonitor.OnMissingWindowListener() {
+            @Override
+            public void onMissingWindow(LossAccountant accountant, LossAccountant.Window window) {
+                published.add(window);
+            }
+        });
+        LossAccountant accountant = monitor.getAccountant("device", "CHARACTERISTIC_LED");
+        TimestampReconstructor reconstructor = new TimestampReconstructor(25.0, 1024);
+        for (int i = 0; i < 10; i++)
+            packet(accountant, reconstructor, i, START + 40 * i);
+        accountant.onOverflow();
+        packet(accountant, reconstructor, 15, START + 40 * 15);
+        packet(accountant, reconstructor, 15, START + 40 * 15 + 5);
+        packet(accountant, reconstructor, 20, START + 40 * 20);
+
+        assertEquals(13, accountant.getPackets());
+        assertEquals(1, accountant.getDuplicates());
+        assertEquals(1, accountant.getOverflows());
+        assertEquals(2, accountant.getGapCount());
+        assertEquals(5 + 4, accountant.getMissingSamples());
+        ArrayList<LossAccountant.Window> gaps = accountant.getGaps();
+        assertEquals(2, gaps.size());
+        assertEquals(LossAccountant.CAUSE_OVERFLOW, gaps.get(0).getCause());
+        assertEquals(START + 40 * 9, gaps.get(0).getStart());
+        assertEquals(START + 40 * 15, gaps.get(0).getEnd(), 5);
+        assertEquals(5, gaps.get(0).getSamples());
+        assertEquals(LossAccountant.CAUSE_SEQUENCE_GAP, gaps.get(1).getCause());
+        assertEquals(gaps, published);
+    }
+
+    @Test
+    public void reportsRateAndJitterOfTheCurrentConnection() {
+        LossAccountant accountant = new LossMonitor().getAccountant("device", "CHARACTERISTIC_LED");
+        assertTrue(Double.isNaN(accountant.getRate()));
+        TimestampReconstructor reconstructor = new TimestampReconstructor(25.0, 1024);
+        for (int i = 0; i < 50; i++)
+            packet(accountant, reconstructor, i, START + 40 * i + (i % 2 == 0 ? 3 : -3));
+
+        assertEquals(reconstructor.getRate(), accountant.getRate(), 0);
+        assertEquals(reconstructor.getJitter(), accountant.getJitter(), 0);
+        assertEquals(25.0, accountant.getRate(), 0.5);
+        assertTrue(accountant.getJitter() > 0);
+    }
+
+    @Test
+    public void recordsDisconnectsAcrossConnections() {
+        LossAccountant accountant = new LossMonitor().getAccountant("device", "CHARACTERISTIC_LED");
+        TimestampReconstructor first = new TimestampReconstructor(25.0, 1024);
+        for (int i = 0; i < 10; i++)
+            packet(accountant, first, i, START + 40 * i);
+        //The characteristic is created again on the next connection, 2 s later
+        TimestampReconstructor second = new TimestampReconstructor(25.0, 1024);
+        packet(accountant, second, 700, START + 40 * 9 + 2000);
+
+        assertEquals(1, accountant.getDisconnects());
+        assertEquals(1, accountant.getGapCount());
+        LossAccountant.Window window = accountant.getGaps().get(0);
+        assertEquals(LossAccountant.CAUSE_DISCONNECT, window.getCause());
+        assertEquals(49, window.getSamples());
+        assertEquals(2000, window.getEnd() - window.getStart());
+    }
+
+    @Test
+    public void keepsTheLastWindowsInTheGapIndex() {
+        LossAccountant accountant = new LossMonitor().getAccountant("device", "CHARACTERISTIC_LED");
+        TimestampReconstructor reconstructor = new TimestampReconstructor(25.0, 1024);
+        int gaps = LossAccountant.GAP_INDEX_SIZE + 10;
+        for (int i = 0; i <= gaps; i++)
+            packet(accountant, reconstructor, (2 * i) % 1024, START + 80 * i);
+        assertEquals(gaps, accountant.getGapCount());
+        ArrayList<LossAccountant.Window> index = accountant.getGaps();
+        assertEquals(LossAccountant.GAP_INDEX_SIZE, index.size());
+        assertEquals(START + 80 * (gaps - 1), index.get(index.size() - 1).getStart(), 5);
+    }
+}
@@ -0,0 +1,87 @@
+package org.md2k.motionsense.device;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TimestampReconstructorTest {
+
+    private static final long START = 1500000000000L;
+
+    //Arrival time of a sample: the sensor clock runs at trueRate, packets arrive in bursts of
+    //up to 4 and with up to 30 ms of latency
+    private static long arrival(long index, double trueRate, Random random) {
+        long generated = START + Math.round(index * 1000.0 / trueRate);
+        long connectionEvent = (generated / 30 + 1) * 30;
+        return connectionEvent + random.nextInt(30);
+    }
+
+    @Test
+    public void fitsTheTrueRate() {
+        TimestampReconstructor reconstructor = new TimestampReconstructor(25.0, 1024);
+        Random random = new Random(1);
+        double trueRate = 25.4;
+        long last = Long.MIN_VALUE;
+        long first = 0;
+        int count = 5000;
+        for (int i = 0; i < count; i++) {
+            long timestamp = reconstructor.reconstruct(i % 1024, arrival(i, trueRate, random));
+            assertTrue(timestamp > last);
+            last = timestamp;
+            if (i == 1000)
+                first = timestamp;
+        }
+        assertEquals(trueRate, reconstructor.getRate(), 0.05);
+        assertEquals((count - 1 - 1000) * 1000.0 / trueRate, last - first, 50);
+        assertTrue(reconstructor.getJitter() > 0 && reconstructor.getJitter() < 40);
+        assertEquals(0, reconstructor.getMissing());
+        assertEquals(0, reconstructor.getResyncs());
+    }
+
+    @Test
+    public void unrollsSeveralWrapsDuringAGap() {
+        TimestampReconstructor reconstructor = new TimestampReconstructor(25.0, 1024);
+        Random random = new Random(2);
+        long before = 0;
+        for (int i = 0; i < 500; i++)
+            before = reconstructor.reconstruct(i % 1024, arrival(i, 25.0, random));
+        int resumed = 499 + 2500;
+        long after = reconstructor.reconstruct(resumed % 1024, arrival(resumed, 25.0, random));
+        assertEquals(499 + 2500, reconstructor.getLastIndex());
+        assertEquals(2499, reconstructor.getMissing());
+        assertEquals(2500 * 40.0, after - before, 50);
+        assertEquals(0, reconstructor.getResyncs());
+    }
+
+    @Test
+    public void keepsDuplicateAndLatePacketsMonotonic() {
+        TimestampReconstructor reconstructor = new TimestampReconstructor(16.0, 1024);
+        long t0 = reconstructor.reconstruct(1022, START);
+        long t1 = reconstructor.reconstruct(1023, START + 62);
+        long t2 = reconstructor.reconstruct(1023, START + 70);
+        long t3 = reconstructor.reconstruct(1022, START + 80);
+        long t4 = reconstructor.reconstruct(0, START + 125);
+        assertTrue(t1 > t0);
+        assertEquals(t1, t2);
+        assertEquals(t1, t3);
+        assertTrue(t4 > t1);
+        assertEquals(2, reconstructor.getLastIndex());
+        assertEquals(2, reconstructor.getDuplicates());
+        assertEquals(0, reconstructor.getMissing());
+    }
+
+    @Test
+    public void resyncsAfterTheDeviceRestarts() {
+        TimestampReconstructor reconstructor = new TimestampReconstructor(25.0, 1024);
+        Random random = new Random(3);
+        for (int i = 0; i < 200; i++)
+            reconstructor.reconstruct(i, arrival(i, 25.0, random));
+        //The device restarts its sequence numbers 5 s later, which looks like a few samples
+        long restart = arrival(199, 25.0, random) + 5000;
+        long timestamp = reconstructor.reconstruct(3, restart);
+        assertEquals(1, reconstructor.getResyncs());
+        assertEquals(restart, timestamp, 40);
+    }
+}
@@ -0,0 +1,174 @@
+package org.md2k.motionsense.device.data_quality;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks FirFilter and OverlapSaveFilter against the Bandpass convolution and compares their
+ * speed on the LED recording that Bandpass.main filters.
+ */
+public class FirFilterTest {
+
+    private static double[] sampleData() throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                FirFilterTest.class.getResourceAsStream("bandpass_sample.csv"), "UTF-8"));
+        ArrayList<Double> values = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.isEmpty())
+                values.add(Double.parseDouble(line));
+        }
+        reader.close();
+        double[] data = new double[values.size()];
+        for (int i = 0; i < data.length; i++)
+            data[i] = values.get(i);
+        return data;
+    }
+
+    private static double[] centered(double[] data) {
+        double sum = 0;
+        for (double d : data)
+            sum += d;
+        double mean = sum / data.length;
+        double[] c = new double[data.length];
+        for (int i = 0; i < data.length; i++)
+            c[i] = data[i] - mean;
+        return c;
+    }
+
+    private static double[] directConvolution(double[] data) {
+        double[] out = new double[data.length - Bandpass.IMPULSE.length + 1];
+        FirFilter.convolve(Bandpass.IMPULSE, data, out);
+        return out;
+    }
+
+    private static double stdDev(double[] data, int offset, int count) {
+        double sum = 0;
+        for (int i = offset; i < offset + count; i++)
+            sum += data[i];
+        double mean = sum / count;
+        double sq = 0;
+        for (int i = offset; i < offset + count; i++)
+            sq += (data[i] - mean) * (data[i] - mean);
+        return Math.sqrt(sq / count);
+    }
+
+    @Test
+    public void streamingMatchesConvolution() throws IOException {
+        double[] data = centered(sampleData());
+        double[] expected = directConvolution(data);
+        FirFilter filter = new FirFilter(Bandpass.IMPULSE);
+        int m = filter.getLength();
+        for (int i = 0; i < data.length; i++) {
+            double y = filter.process(data[i]);
+            assertEquals(i >= m - 1, filter.isPrimed());
+            if (i >= m - 1)
+                assertEquals(expected[i - m + 1], y, 1e-9);
+        }
+        filter.reset();
+        assertFalse(filter.isPrimed());
+        assertEquals(0, filter.process(0), 0);
+    }
+
+    @Test
+    public void overlapSaveMatchesConvolution() throws IOException {
+        double[] data = centered(sampleData());
+        double[] expected = directConvolution(data);
+        OverlapSaveFilter filter = new OverlapSaveFilter(Bandpass.IMPULSE);
+        double[] out = new double[expected.length];
+        assertEquals(expected.length, filter.filter(data, data.length, out));
+        assertArrayEquals(expected, out, 1e-7);
+
+        //Lengths around the block boundaries and a tiny FFT
+        Random random = new Random(3);
+        double[] taps = {0.5, -0.25, 0.125, 1};
+        OverlapSaveFilter small = new OverlapSaveFilter(taps, 8);
+        for (int n = 1; n < 40; n++) {
+            double[] in = new double[n];
+            for (int i = 0; i < n; i++)
+                in[i] = random.nextGaussian();
+            double[] ref = new double[Math.max(n - taps.length + 1, 0)];
+            FirFilter.convolve(taps, in, ref);
+            double[] got = new double[ref.length];
+            assertEquals(ref.length, small.filter(in, n, got));
+            assertArrayEquals(ref, got, 1e-12);
+        }
+    }
+
+    @Test
+    public void bandpassResultUnchanged() throws IOException {
+        double[] data = sampleData();
+        double[] expected = directConvolution(centered(data));
+        Bandpass bandpass = new Bandpass(data.clone());
+        assertTrue(bandpass.output.length >= Bandpass.FFT_MIN_OUTPUTS);
+        assertArrayEquals(expected, bandpass.output, 1e-7);
+
+        //The filter removes the mean of the signal, so the uncentered stream gives the same spread
+        FirFilter filter = new FirFilter(Bandpass.IMPULSE);
+        double[] streamed = new double[data.length];
+        filter.process(data, 0, data.length, streamed, 0);
+        int m = filter.getLength();
+        assertEquals(stdDev(expected, 0, expected.length), stdDev(streamed, m - 1, expected.length), 1e-6);
+    }
+
+    private static double sink;
+
+    //Only prints the timings, a wall clock comparison would flake on a loaded machine
+    @Test
+    public void benchmark() throws IOException {
+        double[] data = sampleData();
+        int m = Bandpass.IMPULSE.length;
+        OverlapSaveFilter fft = new OverlapSaveFilter(Bandpass.IMPULSE);
+        FirFilter streaming = new FirFilter(Bandpass.IMPULSE);
+        double[] out = new double[data.length];
+        int rounds = 200;
+
+        for (int r = 0; r < 200; r++) {
+            sink += directConvolution(centered(data))[0];
+            sink += fft.filter(data, data.length, out);
+            streaming.process(data, 0, data.length, out, 0);
+        }
+
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++)
+            sink += directConvolution(centered(data))[0];
+        long directNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int r = 0; r < rounds; r++)
+            sink += new Bandpass(data.clone()).output[0];
+        long bandpassNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int r = 0; r < rounds; r++)
+            sink += fft.filter(data, data.length, out);
+        long fftNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            streaming.reset();
+            streaming.process(data, 0, data.length, out, 0);
+        }
+        long streamingNanos = System.nanoTime() - start;
+
+        //A live stream only pays for the newest sample on every status check
+        start = System.nanoTime();
+        for (int r = 0; r < rounds; r++)
+            sink += streaming.process(data[r]);
+        long perSampleNanos = System.nanoTime() - start;
+
+        long n = (long) rounds * (data.length - m + 1);
+        System.out.println("Direct convolution: " + (double) directNanos / n + " ns per output");
+        System.out.println("Bandpass (FFT): " + (double) bandpassNanos / n + " ns per output");
+        System.out.println("OverlapSaveFilter: " + (double) fftNanos / n + " ns per output");
+        System.out.println("FirFilter batch: " + (double) streamingNanos / n + " ns per output");
+        System.out.println("FirFilter one sample: " + (double) perSampleNanos / rounds + " ns");
+    }
+}
@@ -0,0 +1,84 @@
+package org.md2k.motionsense.device.data_quality;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks WindowedStatistics against statistics recomputed from scratch over the same window.
+ */
+public class WindowedStatisticsTest {
+
+    @Test
+    public void emptyWindow() {
+        WindowedStatistics stats = new WindowedStatistics(1000);
+        assertEquals(0, stats.getCount());
+        assertEquals(0, stats.getVariance(), 0);
+        assertEquals(Long.MIN_VALUE, stats.getLastTime());
+        stats.add(10, 5);
+        stats.expire(1010);
+        assertEquals(0, stats.getCount());
+        assertEquals(0, stats.getMean(), 0);
+        assertEquals(10, stats.getLastTime());
+    }
+
+    @Test
+    public void matchesTwoPassOverWindow() {
+        Random random = new Random(11);
+        long window = 8000;
+        double low = 140000, high = 230000;
+        WindowedStatistics stats = new WindowedStatistics(window, low, high);
+        ArrayList<long[]> times = new ArrayList<>();
+        ArrayList<Double> values = new ArrayList<>();
+        long time = 1500000000000L;
+        for (int i = 0; i < 20000; i++) {
+            time += 20 + random.nextInt(30);
+            if (i % 5000 == 4999)
+                time += 9000;  //A gap longer than the window
+            double value = 180000 + 60000 * random.nextGaussian();
+            stats.add(time, value);
+            times.add(new long[]{time});
+            values.add(value);
+
+            if (i % 97 == 0) {
+                long now = time + random.nextInt(3000);
+                stats.expire(now);
+                int count = 0, out = 0;
+                double sum = 0;
+                for (int j = 0; j < values.size(); j++) {
+                    if (now - times.get(j)[0] < window) {
+                        count++;
+                        sum += values.get(j);
+                        if (values.get(j) < low || values.get(j) > high)
+                            out++;
+                    }
+                }
+                double mean = sum / count;
+                double sq = 0;
+                for (int j = 0; j < values.size(); j++) {
+                    if (now - times.get(j)[0] < window)
+                        sq += (values.get(j) - mean) * (values.get(j) - mean);
+                }
+                assertEquals(count, stats.getCount());
+                assertEquals(out, stats.getOutOfRange());
+                if (count > 0) {
+                    assertEquals(mean, stats.getMean(), 1e-6);
+                    assertEquals(Math.sqrt(sq / count), stats.getStdDev(), 1e-6);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void smallSpreadOnLargeOffset() {
+        //Accelerometer at rest: a spread far below the mean must not be lost to rounding
+        WindowedStatistics stats = new WindowedStatistics(3000);
+        Random random = new Random(4);
+        for (int i = 0; i < 100000; i++)
+            stats.add(i * 20L, 1 + 0.001 * random.nextGaussian());
+        assertEquals(0.001, stats.getStdDev(), 0.0002);
+    }
+}
@@ -0,0 +1,32 @@
+package org.md2k.motionsense.device.motionsense;
+
+import org.junit.Test;
+import org.md2k.motionsense.device.DecodedBatch;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AclPacketDecoderTest {
+
+    @Test
+    public void matchesTranslateAcl() {
+        AclPacketDecoder decoder = new AclPacketDecoder();
+        DecodedBatch batch = decoder.createBatch(100);
+        Random random = new Random(3);
+        byte[][] packets = new byte[100][20];
+        for (byte[] packet : packets) {
+            random.nextBytes(packet);
+            decoder.decode(packet, 42, batch);
+        }
+        for (int row = 0; row < packets.length; row++) {
+            byte[] packet = packets[row];
+            assertArrayEquals(TranslateAcl.getAccelerometer(packet), batch.getRow(row, AclPacketDecoder.ACCELEROMETER, 3), 0);
+            assertArrayEquals(TranslateAcl.getGyroscope1(packet), batch.getRow(row, AclPacketDecoder.GYROSCOPE_1, 3), 0);
+            assertArrayEquals(TranslateAcl.getGyroscope2(packet), batch.getRow(row, AclPacketDecoder.GYROSCOPE_2, 3), 0);
+            assertEquals((int) TranslateAcl.getSequenceNumber(packet)[0], batch.getSequenceNumber(row));
+            assertArrayEquals(TranslateAcl.getRaw(packet), batch.getRawAsDouble(row), 0);
+            assertEquals(42, batch.getTimestamp(row));
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.md2k.motionsense.device.motionsense_hrv;
+
+import org.junit.Test;
+import org.md2k.motionsense.device.DecodedBatch;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LedPacketDecoderTest {
+
+    @Test
+    public void matchesTranslateLed() {
+        LedPacketDecoder decoder = new LedPacketDecoder();
+        DecodedBatch batch = decoder.createBatch(100);
+        Random random = new Random(4);
+        byte[][] packets = new byte[100][20];
+        for (byte[] packet : packets) {
+            random.nextBytes(packet);
+            decoder.decode(packet, 0, batch);
+        }
+        for (int row = 0; row < packets.length; row++) {
+            byte[] packet = packets[row];
+            assertArrayEquals(TranslateLed.getAccelerometer(packet), batch.getRow(row, LedPacketDecoder.ACCELEROMETER, 3), 0);
+            assertArrayEquals(TranslateLed.getGyroscope(packet), batch.getRow(row, LedPacketDecoder.GYROSCOPE, 3), 0);
+            assertArrayEquals(TranslateLed.getLED(packet), batch.getRow(row, LedPacketDecoder.LED, 3), 0);
+            assertEquals((int) TranslateLed.getSequenceNumber(packet)[0], batch.getSequenceNumber(row));
+            assertArrayEquals(TranslateLed.getRaw(packet), batch.getRawAsDouble(row), 0);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.md2k.motionsense.device.motionsense_hrv_plus;
+
+import org.junit.Test;
+import org.md2k.motionsense.device.DecodedBatch;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the HRV+ decoders against TranslateLed/TranslateMag and compares the cost of both
+ * paths, the same way Bandpass.main is used as a quick benchmark.
+ */
+public class PacketDecoderTest {
+
+    private static byte[][] packets(int n, long seed) {
+        Random random = new Random(seed);
+        byte[][] packets = new byte[n][20];
+        for (byte[] packet : packets)
+            random.nextBytes(packet);
+        return packets;
+    }
+
+    @Test
+    public void ledMatchesTranslateLed() {
+        LedPacketDecoder decoder = new LedPacketDecoder();
+        byte[][] packets = packets(100, 5);
+        DecodedBatch batch = decoder.createBatch(packets.length);
+        for (byte[] packet : packets)
+            decoder.decode(packet, 0, batch);
+        for (int row = 0; row < packets.length; row++) {
+            byte[] packet = packets[row];
+            assertArrayEquals(TranslateLed.getAccelerometer(packet), batch.getRow(row, LedPacketDecoder.ACCELEROMETER, 3), 0);
+            assertArrayEquals(TranslateLed.getQuaternion(packet), batch.getRow(row, LedPacketDecoder.QUATERNION, 3), 0);
+            assertArrayEquals(TranslateLed.getLED(packet), batch.getRow(row, LedPacketDecoder.LED, 3), 0);
+            assertEquals((int) TranslateLed.getSequenceNumber(packet)[0], batch.getSequenceNumber(row));
+            assertArrayEquals(TranslateLed.getRaw(packet), batch.getRawAsDouble(row), 0);
+        }
+    }
+
+    @Test
+    public void magMatchesTranslateMag() {
+        MagPacketDecoder decoder = new MagPacketDecoder();
+        byte[][] packets = packets(100, 6);
+        DecodedBatch batch = decoder.createBatch(packets.length);
+        for (byte[] packet : packets)
+            decoder.decode(packet, 0, batch);
+        for (int row = 0; row < packets.length; row++) {
+            byte[] packet = packets[row];
+            assertArrayEquals(TranslateMag.getMagnetometer1(packet), batch.getRow(row, MagPacketDecoder.MAGNETOMETER_1, 3), 0);
+            assertArrayEquals(TranslateMag.getMagnetometer2(packet), batch.getRow(row, MagPacketDecoder.MAGNETOMETER_2, 3), 0);
+            assertArrayEquals(TranslateMag.getSensitivity(packet), batch.getRow(row, MagPacketDecoder.SENSITIVITY, 3), 0);
+            assertEquals((int) TranslateMag.getSequenceNumber(packet)[0], batch.getSequenceNumber(row));
+        }
+    }
+
+    @Test
+    public void rawPathKeepsBytes() {
+        LedPacketDecoder decoder = new LedPacketDecoder();
+        byte[][] packets = packets(10, 7);
+        DecodedBatch batch = decoder.createBatch(packets.length);
+        for (byte[] packet : packets)
+            decoder.decode(packet, 0, batch);
+        byte[] raw = new byte[DecodedBatch.RAW_BYTES];
+        for (int row = 0; row < packets.length; row++) {
+            assertEquals(20, batch.getRaw(row, raw, 0));
+            assertArrayEquals(packets[row], raw);
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static double sink;
+
+    //Decodes every field of the packet like CharacteristicLed did before
+    private static void translateAll(byte[] packet) {
+        double[] acc = TranslateLed.getAccelerometer(packet);
+        double[] quaternion = TranslateLed.getQuaternion(packet);
+        double[] led = TranslateLed.getLED(packet);
+        double[] seq = TranslateLed.getSequenceNumber(packet);
+        double[] raw = TranslateLed.getRaw(packet);
+        sink += acc[0] + quaternion[0] + led[0] + seq[0] + raw[0];
+    }
+
+    @Test
+    public void decodeIntoBatchDoesNotAllocate() {
+        byte[][] packets = packets(1000, 8);
+        LedPacketDecoder decoder = new LedPacketDecoder();
+        DecodedBatch batch = decoder.createBatch(packets.length);
+        int rounds = 2000;
+
+        //Warm up both paths
+        for (int r = 0; r < 200; r++) {
+            batch.clear();
+            for (byte[] packet : packets) {
+                decoder.decode(packet, r, batch);
+                translateAll(packet);
+            }
+        }
+
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++)
+            for (byte[] packet : packets)
+                translateAll(packet);
+        long translateNanos = System.nanoTime() - start;
+        long translateBytes = allocatedBytes() - allocated;
+
+        allocated = allocatedBytes();
+        start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            batch.clear();
+            for (byte[] packet : packets)
+                decoder.decode(packet, r, batch);
+            sink += batch.getValue(LedPacketDecoder.LED, 0);
+        }
+        long decodeNanos = System.nanoTime() - start;
+        long decodeBytes = allocatedBytes() - allocated;
+
+        long n = (long) rounds * packets.length;
+        System.out.println("Translate*: " + (double) translateNanos / n + " ns, " + (double) translateBytes / n + " B per packet");
+        System.out.println("PacketDecoder: " + (double) decodeNanos / n + " ns, " + (double) decodeBytes / n + " B per packet");
+        //Allow for the odd allocation made by the measurement itself
+        assertTrue("Decoder allocated " + decodeBytes + " bytes", decodeBytes < 16 * 1024);
+    }
+}
@@ -0,0 +1,115 @@
+package org.md2k.motionsense;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class exportQueueTest {
+
+    @Test
+    public void drainsEverythingQueuedInOneBatch() throws Exception {
+        exportQueue queue = new exportQueue(16, exportQueue.OverflowPolicy.DROP_OLDEST);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(queue.offer(new exportRunnable("A", Integer.toString(i))));
+        }
+        List<exportRunnable> batch = new ArrayList<>();
+        assertEquals(5, queue.drainTo(batch, 100, 10));
+        assertEquals("0", batch.get(0).message);
+        assertEquals("4", batch.get(4).message);
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void dropOldestKeepsNewestEntries() throws Exception {
+        exportQueue queue = new exportQueue(3, exportQueue.OverflowPolicy.DROP_OLDEST);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(queue.offer(new exportRunnable("A", Integer.toString(i))));
+        }
+        assertEquals(2, queue.getDropped());
+        List<exportRunnable> batch = new ArrayList<>();
+        queue.drainTo(batch, 100, 10);
+        assertEquals("2", batch.get(0).message);
+        assertEquals("4", batch.get(2).message);
+    }
+
+    @Test
+    public void dropNewestKeepsQueuedEntries() throws Exception {
+        exportQueue queue = new exportQueue(3, exportQueue.OverflowPolicy.DROP_NEWEST);
+        for (int i = 0; i < 5; i++) {
+            queue.offer(new exportRunnable("A", Integer.toString(i)));
+        }
+        assertEquals(2, queue.getDropped());
+        List<exportRunnable> batch = new ArrayList<>();
+        queue.drainTo(batch, 100, 10);
+        assertEquals("0", batch.get(0).message);
+        assertEquals("2", batch.get(2).message);
+    }
+
+    @Test
+    public void closedQueueDrainsThenReportsEnd() throws Exception {
+        exportQueue queue = new exportQueue(16, exportQueue.OverflowPolicy.DROP_OLDEST);
+        queue.offer(new exportRunnable("A", "0"));
+        queue.close();
+        assertFalse(queue.offer(new exportRunnable("A", "1")));
+
+        List<exportRunnable> batch = new ArrayList<>();
+        assertEquals(1, queue.drainTo(batch, 100, 10));
+        assertEquals(-1, queue.drainTo(batch, 100, 10));
+    }
+
+    @Test
+    public void everyAcceptedEntryIsDrainedAcrossClose() throws Exception {
+        final exportQueue queue = new exportQueue(1 << 20, exportQueue.OverflowPolicy.DROP_NEWEST);
+        final AtomicInteger accepted = new AtomicInteger();
+        Thread[] producers = new Thread[4];
+        for (int p = 0; p < producers.length; p++) {
+            producers[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (queue.offer(new exportRunnable("A", "x"))) {
+                        accepted.incrementAndGet();
+                    }
+                }
+            });
+            producers[p].start();
+        }
+        Thread.sleep(20);
+        queue.close();
+
+        List<exportRunnable> batch = new ArrayList<>();
+        int drained = 0;
+        int count;
+        while ((count = queue.drainTo(batch, 4096, 10)) >= 0) {
+            drained += count;
+            batch.clear();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertEquals(accepted.get(), drained);
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void blockedWriterWakesUpOnOffer() throws Exception {
+        final exportQueue queue = new exportQueue(16, exportQueue.OverflowPolicy.DROP_OLDEST);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException ignored) {
+                }
+                queue.offer(new exportRunnable("A", "0"));
+            }
+        });
+        producer.start();
+        List<exportRunnable> batch = new ArrayList<>();
+        assertEquals(1, queue.drainTo(batch, 100, 5000));
+        producer.join();
+    }
+}
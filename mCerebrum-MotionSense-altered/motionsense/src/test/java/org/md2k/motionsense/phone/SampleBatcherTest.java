@@ -0,0 +1,43 @@
+package org.md2k.motionsense.phone;
+
+import org.junit.Test;
+import org.md2k.motionsense.exportRunnable;
+
+import static org.junit.Assert.*;
+
+public class SampleBatcherTest {
+
+    @Test
+    public void convertsTheWholeBatchWithOneOffset() {
+        SampleBatcher batcher = new SampleBatcher("Phone-ACC", 3, 2.0, 16, 1000000000L);
+        for (int i = 0; i < 5; i++)
+            assertFalse(batcher.add(1000000000L + i * 10000000L, new float[]{i, 2 * i, -i}));
+        long epochOffsetNanos = 1500000000000L * 1000000L;
+        exportRunnable batch = batcher.drain(epochOffsetNanos);
+
+        assertEquals(0, batcher.size());
+        assertTrue(batch.isBatch());
+        assertEquals(5, batch.getCount());
+        String[] lines = batch.getMessage().split("\n");
+        assertEquals(5, lines.length);
+        assertEquals("1500000001000,0.0,0.0,0.0", lines[0]);
+        assertEquals("1500000001040,2.0,4.0,-2.0", lines[4]);
+    }
+
+    @Test
+    public void isDueWhenFullOrLongEnough() {
+        SampleBatcher full = new SampleBatcher("Phone-GYRO", 3, 1, 4, 1000000000L);
+        float[] values = {1, 2, 3};
+        assertFalse(full.add(0, values));
+        assertFalse(full.add(10, values));
+        assertFalse(full.add(20, values));
+        assertTrue(full.add(30, values));
+
+        SampleBatcher timed = new SampleBatcher("Phone-GYRO", 3, 1, 256, 50000000L);
+        assertFalse(timed.add(1000000000L, values));
+        assertFalse(timed.add(1040000000L, values));
+        assertTrue(timed.add(1050000000L, values));
+        timed.drain(0);
+        assertFalse(timed.add(1060000000L, values));
+    }
+}
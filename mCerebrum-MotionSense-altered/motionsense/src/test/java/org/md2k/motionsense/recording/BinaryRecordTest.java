@@ -0,0 +1,226 @@
+package org.md2k.motionsense.recording;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BinaryRecordTest {
+
+    private static final int SAMPLES = 5000;
+
+    //Accelerometer-like data at ~100Hz with some jitter, like the phone and MotionSense streams
+    private static long[] timestamps(long start) {
+        Random random = new Random(1);
+        long[] timestamps = new long[SAMPLES];
+        long t = start;
+        for (int i = 0; i < SAMPLES; i++) {
+            t += 9 + random.nextInt(4);
+            timestamps[i] = t;
+        }
+        return timestamps;
+    }
+
+    private static double[][] values() {
+        Random random = new Random(2);
+        double[][] values = new double[SAMPLES][3];
+        for (int i = 0; i < SAMPLES; i++) {
+            for (int c = 0; c < 3; c++) {
+                values[i][c] = random.nextGaussian() * 0.5 + (c == 2 ? 1.0 : 0.0);
+            }
+        }
+        return values;
+    }
+
+    private static byte[] record(BinaryRecordWriter writer, long[] timestamps, double[][] values) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WritableByteChannel channel = Channels.newChannel(out);
+        for (int i = 0; i < timestamps.length; i++) {
+            writer.append(timestamps[i], values[i], i < SAMPLES / 2 ? -12 : 7);
+            if (i % 1000 == 999) {
+                writer.writeTo(channel);
+            }
+        }
+        writer.writeTo(channel);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void float32RoundTrip() throws IOException {
+        long[] timestamps = timestamps(1545000000000L);
+        double[][] values = values();
+        byte[] bytes = record(new BinaryRecordWriter("Phone-ACC", 3, BinaryRecordFormat.ValueType.FLOAT32, 100, 1),
+                timestamps, values);
+
+        BinaryRecordReader reader = new BinaryRecordReader(new ByteArrayInputStream(bytes));
+        for (int i = 0; i < SAMPLES; i++) {
+            assertTrue(reader.next());
+            assertEquals(timestamps[i], reader.getTimestamp());
+            for (int c = 0; c < 3; c++) {
+                assertEquals((float) values[i][c], reader.getValue(c), 0);
+            }
+            assertEquals(i < SAMPLES / 2 ? -12 : 7, reader.getNtpOffset());
+        }
+        assertFalse(reader.next());
+        assertEquals("Phone-ACC", reader.getStreamId());
+        assertEquals(100, reader.getSampleRate(), 0);
+        assertFalse(reader.isTruncated());
+        assertEquals(0, reader.getCorruptBlocks());
+    }
+
+    @Test
+    public void int16RoundTripWithinScale() throws IOException {
+        long[] timestamps = timestamps(1545000000000L);
+        double[][] values = values();
+        float scale = 1f / 2048;
+        byte[] bytes = record(new BinaryRecordWriter("Phone-ACC", 3, BinaryRecordFormat.ValueType.INT16, 100, scale),
+                timestamps, values);
+
+        BinaryRecordReader reader = new BinaryRecordReader(new ByteArrayInputStream(bytes));
+        for (int i = 0; i < SAMPLES; i++) {
+            assertTrue(reader.next());
+            assertEquals(timestamps[i], reader.getTimestamp());
+            for (int c = 0; c < 3; c++) {
+                assertEquals(values[i][c], reader.getValue(c), scale);
+            }
+        }
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void atLeastFiveTimesSmallerThanCsv() throws IOException {
+        long[] timestamps = timestamps(1545000000000L);
+        double[][] values = values();
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < SAMPLES; i++) {
+            csv.append('\n').append(timestamps[i]).append(',').append(values[i][0]).append(',')
+                    .append(values[i][1]).append(',').append(values[i][2]).append(',').append(-12);
+        }
+        int csvBytes = csv.toString().getBytes("UTF-8").length;
+        int float32Bytes = record(new BinaryRecordWriter("Phone-ACC", 3, BinaryRecordFormat.ValueType.FLOAT32, 100, 1),
+                timestamps, values).length;
+        int int16Bytes = record(new BinaryRecordWriter("Phone-ACC", 3, BinaryRecordFormat.ValueType.INT16, 100, 1f / 2048),
+                timestamps, values).length;
+        System.out.println("Bytes per sample - csv: " + (double) csvBytes / SAMPLES
+                + " float32: " + (double) float32Bytes / SAMPLES + " int16: " + (double) int16Bytes / SAMPLES);
+
+        assertTrue(csvBytes >= 5 * float32Bytes);
+        assertTrue(csvBytes >= 10 * int16Bytes);
+    }
+
+    @Test
+    public void corruptBlockIsSkipped() throws IOException {
+        long[] timestamps = timestamps(0);
+        double[][] values = values();
+        byte[] bytes = record(new BinaryRecordWriter("S", 3, BinaryRecordFormat.ValueType.FLOAT32, 0, 1, 100),
+                timestamps, values);
+        bytes[bytes.length / 2] ^= 0x55;
+
+        BinaryRecordReader reader = new BinaryRecordReader(new ByteArrayInputStream(bytes));
+        int count = 0;
+        while (reader.next()) {
+            count++;
+        }
+        assertEquals(1, reader.getCorruptBlocks());
+        assertEquals(SAMPLES - 100, count);
+    }
+
+    @Test
+    public void blockWithBadLengthIsSkipped() throws IOException {
+        long[] timestamps = timestamps(0);
+        double[][] values = values();
+        byte[] bytes = record(new BinaryRecordWriter("S", 3, BinaryRecordFormat.ValueType.FLOAT32, 0, 1, 100),
+                timestamps, values);
+        //Second block: its length field follows the block magic and sample count
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int first = BinaryRecordFormat.HEADER_FIXED_BYTES + 1 + BinaryRecordFormat.CRC_BYTES;
+        int second = first + BinaryRecordFormat.BLOCK_HEADER_BYTES + buffer.getInt(first + 4) + BinaryRecordFormat.CRC_BYTES;
+        assertEquals(BinaryRecordFormat.BLOCK_MAGIC, buffer.getShort(second));
+        buffer.putInt(second + 4, Integer.MAX_VALUE);
+
+        BinaryRecordReader reader = new BinaryRecordReader(new ByteArrayInputStream(bytes));
+        int count = 0;
+        while (reader.next()) {
+            count++;
+        }
+        assertEquals(1, reader.getCorruptBlocks());
+        assertEquals(SAMPLES - 100, count);
+        assertFalse(reader.isTruncated());
+    }
+
+    @Test
+    public void falseHeaderMarkerInDamagedBlockIsSkipped() throws IOException {
+        long[] timestamps = timestamps(0);
+        double[][] values = values();
+        byte[] bytes = record(new BinaryRecordWriter("S", 3, BinaryRecordFormat.ValueType.FLOAT32, 0, 1, 100),
+                timestamps, values);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int first = BinaryRecordFormat.HEADER_FIXED_BYTES + 1 + BinaryRecordFormat.CRC_BYTES;
+        int second = first + BinaryRecordFormat.BLOCK_HEADER_BYTES + buffer.getInt(first + 4) + BinaryRecordFormat.CRC_BYTES;
+        buffer.putInt(second + 4, Integer.MAX_VALUE);
+        //Payload bytes the resync scan will take for a header marker
+        buffer.putShort(second + BinaryRecordFormat.BLOCK_HEADER_BYTES + 10, (short) (BinaryRecordFormat.MAGIC >>> 16));
+
+        BinaryRecordReader reader = new BinaryRecordReader(new ByteArrayInputStream(bytes));
+        int count = 0;
+        while (reader.next()) {
+            count++;
+        }
+        assertEquals(2, reader.getCorruptBlocks());
+        assertEquals(SAMPLES - 100, count);
+        assertEquals(1, reader.getSegments());
+        assertFalse(reader.isTruncated());
+    }
+
+    @Test(expected = IOException.class)
+    public void badFirstHeaderIsFatal() throws IOException {
+        byte[] bytes = record(new BinaryRecordWriter("S", 3, BinaryRecordFormat.ValueType.FLOAT32, 0, 1, 100),
+                timestamps(0), values());
+        ByteBuffer.wrap(bytes).putShort(4, (short) (BinaryRecordFormat.VERSION + 1));
+
+        new BinaryRecordReader(new ByteArrayInputStream(bytes)).next();
+    }
+
+    @Test
+    public void truncatedTailEndsRecording() throws IOException {
+        long[] timestamps = timestamps(0);
+        double[][] values = values();
+        byte[] bytes = record(new BinaryRecordWriter("S", 3, BinaryRecordFormat.ValueType.FLOAT32, 0, 1, 100),
+                timestamps, values);
+        byte[] cut = new byte[bytes.length - 10];
+        System.arraycopy(bytes, 0, cut, 0, cut.length);
+
+        BinaryRecordReader reader = new BinaryRecordReader(new ByteArrayInputStream(cut));
+        int count = 0;
+        while (reader.next()) {
+            count++;
+        }
+        assertTrue(reader.isTruncated());
+        assertEquals(SAMPLES - 100, count);
+    }
+
+    @Test
+    public void appendedSegmentsReadAsOneRecording() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WritableByteChannel channel = Channels.newChannel(out);
+        BinaryRecordWriter first = new BinaryRecordWriter("S", 3, BinaryRecordFormat.ValueType.FLOAT32, 0, 1);
+        first.append(1, new double[]{1, 2, 3}, 0);
+        first.writeTo(channel);
+        BinaryRecordWriter second = new BinaryRecordWriter("S", 3, BinaryRecordFormat.ValueType.INT16, 0, 0.5f);
+        second.append(2, new double[]{4, 5, 6}, 0);
+        second.writeTo(channel);
+
+        BinaryRecordReader reader = new BinaryRecordReader(new ByteArrayInputStream(out.toByteArray()));
+        StringBuilder csv = new StringBuilder();
+        assertEquals(2, BinaryToCsv.convert(reader, csv));
+        assertEquals("\n1,1.0,2.0,3.0,0\n2,4.0,5.0,6.0,0", csv.toString());
+        assertEquals(2, reader.getSegments());
+    }
+}